@@ -40,11 +40,29 @@ public interface Stats extends Serializable
   {
     public long checkpointStartTime;
     public long checkpointTime;
+    /**
+     * Number of bytes of the serialized state, 0 if the storage agent does not report it.
+     */
+    public long checkpointSize;
+    /**
+     * Number of bytes written to the store, which is less than the checkpoint size if the state was compressed.
+     */
+    public long uploadedBytes;
+    /**
+     * Time in milliseconds it took to serialize the state.
+     */
+    public long serializationTime;
+    /**
+     * Time in milliseconds it took to upload the serialized state to the store.
+     */
+    public long uploadTime;
 
     @Override
     public String toString()
     {
-      return "CheckpointStats{" + "checkpointStartTime=" + checkpointStartTime + ", checkpointTime=" + checkpointTime + '}';
+      return "CheckpointStats{" + "checkpointStartTime=" + checkpointStartTime + ", checkpointTime=" + checkpointTime +
+          ", checkpointSize=" + checkpointSize + ", uploadedBytes=" + uploadedBytes +
+          ", serializationTime=" + serializationTime + ", uploadTime=" + uploadTime + '}';
     }
   }
 
@@ -75,6 +93,15 @@ public interface Stats extends Serializable
       public int tupleCount;
       public long endWindowTimestamp;
       public long bufferServerBytes;
+      /**
+       * Number of bytes an input port received from the buffer server but did not yet process.
+       */
+      public long bufferServerLagBytes;
+      /**
+       * Nanoseconds spent deserializing the tuples an input port received from the buffer server, whether on the thread
+       * of the operator or ahead of it on a decode thread.
+       */
+      public long decodeTime;
       public int queueSize;
       /**
        * If there is a recording on the port, this contains the recording id, otherwise null
@@ -89,7 +116,7 @@ public interface Stats extends Serializable
       @Override
       public String toString()
       {
-        return "PortStats{" + "portname=" + id + ", processedCount=" + tupleCount + ", bufferServerBytes = " + bufferServerBytes + ", queueSize = " + queueSize + ", endWindowTimestamp=" + endWindowTimestamp + '}';
+        return "PortStats{" + "portname=" + id + ", processedCount=" + tupleCount + ", bufferServerBytes = " + bufferServerBytes + ", bufferServerLagBytes = " + bufferServerLagBytes + ", decodeTime = " + decodeTime + ", queueSize = " + queueSize + ", endWindowTimestamp=" + endWindowTimestamp + '}';
       }
 
     }
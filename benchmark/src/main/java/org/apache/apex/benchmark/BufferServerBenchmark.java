@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.server.Server;
+import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.netlet.DefaultEventLoop;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.engine.StreamContext;
+import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.stream.BufferServerPublisher;
+import com.datatorrent.stram.stream.BufferServerSubscriber;
+import com.datatorrent.stram.tuple.EndWindowTuple;
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * Throughput of tuples published to an in-process buffer {@link Server} and received by a subscriber, both
+ * connected over loopback the same way two containers are.
+ * <p>
+ * Every invocation publishes one streaming window and waits until the subscriber has swept its end window, so the
+ * score covers serialization, the publisher, the data list of the server and deserialization in the subscriber.
+ * With {@code spool} enabled the server is given a {@link DiskStorage} and a small number of cached blocks, so
+ * blocks are written to disk and read back while the subscriber catches up.
+ *
+ * @since 3.7.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BufferServerBenchmark
+{
+  static final int WINDOW_SIZE = 1000;
+  private static final String UPSTREAM_ID = "upstream";
+  private static final String DOWNSTREAM_ID = "downstream";
+  private static final long TIMEOUT_MILLIS = 30000;
+
+  @Param({"string", "pojo"})
+  public String payload;
+
+  @Param({"false", "true"})
+  public boolean spool;
+
+  private DefaultEventLoop eventloop;
+  private Server server;
+  private BufferServerPublisher publisher;
+  private BufferServerSubscriber subscriber;
+  private SweepableReservoir reservoir;
+  private ReservoirBenchmark.CountingSink sink;
+  private Object[] tuples;
+  private int windowId;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException
+  {
+    eventloop = DefaultEventLoop.createEventLoop("BufferServerBenchmark");
+    eventloop.start();
+    if (spool) {
+      server = new Server(eventloop, 0, 1024 * 1024, 2);
+      server.setSpoolStorage(new DiskStorage());
+    } else {
+      server = new Server(eventloop, 0);
+    }
+    InetSocketAddress address = server.run();
+    InetSocketAddress serverAddress = InetSocketAddress.createUnresolved("localhost", address.getPort());
+    DefaultStatefulStreamCodec<Object> codec = new DefaultStatefulStreamCodec<>();
+
+    StreamContext subscriberContext = newContext(serverAddress, codec);
+    subscriberContext.setFinishedWindowId(-1);
+    subscriber = new BufferServerSubscriber(DOWNSTREAM_ID, 1024);
+    subscriber.setup(subscriberContext);
+    reservoir = subscriber.acquireReservoir("benchmark", 64 * 1024);
+    sink = new ReservoirBenchmark.CountingSink();
+    reservoir.setSink(sink);
+
+    StreamContext publisherContext = newContext(serverAddress, codec);
+    publisher = new BufferServerPublisher(UPSTREAM_ID, 1024);
+    publisher.setup(publisherContext);
+
+    subscriber.activate(subscriberContext);
+    publisher.activate(publisherContext);
+
+    tuples = new Object[WINDOW_SIZE];
+    for (int i = 0; i < tuples.length; i++) {
+      tuples[i] = StreamCodecBenchmark.newPayload(payload, i);
+    }
+  }
+
+  private StreamContext newContext(InetSocketAddress serverAddress, DefaultStatefulStreamCodec<Object> codec)
+  {
+    StreamContext context = new StreamContext("benchmarkStream");
+    context.setSourceId(UPSTREAM_ID);
+    context.setSinkId(DOWNSTREAM_ID);
+    context.setBufferServerAddress(serverAddress);
+    context.put(StreamContext.CODEC, codec);
+    context.put(StreamContext.EVENT_LOOP, eventloop);
+    return context;
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown()
+  {
+    publisher.deactivate();
+    subscriber.deactivate();
+    publisher.teardown();
+    subscriber.teardown();
+    server.stop();
+    eventloop.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW_SIZE)
+  public int publishAndReceiveWindow() throws InterruptedException
+  {
+    int window = windowId++;
+    publisher.put(new Tuple(MessageType.BEGIN_WINDOW, window));
+    for (Object tuple : tuples) {
+      publisher.put(tuple);
+    }
+    publisher.put(new EndWindowTuple(window));
+
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (true) {
+      Tuple t = reservoir.sweep();
+      if (t == null) {
+        if (System.currentTimeMillis() > deadline) {
+          throw new IllegalStateException("Window " + window + " not received, got " + sink.count + " tuples");
+        }
+        Thread.yield();
+        continue;
+      }
+      reservoir.remove();
+      if (t instanceof EndWindowTuple) {
+        return sink.count;
+      }
+    }
+  }
+}
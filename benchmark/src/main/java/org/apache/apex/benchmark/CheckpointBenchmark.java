@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.commons.io.FileUtils;
+
+import com.datatorrent.common.util.FSStorageAgent;
+
+/**
+ * Checkpoint throughput of {@link FSStorageAgent} when the operators of a container checkpoint at the same time, each
+ * benchmark thread being one operator. The number of operators is changed with the {@code -t} option of JMH; with
+ * the per thread serializers the throughput is expected to scale with it until the cores or the disk are saturated.
+ * <p>
+ * Each operation saves the state of the next window and deletes the checkpoint of the previous one, the way the
+ * checkpoints of committed windows are purged.
+ *
+ * @since 3.7.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CheckpointBenchmark
+{
+  @State(Scope.Benchmark)
+  public static class Agent
+  {
+    @Param({"1000", "20000"})
+    public int stateSize;
+
+    FSStorageAgent storageAgent;
+    HashMap<Integer, String> state;
+    final AtomicInteger nextOperatorId = new AtomicInteger();
+    private File appPath;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+      appPath = Files.createTempDirectory("CheckpointBenchmark").toFile();
+      storageAgent = new FSStorageAgent(appPath.getPath(), null);
+      state = new HashMap<>();
+      for (int i = 0; i < stateSize; i++) {
+        state.put(i, "value" + i);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown()
+    {
+      FileUtils.deleteQuietly(appPath);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Operator
+  {
+    int operatorId;
+    long windowId;
+
+    @Setup(Level.Trial)
+    public void setup(Agent agent)
+    {
+      operatorId = agent.nextOperatorId.incrementAndGet();
+    }
+  }
+
+  @Benchmark
+  public void checkpoint(Agent agent, Operator operator) throws IOException
+  {
+    agent.storageAgent.save(agent.state, operator.operatorId, ++operator.windowId);
+    if (operator.windowId > 1) {
+      agent.storageAgent.delete(operator.operatorId, operator.windowId - 1);
+    }
+  }
+}
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.commons.io.FileUtils;
+
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.common.partitioner.StatelessPartitioner;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.stram.StramLocalCluster;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+
+/**
+ * End-to-end throughput and latency of standard DAG shapes running in a {@link StramLocalCluster}.
+ * <p>
+ * Each DAG is a source, a pass through operator and a sink:
+ * <ul>
+ * <li>{@code linear}: the streams go through the buffer server</li>
+ * <li>{@code containerLocal}: the streams are container local</li>
+ * <li>{@code threadLocal}: all operators run on the thread of the source</li>
+ * <li>{@code partitioned}: the pass through operator has 4 partitions and the sink receives through a unifier</li>
+ * </ul>
+ * With {@code eventDriven} the pass through operator and the sink are woken up by their reservoirs instead of
+ * sleeping between polls, see {@link LogicalPlan#EVENT_DRIVEN_SCHEDULING}.
+ * The operators run in the same JVM as the benchmark and report the tuples they receive through static fields.
+ *
+ * @since 3.7.0
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LocalClusterBenchmark
+{
+  static final int BATCH_SIZE = 10000;
+  private static final long TIMEOUT_MILLIS = 60000;
+
+  static final AtomicLong received = new AtomicLong();
+  static final BlockingQueue<Long> pings = new LinkedBlockingQueue<>();
+  static final BlockingQueue<Long> pongs = new LinkedBlockingQueue<>();
+  static volatile boolean generate;
+
+  @State(Scope.Benchmark)
+  public static class Cluster
+  {
+    @Param({"linear", "containerLocal", "threadLocal", "partitioned"})
+    public String dag;
+
+    @Param({"false", "true"})
+    public boolean eventDriven;
+
+    StramLocalCluster cluster;
+    File appPath;
+
+    void start(boolean generate) throws Exception
+    {
+      LocalClusterBenchmark.generate = generate;
+      received.set(0);
+      pings.clear();
+      pongs.clear();
+
+      appPath = Files.createTempDirectory("LocalClusterBenchmark").toFile();
+      LogicalPlan plan = new LogicalPlan();
+      plan.setAttribute(LogicalPlan.APPLICATION_PATH, appPath.toURI().toString());
+
+      SourceOperator source = plan.addOperator("source", SourceOperator.class);
+      PassThroughOperator pass = plan.addOperator("pass", PassThroughOperator.class);
+      SinkOperator sink = plan.addOperator("sink", SinkOperator.class);
+      Locality locality = null;
+      switch (dag) {
+        case "containerLocal":
+          locality = Locality.CONTAINER_LOCAL;
+          break;
+
+        case "threadLocal":
+          locality = Locality.THREAD_LOCAL;
+          break;
+
+        case "partitioned":
+          plan.setOperatorAttribute(pass, OperatorContext.PARTITIONER, new StatelessPartitioner<PassThroughOperator>(4));
+          break;
+
+        default:
+          break;
+      }
+      if (eventDriven) {
+        plan.setOperatorAttribute(pass, LogicalPlan.EVENT_DRIVEN_SCHEDULING, true);
+        plan.setOperatorAttribute(sink, LogicalPlan.EVENT_DRIVEN_SCHEDULING, true);
+      }
+      plan.addStream("sourceToPass", source.output, pass.input).setLocality(locality);
+      plan.addStream("passToSink", pass.output, sink.input).setLocality(locality);
+
+      cluster = new StramLocalCluster(plan);
+      cluster.setHeartbeatMonitoringEnabled(false);
+      cluster.runAsync();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException
+    {
+      generate = false;
+      cluster.shutdown();
+      FileUtils.deleteQuietly(appPath);
+    }
+  }
+
+  public static class ThroughputCluster extends Cluster
+  {
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+      start(true);
+    }
+  }
+
+  public static class LatencyCluster extends Cluster
+  {
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+      start(false);
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public long throughput(ThroughputCluster cluster)
+  {
+    long target = received.get() + BATCH_SIZE;
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    long count;
+    while ((count = received.get()) < target) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new IllegalStateException("Received only " + count + " of " + target + " tuples");
+      }
+      LockSupport.parkNanos(10000);
+    }
+    return count;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Long latency(LatencyCluster cluster) throws InterruptedException
+  {
+    pings.add(System.nanoTime());
+    Long pong = pongs.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    if (pong == null) {
+      throw new IllegalStateException("No response from the DAG");
+    }
+    return pong;
+  }
+
+  public static class SourceOperator extends BaseOperator implements InputOperator
+  {
+    private static final int TUPLES_PER_CALL = 256;
+    public final transient DefaultOutputPort<Long> output = new DefaultOutputPort<>();
+    private long sequence;
+
+    @Override
+    public void emitTuples()
+    {
+      if (generate) {
+        for (int i = TUPLES_PER_CALL; i-- > 0;) {
+          output.emit(sequence++);
+        }
+      } else {
+        Long ping;
+        while ((ping = pings.poll()) != null) {
+          output.emit(ping);
+        }
+      }
+    }
+  }
+
+  public static class PassThroughOperator extends BaseOperator
+  {
+    public final transient DefaultOutputPort<Long> output = new DefaultOutputPort<>();
+    public final transient DefaultInputPort<Long> input = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        output.emit(tuple);
+      }
+    };
+  }
+
+  public static class SinkOperator extends BaseOperator
+  {
+    public final transient DefaultInputPort<Long> input = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        received.incrementAndGet();
+        if (!generate) {
+          pongs.add(tuple);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datatorrent.api.Sink;
+import com.datatorrent.stram.engine.AbstractReservoir;
+
+/**
+ * Put and sweep throughput of the reservoirs that connect the streams to the input ports of a node.
+ * <p>
+ * The implementation is selected the same way the engine selects it, through the
+ * {@value #RESERVOIR_PROPERTY} system property.
+ *
+ * @since 3.7.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ReservoirBenchmark
+{
+  static final String RESERVOIR_PROPERTY = "com.datatorrent.stram.engine.Reservoir";
+  static final int BATCH_SIZE = 1024;
+
+  @Param({"SpscArrayQueueReservoir", "SpscArrayBlockingQueueReservoir", "CircularBufferReservoir",
+      "ArrayBlockingQueueReservoir"})
+  public String implementation;
+
+  @Param({"1024", "65536"})
+  public int capacity;
+
+  private AbstractReservoir reservoir;
+  private CountingSink sink;
+  private Object[] tuples;
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    String previous = System.getProperty(RESERVOIR_PROPERTY);
+    System.setProperty(RESERVOIR_PROPERTY, AbstractReservoir.class.getName() + '$' + implementation);
+    try {
+      reservoir = AbstractReservoir.newReservoir("benchmark", capacity);
+    } finally {
+      if (previous == null) {
+        System.clearProperty(RESERVOIR_PROPERTY);
+      } else {
+        System.setProperty(RESERVOIR_PROPERTY, previous);
+      }
+    }
+    sink = new CountingSink();
+    reservoir.setSink(sink);
+    tuples = new Object[BATCH_SIZE];
+    for (int i = 0; i < tuples.length; i++) {
+      tuples[i] = (long)i;
+    }
+  }
+
+  /**
+   * Fills the reservoir with a batch and sweeps it on the same thread, which is what a thread local stream sees.
+   */
+  @Benchmark
+  @Group("local")
+  @OperationsPerInvocation(BATCH_SIZE)
+  public int putAndSweepBatch()
+  {
+    final Object[] tuples = this.tuples;
+    final int batch = Math.min(tuples.length, capacity);
+    for (int i = 0; i < batch; i++) {
+      reservoir.add(tuples[i]);
+    }
+    reservoir.sweep();
+    return sink.count;
+  }
+
+  /**
+   * Producer side of a reservoir shared between an upstream and a downstream thread.
+   */
+  @Benchmark
+  @Group("spsc")
+  public boolean offer()
+  {
+    return reservoir.offer(tuples[0]);
+  }
+
+  /**
+   * Consumer side of a reservoir shared between an upstream and a downstream thread.
+   */
+  @Benchmark
+  @Group("spsc")
+  public int sweep()
+  {
+    reservoir.sweep();
+    return sink.count;
+  }
+
+  static final class CountingSink implements Sink<Object>
+  {
+    int count;
+
+    @Override
+    public void put(Object tuple)
+    {
+      count++;
+    }
+
+    @Override
+    public int getCount(boolean reset)
+    {
+      int count = this.count;
+      if (reset) {
+        this.count = 0;
+      }
+      return count;
+    }
+  }
+}
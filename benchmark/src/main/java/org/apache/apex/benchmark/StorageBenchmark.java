@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.bufferserver.storage.MappedSegmentStorage;
+import com.datatorrent.bufferserver.storage.Storage;
+
+/**
+ * Spooling of buffer server blocks: storing a block, reading it back and discarding it, which is the life of a
+ * block evicted from memory while a slow subscriber still needs it.
+ *
+ * @since 3.7.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StorageBenchmark
+{
+  private static final String IDENTIFIER = "benchmark";
+
+  @Param({"disk", "mapped"})
+  public String storageType;
+
+  @Param({"65536", "1048576"})
+  public int blockSize;
+
+  private Storage storage;
+  private byte[] block;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException
+  {
+    storage = "mapped".equals(storageType) ? new MappedSegmentStorage() : new DiskStorage();
+    block = new byte[blockSize];
+    new Random(0).nextBytes(block);
+  }
+
+  @Benchmark
+  public int spool()
+  {
+    int id = storage.store(IDENTIFIER, block, 0, block.length);
+    storage.discard(IDENTIFIER, id);
+    return id;
+  }
+
+  @Benchmark
+  public byte[] spoolAndUnspool()
+  {
+    int id = storage.store(IDENTIFIER, block, 0, block.length);
+    byte[] bytes = storage.retrieve(IDENTIFIER, id);
+    storage.discard(IDENTIFIER, id);
+    return bytes;
+  }
+}
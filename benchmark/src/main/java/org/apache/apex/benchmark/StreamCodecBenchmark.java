@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.codec.PojoStreamCodec;
+import com.datatorrent.stram.codec.StatefulStreamCodec;
+import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
+
+/**
+ * Serialization and deserialization cost of {@link DefaultStatefulStreamCodec}, the codec used for tuples sent
+ * through the buffer server when the port does not specify one, and of the {@link PojoStreamCodec} specialized for
+ * the class of the tuple, which falls back to kryo for the payloads which are not plain POJOs.
+ *
+ * @since 3.7.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamCodecBenchmark
+{
+  @Param({"string", "pojo", "map"})
+  public String payload;
+
+  @Param({"default", "pojo"})
+  public String codec;
+
+  private StatefulStreamCodec<Object> encoder;
+  private StatefulStreamCodec<Object> decoder;
+  private Object tuple;
+  private DataStatePair encoded;
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    tuple = newPayload(payload, 1);
+    encoder = codec.equals("pojo") ? new PojoStreamCodec<>(tuple.getClass()).newInstance()
+        : new DefaultStatefulStreamCodec<>();
+    decoder = encoder.newInstance();
+
+    // register the classes with the decoder and keep a copy of the data for the deserialization benchmark
+    DataStatePair dsp = encoder.toDataStatePair(tuple);
+    decoder.fromDataStatePair(dsp);
+    encoded = new DataStatePair();
+    encoded.data = new Slice(dsp.data.toByteArray());
+  }
+
+  @Benchmark
+  public Slice serialize()
+  {
+    return encoder.toDataStatePair(tuple).data;
+  }
+
+  @Benchmark
+  public Object deserialize()
+  {
+    return decoder.fromDataStatePair(encoded);
+  }
+
+  @Benchmark
+  public Object roundTrip()
+  {
+    return decoder.fromDataStatePair(encoder.toDataStatePair(tuple));
+  }
+
+  @Benchmark
+  public int partition()
+  {
+    return encoder.getPartition(tuple);
+  }
+
+  static Object newPayload(String type, long seq)
+  {
+    switch (type) {
+      case "string":
+        return "tuple-" + seq + "-abcdefghijklmnopqrstuvwxyz";
+
+      case "pojo":
+        return new TestPojo(seq);
+
+      case "map":
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", seq);
+        map.put("name", "tuple-" + seq);
+        map.put("amount", seq * 0.5);
+        map.put("active", (seq & 1) == 0);
+        return map;
+
+      default:
+        throw new IllegalArgumentException("Unknown payload " + type);
+    }
+  }
+
+  /**
+   * Tuple with a mix of primitive and object fields.
+   */
+  public static class TestPojo
+  {
+    public long id;
+    public int count;
+    public double amount;
+    public String name;
+    public boolean active;
+
+    public TestPojo()
+    {
+    }
+
+    TestPojo(long seq)
+    {
+      id = seq;
+      count = (int)seq;
+      amount = seq * 0.5;
+      name = "tuple-" + seq;
+      active = (seq & 1) == 0;
+    }
+  }
+}
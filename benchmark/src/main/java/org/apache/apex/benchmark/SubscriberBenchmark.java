@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datatorrent.bufferserver.packet.DataTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
+import com.datatorrent.stram.engine.StreamContext;
+import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.stream.BufferServerSubscriber;
+
+/**
+ * Cost of turning the messages a {@link BufferServerSubscriber} receives from the buffer server into tuples
+ * delivered to the sink of its reservoir, without the network.
+ * <p>
+ * Messages are handed to {@link BufferServerSubscriber#onMessage} the way the event loop hands them over and
+ * are deserialized when the reservoir is swept by the node thread.
+ *
+ * @since 3.7.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SubscriberBenchmark
+{
+  static final int BATCH_SIZE = 512;
+
+  @Param({"string", "pojo", "map"})
+  public String payload;
+
+  private BufferServerSubscriber subscriber;
+  private SweepableReservoir reservoir;
+  private ReservoirBenchmark.CountingSink sink;
+  private byte[][] messages;
+
+  @Setup(Level.Trial)
+  public void setup()
+  {
+    DefaultStatefulStreamCodec<Object> codec = new DefaultStatefulStreamCodec<>();
+    StreamContext context = new StreamContext("benchmarkStream");
+    context.setFinishedWindowId(-1);
+    context.put(StreamContext.CODEC, codec);
+
+    subscriber = new BufferServerSubscriber("downstream", 2 * BATCH_SIZE);
+    subscriber.setup(context);
+    reservoir = subscriber.acquireReservoir("benchmark", 2 * BATCH_SIZE);
+    sink = new ReservoirBenchmark.CountingSink();
+    reservoir.setSink(sink);
+
+    // the codec state is sent once, ahead of the first tuple that needs it
+    DefaultStatefulStreamCodec<Object> publisherCodec = codec.newInstance();
+    messages = new byte[BATCH_SIZE][];
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      DataStatePair dsp = publisherCodec.toDataStatePair(StreamCodecBenchmark.newPayload(payload, i));
+      if (dsp.state != null) {
+        byte[] state = DataTuple.getSerializedTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
+        subscriber.onMessage(state, 0, state.length);
+      }
+      messages[i] = PayloadTuple.getSerializedTuple(0, dsp.data);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public int receiveAndSweep()
+  {
+    final int expected = sink.count + BATCH_SIZE;
+    for (byte[] message : messages) {
+      subscriber.onMessage(message, 0, message.length);
+    }
+    // the first sweep moves the messages into the reservoir, the next one delivers them to the sink
+    while (sink.count < expected) {
+      reservoir.sweep();
+    }
+    return sink.count;
+  }
+}
@@ -48,9 +48,20 @@ public abstract class Subscriber extends AuthClient
 
   public void activate(final String version, final String type, final String sourceId, final int mask,
       final Collection<Integer> partitions, final long windowId, final int bufferSize)
+  {
+    activate(version, type, sourceId, mask, partitions, windowId, bufferSize, 0);
+  }
+
+  /**
+   * Subscribes to the stream, limiting the data the server hands to the connection before it is written to the socket.
+   *
+   * @param creditWindow number of bytes that may be in flight to the subscriber, 0 for no limit
+   */
+  public void activate(final String version, final String type, final String sourceId, final int mask,
+      final Collection<Integer> partitions, final long windowId, final int bufferSize, final int creditWindow)
   {
     sendAuthenticate();
-    write(getSerializedRequest(version, id, type, sourceId, mask, partitions, windowId, bufferSize));
+    write(getSerializedRequest(version, id, type, sourceId, mask, partitions, windowId, bufferSize, creditWindow));
   }
 
   @Override
@@ -0,0 +1,278 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.Arrays;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+
+/**
+ * Compact index of the tuples in a {@link DataList.Block} that subscribers can not skip over.<p>
+ * <br>
+ * Keeps the offsets of the BEGIN_WINDOW tuples sorted by window id and the offsets of the control tuples
+ * (RESET_WINDOW, CHECKPOINT, CODEC_STATE and END_STREAM) that are delivered even while catching up. It is filled in
+ * as the publisher data is flushed so that catch up, rewind and purge can jump to the right offset in a block instead
+ * of walking every tuple in it. The index is kept when the block is spooled, so locating data does not require the
+ * block to be loaded back into memory.
+ * <br>
+ * Offsets are those of the first byte of the length prefix of a tuple.
+ *
+ * @since 3.7.0
+ */
+class BlockIndex
+{
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] windowIds = new long[INITIAL_CAPACITY];
+  private int[] windowOffsets = new int[INITIAL_CAPACITY];
+  private int windowCount;
+
+  private byte[] controlTypes = new byte[INITIAL_CAPACITY];
+  private int[] controlOffsets = new int[INITIAL_CAPACITY];
+  private int[] controlLengths = new int[INITIAL_CAPACITY];
+  private long[] controlBaseSeconds = new long[INITIAL_CAPACITY];
+  private int controlCount;
+
+  synchronized void addWindow(long windowId, int offset)
+  {
+    if (windowCount == windowIds.length) {
+      windowIds = Arrays.copyOf(windowIds, windowCount << 1);
+      windowOffsets = Arrays.copyOf(windowOffsets, windowCount << 1);
+    }
+    windowIds[windowCount] = windowId;
+    windowOffsets[windowCount++] = offset;
+  }
+
+  /**
+   * @param type message type of the control tuple
+   * @param offset offset of the tuple
+   * @param length length of the tuple including its length prefix
+   * @param baseSeconds base seconds in effect after the tuple, shifted by 32 bits
+   */
+  synchronized void addControl(byte type, int offset, int length, long baseSeconds)
+  {
+    insertControl(controlCount, type, offset, length, baseSeconds);
+  }
+
+  private void insertControl(int position, byte type, int offset, int length, long baseSeconds)
+  {
+    if (controlCount == controlOffsets.length) {
+      controlTypes = Arrays.copyOf(controlTypes, controlCount << 1);
+      controlOffsets = Arrays.copyOf(controlOffsets, controlCount << 1);
+      controlLengths = Arrays.copyOf(controlLengths, controlCount << 1);
+      controlBaseSeconds = Arrays.copyOf(controlBaseSeconds, controlCount << 1);
+    }
+    final int moved = controlCount - position;
+    if (moved > 0) {
+      System.arraycopy(controlTypes, position, controlTypes, position + 1, moved);
+      System.arraycopy(controlOffsets, position, controlOffsets, position + 1, moved);
+      System.arraycopy(controlLengths, position, controlLengths, position + 1, moved);
+      System.arraycopy(controlBaseSeconds, position, controlBaseSeconds, position + 1, moved);
+    }
+    controlTypes[position] = type;
+    controlOffsets[position] = offset;
+    controlLengths[position] = length;
+    controlBaseSeconds[position] = baseSeconds;
+    controlCount++;
+  }
+
+  /**
+   * Finds the first BEGIN_WINDOW tuple at or after the given offset for a window past the given window id.
+   *
+   * @param windowId window id to compare against
+   * @param inclusive whether the window with the given id itself qualifies
+   * @param fromOffset offset to start the search from
+   * @return position of the entry in the window index or -1 if there is no such window
+   */
+  synchronized int findWindow(long windowId, boolean inclusive, int fromOffset)
+  {
+    int low = ceiling(windowOffsets, windowCount, fromOffset);
+    int high = windowCount;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (windowIds[mid] > windowId || (inclusive && windowIds[mid] == windowId)) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low < windowCount ? low : -1;
+  }
+
+  /**
+   * @param offset offset to end the search at, exclusive
+   * @return position of the last BEGIN_WINDOW tuple before the given offset or -1 if there is none
+   */
+  synchronized int findLastWindow(int offset)
+  {
+    return ceiling(windowOffsets, windowCount, offset) - 1;
+  }
+
+  synchronized long getWindowId(int position)
+  {
+    return windowIds[position];
+  }
+
+  synchronized int getWindowOffset(int position)
+  {
+    return windowOffsets[position];
+  }
+
+  /**
+   * @param fromOffset offset to start the search from
+   * @return offset of the first control tuple at or after the given offset or -1 if there is none
+   */
+  synchronized int findControlOffset(int fromOffset)
+  {
+    final int position = ceiling(controlOffsets, controlCount, fromOffset);
+    return position < controlCount ? controlOffsets[position] : -1;
+  }
+
+  /**
+   * @param windowId window id to compare against
+   * @param fromOffset offset to start the search from
+   * @return position of the first RESET_WINDOW tuple at or after the given offset for base seconds past the given
+   * window id or -1 if there is none
+   */
+  synchronized int findReset(long windowId, int fromOffset)
+  {
+    for (int i = ceiling(controlOffsets, controlCount, fromOffset); i < controlCount; i++) {
+      if (controlTypes[i] == MessageType.RESET_WINDOW_VALUE && controlBaseSeconds[i] > windowId) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param fromOffset offset to start the search from
+   * @param toOffset offset to end the search at, exclusive
+   * @return position of the last RESET_WINDOW tuple in the range or -1 if there is none
+   */
+  synchronized int findLastReset(int fromOffset, int toOffset)
+  {
+    final int first = ceiling(controlOffsets, controlCount, fromOffset);
+    for (int i = ceiling(controlOffsets, controlCount, toOffset); i-- > first; ) {
+      if (controlTypes[i] == MessageType.RESET_WINDOW_VALUE) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  synchronized int getControlOffset(int position)
+  {
+    return controlOffsets[position];
+  }
+
+  synchronized int getControlLength(int position)
+  {
+    return controlLengths[position];
+  }
+
+  synchronized long getControlBaseSeconds(int position)
+  {
+    return controlBaseSeconds[position];
+  }
+
+  /**
+   * Drops the entries for tuples at or after the given offset.
+   */
+  synchronized void truncate(int offset)
+  {
+    windowCount = ceiling(windowOffsets, windowCount, offset);
+    controlCount = ceiling(controlOffsets, controlCount, offset);
+  }
+
+  /**
+   * Drops the entries for tuples before the given offset.
+   */
+  synchronized void purge(int offset)
+  {
+    int position = ceiling(windowOffsets, windowCount, offset);
+    if (position > 0) {
+      windowCount -= position;
+      System.arraycopy(windowIds, position, windowIds, 0, windowCount);
+      System.arraycopy(windowOffsets, position, windowOffsets, 0, windowCount);
+    }
+
+    position = ceiling(controlOffsets, controlCount, offset);
+    if (position > 0) {
+      controlCount -= position;
+      System.arraycopy(controlTypes, position, controlTypes, 0, controlCount);
+      System.arraycopy(controlOffsets, position, controlOffsets, 0, controlCount);
+      System.arraycopy(controlLengths, position, controlLengths, 0, controlCount);
+      System.arraycopy(controlBaseSeconds, position, controlBaseSeconds, 0, controlCount);
+    }
+  }
+
+  /**
+   * Records a RESET_WINDOW tuple which was copied in front of all the tuples in the index.
+   */
+  synchronized void addFirstReset(int offset, int length, long baseSeconds)
+  {
+    insertControl(0, MessageType.RESET_WINDOW_VALUE, offset, length, baseSeconds);
+  }
+
+  /**
+   * Shifts the offsets when the data of the block is reloaded starting at the given offset.
+   */
+  synchronized void rebase(int offset)
+  {
+    if (offset != 0) {
+      purge(offset);
+      for (int i = 0; i < windowCount; i++) {
+        windowOffsets[i] -= offset;
+      }
+      for (int i = 0; i < controlCount; i++) {
+        controlOffsets[i] -= offset;
+      }
+    }
+  }
+
+  synchronized void clear()
+  {
+    windowCount = 0;
+    controlCount = 0;
+  }
+
+  /**
+   * @return position of the first element not less than the key or count if there is no such element
+   */
+  private static int ceiling(int[] array, int count, int key)
+  {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (array[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "BlockIndex{windows=" + windowCount + ", controls=" + controlCount + '}';
+  }
+}
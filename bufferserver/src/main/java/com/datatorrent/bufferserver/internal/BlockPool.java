@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayDeque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of the fixed size blocks shared by all the data lists of a buffer server. The blocks the data lists purge or
+ * hand over to the spool storage are returned to the pool and reused for the next blocks the publishers fill, instead
+ * of allocating a new (and usually humongous) array every time a block fills up.<p>
+ * <br>
+ * The pool keeps at most as many blocks as fit in its memory limit, counting both the blocks in use by the data lists
+ * and the free blocks. Blocks allocated past the limit are not kept once they are released.
+ *
+ * @since 3.7.0
+ */
+public class BlockPool
+{
+  private static final Logger logger = LoggerFactory.getLogger(BlockPool.class);
+
+  private final int blockSize;
+  private final int capacity;
+  private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+  private int blocksInUse;
+  private long allocatedBlocks;
+  private long reusedBlocks;
+  private long droppedBlocks;
+
+  /**
+   * @param blockSize size of the blocks in bytes
+   * @param memoryLimit number of bytes the blocks in use and the free blocks may take together
+   */
+  public BlockPool(final int blockSize, final long memoryLimit)
+  {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("Invalid block size " + blockSize);
+    }
+    this.blockSize = blockSize;
+    this.capacity = (int)Math.max(1, Math.min(Integer.MAX_VALUE, memoryLimit / blockSize));
+  }
+
+  public int getBlockSize()
+  {
+    return blockSize;
+  }
+
+  /**
+   * @return maximum number of blocks the pool keeps
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * Returns a free block or allocates a new one. The content of a reused block is left as it was.
+   *
+   * @return block of {@link #getBlockSize()} bytes
+   */
+  public byte[] allocate()
+  {
+    synchronized (this) {
+      blocksInUse++;
+      final byte[] block = free.pollFirst();
+      if (block != null) {
+        reusedBlocks++;
+        return block;
+      }
+      allocatedBlocks++;
+      if (blocksInUse > capacity) {
+        logger.debug("Allocating block {} in use past the pool capacity of {} blocks", blocksInUse, capacity);
+      }
+    }
+    return new byte[blockSize];
+  }
+
+  /**
+   * Returns the block to the pool. Blocks of a different size and blocks past the capacity of the pool are left to the
+   * garbage collector. The caller must not access the block afterwards.
+   *
+   * @param block the block that is no longer in use
+   */
+  public synchronized void release(final byte[] block)
+  {
+    if (blocksInUse > 0) {
+      blocksInUse--;
+    }
+    if (block.length == blockSize && free.size() + blocksInUse < capacity) {
+      free.offerFirst(block);
+    } else {
+      droppedBlocks++;
+    }
+  }
+
+  public synchronized int getFreeBlocks()
+  {
+    return free.size();
+  }
+
+  public synchronized int getBlocksInUse()
+  {
+    return blocksInUse;
+  }
+
+  /**
+   * @return number of blocks allocated because there was no free block
+   */
+  public synchronized long getAllocatedBlocks()
+  {
+    return allocatedBlocks;
+  }
+
+  /**
+   * @return number of free blocks handed out again
+   */
+  public synchronized long getReusedBlocks()
+  {
+    return reusedBlocks;
+  }
+
+  /**
+   * @return number of released blocks that were not kept
+   */
+  public synchronized long getDroppedBlocks()
+  {
+    return droppedBlocks;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "BlockPool{blockSize=" + blockSize + ", capacity=" + capacity + ", free=" + free.size() + ", inUse="
+        + blocksInUse + '}';
+  }
+}
@@ -19,7 +19,11 @@
 package com.datatorrent.bufferserver.internal;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -35,13 +39,13 @@ import org.slf4j.LoggerFactory;
 import org.apache.apex.common.util.ToStringStyle;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
-import com.datatorrent.bufferserver.packet.BeginWindowTuple;
 import com.datatorrent.bufferserver.packet.MessageType;
-import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.storage.Storage;
 import com.datatorrent.bufferserver.util.BitVector;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.bufferserver.util.PartitionBitmap;
 import com.datatorrent.bufferserver.util.SerializedData;
 import com.datatorrent.bufferserver.util.VarInt;
 import com.datatorrent.netlet.AbstractClient;
@@ -59,10 +63,14 @@ import static com.google.common.collect.Sets.newHashSet;
 public class DataList
 {
   private static final Logger logger = LoggerFactory.getLogger(DataList.class);
+  private static final PhysicalNode[] NO_WRITERS = new PhysicalNode[0];
+  private static final long[] NO_WATERMARKS = new long[0];
 
-  private final int MAX_COUNT_OF_INMEM_BLOCKS;
+  private volatile int numberOfCacheBlocks;
   protected final String identifier;
   private final int blockSize;
+  private final BlockPool blockPool;
+  private final ArrayDeque<PendingBlock> pendingBlocks = new ArrayDeque<>();
   private final HashMap<BitVector, HashSet<DataListener>> listeners = newHashMap();
   protected final HashSet<DataListener> all_listeners = newHashSet();
   protected Block first;
@@ -74,22 +82,53 @@ public class DataList
   protected int processingOffset;
   protected long baseSeconds;
   private final Set<AbstractClient> suspendedClients = newHashSet();
-  private final AtomicInteger numberOfInMemBlockPermits;
+  private final AtomicInteger numberOfInMemBlocks = new AtomicInteger(1);
+  private volatile MemoryBudget memoryBudget;
   private MutableInt nextOffset = new MutableInt();
   private final ListenersNotifier listenersNotifier = new ListenersNotifier();
   private final boolean backPressureEnabled;
+  private boolean partitionIndexEnabled;
+  private volatile boolean partitionedListeners;
+  private long maxConsumerLag;
+  private volatile long consumerLag;
 
   public DataList(final String identifier, final int blockSize, final int numberOfCacheBlocks, final boolean backPressureEnabled)
+  {
+    this(identifier, blockSize, null, numberOfCacheBlocks, backPressureEnabled);
+  }
+
+  /**
+   * Creates a data list whose blocks are taken from and returned to the given pool, which also determines the size of
+   * the blocks.
+   *
+   * @param identifier identifier of the publisher
+   * @param blockPool pool of the blocks shared by the data lists of the buffer server
+   * @param numberOfCacheBlocks number of blocks the data list may keep in memory
+   * @param backPressureEnabled whether the publisher is suspended while the subscribers are behind by that many blocks
+   */
+  public DataList(final String identifier, final BlockPool blockPool, final int numberOfCacheBlocks,
+      final boolean backPressureEnabled)
+  {
+    this(identifier, blockPool.getBlockSize(), blockPool, numberOfCacheBlocks, backPressureEnabled);
+  }
+
+  private DataList(final String identifier, final int blockSize, final BlockPool blockPool,
+      final int numberOfCacheBlocks, final boolean backPressureEnabled)
   {
     if (numberOfCacheBlocks < 1) {
       throw new IllegalArgumentException("Invalid number of Data List Memory blocks " + numberOfCacheBlocks);
     }
-    this.MAX_COUNT_OF_INMEM_BLOCKS = numberOfCacheBlocks;
-    numberOfInMemBlockPermits = new AtomicInteger(MAX_COUNT_OF_INMEM_BLOCKS - 1);
+    this.numberOfCacheBlocks = numberOfCacheBlocks;
     this.identifier = identifier;
     this.blockSize = blockSize;
+    this.blockPool = blockPool;
     this.backPressureEnabled = backPressureEnabled;
-    first = last = new Block(identifier, blockSize);
+    if (blockPool == null) {
+      first = last = new Block(identifier, blockSize);
+    } else {
+      first = last = new Block(identifier, blockPool.allocate());
+      first.pooled = true;
+    }
   }
 
   public DataList(String identifier)
@@ -106,6 +145,138 @@ public class DataList
     return blockSize;
   }
 
+  /**
+   * @return number of blocks the data list may keep in memory, as configured or as last granted by the memory budget
+   */
+  public int getNumberOfCacheBlocks()
+  {
+    return numberOfCacheBlocks;
+  }
+
+  void setNumberOfCacheBlocks(int numberOfCacheBlocks)
+  {
+    this.numberOfCacheBlocks = numberOfCacheBlocks;
+  }
+
+  public int getNumberOfInMemBlocks()
+  {
+    return numberOfInMemBlocks.get();
+  }
+
+  void setMemoryBudget(MemoryBudget memoryBudget)
+  {
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * @return number of bytes published to the data list since it was created
+   */
+  long getPublishedBytes()
+  {
+    final Block last = this.last;
+    return last.position + last.writingOffset;
+  }
+
+  /**
+   * Returns the number of blocks the data list may still bring into memory, which is what is left of its cache blocks.
+   * With a memory budget the cache blocks are the share of the data list. The shares add up to the blocks of the
+   * server, so the blocks another data list does not use are held back for its share rather than lent out.
+   *
+   * @return number of in memory block permits, negative if the data list keeps more blocks than it is allowed to
+   */
+  int getNumberOfInMemBlockPermits()
+  {
+    return numberOfCacheBlocks - numberOfInMemBlocks.get();
+  }
+
+  /**
+   * @return number of blocks the publisher may be ahead of the slowest subscriber
+   */
+  private int getMaxCountOfInMemBlocks()
+  {
+    return numberOfInMemBlocks.get() + getNumberOfInMemBlockPermits();
+  }
+
+  /**
+   * Enables the partition vectors which let the subscribers to a partition of the data list iterate only over the
+   * payload tuples of their partition. The vectors are built as the data is flushed, for as long as there is at least
+   * one partitioned subscriber.
+   *
+   * @param partitionIndexEnabled whether to build the partition vectors
+   */
+  public void setPartitionIndexEnabled(boolean partitionIndexEnabled)
+  {
+    this.partitionIndexEnabled = partitionIndexEnabled;
+  }
+
+  protected boolean isPartitionIndexed()
+  {
+    return partitionIndexEnabled && partitionedListeners;
+  }
+
+  /**
+   * Sets the number of bytes the slowest subscriber may lag behind the publisher before the publisher read is
+   * suspended. The read is resumed once the lag drops to 7/8 of the limit, so the publisher is throttled to the rate
+   * of the slowest subscriber instead of running until the in memory blocks are exhausted.
+   *
+   * @param maxConsumerLag maximum lag in bytes, 0 to not throttle the publisher on the subscriber lag
+   */
+  public void setMaxConsumerLag(long maxConsumerLag)
+  {
+    this.maxConsumerLag = maxConsumerLag;
+  }
+
+  /**
+   * @return number of bytes the slowest subscriber lags behind the publisher, as of the last time the subscribers were
+   * notified of data
+   */
+  public long getConsumerLag()
+  {
+    return consumerLag;
+  }
+
+  public boolean isConsumerLagExceeded()
+  {
+    return maxConsumerLag > 0 && consumerLag > maxConsumerLag;
+  }
+
+  /**
+   * Suspends the read of the client while the slowest subscriber lags behind by more than the maximum consumer lag.
+   *
+   * @param client the publisher
+   * @return true if the read was suspended
+   */
+  public boolean suspendReadIfConsumerLagExceeded(final AbstractClient client)
+  {
+    if (isConsumerLagExceeded()) {
+      suspendRead(client);
+      /* the subscribers may have caught up before the client was added to the suspended clients */
+      notifyListeners();
+      return true;
+    }
+    return false;
+  }
+
+  private void updateConsumerLag()
+  {
+    long slowest = Long.MAX_VALUE;
+    for (DataListener dl : all_listeners) {
+      long position = ((LogicalNode)dl).getIterator().getPosition();
+      if (position >= 0 && position < slowest) {
+        slowest = position;
+      }
+    }
+    consumerLag = slowest == Long.MAX_VALUE ? 0 : Math.max(0, last.position + last.writingOffset - slowest);
+    if (maxConsumerLag > 0 && consumerLag <= maxConsumerLag - (maxConsumerLag >> 3)) {
+      synchronized (suspendedClients) {
+        if (suspendedClients.isEmpty()) {
+          return;
+        }
+      }
+      resumeSuspendedClients(getNumberOfInMemBlockPermits());
+    }
+  }
+
   public void rewind(final int baseSeconds, final int windowId) throws IOException
   {
     final long longWindowId = (long)baseSeconds << 32 | windowId;
@@ -128,6 +299,10 @@ public class DataList
                   throw new IllegalStateException("Discarded block " + temp + " has positive reference count!");
                 }
                 if (temp.data != null) {
+                  /* the publisher connection being replaced may still read into the block that was the last one */
+                  if (temp.next != null) {
+                    recycle(temp);
+                  }
                   temp.data = null;
                   numberOfInMemBlockRewound++;
                 }
@@ -149,9 +324,8 @@ public class DataList
      *  block.
      */
 
-    final int numberOfInMemBlockPermits = this.numberOfInMemBlockPermits.addAndGet(numberOfInMemBlockRewound);
-    assert numberOfInMemBlockPermits < MAX_COUNT_OF_INMEM_BLOCKS : "Number of in memory block permits " +
-        numberOfInMemBlockPermits + " exceeded configured maximum " + MAX_COUNT_OF_INMEM_BLOCKS + '.';
+    numberOfInMemBlocks.addAndGet(-numberOfInMemBlockRewound);
+    final int numberOfInMemBlockPermits = getNumberOfInMemBlockPermits();
     resumeSuspendedClients(numberOfInMemBlockPermits);
     logger.debug("Discarded {} in memory blocks during rewind. Number of in memory blocks permits {} after" +
         " rewinding {}.", numberOfInMemBlockRewound, numberOfInMemBlockPermits, this);
@@ -173,7 +347,10 @@ public class DataList
             if (temp.refCount.get() != 0) {
               throw new IllegalStateException("Discarded block " + temp + " not zero reference count!");
             }
-            temp.data = null;
+            if (temp.data != null) {
+              recycle(temp);
+              temp.data = null;
+            }
             temp = temp.next;
           }
         }
@@ -181,7 +358,7 @@ public class DataList
       first = last;
       first.prev = null;
     }
-    numberOfInMemBlockPermits.set(MAX_COUNT_OF_INMEM_BLOCKS - 1);
+    numberOfInMemBlocks.set(1);
   }
 
   public void purge(final long windowId)
@@ -208,6 +385,7 @@ public class DataList
             throw new IllegalStateException("Discarded block " + temp + " has positive reference count!");
           }
           if (temp.data != null) {
+            recycle(temp);
             temp.data = null;
             numberOfInMemBlockPurged++;
           }
@@ -215,10 +393,12 @@ public class DataList
       }
     }
 
-    final int numberOfInMemBlockPermits = this.numberOfInMemBlockPermits.addAndGet(numberOfInMemBlockPurged);
-    assert numberOfInMemBlockPermits < MAX_COUNT_OF_INMEM_BLOCKS : "Number of in memory block permits " +
-        numberOfInMemBlockPermits + " exceeded configured maximum " + MAX_COUNT_OF_INMEM_BLOCKS + '.';
+    numberOfInMemBlocks.addAndGet(-numberOfInMemBlockPurged);
+    final int numberOfInMemBlockPermits = getNumberOfInMemBlockPermits();
     resumeSuspendedClients(numberOfInMemBlockPermits);
+    if (blockPool != null) {
+      releaseWrittenBlocks();
+    }
     logger.debug("Discarded {} in memory blocks during purge. Number of in memory blocks permits {} after purging {}. ",
         numberOfInMemBlockPurged, numberOfInMemBlockPermits, this);
 
@@ -252,6 +432,7 @@ public class DataList
         }
       }
 
+      final int tupleOffset = processingOffset;
       processingOffset = nextOffset.integer;
 
       if (processingOffset + size <= writeOffset) {
@@ -266,16 +447,32 @@ public class DataList
               last.ending_window = baseSeconds | bwt.getWindowId();
               //logger.debug("assigned last window id {}", last);
             }
+            last.index.addWindow(last.ending_window, tupleOffset);
             break;
 
           case MessageType.RESET_WINDOW_VALUE:
             Tuple rwt = Tuple.getTuple(last.data, processingOffset, size);
             baseSeconds = (long)rwt.getBaseSeconds() << 32;
+            last.index.addControl(MessageType.RESET_WINDOW_VALUE, tupleOffset, processingOffset + size - tupleOffset,
+                baseSeconds);
+            break;
+
+          case MessageType.CHECKPOINT_VALUE:
+          case MessageType.CODEC_STATE_VALUE:
+          case MessageType.END_STREAM_VALUE:
+            last.index.addControl(last.data[processingOffset], tupleOffset, processingOffset + size - tupleOffset,
+                baseSeconds);
             break;
 
           default:
             break;
         }
+        if (isPartitionIndexed()) {
+          final boolean payload = last.data[processingOffset] == MessageType.PAYLOAD_VALUE
+              || last.data[processingOffset] == MessageType.PAYLOAD_BATCH_VALUE;
+          last.partitionIndex.add(tupleOffset, processingOffset + size, payload,
+              payload ? PayloadTuple.getPartition(last.data, processingOffset) : 0);
+        }
         processingOffset += size;
         size = 0;
       } else {
@@ -358,6 +555,7 @@ public class DataList
         }
         set.add(dl);
       }
+      partitionedListeners = true;
     } else {
       HashSet<DataListener> set;
       if (listeners.containsKey(DataListener.NULL_PARTITION)) {
@@ -388,6 +586,20 @@ public class DataList
     }
 
     all_listeners.remove(dl);
+    if (maxConsumerLag > 0 && autoFlushExecutor != null) {
+      /* the removed listener may have been the slowest one */
+      notifyListeners();
+    }
+    if (partitionedListeners) {
+      boolean partitioned = false;
+      for (Map.Entry<BitVector, HashSet<DataListener>> entry : listeners.entrySet()) {
+        if (entry.getKey() != DataListener.NULL_PARTITION && !entry.getValue().isEmpty()) {
+          partitioned = true;
+          break;
+        }
+      }
+      partitionedListeners = partitioned;
+    }
   }
 
   public boolean suspendRead(final AbstractClient client)
@@ -409,6 +621,23 @@ public class DataList
     return resumedSuspendedClients;
   }
 
+  /**
+   * Resumes the suspended clients if the data list has in memory block permits again, for instance after the memory
+   * budget granted it a larger share.
+   */
+  void resumeSuspendedClientsIfMemoryBlockAvailable()
+  {
+    synchronized (suspendedClients) {
+      if (suspendedClients.isEmpty()) {
+        return;
+      }
+    }
+    final int numberOfInMemBlockPermits = getNumberOfInMemBlockPermits();
+    if (numberOfInMemBlockPermits > 0) {
+      resumeSuspendedClients(numberOfInMemBlockPermits);
+    }
+  }
+
   private boolean resumeSuspendedClients()
   {
     boolean resumedSuspendedClients = false;
@@ -423,7 +652,7 @@ public class DataList
 
   public boolean isMemoryBlockAvailable()
   {
-    return (numberOfInMemBlockPermits.get() > 0);
+    return (getNumberOfInMemBlockPermits() > 0);
   }
 
   public boolean areSubscribersBehindByMax()
@@ -435,7 +664,8 @@ public class DataList
       synchronized (this) {
         Block curr = last.prev;
         // go back the max number of blocks
-        while ((curr != null) && (++count < (MAX_COUNT_OF_INMEM_BLOCKS - 2))) {
+        final int max = getMaxCountOfInMemBlocks();
+        while ((curr != null) && (++count < (max - 2))) {
           curr = curr.prev;
         }
         // check if any block is in use
@@ -458,16 +688,93 @@ public class DataList
           "Proceeding with allocating larger block that may cause out of memory exception.", size, blockSize);
       return new byte[size];
     }
-    return new byte[blockSize];
+    if (blockPool == null) {
+      return new byte[blockSize];
+    }
+    releaseWrittenBlocks();
+    return blockPool.allocate();
+  }
+
+  /**
+   * Returns the data of a block that is no longer in memory to the block pool, if it was taken from there. The
+   * connections of the subscribers queue slices of the data instead of copying it, so the data is returned only once
+   * every subscriber it was sent to wrote it to its socket. Until then it is kept aside and looked at again when the
+   * next block is allocated or the data list is purged.
+   */
+  private void recycle(final Block block)
+  {
+    if (block.pooled) {
+      block.pooled = false;
+      final PendingBlock pending = block.takePendingBlock();
+      if (pending.isWritten()) {
+        blockPool.release(pending.data);
+      } else {
+        synchronized (pendingBlocks) {
+          pendingBlocks.add(pending);
+        }
+      }
+    }
+  }
+
+  private void releaseWrittenBlocks()
+  {
+    synchronized (pendingBlocks) {
+      for (Iterator<PendingBlock> iterator = pendingBlocks.iterator(); iterator.hasNext(); ) {
+        final PendingBlock pending = iterator.next();
+        if (pending.isWritten()) {
+          iterator.remove();
+          blockPool.release(pending.data);
+        }
+      }
+    }
+  }
+
+  /**
+   * Data of a block which is no longer part of the data list, along with the number of bytes each subscriber the data
+   * was sent to has to write to its socket before the data can be reused.
+   */
+  private static class PendingBlock
+  {
+    final byte[] data;
+    final PhysicalNode[] writers;
+    final long[] watermarks;
+
+    PendingBlock(byte[] data, PhysicalNode[] writers, long[] watermarks)
+    {
+      this.data = data;
+      this.writers = writers;
+      this.watermarks = watermarks;
+    }
+
+    boolean isWritten()
+    {
+      for (int i = writers.length; i-- > 0; ) {
+        if (!writers[i].isWritten(watermarks[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  public void addBuffer(byte[] array)
+  {
+    addBlock(array);
+    if (memoryBudget != null) {
+      memoryBudget.rebalance();
+    }
   }
 
-  public synchronized void addBuffer(byte[] array)
+  private synchronized void addBlock(byte[] array)
   {
-    final int numberOfInMemBlockPermits = this.numberOfInMemBlockPermits.decrementAndGet();
+    numberOfInMemBlocks.incrementAndGet();
+    final int numberOfInMemBlockPermits = getNumberOfInMemBlockPermits();
     if (numberOfInMemBlockPermits < 0) {
       logger.warn("Exceeded allowed memory block allocation by {}", -numberOfInMemBlockPermits);
     }
     last.next = new Block(identifier, array, last.ending_window, last.ending_window);
+    last.next.pooled = blockPool != null && array.length == blockSize;
+    last.next.position = last.position + last.writingOffset;
     last.next.prev = last;
     last.release(false, true);
     last = last.next;
@@ -494,6 +801,34 @@ public class DataList
     public long numBytesWaiting = 0;
     public long numBytesAllocated = 0;
     public String slowestConsumer;
+    /**
+     * Number of payload tuples of other partitions the partitioned subscribers did not have to read.
+     */
+    public long numTuplesSkipped = 0;
+    /**
+     * Number of bytes of the payload tuples of other partitions the partitioned subscribers did not have to read.
+     */
+    public long numBytesSkipped = 0;
+    /**
+     * Number of bytes the slowest subscriber lags behind the publisher.
+     */
+    public long consumerLagBytes = 0;
+    /**
+     * Number of bytes sent to the subscribers with a credit window but not yet written to their sockets.
+     */
+    public long numBytesInFlight = 0;
+    /**
+     * Smallest credit left among the subscribers with a credit window, or -1 if there are none.
+     */
+    public long minCredit = -1;
+    /**
+     * Number of blocks the data list may keep in memory, as last granted by the memory budget of the server.
+     */
+    public int numCacheBlocks = 0;
+    /**
+     * Number of blocks the data list keeps in memory.
+     */
+    public int numInMemBlocks = 0;
   }
 
   public Status getStatus()
@@ -514,6 +849,13 @@ public class DataList
     for (DataListener dl : all_listeners) {
       LogicalNode logicalNode = (LogicalNode)dl;
       DataListIterator dli = logicalNode.getIterator();
+      status.numTuplesSkipped += dli.getSkippedTuples();
+      status.numBytesSkipped += dli.getSkippedBytes();
+      status.numBytesInFlight += logicalNode.getInFlightBytes();
+      long credit = logicalNode.getMinCredit();
+      if (credit >= 0 && (status.minCredit < 0 || credit < status.minCredit)) {
+        status.minCredit = credit;
+      }
       Integer index = indices.get(dli.da);
       if (index == null) {
         // error
@@ -541,6 +883,9 @@ public class DataList
       b = b.next;
       ++i;
     }
+    status.consumerLagBytes = consumerLag;
+    status.numCacheBlocks = numberOfCacheBlocks;
+    status.numInMemBlocks = numberOfInMemBlocks.get();
     return status;
   }
 
@@ -570,6 +915,10 @@ public class DataList
      * writingOffset is the offset of the first available byte to write into.
      */
     int writingOffset;
+    /**
+     * offset of the first byte of the data array within all the data published to the data list.
+     */
+    long position;
     /**
      * The starting window which is available in this data array.
      */
@@ -595,6 +944,27 @@ public class DataList
      */
     private final AtomicInteger refCount;
     private Future<?> future;
+    /**
+     * offsets of the window boundaries and control tuples in the data.
+     */
+    final BlockIndex index = new BlockIndex();
+    /**
+     * offsets and partitions of the tuples in the data while the data list has partitioned subscribers.
+     */
+    final PartitionIndex partitionIndex = new PartitionIndex();
+    /**
+     * the readingOffset of the data when it was handed over to the backup storage.
+     */
+    private int storedOffset;
+    /**
+     * whether the data was taken from the block pool and has to be returned there once it is no longer needed.
+     */
+    boolean pooled;
+    /**
+     * the subscribers the data was sent to and the number of bytes sent to each of them when they left the block.
+     */
+    private PhysicalNode[] writers = NO_WRITERS;
+    private long[] watermarks = NO_WATERMARKS;
 
     public Block(String id, int size)
     {
@@ -616,6 +986,34 @@ public class DataList
       //logger.debug("Allocated new {}", this);
     }
 
+    /**
+     * Records how many bytes were sent to each of the subscribers which have not written all of them to their sockets
+     * yet, as they leave the block.
+     */
+    synchronized void addWriters(final Collection<PhysicalNode> physicalNodes)
+    {
+      if (!pooled) {
+        return;
+      }
+      for (PhysicalNode pn : physicalNodes) {
+        final long sentBytes = pn.getSentBytes();
+        if (!pn.isWritten(sentBytes)) {
+          writers = Arrays.copyOf(writers, writers.length + 1);
+          watermarks = Arrays.copyOf(watermarks, watermarks.length + 1);
+          writers[writers.length - 1] = pn;
+          watermarks[watermarks.length - 1] = sentBytes;
+        }
+      }
+    }
+
+    synchronized PendingBlock takePendingBlock()
+    {
+      final PendingBlock pending = new PendingBlock(data, writers, watermarks);
+      writers = NO_WRITERS;
+      watermarks = NO_WATERMARKS;
+      return pending;
+    }
+
     void getNextData(SerializedData current)
     {
       if (current.offset < writingOffset) {
@@ -631,32 +1029,22 @@ public class DataList
     public long rewind(long windowId)
     {
       long bs = starting_window & 0x7fffffff00000000L;
-      try (DataListIterator dli = getIterator(this)) {
-        done:
-        while (dli.hasNext()) {
-          final SerializedData sd = dli.next();
-          final int length = sd.length - sd.dataOffset + sd.offset;
-          switch (sd.buffer[sd.dataOffset]) {
-            case MessageType.RESET_WINDOW_VALUE:
-              final ResetWindowTuple rwt = (ResetWindowTuple)Tuple.getTuple(sd.buffer, sd.dataOffset, length);
-              bs = (long)rwt.getBaseSeconds() << 32;
-              if (bs > windowId) {
-                writingOffset = sd.offset;
-                break done;
-              }
-              break;
-
-            case MessageType.BEGIN_WINDOW_VALUE:
-              BeginWindowTuple bwt = (BeginWindowTuple)Tuple.getTuple(sd.buffer, sd.dataOffset, length);
-              if ((bs | bwt.getWindowId()) >= windowId) {
-                writingOffset = sd.offset;
-                break done;
-              }
-              break;
-
-            default:
-              break;
-          }
+      final int reset = index.findReset(windowId, readingOffset);
+      final int window = index.findWindow(windowId, true, readingOffset);
+      if (reset != -1 && (window == -1 || index.getControlOffset(reset) < index.getWindowOffset(window))) {
+        bs = index.getControlBaseSeconds(reset);
+        writingOffset = index.getControlOffset(reset);
+        index.truncate(writingOffset);
+        partitionIndex.truncate(writingOffset);
+      } else {
+        if (window != -1) {
+          writingOffset = index.getWindowOffset(window);
+          index.truncate(writingOffset);
+          partitionIndex.truncate(writingOffset);
+        }
+        final int lastReset = index.findLastReset(readingOffset, writingOffset);
+        if (lastReset != -1) {
+          bs = index.getControlBaseSeconds(lastReset);
         }
       }
 
@@ -679,91 +1067,81 @@ public class DataList
       //logger.debug("starting_window = {}, longWindowId = {}, ending_window = {}",
       //    VarInt.getStringWindowId(starting_window), VarInt.getStringWindowId(longWindowId),
       //    VarInt.getStringWindowId(ending_window));
-      boolean found = false;
-      long bs = starting_window & 0xffffffff00000000L;
-      SerializedData lastReset = null;
-
-      try (DataListIterator dli = getIterator(this)) {
-        done:
-        while (dli.hasNext()) {
-          SerializedData sd = dli.next();
-          final int length = sd.length - sd.dataOffset + sd.offset;
-          switch (sd.buffer[sd.dataOffset]) {
-            case MessageType.RESET_WINDOW_VALUE:
-              ResetWindowTuple rwt = (ResetWindowTuple)Tuple.getTuple(sd.buffer, sd.dataOffset, length);
-              bs = (long)rwt.getBaseSeconds() << 32;
-              lastReset = sd;
-              break;
-
-            case MessageType.BEGIN_WINDOW_VALUE:
-              BeginWindowTuple bwt = (BeginWindowTuple)Tuple.getTuple(sd.buffer, sd.dataOffset, length);
-              if ((bs | bwt.getWindowId()) > longWindowId) {
-                found = true;
-                if (lastReset != null) {
-                  /*
-                   * Restore the last Reset tuple if there was any and adjust the writingOffset to the beginning of
-                   * the reset tuple.
-                   */
-                  if (sd.offset >= lastReset.length) {
-                    sd.offset -= lastReset.length;
-                    if (!(sd.buffer == lastReset.buffer && sd.offset == lastReset.offset)) {
-                      System.arraycopy(lastReset.buffer, lastReset.offset, sd.buffer, sd.offset, lastReset.length);
-                    }
-                  }
-
-                  this.starting_window = bs | bwt.getWindowId();
-                  this.readingOffset = sd.offset;
-                  //logger.debug("assigned starting window id {}", this);
-                }
-
-                break done;
+      acquire(true);
+      try {
+        final int window = index.findWindow(longWindowId, false, readingOffset);
+        final int lastReset = index.findLastReset(readingOffset, window == -1 ? writingOffset :
+            index.getWindowOffset(window));
+        final long bs = lastReset == -1 ? starting_window & 0xffffffff00000000L :
+            index.getControlBaseSeconds(lastReset);
+
+        if (window != -1) {
+          if (lastReset != -1) {
+            /*
+             * Restore the last Reset tuple if there was any and adjust the writingOffset to the beginning of
+             * the reset tuple.
+             */
+            final int resetOffset = index.getControlOffset(lastReset);
+            final int resetLength = index.getControlLength(lastReset);
+            int offset = index.getWindowOffset(window);
+            if (offset >= resetLength) {
+              offset -= resetLength;
+              if (offset != resetOffset) {
+                System.arraycopy(data, resetOffset, data, offset, resetLength);
               }
-              break;
+            }
 
-            default:
-              break;
+            this.starting_window = bs | (index.getWindowId(window) & 0xffffffffL);
+            final boolean copied = offset != resetOffset && offset != index.getWindowOffset(window);
+            this.readingOffset = offset;
+            index.purge(offset);
+            partitionIndex.purge(offset);
+            if (copied) {
+              index.addFirstReset(offset, resetLength, bs);
+            }
+            //logger.debug("assigned starting window id {}", this);
           }
-        }
-      }
-
-      /**
-       * If we ended up purging all the data from the current Block then,
-       * it also makes sense to start all over.
-       * It helps with better utilization of the RAM.
-       */
-      if (!found) {
-        //logger.debug("we could not find a tuple which is in a window later than the window to be purged, " +
-        //    "so this has to be the last window published so far");
-        if (lastReset != null && lastReset.offset != 0) {
-          this.readingOffset = this.writingOffset - lastReset.length;
-          System.arraycopy(lastReset.buffer, lastReset.offset, this.data, this.readingOffset, lastReset.length);
-          this.starting_window = this.ending_window = bs;
-          //logger.debug("=20140220= reassign the windowids {}", this);
         } else {
-          this.readingOffset = this.writingOffset;
-          this.starting_window = this.ending_window = longWindowId;
-          //logger.debug("=20140220= avoid the windowids {}", this);
-        }
-
+          /**
+           * If we ended up purging all the data from the current Block then,
+           * it also makes sense to start all over.
+           * It helps with better utilization of the RAM.
+           */
+          //logger.debug("we could not find a tuple which is in a window later than the window to be purged, " +
+          //    "so this has to be the last window published so far");
+          final int resetOffset = lastReset == -1 ? 0 : index.getControlOffset(lastReset);
+          final int resetLength = lastReset == -1 ? 0 : index.getControlLength(lastReset);
+          index.clear();
+          partitionIndex.clear();
+          if (resetOffset != 0) {
+            this.readingOffset = this.writingOffset - resetLength;
+            System.arraycopy(data, resetOffset, this.data, this.readingOffset, resetLength);
+            this.starting_window = this.ending_window = bs;
+            index.addFirstReset(readingOffset, resetLength, bs);
+            //logger.debug("=20140220= reassign the windowids {}", this);
+          } else {
+            this.readingOffset = this.writingOffset;
+            this.starting_window = this.ending_window = longWindowId;
+            //logger.debug("=20140220= avoid the windowids {}", this);
+          }
 
-        SerializedData sd = new SerializedData(this.data, readingOffset, 0);
+          // the rest of it is just a copy from beginWindow case here to wipe the data - refactor
+          int i = 1;
+          while (i < VarInt.getSize(readingOffset - i)) {
+            i++;
+          }
 
-        // the rest of it is just a copy from beginWindow case here to wipe the data - refactor
-        int i = 1;
-        while (i < VarInt.getSize(sd.offset - i)) {
-          i++;
-        }
+          if (i <= readingOffset) {
+            final int dataOffset = VarInt.write(readingOffset - i, data, 0, i);
+            data[dataOffset] = MessageType.NO_MESSAGE_VALUE;
+          } else {
+            logger.warn("Unhandled condition while purging the data purge to offset {}", readingOffset);
+          }
 
-        if (i <= sd.offset) {
-          sd.length = sd.offset;
-          sd.offset = 0;
-          sd.dataOffset = VarInt.write(sd.length - i, sd.buffer, sd.offset, i);
-          sd.buffer[sd.dataOffset] = MessageType.NO_MESSAGE_VALUE;
-        } else {
-          logger.warn("Unhandled condition while purging the data purge to offset {}", sd.offset);
+          discard(false);
         }
-
-        discard(false);
+      } finally {
+        release(false, false);
       }
     }
 
@@ -778,10 +1156,14 @@ public class DataList
           synchronized (Block.this) {
             if (Block.this.data == null) {
               Block.this.data = data;
+              index.rebase(storedOffset);
+              partitionIndex.rebase(storedOffset);
+              storedOffset = 0;
               readingOffset = 0;
               writingOffset = data.length;
               Block.this.notifyAll();
-              int numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.decrementAndGet();
+              numberOfInMemBlocks.incrementAndGet();
+              int numberOfInMemBlockPermits = getNumberOfInMemBlockPermits();
               if (numberOfInMemBlockPermits < 0) {
                 logger.warn("Exceeded allowed memory block allocation by {}", -numberOfInMemBlockPermits);
               }
@@ -838,22 +1220,21 @@ public class DataList
         {
           if (uniqueIdentifier == 0) {
             uniqueIdentifier = storage.store(identifier, data, readingOffset, writingOffset);
+            storedOffset = readingOffset;
           }
           if (uniqueIdentifier == 0) {
             logger.warn("Storage returned unexpectedly, please check the status of the spool directory!");
           } else {
-            int numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.get();
             synchronized (Block.this) {
               if (refCount.get() == 0 && Block.this.data != null) {
+                recycle(Block.this);
                 Block.this.data = null;
-                numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.incrementAndGet();
+                numberOfInMemBlocks.decrementAndGet();
               } else {
                 logger.debug("Keeping Block {} unchanged", Block.this);
               }
             }
-            assert numberOfInMemBlockPermits < MAX_COUNT_OF_INMEM_BLOCKS : "Number of in memory block permits " +
-                numberOfInMemBlockPermits + " exceeded configured maximum " + MAX_COUNT_OF_INMEM_BLOCKS + '.';
-            resumeSuspendedClients(numberOfInMemBlockPermits);
+            resumeSuspendedClients(getNumberOfInMemBlockPermits());
           }
         }
       };
@@ -880,11 +1261,11 @@ public class DataList
       if (future != null && future.cancel(false)) {
         logger.debug("Block {} future is cancelled", this);
       }
-      final int numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.get();
-      if (wait && numberOfInMemBlockPermits == 0) {
+      final int numberOfInMemBlockPermits = getNumberOfInMemBlockPermits();
+      if (wait && numberOfInMemBlockPermits <= 0) {
         future = null;
         storer.run();
-      } else if (numberOfInMemBlockPermits < MAX_COUNT_OF_INMEM_BLOCKS / 2) {
+      } else if (numberOfInMemBlockPermits < getMaxCountOfInMemBlocks() / 2) {
         future = storageExecutor.submit(storer);
       } else {
         future = null;
@@ -924,7 +1305,7 @@ public class DataList
     {
       boolean ahead = false;
       if (backPressureEnabled) {
-        int blocks = MAX_COUNT_OF_INMEM_BLOCKS;
+        int blocks = getMaxCountOfInMemBlocks();
         synchronized (DataList.this) {
           Block curr = this.next;
           // seek till the next block that is in use to determine possible active subscriber
@@ -1001,6 +1382,11 @@ public class DataList
     protected int readOffset;
     MutableInt nextOffset = new MutableInt();
     int size;
+    private PartitionBitmap partitionFilter;
+    private final MutableInt skipped = new MutableInt();
+    private long skippedTuples;
+    private long skippedBytes;
+    private Collection<PhysicalNode> physicalNodes = Collections.emptyList();
 
     /**
      *
@@ -1025,6 +1411,65 @@ public class DataList
       return readOffset;
     }
 
+    /**
+     * @return offset of the iterator within all the data published to the data list, or -1 if it is closed
+     */
+    public long getPosition()
+    {
+      final Block da = this.da;
+      return da == null ? -1 : da.position + readOffset;
+    }
+
+    /**
+     * Sets the partitions of the payload tuples the iterator returns. The payload tuples of the other partitions are
+     * skipped using the partition vector of the block where there is one and returned otherwise, so the caller still
+     * has to check the partition of the payload tuples.
+     *
+     * @param partitionFilter partitions to be returned or null to return all the tuples
+     */
+    public void setPartitionFilter(PartitionBitmap partitionFilter)
+    {
+      this.partitionFilter = partitionFilter;
+    }
+
+    /**
+     * Sets the subscribers the data returned by the iterator is sent to, so that the data of a block is not reused
+     * before they wrote it to their sockets.
+     *
+     * @param physicalNodes the subscribers
+     */
+    void setPhysicalNodes(Collection<PhysicalNode> physicalNodes)
+    {
+      this.physicalNodes = physicalNodes;
+    }
+
+    public long getSkippedTuples()
+    {
+      return skippedTuples;
+    }
+
+    public long getSkippedBytes()
+    {
+      return skippedBytes;
+    }
+
+    /**
+     * Moves the iterator over the payload tuples rejected by the partition filter using the partition vector of the
+     * current block. It must only be called in between tuples.
+     */
+    protected void skipFilteredPartitions()
+    {
+      if (partitionFilter != null) {
+        skipped.integer = 0;
+        final int offset = da.partitionIndex.seek(readOffset, partitionFilter, skipped);
+        if (offset > readOffset && offset <= da.writingOffset) {
+          skippedTuples += skipped.integer;
+          skippedBytes += offset - readOffset;
+          readOffset = offset;
+        }
+      }
+    }
+
     protected boolean switchToNextBlock()
     {
       Block next = getNextBlock(da);
@@ -1033,6 +1478,7 @@ public class DataList
       }
       //logger.debug("{}: switching to the next block {}->{}", this, da, da.next);
       next.acquire(true);
+      da.addWriters(physicalNodes);
       da.release(false, false);
       da = next;
       size = 0;
@@ -1049,6 +1495,7 @@ public class DataList
     public boolean hasNext()
     {
       while (size == 0) {
+        skipFilteredPartitions();
         size = VarInt.read(buffer, readOffset, da.writingOffset, nextOffset);
         if (nextOffset.integer > -5 && nextOffset.integer < 1) {
           if (da.writingOffset == buffer.length && switchToNextBlock()) {
@@ -1104,12 +1551,47 @@ public class DataList
     public void close()
     {
       if (da != null) {
+        da.addWriters(physicalNodes);
         da.release(false, false);
         da = null;
         buffer = null;
       }
     }
 
+    /**
+     * Moves the iterator within the current block to the first tuple which is either a control tuple or a
+     * BEGIN_WINDOW tuple for a window past the given window id, using the index of the block instead of reading the
+     * tuples in between. It is a no-op if the iterator is in the middle of reading a tuple or if the window it is
+     * positioned in is already past the given window id.
+     *
+     * @param windowId the window id to skip to
+     * @return number of bytes skipped
+     */
+    public int fastForward(long windowId)
+    {
+      if (size != 0 || da == null) {
+        return 0;
+      }
+      final int current = da.index.findLastWindow(readOffset);
+      if ((current == -1 ? da.starting_window : da.index.getWindowId(current)) > windowId) {
+        return 0;
+      }
+      final int window = da.index.findWindow(windowId, false, readOffset);
+      int offset = da.index.findControlOffset(readOffset);
+      if (window != -1) {
+        final int windowOffset = da.index.getWindowOffset(window);
+        if (offset == -1 || windowOffset < offset) {
+          offset = windowOffset;
+        }
+      }
+      if (offset > readOffset && offset <= da.writingOffset) {
+        final int skipped = offset - readOffset;
+        readOffset = offset;
+        return skipped;
+      }
+      return 0;
+    }
+
     void rewind(int processingOffset)
     {
       readOffset = processingOffset;
@@ -1183,7 +1665,9 @@ public class DataList
     {
       logger.debug("{} entered run", this);
       try {
-        if (addedData() || checkIfListenersHaveDataToSendOnly()) {
+        final boolean hasDataToSend = addedData() || checkIfListenersHaveDataToSendOnly();
+        updateConsumerLag();
+        if (hasDataToSend) {
           future = autoFlushExecutor.submit(this);
         } else {
           synchronized (this) {
@@ -22,6 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.util.SerializedData;
 
@@ -42,6 +43,11 @@ public class FastDataList extends DataList
     super(identifier, blocksize, numberOfCacheBlocks, backPressureEnabled);
   }
 
+  public FastDataList(String identifier, BlockPool blockPool, int numberOfCacheBlocks, boolean backPressureEnabled)
+  {
+    super(identifier, blockPool, numberOfCacheBlocks, backPressureEnabled);
+  }
+
   long item;
 
   @Override
@@ -63,6 +69,7 @@ public class FastDataList extends DataList
         }
       }
 
+      final int tupleOffset = processingOffset;
       processingOffset += 2;
 
       if (processingOffset + size <= writeOffset) {
@@ -75,16 +82,30 @@ public class FastDataList extends DataList
             } else {
               last.ending_window = baseSeconds | btw.getWindowId();
             }
+            last.index.addWindow(last.ending_window, tupleOffset);
             break;
 
           case MessageType.RESET_WINDOW_VALUE:
             Tuple rwt = Tuple.getTuple(last.data, processingOffset, size);
             baseSeconds = (long)rwt.getBaseSeconds() << 32;
+            last.index.addControl(MessageType.RESET_WINDOW_VALUE, tupleOffset, size + 2, baseSeconds);
+            break;
+
+          case MessageType.CHECKPOINT_VALUE:
+          case MessageType.CODEC_STATE_VALUE:
+          case MessageType.END_STREAM_VALUE:
+            last.index.addControl(last.data[processingOffset], tupleOffset, size + 2, baseSeconds);
             break;
 
           default:
             break;
         }
+        if (isPartitionIndexed()) {
+          final boolean payload = last.data[processingOffset] == MessageType.PAYLOAD_VALUE
+              || last.data[processingOffset] == MessageType.PAYLOAD_BATCH_VALUE;
+          last.partitionIndex.add(tupleOffset, processingOffset + size, payload,
+              payload ? PayloadTuple.getPartition(last.data, processingOffset) : 0);
+        }
         processingOffset += size;
         size = 0;
       } else {
@@ -178,6 +199,7 @@ public class FastDataList extends DataList
     public boolean hasNext()
     {
       while (size == 0) {
+        skipFilteredPartitions();
         if (da.writingOffset - readOffset >= 2) {
           size = buffer[readOffset];
           size |= (buffer[readOffset + 1] << 8);
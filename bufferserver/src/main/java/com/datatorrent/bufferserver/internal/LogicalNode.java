@@ -18,6 +18,7 @@
  */
 package com.datatorrent.bufferserver.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 
@@ -26,11 +27,13 @@ import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.internal.DataList.DataListIterator;
 import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.policy.GiveAll;
 import com.datatorrent.bufferserver.policy.Policy;
 import com.datatorrent.bufferserver.util.BitVector;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.bufferserver.util.PartitionBitmap;
 import com.datatorrent.bufferserver.util.SerializedData;
 import com.datatorrent.netlet.EventLoop;
 import com.datatorrent.netlet.WriteOnlyClient;
@@ -51,10 +54,12 @@ public class LogicalNode implements DataListener
   private final String group;
   private final HashSet<PhysicalNode> physicalNodes;
   private final HashSet<BitVector> partitions;
+  private final PartitionBitmap partitionBitmap = new PartitionBitmap();
   private final Policy policy = GiveAll.getInstance();
   private final DataListIterator iterator;
   private final long skipWindowId;
   private final EventLoop eventloop;
+  private PhysicalNode[] creditNodes = new PhysicalNode[0];
   private long baseSeconds;
   private boolean caughtup;
 
@@ -74,6 +79,7 @@ public class LogicalNode implements DataListener
     this.physicalNodes = new HashSet<>();
     this.partitions = new HashSet<>();
     this.iterator = iterator;
+    iterator.setPhysicalNodes(physicalNodes);
     this.skipWindowId = skipWindowId;
     this.eventloop = eventloop;
   }
@@ -103,10 +109,76 @@ public class LogicalNode implements DataListener
    */
   public void addConnection(WriteOnlyClient connection)
   {
-    PhysicalNode pn = new PhysicalNode(connection);
+    addConnection(connection, 0);
+  }
+
+  /**
+   *
+   * @param connection
+   * @param creditWindow the number of bytes that may be in flight to the subscriber, 0 for no limit
+   * @return the physical node representing the connection
+   */
+  public PhysicalNode addConnection(WriteOnlyClient connection, int creditWindow)
+  {
+    PhysicalNode pn = new PhysicalNode(connection, creditWindow);
     if (!physicalNodes.contains(pn)) {
       physicalNodes.add(pn);
+      updateCreditNodes();
+    }
+    return pn;
+  }
+
+  private void updateCreditNodes()
+  {
+    ArrayList<PhysicalNode> list = new ArrayList<>();
+    for (PhysicalNode pn : physicalNodes) {
+      if (pn.getCreditWindow() > 0) {
+        list.add(pn);
+      }
     }
+    creditNodes = list.toArray(new PhysicalNode[list.size()]);
+  }
+
+  /**
+   * Data is distributed to the physical nodes only while each of them has credit left.
+   *
+   * @return true if all the physical nodes have credit for more data
+   */
+  private boolean hasCredit()
+  {
+    for (PhysicalNode pn : creditNodes) {
+      if (!pn.hasCredit()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return number of bytes sent to the physical nodes but not yet written to their sockets
+   */
+  public long getInFlightBytes()
+  {
+    long bytes = 0;
+    for (PhysicalNode pn : creditNodes) {
+      bytes += pn.getInFlightBytes();
+    }
+    return bytes;
+  }
+
+  /**
+   * @return the smallest credit left among the physical nodes, or -1 if none of them advertised a credit window
+   */
+  public long getMinCredit()
+  {
+    long credit = -1;
+    for (PhysicalNode pn : creditNodes) {
+      long c = pn.getCredit();
+      if (credit < 0 || c < credit) {
+        credit = c;
+      }
+    }
+    return credit;
   }
 
   /**
@@ -118,6 +190,8 @@ public class LogicalNode implements DataListener
     for (PhysicalNode pn : physicalNodes) {
       if (pn.getClient() == client) {
         physicalNodes.remove(pn);
+        pn.close();
+        updateCreditNodes();
         break;
       }
     }
@@ -131,6 +205,8 @@ public class LogicalNode implements DataListener
   public void addPartition(int partition, int mask)
   {
     partitions.add(new BitVector(partition, mask));
+    partitionBitmap.add(partition, mask);
+    iterator.setPartitionFilter(partitionBitmap);
   }
 
   boolean ready = true;
@@ -167,17 +243,26 @@ public class LogicalNode implements DataListener
       int intervalMillis;
 
       int skippedPayloadTuples = 0;
+      long skippedBytes = 0;
 
       try {
         /*
          * fast forward to catch up with the windowId without consuming
          */
         outer:
-        while (ready && iterator.hasNext()) {
+        while (ready) {
+          /*
+           * jump over the payload of the windows to be skipped using the index of the block
+           */
+          skippedBytes += iterator.fastForward(skipWindowId);
+          if (!iterator.hasNext()) {
+            break;
+          }
           SerializedData data = iterator.next();
           switch (data.buffer[data.dataOffset]) {
 
             case MessageType.PAYLOAD_VALUE:
+            case MessageType.PAYLOAD_BATCH_VALUE:
               ++skippedPayloadTuples;
               break;
 
@@ -196,7 +281,8 @@ public class LogicalNode implements DataListener
               logger.debug("{}->{} condition {} =? {}", upstream, group,
                   Codec.getStringWindowId(baseSeconds | tuple.getWindowId()), Codec.getStringWindowId(skipWindowId));
               if ((baseSeconds | tuple.getWindowId()) > skipWindowId) {
-                logger.debug("caught up {}->{} skipping {} payload tuples", upstream, group, skippedPayloadTuples);
+                logger.debug("caught up {}->{} skipping {} payload tuples and {} indexed bytes", upstream, group,
+                    skippedPayloadTuples, skippedBytes);
                 ready = GiveAll.getInstance().distribute(physicalNodes, data);
                 caughtup = true;
                 break outer;
@@ -238,10 +324,11 @@ public class LogicalNode implements DataListener
            * consume as much data as you can before running out of steam
            */
           if (partitions.isEmpty()) {
-            while (ready && iterator.hasNext()) {
+            while (ready && hasCredit() && iterator.hasNext()) {
               SerializedData data = iterator.next();
               switch (data.buffer[data.dataOffset]) {
                 case MessageType.PAYLOAD_VALUE:
+                case MessageType.PAYLOAD_BATCH_VALUE:
                   ready = policy.distribute(physicalNodes, data);
                   break;
 
@@ -263,18 +350,14 @@ public class LogicalNode implements DataListener
               }
             }
           } else {
-            while (ready && iterator.hasNext()) {
+            while (ready && hasCredit() && iterator.hasNext()) {
               SerializedData data = iterator.next();
               final int length = data.length - data.dataOffset + data.offset;
               switch (data.buffer[data.dataOffset]) {
                 case MessageType.PAYLOAD_VALUE:
-                  Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
-                  int value = tuple.getPartition();
-                  for (BitVector bv : partitions) {
-                    if (bv.matches(value)) {
-                      ready = policy.distribute(physicalNodes, data);
-                      break;
-                    }
+                case MessageType.PAYLOAD_BATCH_VALUE:
+                  if (partitionBitmap.matches(PayloadTuple.getPartition(data.buffer, data.dataOffset))) {
+                    ready = policy.distribute(physicalNodes, data);
                   }
                   break;
 
@@ -283,7 +366,7 @@ public class LogicalNode implements DataListener
                   break;
 
                 case MessageType.RESET_WINDOW_VALUE:
-                  tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
+                  Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
                   baseSeconds = (long)tuple.getBaseSeconds() << 32;
                   ready = GiveAll.getInstance().distribute(physicalNodes, data);
                   break;
@@ -302,7 +385,7 @@ public class LogicalNode implements DataListener
         catchUp();
       }
     }
-    return iterator.hasNext();
+    return iterator.hasNext() && hasCredit();
   }
 
   /**
@@ -349,6 +432,7 @@ public class LogicalNode implements DataListener
       eventloop.disconnect(pn.getClient());
     }
     physicalNodes.clear();
+    creditNodes = new PhysicalNode[0];
   }
 
   @Override
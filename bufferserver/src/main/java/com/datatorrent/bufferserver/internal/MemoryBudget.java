@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares the in memory blocks of a buffer server among its data lists.<p>
+ * <br>
+ * Every data list is granted a fair share minimum of half its even share of the blocks, and never less than two blocks
+ * so that the publisher can always move on to the next block. The rest of the blocks is granted in proportion to the
+ * number of bytes each data list has to keep for its slowest subscriber plus the number of bytes published to it since
+ * the previous allocation, so the busy and lagging data lists get the blocks the idle ones do not need. The blocks are
+ * reallocated whenever a data list is added or removed and each time a publisher fills a block.<p>
+ * <br>
+ * A data list does not use more blocks than its share, even while other data lists leave theirs unused, so that a data
+ * list can always claim its share without the server running out of blocks. Once a data list used up its share, it
+ * spools its blocks and suspends its publishers until the blocks are released or it is granted a larger share. The
+ * shares add up to the blocks of the server unless there are more than half as many data lists as blocks, since every
+ * data list keeps its minimum.
+ *
+ * @since 3.7.0
+ */
+public class MemoryBudget
+{
+  private static final Logger logger = LoggerFactory.getLogger(MemoryBudget.class);
+  static final int MINIMUM_NUMBER_OF_BLOCKS = 2;
+
+  private final int numberOfBlocks;
+  private final CopyOnWriteArrayList<Allocation> allocations = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param numberOfBlocks number of blocks the data lists of the server may keep in memory together
+   */
+  public MemoryBudget(int numberOfBlocks)
+  {
+    if (numberOfBlocks < 1) {
+      throw new IllegalArgumentException("Invalid number of memory blocks " + numberOfBlocks);
+    }
+    this.numberOfBlocks = numberOfBlocks;
+  }
+
+  public int getNumberOfBlocks()
+  {
+    return numberOfBlocks;
+  }
+
+  /**
+   * Adds the data list to the budget and grants it its share of the blocks.
+   *
+   * @param dataList the data list
+   */
+  public void register(DataList dataList)
+  {
+    dataList.setMemoryBudget(this);
+    allocations.add(new Allocation(dataList));
+    rebalance();
+  }
+
+  /**
+   * Removes the data list from the budget and hands its share to the remaining data lists.
+   *
+   * @param dataList the data list
+   */
+  public void unregister(DataList dataList)
+  {
+    for (Allocation allocation : allocations) {
+      if (allocation.dataList == dataList) {
+        allocations.remove(allocation);
+        dataList.setMemoryBudget(null);
+        rebalance();
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return number of blocks the data lists keep in memory together
+   */
+  public int getNumberOfInMemBlocks()
+  {
+    int blocks = 0;
+    for (Allocation allocation : allocations) {
+      blocks += allocation.dataList.getNumberOfInMemBlocks();
+    }
+    return blocks;
+  }
+
+  /**
+   * @return number of blocks no data list is using, negative if the data lists use more blocks than the server has
+   */
+  public int getFreeBlocks()
+  {
+    return numberOfBlocks - getNumberOfInMemBlocks();
+  }
+
+  /**
+   * Recomputes the share of each data list from the bytes it keeps for its slowest subscriber and the bytes published
+   * to it since the previous allocation.
+   */
+  public void rebalance()
+  {
+    final ArrayList<DataList> grown = new ArrayList<>();
+    synchronized (this) {
+      final int size = allocations.size();
+      if (size == 0) {
+        return;
+      }
+      final int minimum = Math.max(MINIMUM_NUMBER_OF_BLOCKS, numberOfBlocks / size / 2);
+      final int extra = Math.max(0, numberOfBlocks - minimum * size);
+
+      long totalWeight = 0;
+      for (Allocation allocation : allocations) {
+        final long position = allocation.dataList.getPublishedBytes();
+        allocation.weight = allocation.dataList.getConsumerLag() + Math.max(0, position - allocation.position);
+        allocation.position = position;
+        totalWeight += allocation.weight;
+      }
+
+      int remaining = extra;
+      Allocation heaviest = null;
+      for (Allocation allocation : allocations) {
+        final int share = totalWeight == 0 ? extra / size : (int)(extra * (double)allocation.weight / totalWeight);
+        allocation.blocks = minimum + share;
+        remaining -= share;
+        if (heaviest == null || allocation.weight > heaviest.weight) {
+          heaviest = allocation;
+        }
+      }
+      heaviest.blocks += remaining;
+
+      for (Allocation allocation : allocations) {
+        if (allocation.blocks > allocation.dataList.getNumberOfCacheBlocks()) {
+          grown.add(allocation.dataList);
+        }
+        allocation.dataList.setNumberOfCacheBlocks(allocation.blocks);
+      }
+      logger.debug("Reallocated {} blocks among {}", numberOfBlocks, allocations);
+    }
+
+    for (DataList dataList : grown) {
+      dataList.resumeSuspendedClientsIfMemoryBlockAvailable();
+    }
+  }
+
+  /**
+   * @return number of blocks granted to each data list, by the identifier of the data list
+   */
+  public Map<String, Integer> getAllocation()
+  {
+    final Map<String, Integer> allocation = new LinkedHashMap<>();
+    for (Allocation a : allocations) {
+      allocation.put(a.dataList.getIdentifier(), a.dataList.getNumberOfCacheBlocks());
+    }
+    return allocation;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "MemoryBudget{numberOfBlocks=" + numberOfBlocks + ", allocations=" + allocations + '}';
+  }
+
+  private static class Allocation
+  {
+    final DataList dataList;
+    long position;
+    long weight;
+    int blocks;
+
+    Allocation(DataList dataList)
+    {
+      this.dataList = dataList;
+      position = dataList.getPublishedBytes();
+    }
+
+    @Override
+    public String toString()
+    {
+      return dataList.getIdentifier() + '=' + blocks;
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.Arrays;
+
+import com.datatorrent.bufferserver.util.PartitionBitmap;
+import com.datatorrent.netlet.util.VarInt.MutableInt;
+
+/**
+ * Partition vector of the tuples in a {@link DataList.Block}.<p>
+ * <br>
+ * Keeps the offset and the partition of every tuple flushed into the block while the data list has partitioned
+ * subscribers, so that the iterator of a subscriber can jump over the payload tuples of the other partitions by
+ * scanning the vector instead of reading the length and the header of each of the tuples from the block. Tuples other
+ * than payload tuples are never skipped. The vector covers the contiguous range of the block between its start and
+ * end offset; it starts over if the range is interrupted, e.g. when the last partitioned subscriber went away.
+ * <br>
+ * Offsets are those of the first byte of the length prefix of a tuple.
+ *
+ * @since 3.7.0
+ */
+class PartitionIndex
+{
+  private static final int INITIAL_CAPACITY = 64;
+
+  private int[] offsets = new int[INITIAL_CAPACITY];
+  private int[] partitions = new int[INITIAL_CAPACITY];
+  private boolean[] payloads = new boolean[INITIAL_CAPACITY];
+  private int count;
+  private int startOffset;
+  private int endOffset;
+
+  /**
+   * @param offset offset of the tuple
+   * @param end offset past the end of the tuple
+   * @param payload whether the tuple is a payload tuple
+   * @param partition partition of the payload tuple
+   */
+  synchronized void add(int offset, int end, boolean payload, int partition)
+  {
+    if (count == 0 || offset != endOffset) {
+      count = 0;
+      startOffset = offset;
+    } else if (count == offsets.length) {
+      offsets = Arrays.copyOf(offsets, count << 1);
+      partitions = Arrays.copyOf(partitions, count << 1);
+      payloads = Arrays.copyOf(payloads, count << 1);
+    }
+    offsets[count] = offset;
+    partitions[count] = partition;
+    payloads[count++] = payload;
+    endOffset = end;
+  }
+
+  /**
+   * Finds the first tuple at or after the given offset which is not a payload tuple of a partition the filter rejects.
+   *
+   * @param fromOffset offset of the tuple to start the search from
+   * @param filter partitions to be delivered
+   * @param skipped incremented by the number of tuples skipped
+   * @return offset of the tuple found, the end offset of the vector if all the tuples in it were skipped or the given
+   * offset if it is not covered by the vector
+   */
+  synchronized int seek(int fromOffset, PartitionBitmap filter, MutableInt skipped)
+  {
+    if (count == 0 || fromOffset < startOffset || fromOffset >= endOffset) {
+      return fromOffset;
+    }
+    int position = ceiling(offsets, count, fromOffset);
+    final int first = position;
+    while (position < count && payloads[position] && !filter.matches(partitions[position])) {
+      position++;
+    }
+    skipped.integer += position - first;
+    return position < count ? offsets[position] : endOffset;
+  }
+
+  /**
+   * Drops the entries for tuples at or after the given offset.
+   */
+  synchronized void truncate(int offset)
+  {
+    count = ceiling(offsets, count, offset);
+    if (count > 0) {
+      endOffset = offset;
+    }
+  }
+
+  /**
+   * Drops the entries for tuples before the given offset.
+   */
+  synchronized void purge(int offset)
+  {
+    final int position = ceiling(offsets, count, offset);
+    if (position > 0) {
+      count -= position;
+      System.arraycopy(offsets, position, offsets, 0, count);
+      System.arraycopy(partitions, position, partitions, 0, count);
+      System.arraycopy(payloads, position, payloads, 0, count);
+      if (count > 0) {
+        startOffset = offsets[0];
+      }
+    }
+  }
+
+  /**
+   * Shifts the offsets when the data of the block is reloaded starting at the given offset.
+   */
+  synchronized void rebase(int offset)
+  {
+    if (offset != 0) {
+      purge(offset);
+      for (int i = 0; i < count; i++) {
+        offsets[i] -= offset;
+      }
+      startOffset -= offset;
+      endOffset -= offset;
+    }
+  }
+
+  synchronized void clear()
+  {
+    count = 0;
+  }
+
+  /**
+   * @return position of the first element not less than the key or count if there is no such element
+   */
+  private static int ceiling(int[] array, int count, int key)
+  {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (array[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "PartitionIndex{tuples=" + count + ", start=" + startOffset + ", end=" + endOffset + '}';
+  }
+}
@@ -24,9 +24,14 @@ import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.util.SerializedData;
 import com.datatorrent.netlet.WriteOnlyClient;
+import com.datatorrent.netlet.util.VarInt;
 
 /**
  * PhysicalNode represents one physical subscriber.
+ * <p>
+ * A subscriber that advertised a credit window is sent data only while the number of bytes handed to its connection
+ * but not yet written to the socket is below the window. The connection reports the bytes written to the socket with
+ * {@link #acknowledge(int)}, so the subscriber regains credit at the rate at which it reads the data.
  *
  * @since 0.3.2
  */
@@ -34,16 +39,31 @@ public class PhysicalNode
 {
   private final long starttime;
   private final WriteOnlyClient client;
+  private final int creditWindow;
   private long processedMessageCount;
   private SerializedData blocker;
+  private volatile long sentBytes;
+  private volatile long acknowledgedBytes;
+  private volatile boolean waitingForCredit;
+  private volatile boolean closed;
 
   /**
    *
    * @param client
    */
   public PhysicalNode(WriteOnlyClient client)
+  {
+    this(client, 0);
+  }
+
+  /**
+   * @param client the connection to the subscriber
+   * @param creditWindow the number of bytes that may be in flight to the subscriber, 0 for no limit
+   */
+  public PhysicalNode(WriteOnlyClient client, int creditWindow)
   {
     this.client = client;
+    this.creditWindow = creditWindow;
     starttime = System.currentTimeMillis();
     processedMessageCount = 0;
   }
@@ -73,7 +93,9 @@ public class PhysicalNode
    */
   public boolean send(SerializedData d)
   {
-    if (client.send(d.buffer, d.dataOffset, d.length - (d.dataOffset - d.offset))) {
+    final int length = d.length - (d.dataOffset - d.offset);
+    if (client.send(d.buffer, d.dataOffset, length)) {
+      sentBytes += length + VarInt.getSize(length);
       return true;
     }
     if (blocker == null) {
@@ -90,7 +112,9 @@ public class PhysicalNode
       return true;
     }
 
-    if (client.send(blocker.buffer, blocker.dataOffset, blocker.length - (blocker.dataOffset - blocker.offset))) {
+    final int length = blocker.length - (blocker.dataOffset - blocker.offset);
+    if (client.send(blocker.buffer, blocker.dataOffset, length)) {
+      sentBytes += length + VarInt.getSize(length);
       blocker = null;
       return true;
     }
@@ -98,6 +122,91 @@ public class PhysicalNode
     return false;
   }
 
+  /**
+   * Checks whether the subscriber has credit for more data. When it does not, the next {@link #acknowledge(int)} that
+   * restores the credit returns true.
+   *
+   * @return true if more data can be sent to the subscriber
+   */
+  public boolean hasCredit()
+  {
+    if (creditWindow == 0 || sentBytes - acknowledgedBytes < creditWindow) {
+      return true;
+    }
+    waitingForCredit = true;
+    /* the acknowledgement may have arrived before waitingForCredit was set */
+    if (sentBytes - acknowledgedBytes < creditWindow) {
+      waitingForCredit = false;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Records the bytes the connection wrote to the socket of the subscriber.
+   *
+   * @param bytes number of bytes written
+   * @return true if the subscriber ran out of credit earlier and now has credit again
+   */
+  public boolean acknowledge(int bytes)
+  {
+    acknowledgedBytes += bytes;
+    if (waitingForCredit && sentBytes - acknowledgedBytes < creditWindow) {
+      waitingForCredit = false;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return number of bytes handed to the connection, including the length prefixes
+   */
+  public long getSentBytes()
+  {
+    return sentBytes;
+  }
+
+  /**
+   * Checks whether the connection no longer refers to the data sent to it up to the given number of bytes, either
+   * because it wrote the data to the socket or because it was closed.
+   *
+   * @param sentBytes number of bytes sent to the connection as returned by {@link #getSentBytes()}
+   * @return true if the data was written or dropped
+   */
+  public boolean isWritten(long sentBytes)
+  {
+    return closed || acknowledgedBytes >= sentBytes;
+  }
+
+  /**
+   * Marks the connection as removed, so that the data queued on it is not waited for any longer.
+   */
+  public void close()
+  {
+    closed = true;
+  }
+
+  public int getCreditWindow()
+  {
+    return creditWindow;
+  }
+
+  /**
+   * @return number of bytes handed to the connection that were not yet written to the socket
+   */
+  public long getInFlightBytes()
+  {
+    return Math.max(0, sentBytes - acknowledgedBytes);
+  }
+
+  /**
+   * @return number of bytes that can still be sent to the subscriber, or -1 if there is no credit window
+   */
+  public long getCredit()
+  {
+    return creditWindow == 0 ? -1 : Math.max(0, creditWindow - getInFlightBytes());
+  }
+
   /**
    *
    * @return long
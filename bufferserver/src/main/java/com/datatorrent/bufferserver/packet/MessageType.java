@@ -38,6 +38,7 @@ public enum MessageType
   CHECKPOINT(10),
   CODEC_STATE(11),
   CUSTOM_CONTROL(12),
+  PAYLOAD_BATCH(13),
   NO_MESSAGE_ODD(127);
 
   public static final byte NO_MESSAGE_VALUE = 0;
@@ -53,6 +54,7 @@ public enum MessageType
   public static final byte CHECKPOINT_VALUE = 10;
   public static final byte CODEC_STATE_VALUE = 11;
   public static final byte CUSTOM_CONTROL_VALUE = 12;
+  public static final byte PAYLOAD_BATCH_VALUE = 13;
   public static final byte NO_MESSAGE_ODD_VALUE = 127;
 
   public final int getNumber()
@@ -89,6 +91,8 @@ public enum MessageType
         return CODEC_STATE;
       case 12:
         return CUSTOM_CONTROL;
+      case 13:
+        return PAYLOAD_BATCH;
       case 127:
         return NO_MESSAGE_ODD;
       default:
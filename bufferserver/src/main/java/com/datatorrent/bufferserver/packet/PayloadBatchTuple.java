@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+import java.nio.ByteBuffer;
+
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
+
+/**
+ * Payload tuples of the same partition packed into one message.<p>
+ * <br>
+ * The header is the same as that of a {@link PayloadTuple}, the message type followed by the partition, so the buffer
+ * server routes the batch as it routes a single payload. It is followed by the payloads, each of them prefixed with
+ * its length, up to the end of the message.
+ *
+ * @since 3.7.0
+ */
+public class PayloadBatchTuple extends Tuple
+{
+  /**
+   * Size of the header preceding the payloads, the message type and the partition.
+   */
+  public static final int HEADER_SIZE = 5;
+
+  public PayloadBatchTuple(byte[] array, int offset, int length)
+  {
+    super(array, offset, length);
+  }
+
+  @Override
+  public MessageType getType()
+  {
+    return MessageType.PAYLOAD_BATCH;
+  }
+
+  @Override
+  public int getPartition()
+  {
+    return ByteBuffer.wrap(buffer, offset, 4).getInt();
+  }
+
+  /**
+   * @return the length prefixed payloads of the batch
+   */
+  @Override
+  public Slice getData()
+  {
+    return new Slice(buffer, offset + 4, limit - offset - 4);
+  }
+
+  /**
+   * @return number of payloads in the batch
+   */
+  public int getCount()
+  {
+    VarInt.MutableInt next = new VarInt.MutableInt();
+    int position = offset + 4;
+    int count = 0;
+    while (position < limit) {
+      int length = VarInt.read(buffer, position, limit, next);
+      if (next.integer < 0) {
+        break;
+      }
+      position = next.integer + length;
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "PayloadBatchTuple{" + getPartition() + ", " + getCount() + '}';
+  }
+
+  public static byte[] getSerializedTuple(int partition, Slice... payloads)
+  {
+    int size = HEADER_SIZE;
+    for (Slice f : payloads) {
+      size += VarInt.getSize(f.length) + f.length;
+    }
+
+    byte[] array = new byte[size];
+    ByteBuffer byteBuffer = ByteBuffer.wrap(array);
+    byteBuffer.put(MessageType.PAYLOAD_BATCH_VALUE);
+    byteBuffer.putInt(partition);
+    int offset = HEADER_SIZE;
+    for (Slice f : payloads) {
+      offset = VarInt.write(f.length, array, offset);
+      System.arraycopy(f.buffer, f.offset, array, offset, f.length);
+      offset += f.length;
+    }
+    return array;
+  }
+
+}
@@ -44,6 +44,7 @@ public class SubscribeRequestTuple extends RequestTuple
   private int mask;
   private int[] partitions;
   private int bufferSize;
+  private int creditWindow;
 
   @Override
   public MessageType getType()
@@ -132,6 +133,16 @@ public class SubscribeRequestTuple extends RequestTuple
         return;
       }
 
+      /*
+       * read the credit window, which subscribers older than the server do not send
+       */
+      if (offset < limit) {
+        creditWindow = readVarInt();
+        if (creditWindow == -1) {
+          return;
+        }
+      }
+
       valid = true;
     } catch (NumberFormatException nfe) {
       logger.warn("Unparseable Tuple", nfe);
@@ -213,9 +224,24 @@ public class SubscribeRequestTuple extends RequestTuple
     return bufferSize;
   }
 
+  /**
+   * @return number of bytes that may be in flight to the subscriber, 0 for no limit
+   */
+  public int getCreditWindow()
+  {
+    return creditWindow;
+  }
+
   public static byte[] getSerializedRequest(final String version, final String id, final String down_type,
       final String upstream_id, final int mask, final Collection<Integer> partitions, final long startingWindowId,
       final int bufferSize)
+  {
+    return getSerializedRequest(version, id, down_type, upstream_id, mask, partitions, startingWindowId, bufferSize, 0);
+  }
+
+  public static byte[] getSerializedRequest(final String version, final String id, final String down_type,
+      final String upstream_id, final int mask, final Collection<Integer> partitions, final long startingWindowId,
+      final int bufferSize, final int creditWindow)
   {
     byte[] array = new byte[4096];
     int offset = 0;
@@ -257,6 +283,11 @@ public class SubscribeRequestTuple extends RequestTuple
     /* write the buffer size */
     offset = VarInt.write(bufferSize, array, offset);
 
+    /* write the credit window */
+    if (creditWindow > 0) {
+      offset = VarInt.write(creditWindow, array, offset);
+    }
+
     return Arrays.copyOfRange(array, 0, offset);
   }
 
@@ -267,7 +298,7 @@ public class SubscribeRequestTuple extends RequestTuple
         ", windowId=" + Codec.getStringWindowId((long)baseSeconds << 32 | windowId) + ", type=" + streamType +
         ", upstreamIdentifier=" + upstreamIdentifier + ", mask=" + mask +
         ", partitions=" + (partitions == null ? "null" : Arrays.toString(partitions)) +
-        ", bufferSize=" + bufferSize + '}';
+        ", bufferSize=" + bufferSize + ", creditWindow=" + creditWindow + '}';
   }
 
   private static final Logger logger = LoggerFactory.getLogger(SubscribeRequestTuple.class);
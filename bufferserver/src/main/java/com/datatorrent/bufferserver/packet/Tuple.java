@@ -64,6 +64,9 @@ public abstract class Tuple
       case PAYLOAD:
         return new PayloadTuple(buffer, offset, length);
 
+      case PAYLOAD_BATCH:
+        return new PayloadBatchTuple(buffer, offset, length);
+
       case RESET_WINDOW:
         return new ResetWindowTuple(buffer, offset, length);
 
@@ -18,6 +18,7 @@
  */
 package com.datatorrent.bufferserver.server;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -25,7 +26,9 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -39,15 +42,19 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.bufferserver.internal.BlockPool;
 import com.datatorrent.bufferserver.internal.DataList;
 import com.datatorrent.bufferserver.internal.FastDataList;
 import com.datatorrent.bufferserver.internal.LogicalNode;
+import com.datatorrent.bufferserver.internal.MemoryBudget;
+import com.datatorrent.bufferserver.internal.PhysicalNode;
 import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.PublishRequestTuple;
 import com.datatorrent.bufferserver.packet.PurgeRequestTuple;
 import com.datatorrent.bufferserver.packet.ResetRequestTuple;
 import com.datatorrent.bufferserver.packet.SubscribeRequestTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.storage.MappedSegmentStorage;
 import com.datatorrent.bufferserver.storage.Storage;
 import com.datatorrent.common.util.NameableThreadFactory;
 import com.datatorrent.netlet.AbstractLengthPrependerClient;
@@ -76,6 +83,8 @@ public class Server extends AbstractServer
   private volatile CountDownLatch latch;
 
   private byte[] authToken;
+  private boolean partitionIndexEnabled;
+  private long maxConsumerLag;
 
   private static final boolean BACK_PRESSURE_ENABLED = !Boolean.getBoolean("org.apache.apex.bufferserver.backpressure.disable");
 
@@ -91,8 +100,9 @@ public class Server extends AbstractServer
   {
     this.eventloop = eventloop;
     this.port = port;
-    this.blockSize = blocksize;
     this.numberOfCacheBlocks = numberOfCacheBlocks;
+    blockPool = new BlockPool(blocksize, (long)blocksize * numberOfCacheBlocks);
+    memoryBudget = new MemoryBudget(numberOfCacheBlocks);
     serverHelperExecutor = Executors.newSingleThreadExecutor(new NameableThreadFactory("ServerHelper"));
     final ArrayBlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<>(numberOfCacheBlocks);
     final NameableThreadFactory threadFactory = new NameableThreadFactory("StorageHelper");
@@ -186,6 +196,7 @@ public class Server extends AbstractServer
       throw new RuntimeException(e);
     } finally {
       shutdownExecutors(latch.getCount() == 0);
+      closeStorage();
     }
   }
 
@@ -206,6 +217,21 @@ public class Server extends AbstractServer
       throw new RuntimeException(e);
     } finally {
       shutdownExecutors(latch.getCount() == 0);
+      closeStorage();
+    }
+  }
+
+  /**
+   * Releases the files of the spool storage, such as the segments of a {@link MappedSegmentStorage}.
+   */
+  private void closeStorage()
+  {
+    if (storage instanceof Closeable) {
+      try {
+        ((Closeable)storage).close();
+      } catch (IOException | RuntimeException e) {
+        logger.warn("Failed to close the spool storage {}", storage, e);
+      }
     }
   }
 
@@ -233,6 +259,57 @@ public class Server extends AbstractServer
     this.authToken = authToken;
   }
 
+  /**
+   * Makes the data lists index the partitions of the published tuples so that each partitioned subscriber iterates
+   * only over the payload tuples of its own partitions.
+   *
+   * @param partitionIndexEnabled whether to index the partitions of the published tuples
+   */
+  public void setPartitionIndexEnabled(boolean partitionIndexEnabled)
+  {
+    this.partitionIndexEnabled = partitionIndexEnabled;
+  }
+
+  /**
+   * Throttles the publishers to the rate of their slowest subscriber.
+   *
+   * @param maxConsumerLag number of bytes the slowest subscriber may lag behind the publisher, 0 for no limit
+   * @see DataList#setMaxConsumerLag(long)
+   */
+  public void setMaxConsumerLag(long maxConsumerLag)
+  {
+    this.maxConsumerLag = maxConsumerLag;
+  }
+
+  /**
+   * @return the pool of the blocks shared by all the data lists of the server, capped at the memory of the configured
+   * number of cached blocks
+   */
+  public BlockPool getBlockPool()
+  {
+    return blockPool;
+  }
+
+  /**
+   * @return the budget which shares the configured number of cached blocks among the data lists of the server
+   */
+  public MemoryBudget getMemoryBudget()
+  {
+    return memoryBudget;
+  }
+
+  /**
+   * @return status of the data list of each publisher, including the blocks the memory budget granted to it
+   */
+  public Map<String, DataList.Status> getStatus()
+  {
+    final Map<String, DataList.Status> status = new HashMap<>();
+    for (Entry<String, DataList> entry : publisherBuffers.entrySet()) {
+      status.put(entry.getKey(), entry.getValue().getStatus());
+    }
+    return status;
+  }
+
   /**
    *
    * @param args
@@ -262,7 +339,8 @@ public class Server extends AbstractServer
   private final ConcurrentHashMap<String, DataList> publisherBuffers = new ConcurrentHashMap<>(1, 0.75f, 1);
   private final ConcurrentHashMap<String, LogicalNode> subscriberGroups = new ConcurrentHashMap<>();
   private final ConcurrentHashMap<String, AbstractLengthPrependerClient> publisherChannels = new ConcurrentHashMap<>();
-  private final int blockSize;
+  private final BlockPool blockPool;
+  private final MemoryBudget memoryBudget;
   private final int numberOfCacheBlocks;
 
   private void handlePurgeRequest(PurgeRequestTuple request, final AbstractLengthPrependerClient ctx) throws IOException
@@ -309,6 +387,7 @@ public class Server extends AbstractServer
         eventloop.disconnect(channel);
       }
       dl.reset();
+      memoryBudget.unregister(dl);
       message = ("Request sent for processing: " + request).getBytes();
     }
 
@@ -345,11 +424,15 @@ public class Server extends AbstractServer
           DataList dl = publisherBuffers.get(upstream_identifier);
           if (dl == null) {
             dl = Tuple.FAST_VERSION.equals(request.getVersion()) ?
-                new FastDataList(upstream_identifier, blockSize, numberOfCacheBlocks, BACK_PRESSURE_ENABLED) :
-                new DataList(upstream_identifier, blockSize, numberOfCacheBlocks, BACK_PRESSURE_ENABLED);
+                new FastDataList(upstream_identifier, blockPool, numberOfCacheBlocks, BACK_PRESSURE_ENABLED) :
+                new DataList(upstream_identifier, blockPool, numberOfCacheBlocks, BACK_PRESSURE_ENABLED);
+            dl.setPartitionIndexEnabled(partitionIndexEnabled);
+            dl.setMaxConsumerLag(maxConsumerLag);
             DataList odl = publisherBuffers.putIfAbsent(upstream_identifier, dl);
             if (odl != null) {
               dl = odl;
+            } else {
+              memoryBudget.register(dl);
             }
           }
 
@@ -369,7 +452,7 @@ public class Server extends AbstractServer
           if (oln != null) {
             oln.boot();
           }
-          final Subscriber subscriber = new Subscriber(ln, request.getBufferSize());
+          final Subscriber subscriber = new Subscriber(ln, request.getBufferSize(), request.getCreditWindow());
           eventloop.submit(new Runnable()
           {
             @Override
@@ -468,11 +551,15 @@ public class Server extends AbstractServer
       }
     } else {
       dl = Tuple.FAST_VERSION.equals(request.getVersion()) ?
-          new FastDataList(identifier, blockSize, numberOfCacheBlocks, BACK_PRESSURE_ENABLED) :
-          new DataList(identifier, blockSize, numberOfCacheBlocks, BACK_PRESSURE_ENABLED);
+          new FastDataList(identifier, blockPool, numberOfCacheBlocks, BACK_PRESSURE_ENABLED) :
+          new DataList(identifier, blockPool, numberOfCacheBlocks, BACK_PRESSURE_ENABLED);
+      dl.setPartitionIndexEnabled(partitionIndexEnabled);
+      dl.setMaxConsumerLag(maxConsumerLag);
       DataList odl = publisherBuffers.putIfAbsent(identifier, dl);
       if (odl != null) {
         dl = odl;
+      } else {
+        memoryBudget.register(dl);
       }
     }
     dl.setSecondaryStorage(storage, storageHelperExecutor);
@@ -629,12 +716,31 @@ public class Server extends AbstractServer
   private class Subscriber extends WriteOnlyLengthPrependerClient
   {
     private LogicalNode ln;
+    private final PhysicalNode physicalNode;
+    private volatile DataList datalist;
 
-    Subscriber(LogicalNode ln, int bufferSize)
+    Subscriber(LogicalNode ln, int bufferSize, int creditWindow)
     {
       super(1024 * 1024, bufferSize == 0 ? 256 * 1024 : bufferSize);
       this.ln = ln;
-      ln.addConnection(this);
+      physicalNode = ln.addConnection(this, creditWindow);
+    }
+
+    /**
+     * Returns the credit for the bytes written to the socket to the physical node, and wakes up the data list
+     * listeners if that lets the logical node send data again.
+     */
+    @Override
+    protected int channelWrite() throws IOException
+    {
+      final int written = super.channelWrite();
+      if (written > 0 && physicalNode.acknowledge(written)) {
+        final DataList dl = datalist;
+        if (dl != null) {
+          dl.notifyListeners();
+        }
+      }
+      return written;
     }
 
     @Override
@@ -648,6 +754,7 @@ public class Server extends AbstractServer
         {
           final DataList dl = publisherBuffers.get(ln.getUpstream());
           if (dl != null) {
+            datalist = dl;
             dl.addDataListener(ln);
           } else {
             logger.error("Disconnecting {} with no matching data list.", this);
@@ -662,6 +769,8 @@ public class Server extends AbstractServer
     {
       handleSubscriberTeardown(key);
       super.unregistered(key);
+      /* the slices still queued on the connection are never written, the blocks they refer to can be reused */
+      physicalNode.close();
     }
 
     @Override
@@ -716,8 +825,13 @@ public class Server extends AbstractServer
           final int interestOps = key.interestOps();
           if ((interestOps & SelectionKey.OP_READ) == 0) {
             if (readExt(0)) {
-              logger.debug("Resuming read on key {} with attachment {}", key, key.attachment());
-              key.interestOps(interestOps | SelectionKey.OP_READ);
+              if (datalist.suspendReadIfConsumerLagExceeded(Publisher.this)) {
+                logger.debug("Keeping read on key {} with attachment {} suspended, consumer lag {}", key,
+                    key.attachment(), datalist.getConsumerLag());
+              } else {
+                logger.debug("Resuming read on key {} with attachment {}", key, key.attachment());
+                key.interestOps(interestOps | SelectionKey.OP_READ);
+              }
             } else {
               logger.debug("Keeping read on key {} with attachment {} suspended. ", key, key.attachment(), datalist);
               datalist.notifyListeners();
@@ -731,7 +845,9 @@ public class Server extends AbstractServer
     @Override
     public void read(int len)
     {
-      readExt(len);
+      if (readExt(len)) {
+        datalist.suspendReadIfConsumerLagExceeded(this);
+      }
     }
 
     private boolean readExt(int len)
@@ -0,0 +1,310 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Storage which appends spooled blocks into large, preallocated, memory mapped segment files.
+ *
+ * Unlike {@link DiskStorage} which creates a file per block, blocks are copied into the currently active segment and
+ * an in-memory index maps (identifier, uniqueIdentifier) to the (segment, offset, length) of the block. Blocks can be
+ * read back without any file system call and a segment file is reclaimed as a whole once all the blocks it holds are
+ * discarded. One drained segment is kept aside and recycled to avoid creating and preallocating files when subscribers
+ * keep falling behind. The segment files left are deleted when the storage is closed, as the buffer server does when it
+ * stops.
+ *
+ * @since 3.7.0
+ */
+public class MappedSegmentStorage implements Storage, Closeable
+{
+  private static final Logger logger = LoggerFactory.getLogger(MappedSegmentStorage.class);
+  public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+  final String basePath;
+  final int segmentSize;
+  private final HashMap<String, HashMap<Integer, Extent>> index = new HashMap<>();
+  private final HashSet<Segment> segments = new HashSet<>();
+  private Segment current;
+  private Segment spare;
+  private int uniqueIdentifier;
+  private boolean closed;
+
+  public MappedSegmentStorage(String baseDirectory, int segmentSize)
+  {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+    }
+    basePath = baseDirectory;
+    this.segmentSize = segmentSize;
+    logger.info("Using {} as the basepath for spooling with segments of {} bytes.", basePath, segmentSize);
+  }
+
+  public MappedSegmentStorage(String baseDirectory)
+  {
+    this(baseDirectory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  public MappedSegmentStorage(int segmentSize) throws IOException
+  {
+    this(getTempDirectory(), segmentSize);
+  }
+
+  public MappedSegmentStorage() throws IOException
+  {
+    this(DEFAULT_SEGMENT_SIZE);
+  }
+
+  private static String getTempDirectory() throws IOException
+  {
+    File tempFile = File.createTempFile("msp", "msp");
+    String path = tempFile.getParent();
+    tempFile.delete();
+    return path;
+  }
+
+  @Override
+  public Storage getInstance() throws IOException
+  {
+    return new MappedSegmentStorage(basePath, segmentSize);
+  }
+
+  @Override
+  public synchronized int store(String identifier, byte[] bytes, int start, int end)
+  {
+    final int length = end - start;
+    final Segment segment = getSegment(length);
+    final int offset = segment.writeOffset;
+
+    final ByteBuffer buffer = segment.buffer.duplicate();
+    buffer.position(offset);
+    buffer.put(bytes, start, length);
+    segment.writeOffset += length;
+    segment.liveBlocks++;
+
+    HashMap<Integer, Extent> extents = index.get(identifier);
+    if (extents == null) {
+      extents = new HashMap<>();
+      index.put(identifier, extents);
+    }
+
+    do {
+      if (++uniqueIdentifier <= 0) {
+        uniqueIdentifier = 1;
+      }
+    } while (extents.containsKey(uniqueIdentifier));
+
+    extents.put(uniqueIdentifier, new Extent(segment, offset, length));
+    return uniqueIdentifier;
+  }
+
+  @Override
+  public synchronized byte[] retrieve(String identifier, int uniqueIdentifier)
+  {
+    final Extent extent = getExtent(identifier, uniqueIdentifier);
+    final byte[] bytes = new byte[extent.length];
+    final ByteBuffer buffer = extent.segment.buffer.duplicate();
+    buffer.position(extent.offset);
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Returns a read only view of the stored block backed directly by the memory mapped segment, so no copy of the data
+   * is made. The view is valid only until the block is discarded, after which the region may be reused.
+   *
+   * @param identifier primary identifier of the block which typically identifies the data source.
+   * @param uniqueIdentifier secondary and unique identifier of the block which needs to be retrieved.
+   * @return buffer whose position and limit delimit the stored block.
+   */
+  public synchronized ByteBuffer retrieveBuffer(String identifier, int uniqueIdentifier)
+  {
+    final Extent extent = getExtent(identifier, uniqueIdentifier);
+    final ByteBuffer buffer = extent.segment.buffer.duplicate();
+    buffer.limit(extent.offset + extent.length);
+    buffer.position(extent.offset);
+    return buffer.slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public synchronized void discard(String identifier, int uniqueIdentifier)
+  {
+    final HashMap<Integer, Extent> extents = index.get(identifier);
+    final Extent extent = extents == null ? null : extents.remove(uniqueIdentifier);
+    if (extent == null) {
+      throw new RuntimeException("Block " + uniqueIdentifier + " of " + identifier + " does not exist!");
+    }
+    if (extents.isEmpty()) {
+      index.remove(identifier);
+    }
+
+    final Segment segment = extent.segment;
+    if (--segment.liveBlocks == 0) {
+      if (segment == current) {
+        segment.writeOffset = 0;
+      } else {
+        reclaim(segment);
+      }
+    }
+  }
+
+  /**
+   * Deletes all the segment files. The blocks stored so far cannot be retrieved anymore and no more blocks can be
+   * stored.
+   */
+  @Override
+  public synchronized void close()
+  {
+    closed = true;
+    index.clear();
+    current = null;
+    spare = null;
+    for (Segment segment : segments) {
+      logger.debug("Deleting segment {}", segment.file);
+      if (!segment.file.delete()) {
+        logger.warn("Segment {} could not be deleted!", segment.file);
+      }
+    }
+    segments.clear();
+  }
+
+  /**
+   * @return number of segment files currently mapped, including the recycled spare one.
+   */
+  public synchronized int getSegmentCount()
+  {
+    return segments.size();
+  }
+
+  private Extent getExtent(String identifier, int uniqueIdentifier)
+  {
+    final HashMap<Integer, Extent> extents = index.get(identifier);
+    final Extent extent = extents == null ? null : extents.get(uniqueIdentifier);
+    if (extent == null) {
+      throw new RuntimeException("Block " + uniqueIdentifier + " of " + identifier + " does not exist!");
+    }
+    return extent;
+  }
+
+  private Segment getSegment(int length)
+  {
+    if (current != null && current.capacity() - current.writeOffset >= length) {
+      return current;
+    }
+
+    if (current != null) {
+      if (current.liveBlocks == 0) {
+        reclaim(current);
+      }
+      current = null;
+    }
+
+    if (length <= segmentSize && spare != null) {
+      current = spare;
+      spare = null;
+    } else {
+      current = newSegment(Math.max(length, segmentSize));
+    }
+    return current;
+  }
+
+  private Segment newSegment(int size)
+  {
+    if (closed) {
+      throw new IllegalStateException("Storage in " + basePath + " is closed");
+    }
+    File directory = new File(basePath);
+    try {
+      File file = File.createTempFile("msp-segment-", ".spool", directory);
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(size);
+        FileChannel channel = raf.getChannel();
+        /* the mapping stays valid after the channel is closed */
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        logger.debug("Allocated segment {} of {} bytes", file, size);
+        Segment segment = new Segment(file, buffer);
+        segments.add(segment);
+        return segment;
+      }
+    } catch (IOException ex) {
+      throw new RuntimeException("Segment could not be created in " + directory.getAbsolutePath(), ex);
+    }
+  }
+
+  private void reclaim(Segment segment)
+  {
+    segment.writeOffset = 0;
+    if (spare == null && segment.capacity() == segmentSize) {
+      spare = segment;
+    } else {
+      logger.debug("Deleting segment {}", segment.file);
+      segments.remove(segment);
+      if (!segment.file.delete()) {
+        logger.warn("Segment {} could not be deleted!", segment.file);
+      }
+    }
+  }
+
+  static class Segment
+  {
+    final File file;
+    /**
+     * the mapped region is released by the garbage collector once the segment is no longer referenced.
+     */
+    final MappedByteBuffer buffer;
+    int writeOffset;
+    int liveBlocks;
+
+    Segment(File file, MappedByteBuffer buffer)
+    {
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    int capacity()
+    {
+      return buffer.capacity();
+    }
+  }
+
+  static class Extent
+  {
+    final Segment segment;
+    final int offset;
+    final int length;
+
+    Extent(Segment segment, int offset, int length)
+    {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+}
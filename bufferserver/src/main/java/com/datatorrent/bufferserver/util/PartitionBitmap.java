@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * <p>Set of partitions, each given as partition bits under a mask, matched against the partition of a tuple without
+ * boxing or allocation.</p>
+ *
+ * The partitions sharing a mask are kept in a bitmap indexed by the masked partition of the tuple. Masks too wide for a
+ * bitmap fall back to a binary search of the sorted masked partitions.
+ *
+ * @since 3.7.0
+ */
+public class PartitionBitmap
+{
+  /**
+   * Widest mask whose partitions are kept in a bitmap, which then takes up to 8KB.
+   */
+  static final int MAX_BITMAP_MASK = 0xffff;
+  private static final int[] EMPTY = new int[0];
+
+  private int[] masks = EMPTY;
+  /* per mask, either the bitmap indexed by the masked partition or the sorted masked partitions */
+  private long[][] bitmaps = new long[0][];
+  private int[][] sortedPartitions = new int[0][];
+
+  public PartitionBitmap()
+  {
+  }
+
+  public PartitionBitmap(Collection<Integer> partitions, int mask)
+  {
+    for (int partition : partitions) {
+      add(partition, mask);
+    }
+  }
+
+  /**
+   * @param partition the partition bits
+   * @param mask the mask which selects the partition bits of a tuple
+   */
+  public final void add(int partition, int mask)
+  {
+    partition &= mask;
+    int index = 0;
+    while (index < masks.length && masks[index] != mask) {
+      index++;
+    }
+    if (index == masks.length) {
+      masks = Arrays.copyOf(masks, index + 1);
+      masks[index] = mask;
+      bitmaps = Arrays.copyOf(bitmaps, index + 1);
+      sortedPartitions = Arrays.copyOf(sortedPartitions, index + 1);
+      if ((mask & ~MAX_BITMAP_MASK) == 0) {
+        bitmaps[index] = new long[(mask >>> 6) + 1];
+      } else {
+        sortedPartitions[index] = EMPTY;
+      }
+    }
+
+    final long[] bitmap = bitmaps[index];
+    if (bitmap == null) {
+      final int[] sorted = sortedPartitions[index];
+      final int position = Arrays.binarySearch(sorted, partition);
+      if (position < 0) {
+        final int insertion = -position - 1;
+        final int[] grown = new int[sorted.length + 1];
+        java.lang.System.arraycopy(sorted, 0, grown, 0, insertion);
+        grown[insertion] = partition;
+        java.lang.System.arraycopy(sorted, insertion, grown, insertion + 1, sorted.length - insertion);
+        sortedPartitions[index] = grown;
+      }
+    } else {
+      bitmap[partition >>> 6] |= 1L << partition;
+    }
+  }
+
+  public boolean isEmpty()
+  {
+    return masks.length == 0;
+  }
+
+  /**
+   * @param partition partition of a tuple
+   * @return true if the partition matches any of the partitions in the set
+   */
+  public boolean matches(int partition)
+  {
+    for (int i = 0; i < masks.length; i++) {
+      final int masked = partition & masks[i];
+      final long[] bitmap = bitmaps[i];
+      if (bitmap == null) {
+        if (Arrays.binarySearch(sortedPartitions[i], masked) >= 0) {
+          return true;
+        }
+      } else if ((bitmap[masked >>> 6] & (1L << masked)) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+/**
+ *
+ */
+public class BlockPoolTest
+{
+  @Test
+  public void testReuse()
+  {
+    BlockPool pool = new BlockPool(16, 64);
+    assertEquals(pool.getCapacity(), 4);
+
+    byte[] block = pool.allocate();
+    assertEquals(block.length, 16);
+    pool.release(block);
+    assertEquals(pool.getFreeBlocks(), 1);
+    assertSame(pool.allocate(), block);
+    assertEquals(pool.getAllocatedBlocks(), 1);
+    assertEquals(pool.getReusedBlocks(), 1);
+    assertEquals(pool.getBlocksInUse(), 1);
+
+    /* blocks of another size are never kept */
+    pool.release(new byte[32]);
+    assertEquals(pool.getFreeBlocks(), 0);
+    assertEquals(pool.getDroppedBlocks(), 1);
+  }
+
+  @Test
+  public void testCapacity()
+  {
+    BlockPool pool = new BlockPool(16, 64);
+    byte[][] blocks = new byte[6][];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = pool.allocate();
+    }
+    assertEquals(pool.getBlocksInUse(), 6);
+
+    /* the blocks allocated past the capacity are dropped first */
+    for (byte[] block : blocks) {
+      pool.release(block);
+    }
+    assertEquals(pool.getBlocksInUse(), 0);
+    assertEquals(pool.getFreeBlocks(), 4);
+    assertEquals(pool.getDroppedBlocks(), 2);
+  }
+}
@@ -0,0 +1,455 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.storage.Storage;
+import com.datatorrent.bufferserver.util.PartitionBitmap;
+import com.datatorrent.bufferserver.util.SerializedData;
+import com.datatorrent.bufferserver.util.VarInt;
+import com.datatorrent.netlet.WriteOnlyLengthPrependerClient;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class DataListTest
+{
+  private static final int BASE_SECONDS = 0x7afebabe;
+  private static final long BASE_WINDOW_ID = (long)BASE_SECONDS << 32;
+  private ExecutorService executor;
+
+  @BeforeMethod
+  public void setup()
+  {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterMethod
+  public void teardown()
+  {
+    executor.shutdownNow();
+  }
+
+  private static int write(byte[] buffer, int offset, byte[] tuple)
+  {
+    offset = VarInt.write(tuple.length, buffer, offset);
+    System.arraycopy(tuple, 0, buffer, offset, tuple.length);
+    return offset + tuple.length;
+  }
+
+  /**
+   * Publishes the given number of windows with 10 payload tuples each into a block large enough to hold all of them.
+   */
+  private DataList publish(int windows)
+  {
+    DataList dl = new DataList("test", 64 * 1024, 8, true);
+    dl.setAutoFlushExecutor(executor);
+    publish(dl, windows);
+    return dl;
+  }
+
+  /**
+   * Publishes the given number of windows with 10 payload tuples each, assigned to the partitions 0 to 3 in turn.
+   */
+  private static void publish(DataList dl, int windows)
+  {
+    byte[] buffer = dl.getBuffer(BASE_WINDOW_ID);
+    int offset = write(buffer, 0, ResetWindowTuple.getSerializedTuple(BASE_SECONDS, 500));
+    for (int i = 0; i < windows; i++) {
+      offset = write(buffer, offset, BeginWindowTuple.getSerializedTuple(i));
+      for (int j = 0; j < 10; j++) {
+        offset = write(buffer, offset, PayloadTuple.getSerializedTuple(j % 4, 8));
+      }
+      offset = write(buffer, offset, EndWindowTuple.getSerializedTuple(i));
+    }
+    dl.flush(offset);
+  }
+
+  private static Tuple next(DataList.DataListIterator iterator)
+  {
+    assertTrue(iterator.hasNext());
+    SerializedData sd = iterator.next();
+    return Tuple.getTuple(sd.buffer, sd.dataOffset, sd.length - sd.dataOffset + sd.offset);
+  }
+
+  @Test
+  public void testFastForward()
+  {
+    DataList dl = publish(100);
+    try (DataList.DataListIterator iterator = dl.newIterator(BASE_WINDOW_ID | 50)) {
+      /* reset window is a control tuple and is never skipped */
+      assertEquals(iterator.fastForward(BASE_WINDOW_ID | 50), 0);
+      assertEquals(next(iterator).getType(), MessageType.RESET_WINDOW);
+
+      assertTrue(iterator.fastForward(BASE_WINDOW_ID | 50) > 0);
+      Tuple tuple = next(iterator);
+      assertEquals(tuple.getType(), MessageType.BEGIN_WINDOW);
+      assertEquals(tuple.getWindowId(), 51);
+
+      /* iterator does not move while it is in a window past the requested one */
+      assertEquals(iterator.fastForward(BASE_WINDOW_ID | 50), 0);
+      assertEquals(next(iterator).getType(), MessageType.PAYLOAD);
+    }
+  }
+
+  @Test
+  public void testRewind() throws Exception
+  {
+    DataList dl = publish(100);
+    dl.rewind(BASE_SECONDS, 40);
+
+    int windows = 0;
+    try (DataList.DataListIterator iterator = dl.newIterator(0)) {
+      while (iterator.hasNext()) {
+        SerializedData sd = iterator.next();
+        if (sd.buffer[sd.dataOffset] == MessageType.BEGIN_WINDOW_VALUE) {
+          windows++;
+        }
+      }
+    }
+    assertEquals(windows, 40);
+  }
+
+  @Test
+  public void testPurge()
+  {
+    DataList dl = publish(100);
+    dl.purge(BASE_WINDOW_ID | 59);
+
+    try (DataList.DataListIterator iterator = dl.newIterator(0)) {
+      /* the last reset window tuple is retained in front of the first window left */
+      Tuple tuple = next(iterator);
+      assertEquals(tuple.getType(), MessageType.RESET_WINDOW);
+      assertEquals(tuple.getBaseSeconds(), BASE_SECONDS);
+      tuple = next(iterator);
+      assertEquals(tuple.getType(), MessageType.BEGIN_WINDOW);
+      assertEquals(tuple.getWindowId(), 60);
+
+      assertTrue(iterator.fastForward(BASE_WINDOW_ID | 89) > 0);
+      assertEquals(next(iterator).getWindowId(), 90);
+    }
+
+    dl.purge(BASE_WINDOW_ID | 99);
+    try (DataList.DataListIterator iterator = dl.newIterator(0)) {
+      int count = 0;
+      while (iterator.hasNext()) {
+        SerializedData sd = iterator.next();
+        if (sd.buffer[sd.dataOffset] != MessageType.NO_MESSAGE_VALUE) {
+          assertEquals(sd.buffer[sd.dataOffset], MessageType.RESET_WINDOW_VALUE);
+          count++;
+        }
+      }
+      assertEquals(count, 1);
+    }
+  }
+
+  /**
+   * Fills the rest of the last block with one payload tuple, so that the publisher moves on to the next block.
+   */
+  private static void fillBlock(DataList dl)
+  {
+    byte[] buffer = dl.getBuffer(BASE_WINDOW_ID);
+    int remaining = buffer.length - dl.getPosition();
+    int size = 1;
+    while (VarInt.getSize(remaining - size) != size) {
+      size++;
+    }
+    assertEquals(write(buffer, dl.getPosition(), PayloadTuple.getSerializedTuple(0, remaining - size - 5)),
+        buffer.length);
+    dl.flush(buffer.length);
+  }
+
+  @Test
+  public void testPurgedBlocksReturnToPool()
+  {
+    BlockPool pool = new BlockPool(1024, 4 * 1024);
+    DataList dl = new DataList("test", pool, 8, true);
+    dl.setAutoFlushExecutor(executor);
+    publish(dl, 5);
+    fillBlock(dl);
+
+    byte[] buffer = dl.newBuffer(0);
+    dl.addBuffer(buffer);
+    assertEquals(pool.getBlocksInUse(), 2);
+    dl.flush(write(buffer, 0, BeginWindowTuple.getSerializedTuple(5)));
+
+    dl.purge(BASE_WINDOW_ID | 4);
+    assertEquals(pool.getBlocksInUse(), 1);
+    assertEquals(pool.getFreeBlocks(), 1);
+
+    byte[] reused = dl.newBuffer(0);
+    assertEquals(pool.getReusedBlocks(), 1);
+    assertEquals(pool.getAllocatedBlocks(), 2);
+    pool.release(reused);
+
+    try (DataList.DataListIterator iterator = dl.newIterator(0)) {
+      Tuple tuple = next(iterator);
+      assertEquals(tuple.getType(), MessageType.BEGIN_WINDOW);
+      assertEquals(tuple.getWindowId(), 5);
+    }
+  }
+
+  @Test
+  public void testPartitionIndex() throws Exception
+  {
+    DataList dl = new DataList("test", 64 * 1024, 8, true);
+    dl.setAutoFlushExecutor(executor);
+    dl.setPartitionIndexEnabled(true);
+    LogicalNode ln = new LogicalNode("subscriber", "test", "type", dl.newIterator(0), 0, null);
+    ln.addPartition(1, 3);
+    dl.addDataListener(ln);
+    publish(dl, 100);
+
+    int payloads = 0;
+    int windows = 0;
+    try (DataList.DataListIterator iterator = dl.newIterator(0)) {
+      iterator.setPartitionFilter(new PartitionBitmap(Collections.singleton(1), 3));
+      while (iterator.hasNext()) {
+        Tuple tuple = next(iterator);
+        if (tuple.getType() == MessageType.PAYLOAD) {
+          assertEquals(tuple.getPartition(), 1);
+          payloads++;
+        } else if (tuple.getType() == MessageType.END_WINDOW) {
+          windows++;
+        }
+      }
+      /* payload tuples 1, 5 and 9 of each window are in partition 1 */
+      assertEquals(payloads, 300);
+      assertEquals(windows, 100);
+      assertEquals(iterator.getSkippedTuples(), 700);
+    }
+
+    long timeout = System.currentTimeMillis() + 10000;
+    DataList.Status status = dl.getStatus();
+    while (status.numTuplesSkipped < 700 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+      status = dl.getStatus();
+    }
+    assertEquals(status.numTuplesSkipped, 700);
+    assertEquals(status.numBytesSkipped, 700 * (1 + PayloadTuple.getSerializedTuple(0, 8).length));
+  }
+
+  @Test
+  public void testPartitionIndexWithoutPartitionedSubscriber()
+  {
+    DataList dl = new DataList("test", 64 * 1024, 8, true);
+    dl.setAutoFlushExecutor(executor);
+    dl.setPartitionIndexEnabled(true);
+    publish(dl, 10);
+
+    try (DataList.DataListIterator iterator = dl.newIterator(0)) {
+      iterator.setPartitionFilter(new PartitionBitmap(Collections.singleton(1), 3));
+      int payloads = 0;
+      while (iterator.hasNext()) {
+        if (next(iterator).getType() == MessageType.PAYLOAD) {
+          payloads++;
+        }
+      }
+      /* the data flushed without a partitioned subscriber is not indexed and all of it is returned */
+      assertEquals(payloads, 100);
+      assertEquals(iterator.getSkippedTuples(), 0);
+    }
+  }
+
+  /**
+   * Client which drops the data it is asked to write instead of writing it to a socket.
+   */
+  private static class DrainingClient extends WriteOnlyLengthPrependerClient
+  {
+    PhysicalNode physicalNode;
+    DataList dataList;
+    ByteArrayOutputStream written;
+
+    DrainingClient()
+    {
+      super(64 * 1024, 1024);
+    }
+
+    @Override
+    public boolean resumeWriteIfSuspended()
+    {
+      return true;
+    }
+
+    @Override
+    protected int channelWrite()
+    {
+      writeBuffer.flip();
+      final int written = writeBuffer.remaining();
+      if (this.written != null) {
+        byte[] bytes = new byte[written];
+        writeBuffer.get(bytes);
+        this.written.write(bytes, 0, written);
+      }
+      writeBuffer.clear();
+      if (written > 0 && physicalNode.acknowledge(written)) {
+        dataList.notifyListeners();
+      }
+      return written;
+    }
+  }
+
+  @Test
+  public void testSpooledBlockIsReusedOnlyOnceWritten() throws Exception
+  {
+    BlockPool pool = new BlockPool(1024, 4 * 1024);
+    DataList dl = new DataList("test", pool, 2, true);
+    dl.setAutoFlushExecutor(executor);
+    ExecutorService storageExecutor = Executors.newSingleThreadExecutor();
+    MemoryStorage storage = new MemoryStorage();
+    dl.setSecondaryStorage(storage, storageExecutor);
+    try {
+      LogicalNode ln = new LogicalNode("subscriber", "test", "type", dl.newIterator(0), 0, null);
+      DrainingClient client = new DrainingClient();
+      client.dataList = dl;
+      client.written = new ByteArrayOutputStream();
+      client.physicalNode = ln.addConnection(client, 0);
+      dl.addDataListener(ln);
+
+      publish(dl, 5);
+      byte[] block = dl.getBuffer(BASE_WINDOW_ID);
+      fillBlock(dl);
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      expected.write(block);
+
+      byte[] buffer = dl.newBuffer(0);
+      dl.addBuffer(buffer);
+      byte[] beginWindow = BeginWindowTuple.getSerializedTuple(5);
+      dl.flush(write(buffer, 0, beginWindow));
+      byte[] length = new byte[5];
+      expected.write(length, 0, VarInt.write(beginWindow.length, length, 0));
+      expected.write(beginWindow);
+
+      /* the subscriber does not write to its socket while the block it left is spooled */
+      long timeout = System.currentTimeMillis() + 10000;
+      while (dl.getNumberOfInMemBlocks() > 1 && System.currentTimeMillis() < timeout) {
+        Thread.sleep(10);
+      }
+      assertEquals(dl.getNumberOfInMemBlocks(), 1);
+      assertEquals(storage.blocks.size(), 1);
+      assertEquals(pool.getFreeBlocks(), 0);
+
+      /* the publisher gets a different block and overwrites it */
+      byte[] next = dl.newBuffer(0);
+      assertNotSame(next, block);
+      Arrays.fill(next, (byte)0x55);
+
+      while (client.written.size() < expected.size() && System.currentTimeMillis() < timeout) {
+        client.write();
+        Thread.sleep(1);
+      }
+      assertEquals(client.written.toByteArray(), expected.toByteArray());
+
+      /* once the subscriber wrote the data the block is reused */
+      assertSame(dl.newBuffer(0), block);
+    } finally {
+      storageExecutor.shutdownNow();
+    }
+  }
+
+  private static class MemoryStorage implements Storage
+  {
+    final Map<Integer, byte[]> blocks = new ConcurrentHashMap<>();
+    int uniqueIdentifier;
+
+    @Override
+    public Storage getInstance()
+    {
+      return this;
+    }
+
+    @Override
+    public int store(String identifier, byte[] bytes, int start, int end)
+    {
+      blocks.put(++uniqueIdentifier, Arrays.copyOfRange(bytes, start, end));
+      return uniqueIdentifier;
+    }
+
+    @Override
+    public byte[] retrieve(String identifier, int uniqueIdentifier)
+    {
+      return blocks.get(uniqueIdentifier);
+    }
+
+    @Override
+    public void discard(String identifier, int uniqueIdentifier)
+    {
+      blocks.remove(uniqueIdentifier);
+    }
+  }
+
+  @Test
+  public void testCreditWindowAndConsumerLag() throws Exception
+  {
+    DataList dl = new DataList("test", 64 * 1024, 8, true);
+    dl.setAutoFlushExecutor(executor);
+    dl.setMaxConsumerLag(1024);
+    LogicalNode ln = new LogicalNode("subscriber", "test", "type", dl.newIterator(0), 0, null);
+    DrainingClient client = new DrainingClient();
+    client.dataList = dl;
+    client.physicalNode = ln.addConnection(client, 512);
+    dl.addDataListener(ln);
+    publish(dl, 100);
+
+    /* the subscriber stops once its credit is used up and falls behind the publisher */
+    long timeout = System.currentTimeMillis() + 10000;
+    while (!dl.isConsumerLagExceeded() && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertTrue(dl.isConsumerLagExceeded());
+    assertTrue(client.physicalNode.getInFlightBytes() >= 512);
+    assertEquals(client.physicalNode.getCredit(), 0);
+    DataList.Status status = dl.getStatus();
+    assertEquals(status.numBytesInFlight, client.physicalNode.getInFlightBytes());
+    assertEquals(status.minCredit, 0);
+    assertTrue(status.consumerLagBytes > 1024);
+
+    /* the subscriber catches up as the data in flight is written out */
+    while (dl.getConsumerLag() > 0 && System.currentTimeMillis() < timeout) {
+      client.write();
+      Thread.sleep(1);
+    }
+    assertEquals(dl.getConsumerLag(), 0);
+    assertFalse(dl.isConsumerLagExceeded());
+  }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.util.VarInt;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MemoryBudgetTest
+{
+  private ExecutorService executor;
+
+  @BeforeMethod
+  public void setup()
+  {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterMethod
+  public void teardown()
+  {
+    executor.shutdownNow();
+  }
+
+  private DataList newDataList(String identifier)
+  {
+    DataList dl = new DataList(identifier, 64 * 1024, 8, true);
+    dl.setAutoFlushExecutor(executor);
+    return dl;
+  }
+
+  private static void publish(DataList dl, int tuples)
+  {
+    byte[] buffer = dl.getBuffer(0);
+    int offset = dl.getPosition();
+    byte[] tuple = BeginWindowTuple.getSerializedTuple(0);
+    offset = VarInt.write(tuple.length, buffer, offset);
+    System.arraycopy(tuple, 0, buffer, offset, tuple.length);
+    offset += tuple.length;
+    for (int i = 0; i < tuples; i++) {
+      tuple = PayloadTuple.getSerializedTuple(0, 64);
+      offset = VarInt.write(tuple.length, buffer, offset);
+      System.arraycopy(tuple, 0, buffer, offset, tuple.length);
+      offset += tuple.length;
+    }
+    dl.flush(offset);
+  }
+
+  @Test
+  public void testFairShare()
+  {
+    MemoryBudget budget = new MemoryBudget(8);
+    DataList first = newDataList("first");
+    budget.register(first);
+    assertEquals(first.getNumberOfCacheBlocks(), 8);
+
+    DataList second = newDataList("second");
+    budget.register(second);
+    assertEquals(first.getNumberOfCacheBlocks(), 4);
+    assertEquals(second.getNumberOfCacheBlocks(), 4);
+    assertEquals(budget.getNumberOfInMemBlocks(), 2);
+    assertEquals(budget.getFreeBlocks(), 6);
+
+    budget.unregister(second);
+    assertEquals(first.getNumberOfCacheBlocks(), 8);
+    assertEquals(budget.getAllocation().size(), 1);
+  }
+
+  @Test
+  public void testBusyDataListGetsIdleBlocks()
+  {
+    MemoryBudget budget = new MemoryBudget(8);
+    DataList busy = newDataList("busy");
+    DataList idle = newDataList("idle");
+    budget.register(busy);
+    budget.register(idle);
+
+    publish(busy, 100);
+    budget.rebalance();
+    assertEquals(busy.getNumberOfCacheBlocks(), 6);
+    assertEquals(idle.getNumberOfCacheBlocks(), 2);
+    assertEquals((int)budget.getAllocation().get("busy"), 6);
+    assertEquals(busy.getStatus().numCacheBlocks, 6);
+    assertEquals(busy.getStatus().numInMemBlocks, 1);
+
+    /* the idle data list keeps to its share, the blocks the busy data list does not use yet are held back for it */
+    assertEquals(idle.getNumberOfInMemBlockPermits(), 1);
+    assertTrue(idle.isMemoryBlockAvailable());
+    assertEquals(busy.getNumberOfInMemBlockPermits(), 5);
+  }
+
+  @Test
+  public void testMinimumShare()
+  {
+    MemoryBudget budget = new MemoryBudget(4);
+    DataList[] dataLists = new DataList[3];
+    for (int i = 0; i < dataLists.length; i++) {
+      dataLists[i] = newDataList("dl" + i);
+      budget.register(dataLists[i]);
+    }
+    for (DataList dl : dataLists) {
+      assertEquals(dl.getNumberOfCacheBlocks(), MemoryBudget.MINIMUM_NUMBER_OF_BLOCKS);
+    }
+  }
+}
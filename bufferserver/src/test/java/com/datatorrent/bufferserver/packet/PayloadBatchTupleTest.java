@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+import org.testng.annotations.Test;
+
+import com.datatorrent.netlet.util.Slice;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ *
+ */
+public class PayloadBatchTupleTest
+{
+  @Test
+  public void testGetSerializedTuple()
+  {
+    byte[] large = new byte[300];
+    large[299] = 7;
+    byte[] serial = PayloadBatchTuple.getSerializedTuple(0x12345678, new Slice(new byte[] {1, 2}),
+        new Slice(new byte[0]), new Slice(large));
+    Tuple tuple = Tuple.getTuple(serial, 0, serial.length);
+
+    assertEquals(tuple.getType(), MessageType.PAYLOAD_BATCH, "type");
+    assertEquals(tuple.getPartition(), 0x12345678, "partition");
+    assertEquals(PayloadTuple.getPartition(serial, 0), 0x12345678, "partition read like a payload");
+    assertEquals(((PayloadBatchTuple)tuple).getCount(), 3, "count");
+    assertEquals(tuple.getData().length, 1 + 2 + 1 + 2 + 300, "length of the payloads");
+  }
+}
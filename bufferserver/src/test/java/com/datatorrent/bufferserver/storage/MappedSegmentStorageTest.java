@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MappedSegmentStorageTest
+{
+  private File directory;
+
+  @BeforeMethod
+  public void setup()
+  {
+    directory = Files.createTempDir();
+  }
+
+  @AfterMethod
+  public void teardown()
+  {
+    delete(directory);
+  }
+
+  private static void delete(File file)
+  {
+    if (file.isDirectory()) {
+      for (File child : file.listFiles()) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private static byte[] getBlock(int size, int seed)
+  {
+    byte[] block = new byte[size];
+    for (int i = 0; i < size; i++) {
+      block[i] = (byte)(seed + i);
+    }
+    return block;
+  }
+
+  @Test
+  public void testStoreRetrieve()
+  {
+    MappedSegmentStorage storage = new MappedSegmentStorage(directory.getPath(), 1024);
+
+    byte[] first = getBlock(400, 1);
+    byte[] second = getBlock(400, 2);
+    int firstId = storage.store("1.out", first, 0, first.length);
+    int secondId = storage.store("2.out", second, 100, second.length);
+    assertTrue(firstId > 0);
+    assertTrue(secondId > 0);
+
+    assertEquals(storage.retrieve("1.out", firstId), first);
+    assertEquals(storage.retrieve("2.out", secondId), Arrays.copyOfRange(second, 100, second.length));
+
+    ByteBuffer view = storage.retrieveBuffer("1.out", firstId);
+    assertEquals(view.remaining(), first.length);
+    assertTrue(view.isReadOnly());
+    for (byte b : first) {
+      assertEquals(view.get(), b);
+    }
+    assertEquals(storage.getSegmentCount(), 1);
+  }
+
+  @Test
+  public void testSegmentReclaim()
+  {
+    MappedSegmentStorage storage = new MappedSegmentStorage(directory.getPath(), 1024);
+
+    int[] ids = new int[6];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = storage.store("1.out", getBlock(500, i), 0, 500);
+    }
+    /* two blocks fit into a segment */
+    assertEquals(storage.getSegmentCount(), 3);
+    assertEquals(directory.listFiles().length, 3);
+
+    /* the first segment is kept as a spare and the second one is deleted once drained */
+    for (int i = 0; i < 4; i++) {
+      storage.discard("1.out", ids[i]);
+    }
+    assertEquals(storage.getSegmentCount(), 2);
+    assertEquals(directory.listFiles().length, 2);
+
+    for (int i = 4; i < ids.length; i++) {
+      assertEquals(storage.retrieve("1.out", ids[i]), getBlock(500, i));
+    }
+
+    /* the spare segment is recycled instead of creating a new file */
+    int id = storage.store("1.out", getBlock(600, 7), 0, 600);
+    assertEquals(storage.getSegmentCount(), 2);
+    assertEquals(storage.retrieve("1.out", id), getBlock(600, 7));
+  }
+
+  @Test
+  public void testClose()
+  {
+    MappedSegmentStorage storage = new MappedSegmentStorage(directory.getPath(), 1024);
+    for (int i = 0; i < 3; i++) {
+      storage.store("1.out", getBlock(500, i), 0, 500);
+    }
+    assertEquals(directory.listFiles().length, 2);
+
+    storage.close();
+    assertEquals(storage.getSegmentCount(), 0);
+    assertEquals(directory.listFiles().length, 0);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void testStoreAfterClose()
+  {
+    MappedSegmentStorage storage = new MappedSegmentStorage(directory.getPath(), 1024);
+    storage.close();
+    storage.store("1.out", getBlock(10, 0), 0, 10);
+  }
+
+  @Test
+  public void testOversizedBlock()
+  {
+    MappedSegmentStorage storage = new MappedSegmentStorage(directory.getPath(), 1024);
+
+    byte[] block = getBlock(4000, 3);
+    int id = storage.store("1.out", block, 0, block.length);
+    assertEquals(storage.retrieve("1.out", id), block);
+
+    storage.discard("1.out", id);
+    assertEquals(storage.getSegmentCount(), 1);
+  }
+
+  @Test(expectedExceptions = RuntimeException.class)
+  public void testDiscardUnknownBlock()
+  {
+    MappedSegmentStorage storage = new MappedSegmentStorage(directory.getPath(), 1024);
+    int id = storage.store("1.out", getBlock(10, 0), 0, 10);
+    storage.discard("2.out", id);
+  }
+
+  /**
+   * Spools and unspools blocks through {@link MappedSegmentStorage} and {@link DiskStorage} alike, interleaving the
+   * blocks of two identifiers, and checks that every block comes back as it was stored. The throughput of both
+   * storages is compared by StorageBenchmark in the benchmark module.
+   */
+  @Test
+  public void testSpoolUnspool()
+  {
+    final int blockSize = 64 * 1024;
+    testSpoolUnspool(new DiskStorage(directory.getPath()), blockSize);
+    MappedSegmentStorage segmentStorage = new MappedSegmentStorage(directory.getPath(), 4 * blockSize);
+    testSpoolUnspool(segmentStorage, blockSize);
+    /* the segment being written and the spare one are kept once all the blocks are discarded */
+    assertEquals(segmentStorage.getSegmentCount(), 2);
+  }
+
+  private static void testSpoolUnspool(Storage storage, int blockSize)
+  {
+    final int blockCount = 32;
+    final int[] ids = new int[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      ids[i] = storage.store(i % 2 == 0 ? "1.out" : "2.out", getBlock(blockSize, i), 0, blockSize);
+    }
+    for (int i = 0; i < blockCount; i++) {
+      String identifier = i % 2 == 0 ? "1.out" : "2.out";
+      assertEquals(storage.retrieve(identifier, ids[i]), getBlock(blockSize, i), storage + " block " + i);
+      storage.discard(identifier, ids[i]);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class PartitionBitmapTest
+{
+  @Test
+  public void testBitmap()
+  {
+    PartitionBitmap bitmap = new PartitionBitmap(Arrays.asList(1, 3), 0x3);
+    assertFalse(bitmap.isEmpty());
+    for (int partition = -100; partition < 100; partition++) {
+      assertEquals(bitmap.matches(partition), (partition & 0x3) == 1 || (partition & 0x3) == 3, "partition " + partition);
+    }
+  }
+
+  @Test
+  public void testMasks()
+  {
+    PartitionBitmap bitmap = new PartitionBitmap();
+    assertTrue(bitmap.isEmpty());
+    assertFalse(bitmap.matches(0));
+
+    bitmap.add(2, 0x7);
+    bitmap.add(0x10000, 0xf0000);
+    bitmap.add(0x70000000, 0x70000000);
+    bitmap.add(0x30000, 0xf0000);
+    for (int partition : new int[] {2, 10, 0x10000, 0x30005, 0x70000000, -1}) {
+      assertTrue(bitmap.matches(partition), "partition " + partition);
+    }
+    for (int partition : new int[] {0, 3, 0x20000, 0x60000000}) {
+      assertFalse(bitmap.matches(partition), "partition " + partition);
+    }
+  }
+
+  @Test
+  public void testPayloadPartition()
+  {
+    for (int partition : new int[] {0, 1, 0x7f, 0x80, 0x12345678, -1, Integer.MIN_VALUE}) {
+      byte[] array = PayloadTuple.getSerializedTuple(partition, 3);
+      assertEquals(PayloadTuple.getPartition(array, 0), partition);
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package com.datatorrent.common.metric;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -26,10 +27,8 @@ import java.util.Map;
 import javax.validation.constraints.NotNull;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 
 import com.datatorrent.api.AutoMetric;
 import com.datatorrent.api.annotation.Name;
@@ -63,23 +62,63 @@ public class MetricsAggregator implements AutoMetric.Aggregator, Serializable
   @Override
   public Map<String, Object> aggregate(long windowId, Collection<AutoMetric.PhysicalMetricsContext> physicalMetrics)
   {
-    Multimap<String, Object> metricValues = ArrayListMultimap.create();
-
+    List<Map<String, Object>> physicalValues = Lists.newArrayListWithCapacity(physicalMetrics.size());
     for (AutoMetric.PhysicalMetricsContext pmCtx : physicalMetrics) {
-      for (Map.Entry<String, Object> entry : pmCtx.getMetrics().entrySet()) {
-        metricValues.put(entry.getKey(), entry.getValue());
-      }
+      physicalValues.add(pmCtx.getMetrics());
     }
 
+    // the values of one metric across the physical operators
+    Object[] column = new Object[physicalValues.size()];
+    long[] longColumn = null;
+    double[] doubleColumn = null;
+
     Map<String, Object> aggregates = Maps.newHashMap();
-    for (String metric : metricValues.keySet()) {
-      List<LogicalMetricMeta> logicalMetricMetas = metricLogicalAggregates.get(metric);
-      if (logicalMetricMetas != null) {
-        for (LogicalMetricMeta logicalMetricMeta : logicalMetricMetas) {
+    for (Map.Entry<String, List<LogicalMetricMeta>> entry : metricLogicalAggregates.entrySet()) {
+      String metric = entry.getKey();
+      int length = 0;
+      boolean numbers = true;
+      for (Map<String, Object> values : physicalValues) {
+        Object value = values.get(metric);
+        if (value != null || values.containsKey(metric)) {
+          numbers &= value instanceof Number;
+          column[length++] = value;
+        }
+      }
+      if (length == 0) {
+        continue;
+      }
 
-          Object aggregatedVal = logicalMetricMeta.aggregator.aggregate(metricValues.get(metric));
-          aggregates.put(logicalMetricMeta.name, aggregatedVal);
+      boolean longsFilled = false;
+      boolean doublesFilled = false;
+      for (LogicalMetricMeta logicalMetricMeta : entry.getValue()) {
+        SingleMetricAggregator aggregator = logicalMetricMeta.aggregator;
+        Object aggregatedVal;
+        if (numbers && aggregator instanceof LongMetricAggregator) {
+          if (!longsFilled) {
+            if (longColumn == null) {
+              longColumn = new long[column.length];
+            }
+            for (int i = 0; i < length; i++) {
+              longColumn[i] = ((Number)column[i]).longValue();
+            }
+            longsFilled = true;
+          }
+          aggregatedVal = ((LongMetricAggregator)aggregator).aggregate(longColumn, length);
+        } else if (numbers && aggregator instanceof DoubleMetricAggregator) {
+          if (!doublesFilled) {
+            if (doubleColumn == null) {
+              doubleColumn = new double[column.length];
+            }
+            for (int i = 0; i < length; i++) {
+              doubleColumn[i] = ((Number)column[i]).doubleValue();
+            }
+            doublesFilled = true;
+          }
+          aggregatedVal = ((DoubleMetricAggregator)aggregator).aggregate(doubleColumn, length);
+        } else {
+          aggregatedVal = aggregator.aggregate(Lists.newArrayList(Arrays.asList(column).subList(0, length)));
         }
+        aggregates.put(logicalMetricMeta.name, aggregatedVal);
       }
     }
     return aggregates;
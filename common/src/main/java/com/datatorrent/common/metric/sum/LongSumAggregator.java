@@ -23,7 +23,7 @@ import java.util.Collection;
 
 import com.datatorrent.api.annotation.Name;
 
-import com.datatorrent.common.metric.SingleMetricAggregator;
+import com.datatorrent.common.metric.LongMetricAggregator;
 
 /**
  * <p>LongSumAggregator class.</p>
@@ -31,7 +31,7 @@ import com.datatorrent.common.metric.SingleMetricAggregator;
  * @since 3.2.0
  */
 @Name("sum")
-public class LongSumAggregator implements SingleMetricAggregator, Serializable
+public class LongSumAggregator implements LongMetricAggregator, Serializable
 {
   @Override
   public Object aggregate(Collection<Object> metricValues)
@@ -43,6 +43,16 @@ public class LongSumAggregator implements SingleMetricAggregator, Serializable
     return sum;
   }
 
+  @Override
+  public long aggregate(long[] values, int length)
+  {
+    long sum = 0;
+    for (int i = 0; i < length; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
   private static final long serialVersionUID = 201504081002L;
 
 }
@@ -19,13 +19,22 @@
 package com.datatorrent.common.util;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectStreamException;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,15 +43,24 @@ import org.apache.apex.common.util.AsyncStorageAgent;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CreateFlag;
 import org.apache.hadoop.fs.FSDataOutputStream;
-import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Options;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IOUtils;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import com.datatorrent.api.Stats;
 
 /**
  * <p>AsyncFSStorageAgent class.</p>
+ * <p>
+ * The state saved at the checkpoint is written to a local file until it is uploaded when the checkpoint is flushed.
+ * With {@link #setMaxBufferedBytes(long)} the states up to that size are kept in memory instead, which is to be
+ * budgeted in the container memory of every operator that checkpoints with this agent. A state larger than
+ * {@link #setPartSize(long)} is uploaded as a directory of parts which are written concurrently on the executor set
+ * with {@link #setUploadExecutor(ExecutorService)}, and each part can be deflated on the way with
+ * {@link #setCompressed(boolean)}.
  *
  * @since 3.1.0
  */
@@ -50,8 +68,15 @@ public class AsyncFSStorageAgent extends FSStorageAgent implements AsyncStorageA
 {
   private final transient Configuration conf;
   private transient volatile String localBasePath;
+  private final transient ConcurrentHashMap<Pair<Integer, Long>, CheckpointBuffer> checkpoints = new ConcurrentHashMap<>();
+  private final transient ConcurrentHashMap<Pair<Integer, Long>, Stats.CheckpointStats> uploadStats =
+      new ConcurrentHashMap<>();
+  private transient ExecutorService uploadExecutor;
 
   private boolean syncCheckpoint = false;
+  private boolean compressed = false;
+  private long partSize = 64 * 1024 * 1024;
+  private long maxBufferedBytes = 0;
 
   @SuppressWarnings("unused")
   private AsyncFSStorageAgent()
@@ -92,68 +117,189 @@ public class AsyncFSStorageAgent extends FSStorageAgent implements AsyncStorageA
         }
       }
     }
-    String operatorIdStr = String.valueOf(operatorId);
-    File directory = new File(localBasePath, operatorIdStr);
-    if (!directory.exists()) {
-      directory.mkdirs();
+    long start = System.currentTimeMillis();
+    File spillFile = new File(new File(localBasePath, String.valueOf(operatorId)), String.valueOf(windowId));
+    CheckpointBuffer buffer = new CheckpointBuffer(maxBufferedBytes, spillFile);
+    try {
+      store(buffer, object);
+      buffer.close();
+    } catch (Throwable t) {
+      buffer.release();
+      throw Throwables.propagate(t);
     }
-    try (FileOutputStream stream = new FileOutputStream(new File(directory, String.valueOf(windowId)))) {
-      store(stream, object);
+    buffer.serializationTime = System.currentTimeMillis() - start;
+    CheckpointBuffer previous = checkpoints.put(new Pair<>(operatorId, windowId), buffer);
+    if (previous != null) {
+      previous.release();
     }
   }
 
   public void copyToHDFS(final int operatorId, final long windowId) throws IOException
   {
-    if (this.localBasePath == null) {
+    final Pair<Integer, Long> key = new Pair<>(operatorId, windowId);
+    final Stats.CheckpointStats stats = uploadStats.remove(key);
+    final CheckpointBuffer buffer = checkpoints.remove(key);
+    if (buffer == null) {
       throw new AssertionError("save() was not called before copyToHDFS");
     }
     String operatorIdStr = String.valueOf(operatorId);
-    File directory = new File(localBasePath, operatorIdStr);
     String window = Long.toHexString(windowId);
-    Path lPath = new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + TMP_FILE);
-    File srcFile = new File(directory, String.valueOf(windowId));
-    FSDataOutputStream stream = null;
+    Path lPath = new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + TMP_FILE + '.' + window);
+    Path windowPath = new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + window);
+    long start = System.currentTimeMillis();
+    long uploadedBytes = 0;
     boolean stateSaved = false;
     try {
-      // Create the temporary file with OverWrite option to avoid dangling lease issue and avoid exception if file already exists
-      stream = fileContext.create(lPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE), Options.CreateOpts.CreateParent.createParent());
-      InputStream in = null;
-      try {
-        in = new FileInputStream(srcFile);
-        IOUtils.copyBytes(in, stream, conf, false);
-      } finally {
-        IOUtils.closeStream(in);
+      final long size = buffer.size();
+      if (size <= partSize) {
+        uploadedBytes = uploadPart(buffer, 0, size, lPath);
+      } else {
+        uploadedBytes = uploadParts(buffer, size, lPath);
+        if (fileContext.util().exists(windowPath)) {
+          fileContext.delete(windowPath, true);
+        }
       }
+      fileContext.rename(lPath, windowPath, Options.Rename.OVERWRITE);
       stateSaved = true;
     } catch (Throwable t) {
       logger.debug("while saving {} {}", operatorId, window, t);
-      stateSaved = false;
       throw Throwables.propagate(t);
     } finally {
-      try {
-        if (stream != null) {
-          stream.close();
+      buffer.release();
+      if (!stateSaved) {
+        fileContext.delete(lPath, true);
+      }
+    }
+
+    if (stats != null) {
+      stats.checkpointSize = buffer.size();
+      stats.uploadedBytes = uploadedBytes;
+      stats.serializationTime = buffer.serializationTime;
+      stats.uploadTime = System.currentTimeMillis() - start;
+    }
+    logger.debug("Uploaded {} bytes of the {} bytes of {}: {} in {}ms{}", uploadedBytes, buffer.size(), operatorId,
+        window, System.currentTimeMillis() - start, buffer.isSpilled() ? " from the local file" : "");
+  }
+
+  /**
+   * Uploads the parts of a large state into the given directory, the first part on the calling thread and the others
+   * on the upload executor. The parts the executor did not get to yet are uploaded on the calling thread too, so the
+   * upload completes even when all the threads of the executor are busy uploading other checkpoints. When a part
+   * fails, the uploads still running are interrupted and waited for, so none of them writes into the directory or
+   * reads the buffer after this method returns.
+   */
+  private long uploadParts(final CheckpointBuffer buffer, final long size, final Path directory)
+      throws IOException, InterruptedException
+  {
+    final int count = (int)((size + partSize - 1) / partSize);
+    final CountDownLatch finished = new CountDownLatch(count);
+    List<FutureTask<Long>> parts = new ArrayList<>(count);
+    int part = 0;
+    for (long offset = 0; offset < size; offset += partSize) {
+      final long partOffset = offset;
+      final long length = Math.min(partSize, size - offset);
+      final Path partPath = new Path(directory, String.valueOf(part++));
+      FutureTask<Long> task = new FutureTask<>(new Callable<Long>()
+      {
+        @Override
+        public Long call() throws Exception
+        {
+          try {
+            return uploadPart(buffer, partOffset, length, partPath);
+          } finally {
+            finished.countDown();
+          }
+        }
+      });
+      parts.add(task);
+      if (offset > 0 && uploadExecutor != null) {
+        uploadExecutor.submit(task);
+      }
+    }
+
+    long uploadedBytes = 0;
+    boolean uploaded = false;
+    try {
+      /* every part is started once this loop is done, either here or on the executor */
+      for (FutureTask<Long> task : parts) {
+        task.run();
+      }
+      for (FutureTask<Long> task : parts) {
+        uploadedBytes += task.get();
+      }
+      uploaded = true;
+    } catch (ExecutionException ex) {
+      Throwables.propagateIfPossible(ex.getCause(), IOException.class);
+      throw Throwables.propagate(ex.getCause());
+    } finally {
+      if (!uploaded) {
+        for (FutureTask<Long> task : parts) {
+          task.cancel(true);
         }
-      } catch (IOException ie) {
-        stateSaved = false;
-        throw new RuntimeException(ie);
-      } finally {
-        if (stateSaved) {
-          fileContext.rename(lPath, new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + window), Options.Rename.OVERWRITE);
+        Uninterruptibles.awaitUninterruptibly(finished);
+      }
+    }
+    return uploadedBytes;
+  }
+
+  private long uploadPart(CheckpointBuffer buffer, long offset, long length, Path lPath) throws IOException
+  {
+    // Create the file with OverWrite option to avoid dangling lease issue and avoid exception if file already exists
+    FSDataOutputStream stream = fileContext.create(lPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+        Options.CreateOpts.CreateParent.createParent());
+    long written;
+    try (InputStream in = buffer.newInputStream(offset, length)) {
+      if (compressed) {
+        stream.write(DEFLATED_MAGIC);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+          DeflaterOutputStream out = new DeflaterOutputStream(stream, deflater, 64 * 1024);
+          IOUtils.copyBytes(in, out, conf, false);
+          out.finish();
+        } finally {
+          deflater.end();
         }
-        FileUtil.fullyDelete(srcFile);
+      } else {
+        IOUtils.copyBytes(in, (OutputStream)stream, conf, false);
       }
+      written = stream.getPos();
+    } finally {
+      stream.close();
     }
+    return written;
   }
 
   @Override
   public void flush(int operatorId, long windowId) throws IOException
+  {
+    flush(operatorId, windowId, null);
+  }
+
+  /**
+   * Uploads the checkpoint and records the sizes and the time it took in the given stats.
+   *
+   * @param operatorId operator of the checkpoint
+   * @param windowId window of the checkpoint
+   * @param stats stats to record the upload in, may be null
+   * @throws IOException
+   */
+  public void flush(int operatorId, long windowId, Stats.CheckpointStats stats) throws IOException
   {
     // Checkpoint already present in HDFS during save, when syncCheckpoint is true.
     if (isSyncCheckpoint()) {
       return;
     }
-    copyToHDFS(operatorId, windowId);
+    if (stats == null) {
+      copyToHDFS(operatorId, windowId);
+      return;
+    }
+    Pair<Integer, Long> key = new Pair<>(operatorId, windowId);
+    uploadStats.put(key, stats);
+    try {
+      copyToHDFS(operatorId, windowId);
+    } finally {
+      uploadStats.remove(key);
+    }
   }
 
   @Override
@@ -161,6 +307,9 @@ public class AsyncFSStorageAgent extends FSStorageAgent implements AsyncStorageA
   {
     AsyncFSStorageAgent asyncFSStorageAgent = new AsyncFSStorageAgent(this.path, null);
     asyncFSStorageAgent.setSyncCheckpoint(syncCheckpoint);
+    asyncFSStorageAgent.setCompressed(compressed);
+    asyncFSStorageAgent.setPartSize(partSize);
+    asyncFSStorageAgent.setMaxBufferedBytes(maxBufferedBytes);
     return asyncFSStorageAgent;
   }
 
@@ -175,6 +324,58 @@ public class AsyncFSStorageAgent extends FSStorageAgent implements AsyncStorageA
     this.syncCheckpoint = syncCheckpoint;
   }
 
+  public boolean isCompressed()
+  {
+    return compressed;
+  }
+
+  /**
+   * @param compressed whether the checkpoints are deflated with the fastest compression level as they are uploaded
+   */
+  public void setCompressed(boolean compressed)
+  {
+    this.compressed = compressed;
+  }
+
+  public long getPartSize()
+  {
+    return partSize;
+  }
+
+  /**
+   * @param partSize size in bytes above which a checkpoint is uploaded as concurrently written parts of this size
+   */
+  public void setPartSize(long partSize)
+  {
+    if (partSize <= 0) {
+      throw new IllegalArgumentException("Invalid part size " + partSize);
+    }
+    this.partSize = partSize;
+  }
+
+  public long getMaxBufferedBytes()
+  {
+    return maxBufferedBytes;
+  }
+
+  /**
+   * @param maxBufferedBytes number of bytes of a checkpoint kept in memory until it is uploaded, the checkpoints
+   * larger than that are spilled to a local file. Defaults to 0, every checkpoint is written to a local file.
+   */
+  public void setMaxBufferedBytes(long maxBufferedBytes)
+  {
+    this.maxBufferedBytes = maxBufferedBytes;
+  }
+
+  /**
+   * @param uploadExecutor executor the parts of the large checkpoints are uploaded on, null to upload them on the
+   * thread flushing the checkpoint
+   */
+  public void setUploadExecutor(ExecutorService uploadExecutor)
+  {
+    this.uploadExecutor = uploadExecutor;
+  }
+
   private static final long serialVersionUID = 201507241610L;
   private static final Logger logger = LoggerFactory.getLogger(AsyncFSStorageAgent.class);
 }
@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import org.apache.hadoop.fs.FileUtil;
+
+/**
+ * Holds the serialized state of an operator between the checkpoint and its upload. The state is kept in memory in
+ * chunks until it exceeds the configured limit, at which point it is spilled to a local file along with the rest of
+ * it. Any range of the state can be read back, so that the parts of a large state can be uploaded concurrently.
+ *
+ * @since 3.7.0
+ */
+class CheckpointBuffer extends OutputStream
+{
+  private static final int CHUNK_SIZE = 1024 * 1024;
+  private final long maxBufferedBytes;
+  private final File spillFile;
+  private final ArrayList<byte[]> chunks = new ArrayList<>();
+  private byte[] chunk;
+  private int chunkOffset;
+  private OutputStream spill;
+  private long size;
+  long serializationTime;
+
+  /**
+   * @param maxBufferedBytes number of bytes kept in memory before the state is spilled to the file
+   * @param spillFile local file the state is spilled to
+   */
+  CheckpointBuffer(long maxBufferedBytes, File spillFile)
+  {
+    this.maxBufferedBytes = maxBufferedBytes;
+    this.spillFile = spillFile;
+  }
+
+  @Override
+  public void write(int b) throws IOException
+  {
+    write(new byte[] {(byte)b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException
+  {
+    if (spill == null && size + len > maxBufferedBytes) {
+      spill();
+    }
+    size += len;
+    if (spill != null) {
+      spill.write(b, off, len);
+      return;
+    }
+    while (len > 0) {
+      if (chunk == null || chunkOffset == chunk.length) {
+        chunk = new byte[CHUNK_SIZE];
+        chunkOffset = 0;
+        chunks.add(chunk);
+      }
+      int count = Math.min(len, chunk.length - chunkOffset);
+      System.arraycopy(b, off, chunk, chunkOffset, count);
+      chunkOffset += count;
+      off += count;
+      len -= count;
+    }
+  }
+
+  private void spill() throws IOException
+  {
+    File directory = spillFile.getParentFile();
+    if (!directory.exists()) {
+      directory.mkdirs();
+    }
+    spill = new FileOutputStream(spillFile);
+    long remaining = size;
+    for (byte[] c : chunks) {
+      int count = (int)Math.min(remaining, c.length);
+      spill.write(c, 0, count);
+      remaining -= count;
+    }
+    chunks.clear();
+    chunk = null;
+  }
+
+  @Override
+  public void flush() throws IOException
+  {
+    if (spill != null) {
+      spill.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    if (spill != null) {
+      spill.close();
+    }
+  }
+
+  long size()
+  {
+    return size;
+  }
+
+  boolean isSpilled()
+  {
+    return spill != null;
+  }
+
+  /**
+   * Returns a stream over a range of the state. It can be called concurrently once the state is completely written.
+   *
+   * @param offset offset of the first byte of the range
+   * @param length number of bytes in the range
+   * @return stream reading the range
+   * @throws IOException
+   */
+  InputStream newInputStream(final long offset, final long length) throws IOException
+  {
+    if (spill != null) {
+      final FileInputStream in = new FileInputStream(spillFile);
+      in.getChannel().position(offset);
+      return new InputStream()
+      {
+        long remaining = length;
+
+        @Override
+        public int read() throws IOException
+        {
+          if (remaining <= 0) {
+            return -1;
+          }
+          int b = in.read();
+          if (b >= 0) {
+            remaining--;
+          }
+          return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+          if (remaining <= 0) {
+            return -1;
+          }
+          int count = in.read(b, off, (int)Math.min(len, remaining));
+          if (count > 0) {
+            remaining -= count;
+          }
+          return count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+          in.close();
+        }
+      };
+    }
+
+    return new InputStream()
+    {
+      long position = offset;
+      final long end = offset + length;
+
+      @Override
+      public int read() throws IOException
+      {
+        if (position >= end) {
+          return -1;
+        }
+        byte[] c = chunks.get((int)(position / CHUNK_SIZE));
+        return c[(int)(position++ % CHUNK_SIZE)] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException
+      {
+        if (position >= end) {
+          return -1;
+        }
+        byte[] c = chunks.get((int)(position / CHUNK_SIZE));
+        int chunkOffset = (int)(position % CHUNK_SIZE);
+        int count = (int)Math.min(Math.min(len, end - position), CHUNK_SIZE - chunkOffset);
+        System.arraycopy(c, chunkOffset, b, off, count);
+        position += count;
+        return count;
+      }
+    };
+  }
+
+  /**
+   * Frees the memory and deletes the local file holding the state.
+   */
+  void release()
+  {
+    chunks.clear();
+    chunk = null;
+    if (spill != null) {
+      try {
+        spill.close();
+      } catch (IOException ex) {
+        // the file is deleted anyway
+      }
+      FileUtil.fullyDelete(spillFile);
+    }
+  }
+}
@@ -18,16 +18,22 @@
  */
 package com.datatorrent.common.util;
 
+import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectStreamException;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.InflaterInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,10 +65,28 @@ import com.datatorrent.api.annotation.Stateless;
 public class FSStorageAgent implements StorageAgent, Serializable
 {
   public static final String TMP_FILE = "_tmp";
+  /**
+   * Header of the deflated checkpoints. A serialized object never starts with it since the leading zero stands for
+   * a null object, which is not followed by anything.
+   */
+  protected static final byte[] DEFLATED_MAGIC = {0, 'D', 'F', 'L'};
   protected static final String STATELESS_CHECKPOINT_WINDOW_ID = Long.toHexString(Stateless.WINDOW_ID);
   public final String path;
   protected final transient FileContext fileContext;
+  /**
+   * @deprecated no longer used to serialize the checkpoints, each thread uses its own {@link Kryo} instance instead so
+   * that the operators in a container can checkpoint concurrently.
+   */
+  @Deprecated
   protected static final transient Kryo kryo;
+  private static final transient ThreadLocal<Serde> serde = new ThreadLocal<Serde>()
+  {
+    @Override
+    protected Serde initialValue()
+    {
+      return new Serde();
+    }
+  };
 
   static {
     kryo = new Kryo();
@@ -92,13 +116,25 @@ public class FSStorageAgent implements StorageAgent, Serializable
     }
   }
 
-  @SuppressWarnings("ThrowFromFinallyBlock")
   @Override
   public void save(Object object, int operatorId, long windowId) throws IOException
+  {
+    save(object, operatorId, Long.toHexString(windowId));
+  }
+
+  /**
+   * Serializes the object into a temporary file first and renames it to the given name once it is completely written.
+   *
+   * @param object object to save
+   * @param operatorId operator whose directory the file is created in
+   * @param window name of the file
+   * @throws IOException
+   */
+  @SuppressWarnings("ThrowFromFinallyBlock")
+  protected void save(Object object, int operatorId, String window) throws IOException
   {
     String operatorIdStr = String.valueOf(operatorId);
     Path lPath = new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + TMP_FILE);
-    String window = Long.toHexString(windowId);
     boolean stateSaved = false;
     FSDataOutputStream stream = null;
     try {
@@ -131,10 +167,7 @@ public class FSStorageAgent implements StorageAgent, Serializable
   @Override
   public Object load(int operatorId, long windowId) throws IOException
   {
-    Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + Long.toHexString(windowId));
-    logger.debug("Loading: {}", lPath);
-
-    FSDataInputStream stream = fileContext.open(lPath);
+    InputStream stream = open(operatorId, windowId);
     try {
       return retrieve(stream);
     } finally {
@@ -142,13 +175,102 @@ public class FSStorageAgent implements StorageAgent, Serializable
     }
   }
 
+  /**
+   * Opens the checkpoint of an operator for reading without deserializing it, the object is then restored with
+   * {@link #retrieve}. This lets the caller tell the time spent in reading the checkpoint from the time spent in
+   * deserializing it. Subclasses which override {@link #load} need not store the checkpoints in a way this can read.
+   *
+   * @param operatorId id of the operator
+   * @param windowId window id of the checkpoint
+   * @return stream reading the serialized state, inflated if it was deflated
+   * @throws IOException
+   */
+  public InputStream open(int operatorId, long windowId) throws IOException
+  {
+    Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + Long.toHexString(windowId));
+    logger.debug("Loading: {}", lPath);
+    return open(lPath);
+  }
+
+  /**
+   * Opens a checkpoint, which is either a file or a directory of numbered parts to be read in order, and inflates it
+   * if it was deflated.
+   *
+   * @param lPath path of the checkpoint
+   * @return stream reading the serialized state
+   * @throws IOException
+   */
+  protected InputStream open(final Path lPath) throws IOException
+  {
+    if (!fileContext.getFileStatus(lPath).isDirectory()) {
+      return inflate(fileContext.open(lPath), null);
+    }
+
+    final int count = fileContext.util().listStatus(lPath).length;
+    final boolean[] deflated = new boolean[1];
+    return new SequenceInputStream(new Enumeration<InputStream>()
+    {
+      int part;
+
+      @Override
+      public boolean hasMoreElements()
+      {
+        return part < count;
+      }
+
+      @Override
+      public InputStream nextElement()
+      {
+        if (part == count) {
+          throw new NoSuchElementException();
+        }
+        try {
+          /* the first part tells whether the parts are deflated */
+          FSDataInputStream stream = fileContext.open(new Path(lPath, String.valueOf(part)));
+          InputStream in = inflate(stream, part == 0 ? null : deflated[0]);
+          if (part++ == 0) {
+            deflated[0] = in instanceof InflaterInputStream;
+          }
+          return in;
+        } catch (IOException ex) {
+          throw Throwables.propagate(ex);
+        }
+      }
+    });
+  }
+
+  private static InputStream inflate(FSDataInputStream stream, Boolean deflated) throws IOException
+  {
+    if (deflated != null) {
+      if (deflated) {
+        stream.readFully(new byte[DEFLATED_MAGIC.length]);
+        return new InflaterInputStream(stream);
+      }
+      return stream;
+    }
+
+    BufferedInputStream in = new BufferedInputStream(stream, DEFLATED_MAGIC.length);
+    in.mark(DEFLATED_MAGIC.length);
+    byte[] header = new byte[DEFLATED_MAGIC.length];
+    int length = 0;
+    int count;
+    while (length < header.length && (count = in.read(header, length, header.length - length)) > 0) {
+      length += count;
+    }
+    if (length == header.length && Arrays.equals(header, DEFLATED_MAGIC)) {
+      return new InflaterInputStream(in);
+    }
+    in.reset();
+    return in;
+  }
+
   @Override
   public void delete(int operatorId, long windowId) throws IOException
   {
     Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + Long.toHexString(windowId));
     logger.debug("Deleting: {}", lPath);
 
-    fileContext.delete(lPath, false);
+    fileContext.delete(lPath, true);
   }
 
   @Override
@@ -170,7 +292,7 @@ public class FSStorageAgent implements StorageAgent, Serializable
     while (fileStatusRemoteIterator.hasNext()) {
       FileStatus fileStatus = fileStatusRemoteIterator.next();
       String name = fileStatus.getPath().getName();
-      if (name.equals(TMP_FILE)) {
+      if (name.startsWith(TMP_FILE)) {
         continue;
       }
       lwindows.add(STATELESS_CHECKPOINT_WINDOW_ID.equals(name) ? Stateless.WINDOW_ID : Long.parseLong(name, 16));
@@ -184,23 +306,40 @@ public class FSStorageAgent implements StorageAgent, Serializable
 
   public static void store(OutputStream stream, Object operator)
   {
-    synchronized (kryo) {
-      Output output = new Output(4096, Integer.MAX_VALUE);
-      output.setOutputStream(stream);
-      kryo.writeClassAndObject(output, operator);
+    final Serde serde = FSStorageAgent.serde.get();
+    final Output output = serde.output;
+    output.setOutputStream(stream);
+    try {
+      serde.kryo.writeClassAndObject(output, operator);
       output.flush();
+    } finally {
+      output.setOutputStream(null);
     }
   }
 
   public static Object retrieve(InputStream stream)
   {
-    synchronized (kryo) {
-      kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
-      Input input = new Input(stream);
-      return kryo.readClassAndObject(input);
+    final Serde serde = FSStorageAgent.serde.get();
+    final Input input = serde.input;
+    serde.kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    input.setInputStream(stream);
+    try {
+      return serde.kryo.readClassAndObject(input);
+    } finally {
+      input.setInputStream(null);
     }
   }
 
+  /**
+   * Kryo instance along with the buffers it serializes through, confined to a thread.
+   */
+  private static class Serde
+  {
+    final Kryo kryo = new Kryo();
+    final Output output = new Output(4096, Integer.MAX_VALUE);
+    final Input input = new Input(4096);
+  }
+
   public Object readResolve() throws ObjectStreamException
   {
     return new FSStorageAgent(this.path, null);
@@ -0,0 +1,347 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.common.util.IncrementalCheckpointable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.fs.permission.FsPermission;
+
+import com.datatorrent.api.annotation.Stateless;
+
+/**
+ * Storage agent which saves only the changes to the state of {@link IncrementalCheckpointable} operators most of the
+ * time.
+ *
+ * Every {@link #getFullCheckpointInterval()}th checkpoint of such an operator, as well as the first checkpoint after
+ * the operator is deployed, saves the entire operator; the checkpoints in between save the delta returned by the
+ * operator on top of the previous checkpoint. Loading a delta checkpoint loads the full checkpoint the chain starts
+ * from and applies the deltas of the chain to it. Operators which are not incremental are always saved in full.
+ *
+ * Full checkpoints are stored the same way {@link FSStorageAgent} stores them; delta checkpoints are stored in files
+ * named after their window id and the window id of the checkpoint they depend on. A deleted checkpoint that other
+ * checkpoints still depend on is only marked as purged, it is removed when the last checkpoint depending on it is
+ * deleted.
+ *
+ * @since 3.7.0
+ */
+public class IncrementalFSStorageAgent extends FSStorageAgent
+{
+  public static final int DEFAULT_FULL_CHECKPOINT_INTERVAL = 10;
+  private static final char DELTA_SEPARATOR = '-';
+  private static final String PURGED_SUFFIX = ".purged";
+
+  private int fullCheckpointInterval = DEFAULT_FULL_CHECKPOINT_INTERVAL;
+  /**
+   * operator id to the last checkpoint saved for the operator by this agent.
+   */
+  private final transient Map<Integer, Checkpoint> lastCheckpoints = new ConcurrentHashMap<>();
+
+  @SuppressWarnings("unused")
+  private IncrementalFSStorageAgent()
+  {
+    super();
+  }
+
+  public IncrementalFSStorageAgent(String path, Configuration conf)
+  {
+    super(path, conf);
+  }
+
+  @Override
+  public void save(Object object, int operatorId, long windowId) throws IOException
+  {
+    if (!(object instanceof IncrementalCheckpointable)) {
+      super.save(object, operatorId, windowId);
+      return;
+    }
+
+    /* the delta is collected in any case, for a full checkpoint it is just discarded */
+    final Object delta = ((IncrementalCheckpointable)object).getCheckpointDelta();
+    /* the entry is put back only once the checkpoint is saved, so a failed save is followed by a full checkpoint */
+    final Checkpoint last = lastCheckpoints.remove(operatorId);
+    final Checkpoint checkpoint;
+    if (last == null || last.chainLength + 1 >= fullCheckpointInterval || last.windowId >= windowId) {
+      checkpoint = new Checkpoint(windowId);
+      super.save(object, operatorId, checkpoint.getName());
+    } else {
+      checkpoint = new Checkpoint(windowId, last);
+      save(delta, operatorId, checkpoint.getName());
+    }
+    lastCheckpoints.put(operatorId, checkpoint);
+  }
+
+  @Override
+  public Object load(int operatorId, long windowId) throws IOException
+  {
+    /* the state of the operator is rolled back, the next checkpoint can not be a delta on top of the last one */
+    lastCheckpoints.remove(operatorId);
+
+    final Map<Long, Checkpoint> checkpoints = getCheckpoints(operatorId);
+    final List<Checkpoint> chain = new ArrayList<>();
+    Checkpoint checkpoint = checkpoints.get(windowId);
+    while (checkpoint != null && checkpoint.isDelta()) {
+      chain.add(checkpoint);
+      checkpoint = checkpoints.get(checkpoint.baseWindowId);
+    }
+    if (checkpoint == null) {
+      throw new FileNotFoundException("Checkpoint chain of operator " + operatorId + " for window " +
+          Long.toHexString(windowId) + " is incomplete");
+    }
+
+    final Object operator = read(operatorId, checkpoint);
+    for (int i = chain.size(); i-- > 0;) {
+      ((IncrementalCheckpointable)operator).applyCheckpointDelta(read(operatorId, chain.get(i)));
+    }
+    logger.debug("Loaded {} for operator {} applying {} deltas", Long.toHexString(windowId), operatorId, chain.size());
+    return operator;
+  }
+
+  private Object read(int operatorId, Checkpoint checkpoint) throws IOException
+  {
+    try (FSDataInputStream stream = fileContext.open(getPath(operatorId, checkpoint.getFileName()))) {
+      return retrieve(stream);
+    }
+  }
+
+  @Override
+  public void delete(int operatorId, long windowId) throws IOException
+  {
+    final Map<Long, Checkpoint> checkpoints = getCheckpoints(operatorId);
+    final Checkpoint checkpoint = checkpoints.get(windowId);
+    if (checkpoint != null && !checkpoint.purged) {
+      if (hasDependents(checkpoint, checkpoints)) {
+        logger.debug("Marking {} of operator {} as purged", checkpoint.getName(), operatorId);
+        fileContext.rename(getPath(operatorId, checkpoint.getFileName()),
+            getPath(operatorId, checkpoint.getName() + PURGED_SUFFIX), Options.Rename.OVERWRITE);
+        checkpoint.purged = true;
+      } else {
+        delete(operatorId, checkpoint);
+        checkpoints.remove(windowId);
+      }
+    }
+
+    /* removing a checkpoint may release the checkpoint it depended on, and so on down the chain */
+    boolean removed;
+    do {
+      removed = false;
+      for (Iterator<Checkpoint> iterator = checkpoints.values().iterator(); iterator.hasNext();) {
+        Checkpoint purged = iterator.next();
+        if (purged.purged && !hasDependents(purged, checkpoints)) {
+          delete(operatorId, purged);
+          iterator.remove();
+          removed = true;
+        }
+      }
+    } while (removed);
+  }
+
+  private void delete(int operatorId, Checkpoint checkpoint) throws IOException
+  {
+    logger.debug("Deleting {} of operator {}", checkpoint.getFileName(), operatorId);
+    try {
+      fileContext.delete(getPath(operatorId, checkpoint.getFileName()), false);
+    } catch (FileNotFoundException ex) {
+      logger.debug("Checkpoint {} of operator {} was already deleted", checkpoint.getFileName(), operatorId);
+    }
+  }
+
+  private static boolean hasDependents(Checkpoint checkpoint, Map<Long, Checkpoint> checkpoints)
+  {
+    for (Checkpoint c : checkpoints.values()) {
+      if (c.isDelta() && c.baseWindowId == checkpoint.windowId) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public long[] getWindowIds(int operatorId) throws IOException
+  {
+    Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId));
+    if (!fileContext.util().exists(lPath)) {
+      // During initialization checkpoint directory may not exists.
+      fileContext.mkdir(lPath, FsPermission.getDirDefault(), true);
+    }
+
+    List<Long> lwindows = new ArrayList<>();
+    for (Checkpoint checkpoint : getCheckpoints(operatorId).values()) {
+      if (!checkpoint.purged) {
+        lwindows.add(checkpoint.windowId);
+      }
+    }
+    long[] windowIds = new long[lwindows.size()];
+    for (int i = 0; i < windowIds.length; i++) {
+      windowIds[i] = lwindows.get(i);
+    }
+    return windowIds;
+  }
+
+  private Map<Long, Checkpoint> getCheckpoints(int operatorId) throws IOException
+  {
+    final Map<Long, Checkpoint> checkpoints = new HashMap<>();
+    final RemoteIterator<FileStatus> iterator;
+    try {
+      iterator = fileContext.listStatus(new Path(path + Path.SEPARATOR + String.valueOf(operatorId)));
+    } catch (FileNotFoundException ex) {
+      return checkpoints;
+    }
+    while (iterator.hasNext()) {
+      String name = iterator.next().getPath().getName();
+      if (!name.equals(TMP_FILE)) {
+        Checkpoint checkpoint = Checkpoint.parse(name);
+        checkpoints.put(checkpoint.windowId, checkpoint);
+      }
+    }
+    return checkpoints;
+  }
+
+  private Path getPath(int operatorId, String name)
+  {
+    return new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + name);
+  }
+
+  /**
+   * @return number of checkpoints in a chain starting with a full checkpoint followed by delta checkpoints.
+   */
+  public int getFullCheckpointInterval()
+  {
+    return fullCheckpointInterval;
+  }
+
+  /**
+   * Sets the number of checkpoints in a chain starting with a full checkpoint followed by delta checkpoints. The
+   * higher the interval, the less often the operators are saved in full and the more deltas need to be applied when an
+   * operator is restored.
+   *
+   * @param fullCheckpointInterval number of checkpoints in a chain, 1 saves all the checkpoints in full.
+   */
+  public void setFullCheckpointInterval(int fullCheckpointInterval)
+  {
+    if (fullCheckpointInterval < 1) {
+      throw new IllegalArgumentException("Invalid full checkpoint interval " + fullCheckpointInterval);
+    }
+    this.fullCheckpointInterval = fullCheckpointInterval;
+  }
+
+  @Override
+  public Object readResolve() throws ObjectStreamException
+  {
+    IncrementalFSStorageAgent incrementalFSStorageAgent = new IncrementalFSStorageAgent(this.path, null);
+    incrementalFSStorageAgent.setFullCheckpointInterval(fullCheckpointInterval);
+    return incrementalFSStorageAgent;
+  }
+
+  static class Checkpoint
+  {
+    final long windowId;
+    /**
+     * window id of the checkpoint the delta is to be applied to, or the window id itself for a full checkpoint.
+     */
+    final long baseWindowId;
+    /**
+     * number of deltas between the checkpoint and the full checkpoint its chain starts from.
+     */
+    final int chainLength;
+    boolean purged;
+
+    Checkpoint(long windowId)
+    {
+      this.windowId = windowId;
+      this.baseWindowId = windowId;
+      this.chainLength = 0;
+    }
+
+    Checkpoint(long windowId, Checkpoint base)
+    {
+      this.windowId = windowId;
+      this.baseWindowId = base.windowId;
+      this.chainLength = base.chainLength + 1;
+    }
+
+    private Checkpoint(long windowId, long baseWindowId, boolean purged)
+    {
+      this.windowId = windowId;
+      this.baseWindowId = baseWindowId;
+      this.chainLength = -1;
+      this.purged = purged;
+    }
+
+    boolean isDelta()
+    {
+      return baseWindowId != windowId;
+    }
+
+    String getName()
+    {
+      return isDelta() ? toString(windowId) + DELTA_SEPARATOR + toString(baseWindowId) : toString(windowId);
+    }
+
+    String getFileName()
+    {
+      return purged ? getName() + PURGED_SUFFIX : getName();
+    }
+
+    private static String toString(long windowId)
+    {
+      return Long.toHexString(windowId);
+    }
+
+    private static long parseWindowId(String name)
+    {
+      return STATELESS_CHECKPOINT_WINDOW_ID.equals(name) ? Stateless.WINDOW_ID : Long.parseLong(name, 16);
+    }
+
+    static Checkpoint parse(String name)
+    {
+      final boolean purged = name.endsWith(PURGED_SUFFIX);
+      if (purged) {
+        name = name.substring(0, name.length() - PURGED_SUFFIX.length());
+      }
+      final int separator = name.indexOf(DELTA_SEPARATOR);
+      if (separator == -1) {
+        long windowId = parseWindowId(name);
+        return new Checkpoint(windowId, windowId, purged);
+      }
+      return new Checkpoint(parseWindowId(name.substring(0, separator)), parseWindowId(name.substring(separator + 1)),
+          purged);
+    }
+  }
+
+  private static final long serialVersionUID = 201710170930L;
+  private static final Logger logger = LoggerFactory.getLogger(IncrementalFSStorageAgent.class);
+}
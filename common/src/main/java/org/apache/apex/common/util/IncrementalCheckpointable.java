@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.apex.common.util;
+
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * Operators with large state of which only a small part changes between checkpoints can implement this interface to
+ * have an incremental storage agent, such as {@link com.datatorrent.common.util.IncrementalFSStorageAgent}, save only
+ * the changes most of the time instead of the entire operator.
+ *
+ * The operator keeps track of the changes made to its checkpointed state. On every checkpoint the storage agent
+ * collects the changes; it either saves them as a delta on top of the previous checkpoint or discards them and saves
+ * the entire operator. When the operator is restored from a delta checkpoint, the storage agent loads the full
+ * checkpoint the delta chain starts from and applies the deltas to it oldest first.
+ *
+ * @since 3.7.0
+ */
+@InterfaceStability.Evolving
+public interface IncrementalCheckpointable
+{
+  /**
+   * Return the changes made to the checkpointed state since the previous invocation and start tracking the changes
+   * anew. Invoked on every checkpoint, before the operator itself is serialized if the storage agent saves a full
+   * checkpoint.
+   *
+   * @return serializable changes to the checkpointed state.
+   */
+  Object getCheckpointDelta();
+
+  /**
+   * Apply the changes returned by {@link #getCheckpointDelta()} to the state of the operator restored from the
+   * checkpoint preceding the one the changes were saved for.
+   *
+   * @param delta changes to the checkpointed state.
+   */
+  void applyCheckpointDelta(Object delta);
+}
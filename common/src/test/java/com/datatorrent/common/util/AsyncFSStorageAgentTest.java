@@ -21,6 +21,8 @@ package com.datatorrent.common.util;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -36,6 +38,7 @@ import com.google.common.collect.Maps;
 
 import com.datatorrent.api.Attribute;
 import com.datatorrent.api.DAG;
+import com.datatorrent.api.Stats;
 
 public class AsyncFSStorageAgentTest
 {
@@ -134,4 +137,65 @@ public class AsyncFSStorageAgentTest
     Assert.assertTrue("operator 2 window 1", fileContext.util().exists(new Path(appPath + "/" + 2 + "/" + 1)));
     Assert.assertFalse("operator 1 window 1", fileContext.util().exists(new Path(appPath + "/" + 1 + "/" + 1)));
   }
+
+  @Test
+  public void testCompressedParts() throws IOException
+  {
+    Map<Integer, String> data = Maps.newHashMap();
+    for (int i = 0; i < 10000; i++) {
+      data.put(i, "value" + i);
+    }
+    testMeta.storageAgent.setCompressed(true);
+    testMeta.storageAgent.setPartSize(16 * 1024);
+    testMeta.storageAgent.setMaxBufferedBytes(32 * 1024);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      testMeta.storageAgent.setUploadExecutor(executor);
+      testMeta.storageAgent.save(data, 1, 1);
+      Stats.CheckpointStats stats = new Stats.CheckpointStats();
+      testMeta.storageAgent.flush(1, 1, stats);
+      Assert.assertTrue("parts", stats.checkpointSize > 2 * testMeta.storageAgent.getPartSize());
+      Assert.assertTrue("compressed", stats.uploadedBytes < stats.checkpointSize);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    File checkpoint = new File(testMeta.applicationPath + "/1/1");
+    Assert.assertTrue("directory of parts", checkpoint.isDirectory());
+    Assert.assertArrayEquals("window ids", new long[] {1}, testMeta.storageAgent.getWindowIds(1));
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded = (Map<Integer, String>)testMeta.storageAgent.load(1, 1);
+    Assert.assertEquals("data", data, decoded);
+
+    testMeta.storageAgent.delete(1, 1);
+    Assert.assertFalse("deleted", checkpoint.exists());
+  }
+
+  @Test
+  public void testFailedParts() throws IOException
+  {
+    Map<Integer, String> data = Maps.newHashMap();
+    for (int i = 0; i < 10000; i++) {
+      data.put(i, "value" + i);
+    }
+    testMeta.storageAgent.setPartSize(16 * 1024);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    File operatorDir = new File(testMeta.applicationPath + "/1");
+    try {
+      testMeta.storageAgent.setUploadExecutor(executor);
+      testMeta.storageAgent.save(data, 1, 1);
+      /* a file in place of the directory of parts fails the upload of every part */
+      FileUtils.touch(new File(operatorDir, FSStorageAgent.TMP_FILE + ".1"));
+      try {
+        testMeta.storageAgent.flush(1, 1);
+        Assert.fail("upload of the parts did not fail");
+      } catch (RuntimeException ex) {
+        Assert.assertTrue("cause " + ex.getCause(), ex.getCause() instanceof IOException);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    String[] files = operatorDir.list();
+    Assert.assertArrayEquals("files left", new String[0], files == null ? new String[0] : files);
+  }
 }
@@ -20,7 +20,15 @@ package com.datatorrent.common.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -131,4 +139,58 @@ public class FSStorageAgentTest
     Assert.assertFalse("operator 1 window 1", fileContext.util().exists(new Path(appPath + "/" + 1 + "/" + 1)));
   }
 
+  /**
+   * Saves and loads the state of operators from as many threads as there are operators, each operator with its own
+   * state, so that a serializer shared between the threads would mix up or corrupt the checkpoints.
+   */
+  @Test
+  public void testConcurrentSave() throws Exception
+  {
+    final int operators = 8;
+    final int windows = 10;
+    final CyclicBarrier barrier = new CyclicBarrier(operators);
+    ExecutorService executor = Executors.newFixedThreadPool(operators);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int operator = 0; operator < operators; operator++) {
+        final int operatorId = operator;
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call() throws Exception
+          {
+            for (int window = 0; window < windows; window++) {
+              Map<Integer, String> state = getState(operatorId, window);
+              barrier.await(30, TimeUnit.SECONDS);
+              testMeta.storageAgent.save(state, operatorId, window);
+              Assert.assertEquals("state of " + operatorId + " in window " + window, state,
+                  testMeta.storageAgent.load(operatorId, window));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int operator = 0; operator < operators; operator++) {
+      for (int window = 0; window < windows; window++) {
+        Assert.assertEquals("state of " + operator + " in window " + window, getState(operator, window),
+            testMeta.storageAgent.load(operator, window));
+      }
+    }
+  }
+
+  private static Map<Integer, String> getState(int operatorId, int window)
+  {
+    Map<Integer, String> state = Maps.newHashMap();
+    for (int i = 0; i < 1000; i++) {
+      state.put(i, operatorId + ":" + window + ":" + i);
+    }
+    return state;
+  }
 }
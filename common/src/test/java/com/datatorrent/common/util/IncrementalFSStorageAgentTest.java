@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import org.apache.apex.common.util.IncrementalCheckpointable;
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.collect.Sets;
+
+public class IncrementalFSStorageAgentTest
+{
+  private static class TestMeta extends TestWatcher
+  {
+    String applicationPath;
+    IncrementalFSStorageAgent storageAgent;
+
+    @Override
+    protected void starting(Description description)
+    {
+      super.starting(description);
+      applicationPath = "target/" + description.getClassName() + "/" + description.getMethodName();
+      try {
+        FileUtils.forceMkdir(new File("target/" + description.getClassName()));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      storageAgent = new IncrementalFSStorageAgent(applicationPath, null);
+      storageAgent.setFullCheckpointInterval(3);
+    }
+
+    @Override
+    protected void finished(Description description)
+    {
+      try {
+        FileUtils.deleteDirectory(new File("target/" + description.getClassName()));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    TreeSet<String> getFiles(int operatorId)
+    {
+      TreeSet<String> files = new TreeSet<>();
+      for (String name : new File(applicationPath, String.valueOf(operatorId)).list()) {
+        /* skip the checksum files */
+        if (!name.startsWith(".")) {
+          files.add(name);
+        }
+      }
+      return files;
+    }
+  }
+
+  public static class IncrementalOperator implements IncrementalCheckpointable
+  {
+    final HashMap<Integer, String> state = new HashMap<>();
+    HashMap<Integer, String> changes = new HashMap<>();
+
+    void put(int key, String value)
+    {
+      state.put(key, value);
+      changes.put(key, value);
+    }
+
+    @Override
+    public Object getCheckpointDelta()
+    {
+      HashMap<Integer, String> delta = changes;
+      changes = new HashMap<>();
+      return delta;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void applyCheckpointDelta(Object delta)
+    {
+      state.putAll((Map<Integer, String>)delta);
+    }
+  }
+
+  @Rule
+  public TestMeta testMeta = new TestMeta();
+
+  private Map<Long, Map<Integer, String>> checkpoint(IncrementalOperator operator, long... windowIds)
+      throws IOException
+  {
+    Map<Long, Map<Integer, String>> states = new HashMap<>();
+    for (long windowId : windowIds) {
+      operator.put((int)windowId, "value" + windowId);
+      operator.put(0, "window" + windowId);
+      testMeta.storageAgent.save(operator, 1, windowId);
+      states.put(windowId, new HashMap<>(operator.state));
+    }
+    return states;
+  }
+
+  @Test
+  public void testDeltaChain() throws IOException
+  {
+    IncrementalOperator operator = new IncrementalOperator();
+    Map<Long, Map<Integer, String>> states = checkpoint(operator, 1, 2, 3, 4, 5);
+    Assert.assertEquals("checkpoint files", Sets.newTreeSet(Arrays.asList("1", "2-1", "3-2", "4", "5-4")),
+        testMeta.getFiles(1));
+
+    for (long windowId = 1; windowId <= 5; windowId++) {
+      IncrementalOperator loaded = (IncrementalOperator)testMeta.storageAgent.load(1, windowId);
+      Assert.assertEquals("state of window " + windowId, states.get(windowId), loaded.state);
+    }
+  }
+
+  @Test
+  public void testDelete() throws IOException
+  {
+    checkpoint(new IncrementalOperator(), 1, 2, 3, 4);
+
+    /* 2 depends on 1 and 3 depends on 2 */
+    testMeta.storageAgent.delete(1, 1);
+    testMeta.storageAgent.delete(1, 2);
+    Assert.assertEquals("purged checkpoints are kept",
+        Sets.newTreeSet(Arrays.asList("1.purged", "2-1.purged", "3-2", "4")), testMeta.getFiles(1));
+    long[] windowIds = testMeta.storageAgent.getWindowIds(1);
+    Arrays.sort(windowIds);
+    Assert.assertArrayEquals("window ids", new long[] {3, 4}, windowIds);
+    Assert.assertEquals("state of window 3", "window3",
+        ((IncrementalOperator)testMeta.storageAgent.load(1, 3)).state.get(0));
+
+    testMeta.storageAgent.delete(1, 3);
+    Assert.assertEquals("chain is deleted", Sets.newTreeSet(Arrays.asList("4")), testMeta.getFiles(1));
+  }
+
+  @Test
+  public void testLoadStartsNewChain() throws IOException
+  {
+    IncrementalOperator operator = new IncrementalOperator();
+    checkpoint(operator, 1, 2);
+    operator = (IncrementalOperator)testMeta.storageAgent.load(1, 1);
+    checkpoint(operator, 3);
+    Assert.assertEquals("checkpoint files", Sets.newTreeSet(Arrays.asList("1", "2-1", "3")), testMeta.getFiles(1));
+  }
+
+  @Test
+  public void testFullCheckpoint() throws IOException
+  {
+    Map<Integer, String> data = new HashMap<>();
+    data.put(1, "one");
+    testMeta.storageAgent.save(data, 1, 1);
+    testMeta.storageAgent.save(data, 1, 2);
+    Assert.assertEquals("checkpoint files", Sets.newTreeSet(Arrays.asList("1", "2")), testMeta.getFiles(1));
+    Assert.assertEquals("data", data, testMeta.storageAgent.load(1, 2));
+  }
+}
@@ -39,7 +39,7 @@ import com.datatorrent.common.codec.JsonStreamCodec;
 import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.stram.api.StramEvent;
 import com.datatorrent.stram.client.EventsAgent;
-import com.datatorrent.stram.util.FSPartFileCollection;
+import com.datatorrent.stram.util.ColumnarPartFileCollection;
 import com.datatorrent.stram.util.SharedPubSubWebSocketClient;
 
 import net.engio.mbassy.listener.Handler;
@@ -51,11 +51,12 @@ import net.engio.mbassy.listener.Handler;
  */
 public class FSEventRecorder implements EventRecorder
 {
-  public static final String VERSION = "1.0";
+  public static final String VERSION = ColumnarPartFileCollection.VERSION;
   private final BlockingQueue<StramEvent> queue = new LinkedBlockingQueue<>();
   private static final Logger LOG = LoggerFactory.getLogger(FSEventRecorder.class);
-  private FSPartFileCollection storage;
+  private ColumnarPartFileCollection storage;
   private String basePath = ".";
+  private String version = VERSION;
   private transient StreamCodec<Object> streamCodec;
   private final URI pubSubUrl = null;
   private int numSubscribers = 0;
@@ -105,14 +106,28 @@ public class FSEventRecorder implements EventRecorder
     this.basePath = basePath;
   }
 
+  /**
+   * Sets the format the events are recorded in, {@link ColumnarPartFileCollection#JSON_LINES_VERSION} keeps the
+   * recording readable by clients which do not read the columnar format. To be set before {@link #setup}.
+   *
+   * @param version {@link ColumnarPartFileCollection#VERSION} or {@link ColumnarPartFileCollection#JSON_LINES_VERSION}
+   */
+  public void setVersion(String version)
+  {
+    if (!VERSION.equals(version) && !ColumnarPartFileCollection.JSON_LINES_VERSION.equals(version)) {
+      throw new IllegalArgumentException("Unsupported version " + version);
+    }
+    this.version = version;
+  }
+
   public void setup()
   {
     try {
-      streamCodec = new JsonStreamCodec<>();
-      storage = new FSPartFileCollection();
+      storage = new ColumnarPartFileCollection();
       storage.setBasePath(basePath);
       storage.setup();
-      storage.writeMetaData((VERSION + "\n").getBytes());
+      storage.writeMetaData((version + "\n").getBytes());
+      streamCodec = new JsonStreamCodec<>();
 
       if (wsClient != null) {
         try {
@@ -136,6 +151,15 @@ public class FSEventRecorder implements EventRecorder
     } catch (InterruptedException ex) {
       LOG.warn("Event recorder thread join interrupted");
     }
+    // write out the events recorded after the thread stopped taking from the queue
+    StramEvent event;
+    while (storage != null && (event = queue.poll()) != null) {
+      try {
+        writeEvent(event);
+      } catch (Exception ex) {
+        LOG.error("Cannot write event {}", event.getType(), ex);
+      }
+    }
     if (storage != null) {
       storage.teardown();
     }
@@ -152,18 +176,22 @@ public class FSEventRecorder implements EventRecorder
   public void writeEvent(StramEvent event) throws Exception
   {
     LOG.debug("Writing event {} to the storage", event.getType());
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    bos.write((event.getTimestamp() + ":").getBytes());
-    bos.write((event.getType() + ":").getBytes());
     @SuppressWarnings("unchecked")
     Map<String, String> data = BeanUtils.describe(event);
     data.remove("timestamp");
     data.remove("class");
     data.remove("type");
-    Slice f = streamCodec.toByteArray(data);
-    bos.write(f.buffer, f.offset, f.length);
-    bos.write("\n".getBytes());
-    storage.writeDataItem(bos.toByteArray(), true);
+    if (VERSION.equals(version)) {
+      storage.addRow(event.getTimestamp(), event.getType(), data);
+    } else {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      bos.write((event.getTimestamp() + ":").getBytes());
+      bos.write((event.getType() + ":").getBytes());
+      Slice f = streamCodec.toByteArray(data);
+      bos.write(f.buffer, f.offset, f.length);
+      bos.write("\n".getBytes());
+      storage.writeDataItem(bos.toByteArray(), true);
+    }
     if (numSubscribers > 0) {
       LOG.debug("Publishing event {} through websocket to gateway", event.getType());
       EventsAgent.EventInfo eventInfo = new EventsAgent.EventInfo();
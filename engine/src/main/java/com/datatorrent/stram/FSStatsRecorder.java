@@ -20,6 +20,9 @@ package com.datatorrent.stram;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,14 +34,18 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
+import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Throwables;
+
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.api.annotation.RecordField;
 import com.datatorrent.common.codec.JsonStreamCodec;
+import com.datatorrent.common.util.JacksonObjectMapperProvider;
 import com.datatorrent.netlet.util.Slice;
-import com.datatorrent.stram.util.FSPartFileCollection;
+import com.datatorrent.stram.util.ColumnarPartFileCollection;
 import com.datatorrent.stram.webapp.ContainerInfo;
 import com.datatorrent.stram.webapp.OperatorInfo;
 
@@ -49,16 +56,18 @@ import com.datatorrent.stram.webapp.OperatorInfo;
  */
 public class FSStatsRecorder implements StatsRecorder
 {
-  public static final String VERSION = "1.0";
+  public static final String VERSION = ColumnarPartFileCollection.VERSION;
   private static final Logger LOG = LoggerFactory.getLogger(FSStatsRecorder.class);
   private String basePath = ".";
-  private FSPartFileCollection containersStorage;
-  private final Map<String, FSPartFileCollection> logicalOperatorStorageMap = new ConcurrentHashMap<>();
+  private String version = VERSION;
+  private ColumnarPartFileCollection containersStorage;
+  private final Map<String, ColumnarPartFileCollection> logicalOperatorStorageMap = new ConcurrentHashMap<>();
   private final Map<String, Integer> knownContainers = new HashMap<>();
   private final Set<String> knownOperators = new HashSet<>();
   private transient StreamCodec<Object> streamCodec;
-  private final Map<Class<?>, List<Field>> metaFields = new HashMap<>();
-  private final Map<Class<?>, List<Field>> statsFields = new HashMap<>();
+  private transient ObjectMapper mapper;
+  private final Map<Class<?>, RecordFieldAccessors> metaFields = new ConcurrentHashMap<>();
+  private final Map<Class<?>, RecordFieldAccessors> statsFields = new ConcurrentHashMap<>();
   private final BlockingQueue<WriteOperation> queue = new LinkedBlockingQueue<>();
   private final StatsRecorderThread statsRecorderThread = new StatsRecorderThread();
 
@@ -69,16 +78,11 @@ public class FSStatsRecorder implements StatsRecorder
     {
       while (true) {
         try {
-          WriteOperation wo = queue.take();
-          if (wo.meta) {
-            wo.storage.writeMetaData(wo.bytes);
-          } else {
-            wo.storage.writeDataItem(wo.bytes, true);
-          }
+          write(queue.take());
           Thread.yield();
           if (queue.isEmpty()) {
             containersStorage.flushData();
-            for (FSPartFileCollection operatorStorage : logicalOperatorStorageMap.values()) {
+            for (ColumnarPartFileCollection operatorStorage : logicalOperatorStorageMap.values()) {
               operatorStorage.flushData();
             }
           }
@@ -92,18 +96,83 @@ public class FSStatsRecorder implements StatsRecorder
 
   }
 
+  private static void write(WriteOperation wo) throws IOException
+  {
+    if (wo.meta) {
+      wo.storage.writeMetaData(wo.bytes);
+    } else if (wo.bytes != null) {
+      wo.storage.writeDataItem(wo.bytes, true);
+    } else {
+      wo.storage.addRow(wo.timestamp, wo.key, wo.cells);
+    }
+  }
+
   private static class WriteOperation
   {
-    WriteOperation(FSPartFileCollection storage, byte[] bytes, boolean meta)
+    WriteOperation(ColumnarPartFileCollection storage, byte[] bytes, boolean meta)
     {
       this.storage = storage;
       this.bytes = bytes;
       this.meta = meta;
     }
 
-    FSPartFileCollection storage;
+    WriteOperation(ColumnarPartFileCollection storage, long timestamp, String key, Map<String, String> cells)
+    {
+      this.storage = storage;
+      this.timestamp = timestamp;
+      this.key = key;
+      this.cells = cells;
+    }
+
+    ColumnarPartFileCollection storage;
     byte[] bytes;
     boolean meta;
+    long timestamp;
+    String key;
+    Map<String, String> cells;
+  }
+
+  /**
+   * Getters of the {@link RecordField} fields of one type of a class, resolved once per class.
+   */
+  private static class RecordFieldAccessors
+  {
+    final String[] names;
+    final MethodHandle[] getters;
+
+    RecordFieldAccessors(Class<?> clazz, String type)
+    {
+      List<String> nameList = new ArrayList<>();
+      List<MethodHandle> getterList = new ArrayList<>();
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodType getterType = MethodType.methodType(Object.class, Object.class);
+      try {
+        for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass()) {
+          for (Field field : c.getDeclaredFields()) {
+            RecordField rfa = field.getAnnotation(RecordField.class);
+            if (rfa != null && rfa.type().equals(type)) {
+              field.setAccessible(true);
+              nameList.add(field.getName());
+              getterList.add(lookup.unreflectGetter(field).asType(getterType));
+            }
+          }
+        }
+      } catch (IllegalAccessException ex) {
+        throw new RuntimeException(ex);
+      }
+      names = nameList.toArray(new String[nameList.size()]);
+      getters = getterList.toArray(new MethodHandle[getterList.size()]);
+    }
+
+    Object get(int index, Object o)
+    {
+      try {
+        return (Object)getters[index].invokeExact(o);
+      } catch (Throwable t) {
+        throw Throwables.propagate(t);
+      }
+    }
+
   }
 
   public void setBasePath(String basePath)
@@ -111,14 +180,29 @@ public class FSStatsRecorder implements StatsRecorder
     this.basePath = basePath;
   }
 
+  /**
+   * Sets the format the stats are recorded in, {@link ColumnarPartFileCollection#JSON_LINES_VERSION} keeps the
+   * recording readable by clients which do not read the columnar format. To be set before {@link #setup}.
+   *
+   * @param version {@link ColumnarPartFileCollection#VERSION} or {@link ColumnarPartFileCollection#JSON_LINES_VERSION}
+   */
+  public void setVersion(String version)
+  {
+    if (!VERSION.equals(version) && !ColumnarPartFileCollection.JSON_LINES_VERSION.equals(version)) {
+      throw new IllegalArgumentException("Unsupported version " + version);
+    }
+    this.version = version;
+  }
+
   public void setup()
   {
     try {
       streamCodec = new JsonStreamCodec<>();
-      containersStorage = new FSPartFileCollection();
+      mapper = new JacksonObjectMapperProvider().getContext(null);
+      containersStorage = new ColumnarPartFileCollection();
       containersStorage.setBasePath(basePath + "/containers");
       containersStorage.setup();
-      containersStorage.writeMetaData((VERSION + "\n").getBytes());
+      containersStorage.writeMetaData((version + "\n").getBytes());
       statsRecorderThread.start();
     } catch (Exception ex) {
       throw new RuntimeException(ex);
@@ -133,10 +217,19 @@ public class FSStatsRecorder implements StatsRecorder
     } catch (InterruptedException ex) {
       LOG.warn("Stats recorder thread join interrupted");
     }
+    // write out what was recorded after the thread stopped taking from the queue
+    WriteOperation wo;
+    while ((wo = queue.poll()) != null) {
+      try {
+        write(wo);
+      } catch (IOException ex) {
+        LOG.error("Cannot write the recorded stats", ex);
+      }
+    }
     if (containersStorage != null) {
       containersStorage.teardown();
     }
-    for (FSPartFileCollection operatorStorage : logicalOperatorStorageMap.values()) {
+    for (ColumnarPartFileCollection operatorStorage : logicalOperatorStorageMap.values()) {
       operatorStorage.teardown();
     }
   }
@@ -164,14 +257,8 @@ public class FSStatsRecorder implements StatsRecorder
       } else {
         containerIndex = knownContainers.get(entry.getKey());
       }
-      Map<String, Object> fieldMap = extractRecordFields(containerInfo, "stats");
-      ByteArrayOutputStream bos = new ByteArrayOutputStream();
-      Slice f = streamCodec.toByteArray(fieldMap);
-      bos.write((String.valueOf(containerIndex) + ":").getBytes());
-      bos.write((String.valueOf(timestamp) + ":").getBytes());
-      bos.write(f.buffer, f.offset, f.length);
-      bos.write("\n".getBytes());
-      queue.add(new WriteOperation(containersStorage, bos.toByteArray(), false));
+      queue.add(newStatsOperation(containersStorage, timestamp, String.valueOf(containerIndex),
+          extractRecordFields(containerInfo, "stats")));
     }
   }
 
@@ -179,12 +266,12 @@ public class FSStatsRecorder implements StatsRecorder
   public void recordOperators(List<OperatorInfo> operatorList, long timestamp) throws IOException
   {
     for (OperatorInfo operatorInfo : operatorList) {
-      FSPartFileCollection operatorStorage;
+      ColumnarPartFileCollection operatorStorage;
       if (!logicalOperatorStorageMap.containsKey(operatorInfo.name)) {
-        operatorStorage = new FSPartFileCollection();
+        operatorStorage = new ColumnarPartFileCollection();
         operatorStorage.setBasePath(basePath + "/operators/" + operatorInfo.name);
         operatorStorage.setup();
-        operatorStorage.writeMetaData((VERSION + "\n").getBytes());
+        operatorStorage.writeMetaData((version + "\n").getBytes());
         logicalOperatorStorageMap.put(operatorInfo.name, operatorStorage);
       } else {
         operatorStorage = logicalOperatorStorageMap.get(operatorInfo.name);
@@ -198,52 +285,53 @@ public class FSStatsRecorder implements StatsRecorder
         bos.write("\n".getBytes());
         queue.add(new WriteOperation(operatorStorage, bos.toByteArray(), true));
       }
-      Map<String, Object> fieldMap = extractRecordFields(operatorInfo, "stats");
-      ByteArrayOutputStream bos = new ByteArrayOutputStream();
-      Slice f = streamCodec.toByteArray(fieldMap);
-      bos.write((operatorInfo.id + ":").getBytes());
-      bos.write((String.valueOf(timestamp) + ":").getBytes());
-      bos.write(f.buffer, f.offset, f.length);
-      bos.write("\n".getBytes());
-      queue.add(new WriteOperation(operatorStorage, bos.toByteArray(), false));
+      queue.add(newStatsOperation(operatorStorage, timestamp, operatorInfo.id, extractRecordFields(operatorInfo, "stats")));
+    }
+  }
+
+  private WriteOperation newStatsOperation(ColumnarPartFileCollection storage, long timestamp, String key,
+      Map<String, Object> fieldMap) throws IOException
+  {
+    if (VERSION.equals(version)) {
+      return new WriteOperation(storage, timestamp, key, toCells(fieldMap));
+    }
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Slice f = streamCodec.toByteArray(fieldMap);
+    bos.write((key + ":").getBytes());
+    bos.write((String.valueOf(timestamp) + ":").getBytes());
+    bos.write(f.buffer, f.offset, f.length);
+    bos.write("\n".getBytes());
+    return new WriteOperation(storage, bos.toByteArray(), false);
+  }
+
+  private Map<String, String> toCells(Map<String, Object> fieldMap) throws IOException
+  {
+    Map<String, String> cells = new HashMap<>(fieldMap.size() * 2);
+    for (Map.Entry<String, Object> entry : fieldMap.entrySet()) {
+      cells.put(entry.getKey(), mapper.writeValueAsString(entry.getValue()));
     }
+    return cells;
   }
 
   public Map<String, Object> extractRecordFields(Object o, String type)
   {
-    Map<String, Object> fieldMap = new HashMap<>();
-    try {
-      Map<Class<?>, List<Field>> cacheFields = null;
-      if (type.equals("meta")) {
-        cacheFields = metaFields;
-      } else if (type.equals("stats")) {
-        cacheFields = statsFields;
-      }
-      List<Field> fieldList;
-      if (cacheFields == null || !cacheFields.containsKey(o.getClass())) {
-        fieldList = new ArrayList<>();
-        for (Class<?> c = o.getClass(); c != Object.class; c = c.getSuperclass()) {
-          Field[] fields = c.getDeclaredFields();
-          for (Field field : fields) {
-            field.setAccessible(true);
-            RecordField rfa = field.getAnnotation(RecordField.class);
-            if (rfa != null && rfa.type().equals(type)) {
-              fieldList.add(field);
-            }
-          }
-        }
-        if (cacheFields != null) {
-          cacheFields.put(o.getClass(), fieldList);
-        }
-      } else {
-        fieldList = cacheFields.get(o.getClass());
+    Map<Class<?>, RecordFieldAccessors> cacheFields = null;
+    if (type.equals("meta")) {
+      cacheFields = metaFields;
+    } else if (type.equals("stats")) {
+      cacheFields = statsFields;
+    }
+    RecordFieldAccessors accessors = cacheFields == null ? null : cacheFields.get(o.getClass());
+    if (accessors == null) {
+      accessors = new RecordFieldAccessors(o.getClass(), type);
+      if (cacheFields != null) {
+        cacheFields.put(o.getClass(), accessors);
       }
+    }
 
-      for (Field field : fieldList) {
-        fieldMap.put(field.getName(), field.get(o));
-      }
-    } catch (IllegalAccessException ex) {
-      throw new RuntimeException(ex);
+    Map<String, Object> fieldMap = new HashMap<>(accessors.names.length * 2);
+    for (int i = 0; i < accessors.names.length; i++) {
+      fieldMap.put(accessors.names[i], accessors.get(i, o));
     }
     return fieldMap;
   }
@@ -251,7 +339,7 @@ public class FSStatsRecorder implements StatsRecorder
   public void requestSync()
   {
     containersStorage.requestSync();
-    for (Map.Entry<String, FSPartFileCollection> entry : logicalOperatorStorageMap.entrySet()) {
+    for (Map.Entry<String, ColumnarPartFileCollection> entry : logicalOperatorStorageMap.entrySet()) {
       entry.getValue().requestSync();
     }
   }
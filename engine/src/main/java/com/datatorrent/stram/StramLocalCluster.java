@@ -480,6 +480,7 @@ public class StramLocalCluster implements Runnable, Controller
       if (!perContainerBufferServer) {
         eventLoopThread = StreamingContainer.eventloop.start();
         bufferServer = new Server(StreamingContainer.eventloop, 0, 1024 * 1024, 8);
+        bufferServer.setPartitionIndexEnabled(getDAG().getValue(LogicalPlan.BUFFER_SERVER_PARTITION_INDEX));
         try {
           bufferServer.setSpoolStorage(new DiskStorage());
         } catch (IOException e) {
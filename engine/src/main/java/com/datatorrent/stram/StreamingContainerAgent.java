@@ -37,6 +37,7 @@ import org.apache.hadoop.yarn.conf.YarnConfiguration;
 
 import com.google.common.collect.Sets;
 
+import com.datatorrent.api.Component;
 import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.DAG.Locality;
 import com.datatorrent.api.InputOperator;
@@ -225,6 +226,9 @@ public class StreamingContainerAgent
               if (!portInfo.streamCodecs.containsKey(id)) {
                 portInfo.streamCodecs.put(id, streamCodec);
               }
+              if (isSharedMemoryStream(streamMeta, out.source.getContainer(), input.target.getContainer())) {
+                portInfo.sharedMemorySinks.put(Integer.toString(input.target.getId()).concat(Component.CONCAT_SEPARATOR).concat(input.portName), id);
+              }
             }
           }
         }
@@ -296,6 +300,9 @@ public class StreamingContainerAgent
           inputInfo.bufferServerHost = addr.getHostName();
           inputInfo.bufferServerPort = addr.getPort();
           inputInfo.bufferServerToken = container.getBufferServerToken();
+          if (isSharedMemoryStream(streamMeta, container, oper.getContainer())) {
+            inputInfo.locality = Locality.NODE_LOCAL;
+          }
         }
 
         // On the input side there is a unlikely scenario of partitions even for inline stream that is being
@@ -313,6 +320,17 @@ public class StreamingContainerAgent
     return new ArrayList<>(nodes.keySet());
   }
 
+  /**
+   * Whether the tuples of the node local stream between the containers are to be read from shared memory instead of
+   * from the buffer server, see {@link LogicalPlan#NODE_LOCAL_SHARED_MEMORY_MB}.
+   */
+  private boolean isSharedMemoryStream(StreamMeta streamMeta, PTContainer source, PTContainer target)
+  {
+    return streamMeta.getLocality() == Locality.NODE_LOCAL && source != target && source.host != null
+        && source.host.equals(target.host)
+        && dnmgr.getPhysicalPlan().getLogicalPlan().getValue(LogicalPlan.NODE_LOCAL_SHARED_MEMORY_MB) > 0;
+  }
+
   public static InputPortMeta getInputPortMeta(LogicalPlan.OperatorMeta operatorMeta, StreamMeta streamMeta)
   {
     InputPortMeta inputPortMeta = null;
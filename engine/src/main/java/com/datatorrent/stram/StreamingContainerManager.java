@@ -240,10 +240,14 @@ public class StreamingContainerManager implements PlanContext
   private final ConcurrentMap<PTOperator, PTOperator> slowestUpstreamOp = new ConcurrentHashMap<>();
   private long committedWindowId;
   private long lastCommittedWindowId = Checkpoint.INITIAL_CHECKPOINT.getWindowId();
-  // (operator id, port name) to timestamp
-  private final Map<Pair<Integer, String>, Long> operatorPortLastEndWindowTimestamps = Maps.newConcurrentMap();
-  private final Map<Integer, Long> operatorLastEndWindowTimestamps = Maps.newConcurrentMap();
   private long lastStatsTimestamp = System.currentTimeMillis();
+  // operators that moved to another window since the last monitor cycle
+  private final Set<PTOperator> windowIdUpdates = Collections.newSetFromMap(new ConcurrentHashMap<PTOperator, Boolean>());
+  private volatile boolean latencyUpdateAll = true;
+  // set when checkpoints, deploy state or the plan changed and the checkpoint DAG needs to be traversed again
+  private final AtomicBoolean checkpointsChanged = new AtomicBoolean(true);
+  private long lastCheckpointUpdateTms;
+  private long nextBlockedCheckTms;
   private long currentEndWindowStatsWindowId;
   private long completeEndWindowStatsWindowId;
   private final ConcurrentHashMap<String, MovingAverageLong> rpcLatencies = new ConcurrentHashMap<>();
@@ -834,8 +838,31 @@ public class StreamingContainerManager implements PlanContext
 
     UpdateOperatorLatencyContext ctx = new UpdateOperatorLatencyContext(rpcLatencies, endWindowStatsOperatorMap);
 
-    for (PTOperator operator : allOperators.values()) {
-      updateOperatorLatency(operator, ctx);
+    if (latencyUpdateAll) {
+      latencyUpdateAll = false;
+      windowIdUpdates.clear();
+      for (PTOperator operator : allOperators.values()) {
+        updateOperatorLatency(operator, ctx);
+      }
+    } else if (!windowIdUpdates.isEmpty()) {
+      // latency only changes for operators that moved to another window and for their downstream operators
+      Set<PTOperator> latencyUpdates = new HashSet<>();
+      Iterator<PTOperator> it = windowIdUpdates.iterator();
+      while (it.hasNext()) {
+        PTOperator operator = it.next();
+        it.remove();
+        latencyUpdates.add(operator);
+        for (PTOperator.PTOutput output : operator.getOutputs()) {
+          for (PTOperator.PTInput sink : output.sinks) {
+            latencyUpdates.add(sink.target);
+          }
+        }
+      }
+      for (PTOperator operator : latencyUpdates) {
+        if (allOperators.containsKey(operator.getId())) {
+          updateOperatorLatency(operator, ctx);
+        }
+      }
     }
 
     if (!endWindowStatsOperatorMap.isEmpty()) {
@@ -857,7 +884,6 @@ public class StreamingContainerManager implements PlanContext
         Set<Integer> endWindowStatsOperators = endWindowStatsMap.keySet();
 
         aggregateMetrics(windowId, endWindowStatsMap);
-        criticalPathInfo = findCriticalPath();
 
         if (allOperators.keySet().containsAll(endWindowStatsOperators)) {
           if (endWindowStatsMap.size() < numOperators) {
@@ -879,6 +905,8 @@ public class StreamingContainerManager implements PlanContext
         }
         windowId = endWindowStatsOperatorMap.higherKey(windowId);
       }
+      // the critical path only depends on the latest latencies, compute it once per monitor cycle
+      criticalPathInfo = findCriticalPath();
     }
   }
 
@@ -1069,6 +1097,8 @@ public class StreamingContainerManager implements PlanContext
             for (PTOperator oper : windowAndOpers.getValue()) {
               plan.removeTerminatedPartition(oper);
             }
+            checkpointsChanged.set(true);
+            latencyUpdateAll = true;
             it.remove();
           }
         }
@@ -1099,6 +1129,7 @@ public class StreamingContainerManager implements PlanContext
     }
 
     if (count > 0) {
+      checkpointsChanged.set(true);
       try {
         checkpoint();
       } catch (Exception e) {
@@ -1375,6 +1406,7 @@ public class StreamingContainerManager implements PlanContext
                 deactivatedOpers.add(oper);
               }
               oper.setState(State.INACTIVE);
+              checkpointsChanged.set(true);
               sca.undeployOpers.add(oper.getId());
               slowestUpstreamOp.remove(oper);
               // record operator stop event
@@ -1401,6 +1433,7 @@ public class StreamingContainerManager implements PlanContext
           // operator no longer deployed in container
           recordEventAsync(new StramEvent.StopOperatorEvent(oper.getName(), oper.getId(), oper.getContainer().getExternalId(), groupId));
           oper.setState(State.PENDING_DEPLOY);
+          checkpointsChanged.set(true);
           sca.deployOpers.add(oper);
         } else {
           // operator is currently deployed, request undeploy
@@ -1417,6 +1450,7 @@ public class StreamingContainerManager implements PlanContext
           PTContainer container = oper.getContainer();
           LOG.debug("{} marking deployed: {} remote status {}", container.getExternalId(), oper, ds);
           oper.setState(PTOperator.State.ACTIVE);
+          checkpointsChanged.set(true);
           oper.stats.lastHeartbeat = null; // reset on redeploy
           oper.stats.lastWindowIdChangeTms = clock.getTime();
           EventGroupId groupId = groupingManager.getEventGroupIdForOperatorToDeploy(oper.getId());
@@ -1440,6 +1474,7 @@ public class StreamingContainerManager implements PlanContext
     // count failure transitions *->FAILED, applies to initialization as well as intermittent failures
     if (oper.getState() == PTOperator.State.ACTIVE) {
       oper.setState(PTOperator.State.INACTIVE);
+      checkpointsChanged.set(true);
       oper.failureCount++;
       oper.getOperatorMeta().getStatus().failureCount++;
       LOG.warn("Operator failure: {} count: {}", oper, oper.failureCount);
@@ -1572,6 +1607,12 @@ public class StreamingContainerManager implements PlanContext
       }
 
       oper.stats.lastHeartbeat = shb;
+      if (shb.recoveryStats != null) {
+        LOG.info("Operator {} recovered to checkpoint {}: {}", oper, Codec.getStringWindowId(shb.recoveryStats.checkpointWindowId), shb.recoveryStats);
+        recordEventAsync(new StramEvent.OperatorRecoveryEvent(oper.getName(), oper.getId(), heartbeat.getContainerId(),
+            shb.recoveryStats.checkpointWindowId, shb.recoveryStats.fetchMillis, shb.recoveryStats.deserializeMillis,
+            shb.recoveryStats.replayMillis));
+      }
       List<ContainerStats.OperatorStats> statsList = shb.getOperatorStatsContainer();
 
       if (!statsList.isEmpty()) {
@@ -1632,18 +1673,14 @@ public class StreamingContainerManager implements PlanContext
               tuplesProcessed += s.tupleCount;
               endWindowStats.dequeueTimestamps.put(s.id, s.endWindowTimestamp);
 
-              Pair<Integer, String> operatorPortName = new Pair<>(oper.getId(), s.id);
-              Long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.get(operatorPortName);
-              if (lastEndWindowTimestamp == null) {
-                lastEndWindowTimestamp = lastStatsTimestamp;
-              }
+              long lastEndWindowTimestamp = ps.lastEndWindowTimestamp < 0 ? lastStatsTimestamp : ps.lastEndWindowTimestamp;
               long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
-              //LOG.debug("=== PROCESSED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
+              //LOG.debug("=== PROCESSED TUPLE COUNT for {}: {}, {}, {}, {}", s.id, s.tupleCount, portElapsedMillis, ps.lastEndWindowTimestamp, lastStatsTimestamp);
               ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
               ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
               ps.queueSizeMA.add(s.queueSize);
 
-              operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
+              ps.lastEndWindowTimestamp = s.endWindowTimestamp;
               if (maxEndWindowTimestamp < s.endWindowTimestamp) {
                 maxEndWindowTimestamp = s.endWindowTimestamp;
               }
@@ -1676,17 +1713,13 @@ public class StreamingContainerManager implements PlanContext
               ps.recordingId = s.recordingId;
 
               tuplesEmitted += s.tupleCount;
-              Pair<Integer, String> operatorPortName = new Pair<>(oper.getId(), s.id);
-              Long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.get(operatorPortName);
-              if (lastEndWindowTimestamp == null) {
-                lastEndWindowTimestamp = lastStatsTimestamp;
-              }
+              long lastEndWindowTimestamp = ps.lastEndWindowTimestamp < 0 ? lastStatsTimestamp : ps.lastEndWindowTimestamp;
               long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
-              //LOG.debug("=== EMITTED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
+              //LOG.debug("=== EMITTED TUPLE COUNT for {}: {}, {}, {}, {}", s.id, s.tupleCount, portElapsedMillis, ps.lastEndWindowTimestamp, lastStatsTimestamp);
               ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
               ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
 
-              operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
+              ps.lastEndWindowTimestamp = s.endWindowTimestamp;
               if (maxEndWindowTimestamp < s.endWindowTimestamp) {
                 maxEndWindowTimestamp = s.endWindowTimestamp;
               }
@@ -1713,6 +1746,7 @@ public class StreamingContainerManager implements PlanContext
           if (status.currentWindowId.get() != stats.windowId) {
             status.lastWindowIdChangeTms = currentTimeMillis;
             status.currentWindowId.set(stats.windowId);
+            windowIdUpdates.add(oper);
           }
           totalCpuTimeUsed += stats.cpuTimeUsed;
           statCount++;
@@ -1737,9 +1771,10 @@ public class StreamingContainerManager implements PlanContext
             }
             endWindowStatsMap.put(shb.getNodeId(), endWindowStats);
 
+            // compare the sizes first, the key sets are only compared once the window is complete
             Set<Integer> allCurrentOperators = plan.getAllOperators().keySet();
             int numOperators = plan.getAllOperators().size();
-            if (allCurrentOperators.containsAll(endWindowStatsMap.keySet()) && endWindowStatsMap.size() == numOperators) {
+            if (endWindowStatsMap.size() == numOperators && allCurrentOperators.containsAll(endWindowStatsMap.keySet())) {
               completeEndWindowStatsWindowId = stats.windowId;
             }
           }
@@ -1753,7 +1788,7 @@ public class StreamingContainerManager implements PlanContext
           logicalStatus.totalTuplesProcessed += tuplesProcessed;
           logicalStatus.totalTuplesEmitted += tuplesEmitted;
         }
-        long lastMaxEndWindowTimestamp = operatorLastEndWindowTimestamps.containsKey(oper.getId()) ? operatorLastEndWindowTimestamps.get(oper.getId()) : lastStatsTimestamp;
+        long lastMaxEndWindowTimestamp = status.lastMaxEndWindowTimestamp < 0 ? lastStatsTimestamp : status.lastMaxEndWindowTimestamp;
         if (maxEndWindowTimestamp >= lastMaxEndWindowTimestamp) {
           double tuplesProcessedPMSMA = 0.0;
           double tuplesEmittedPMSMA = 0.0;
@@ -1774,7 +1809,7 @@ public class StreamingContainerManager implements PlanContext
           //LOG.warn("This timestamp for {} is lower than the previous!! {} < {}", oper.getId(),
           // maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
         }
-        operatorLastEndWindowTimestamps.put(oper.getId(), maxEndWindowTimestamp);
+        status.lastMaxEndWindowTimestamp = maxEndWindowTimestamp;
         status.listenerStats.add(statsList);
         this.reportStats.put(oper, oper);
 
@@ -2016,6 +2051,7 @@ public class StreamingContainerManager implements PlanContext
         node.checkpoints.add(checkpoint);
       }
     }
+    checkpointsChanged.set(true);
   }
 
   public static class UpdateCheckpointsContext
@@ -2026,6 +2062,14 @@ public class StreamingContainerManager implements PlanContext
     public final long currentTms;
     public final boolean recovery;
     public final Map<OperatorMeta, Set<OperatorMeta>> checkpointGroups;
+    /**
+     * Earliest time at which one of the visited active operators can be detected as blocked.
+     */
+    public long blockedCheckMillis = Long.MAX_VALUE;
+    /**
+     * Whether the traversal moved the recovery checkpoint of any operator.
+     */
+    public boolean recoveryCheckpointsUpdated;
 
     public UpdateCheckpointsContext(Clock clock)
     {
@@ -2054,6 +2098,10 @@ public class StreamingContainerManager implements PlanContext
       ctx.committedWindowId.setValue(operator.getRecoveryCheckpoint().windowId);
     }
 
+    if (operator.getState() == PTOperator.State.ACTIVE) {
+      ctx.blockedCheckMillis = Math.min(ctx.blockedCheckMillis,
+          operator.stats.lastWindowIdChangeTms + operator.stats.windowProcessingTimeoutMillis);
+    }
     if (operator.getState() == PTOperator.State.ACTIVE &&
         (ctx.currentTms - operator.stats.lastWindowIdChangeTms) > operator.stats.windowProcessingTimeoutMillis) {
       // if the checkpoint is ahead, then it is not blocked but waiting for activation (state-less recovery, at-most-once)
@@ -2173,6 +2221,9 @@ public class StreamingContainerManager implements PlanContext
           }
         }
         //LOG.debug("Operator {} checkpoints: commit {} recent {}", new Object[] {operator.getName(), c1, operator.checkpoints});
+        if (!c1.equals(groupOper.getRecoveryCheckpoint())) {
+          ctx.recoveryCheckpointsUpdated = true;
+        }
         groupOper.setRecoveryCheckpoint(c1);
       } else {
         LOG.debug("Skipping checkpoint update {} during {}", groupOper, groupOper.getState());
@@ -2230,9 +2281,17 @@ public class StreamingContainerManager implements PlanContext
   /**
    * Visit all operators to update current checkpoint based on updated downstream state.
    * Purge older checkpoints that are no longer needed.
+   * The traversal is skipped while no checkpoint, deploy state or plan change was reported
+   * and no operator can have exceeded its window processing timeout since the previous pass.
    */
   private long updateCheckpoints(boolean recovery)
   {
+    long currentTms = clock.getTime();
+    if (!recovery && !checkpointsChanged.getAndSet(false) && currentTms < nextBlockedCheckTms
+        && currentTms - lastCheckpointUpdateTms < plan.getLogicalPlan().getValue(LogicalPlan.HEARTBEAT_TIMEOUT_MILLIS)) {
+      return committedWindowId;
+    }
+
     int operatorCount = 0;
     UpdateCheckpointsContext ctx = new UpdateCheckpointsContext(clock, recovery, getCheckpointGroups());
     for (OperatorMeta logicalOperator : plan.getLogicalPlan().getRootOperators()) {
@@ -2247,11 +2306,19 @@ public class StreamingContainerManager implements PlanContext
 
     // if no physical operators are available, then don't update committedWindowId
     if (operatorCount == 0) {
+      checkpointsChanged.set(true);
       return committedWindowId;
     }
 
     purgeCheckpoints();
 
+    lastCheckpointUpdateTms = ctx.currentTms;
+    nextBlockedCheckTms = ctx.blockedCheckMillis;
+    if (ctx.recoveryCheckpointsUpdated || !ctx.blocked.isEmpty() || ctx.committedWindowId.longValue() != committedWindowId) {
+      // moved checkpoints can allow upstream operators to move further in the next pass
+      checkpointsChanged.set(true);
+    }
+
     for (PTOperator oper : ctx.blocked) {
       String containerId = oper.getContainer().getExternalId();
       if (containerId != null) {
@@ -2273,26 +2340,45 @@ public class StreamingContainerManager implements PlanContext
 
   private void purgeCheckpoints()
   {
+    /*
+     * the checkpoints of an operator are purged in a single task, oldest first, for storage agents which keep
+     * checkpoints that later checkpoints depend on to see the deletes in order.
+     */
+    final Map<PTOperator, List<Long>> operatorCheckpoints = new LinkedHashMap<>();
     for (Pair<PTOperator, Long> p : purgeCheckpoints) {
       final PTOperator operator = p.getFirst();
       if (!operator.isOperatorStateLess()) {
-        final long windowId = p.getSecond();
-        Runnable r = new Runnable()
+        List<Long> windowIds = operatorCheckpoints.get(operator);
+        if (windowIds == null) {
+          windowIds = new ArrayList<>();
+          operatorCheckpoints.put(operator, windowIds);
+        }
+        windowIds.add(p.getSecond());
+      }
+    }
+    purgeCheckpoints.clear();
+
+    for (Map.Entry<PTOperator, List<Long>> entry : operatorCheckpoints.entrySet()) {
+      final PTOperator operator = entry.getKey();
+      final List<Long> windowIds = entry.getValue();
+      Collections.sort(windowIds);
+      Runnable r = new Runnable()
+      {
+        @Override
+        public void run()
         {
-          @Override
-          public void run()
-          {
+          StorageAgent agent = operator.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT);
+          for (long windowId : windowIds) {
             try {
-              operator.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT).delete(operator.getId(), windowId);
+              agent.delete(operator.getId(), windowId);
             } catch (IOException ex) {
               LOG.error("Failed to purge checkpoint for operator {} for windowId {}", operator, windowId, ex);
             }
           }
-        };
-        poolExecutor.submit(r);
-      }
+        }
+      };
+      poolExecutor.submit(r);
     }
-    purgeCheckpoints.clear();
   }
 
   /**
@@ -2355,6 +2441,7 @@ public class StreamingContainerManager implements PlanContext
       } finally {
         this.deployChangeCnt++;
         this.deployChangeInProgress.set(false);
+        this.checkpointsChanged.set(true);
       }
     }
   }
@@ -2446,6 +2533,8 @@ public class StreamingContainerManager implements PlanContext
     } finally {
       this.deployChangeCnt++;
       this.deployChangeInProgress.set(false);
+      this.checkpointsChanged.set(true);
+      this.latencyUpdateAll = true;
     }
   }
 
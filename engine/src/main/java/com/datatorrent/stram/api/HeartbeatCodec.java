@@ -0,0 +1,802 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.Stats.CheckpointStats;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+import com.datatorrent.api.StatsListener;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.RecoveryStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ShutdownType;
+
+/**
+ * Binary encoding of the heartbeat messages exchanged over the {@link StreamingContainerUmbilicalProtocol}.<p>
+ * <br>
+ * A message is written as its length followed by a version byte and a sequence of fields, each of them prefixed with
+ * a tag made of the field id and the wire type, and terminated by a zero tag. Numbers are variable length encoded and
+ * signed numbers zigzag encoded. Fields with an unknown id are skipped, so fields can be added without breaking older
+ * readers. The stats of the windows processed by an operator during a heartbeat interval are written in a single
+ * block, with the window ids and end window timestamps encoded as deltas from the previous window and the port ids
+ * and metric names written once per block. Values the codec does not know, like operator requests and responses or
+ * the deploy requests, are embedded using Java serialization.
+ *
+ * @since 3.7.0
+ */
+public final class HeartbeatCodec
+{
+  private static final Logger logger = LoggerFactory.getLogger(HeartbeatCodec.class);
+
+  public static final int VERSION = 1;
+
+  private static final int WIRE_VARINT = 0;
+  private static final int WIRE_BYTES = 1;
+
+  private static final int VALUE_NULL = 0;
+  private static final int VALUE_INTEGER = 1;
+  private static final int VALUE_LONG = 2;
+  private static final int VALUE_DOUBLE = 3;
+  private static final int VALUE_FLOAT = 4;
+  private static final int VALUE_STRING = 5;
+  private static final int VALUE_TRUE = 6;
+  private static final int VALUE_FALSE = 7;
+  private static final int VALUE_SERIALIZED = 8;
+  private static final int VALUE_CHECKPOINT = 9;
+
+  private static final int CHECKPOINT = 1;
+  private static final int CHECKPOINT_STATS = 1 << 1;
+  private static final int INPUT_PORTS = 1 << 2;
+  private static final int OUTPUT_PORTS = 1 << 3;
+  private static final int COUNTERS = 1 << 4;
+  private static final int METRICS = 1 << 5;
+
+  private HeartbeatCodec()
+  {
+  }
+
+  public static void write(ContainerHeartbeat heartbeat, DataOutput out) throws IOException
+  {
+    Encoder encoder = new Encoder();
+    encoder.writeByte(VERSION);
+    encoder.writeString(1, heartbeat.bufferServerHost);
+    encoder.writeField(2, heartbeat.bufferServerPort);
+    encoder.writeString(3, heartbeat.jvmName);
+    encoder.writeField(4, heartbeat.memoryMBFree);
+    encoder.writeField(5, heartbeat.restartRequested ? 1 : 0);
+    encoder.writeField(6, heartbeat.gcCollectionTime);
+    encoder.writeField(7, heartbeat.gcCollectionCount);
+    if (heartbeat.stats != null) {
+      encoder.writeString(8, heartbeat.stats.id);
+      if (heartbeat.stats.operators != null) {
+        for (OperatorHeartbeat operator : heartbeat.stats.operators) {
+          encoder.writeField(9, encode(operator));
+        }
+      }
+    }
+    encoder.writeField(10, heartbeat.sentTms);
+    encoder.writeString(11, heartbeat.stackTrace);
+    encoder.writeVarLong(0);
+    encoder.writeTo(out);
+  }
+
+  public static void read(ContainerHeartbeat heartbeat, DataInput in) throws IOException
+  {
+    Decoder decoder = Decoder.readFrom(in);
+    try {
+      decoder.readVersion();
+      ContainerStats stats = null;
+      int tag;
+      while ((tag = decoder.readTag()) != 0) {
+        switch (tag >>> 3) {
+          case 1:
+            heartbeat.bufferServerHost = decoder.readString();
+            break;
+          case 2:
+            heartbeat.bufferServerPort = (int)decoder.readSignedVarLong();
+            break;
+          case 3:
+            heartbeat.jvmName = decoder.readString();
+            break;
+          case 4:
+            heartbeat.memoryMBFree = (int)decoder.readSignedVarLong();
+            break;
+          case 5:
+            heartbeat.restartRequested = decoder.readVarLong() != 0;
+            break;
+          case 6:
+            heartbeat.gcCollectionTime = decoder.readSignedVarLong();
+            break;
+          case 7:
+            heartbeat.gcCollectionCount = decoder.readSignedVarLong();
+            break;
+          case 8:
+            stats = new ContainerStats(decoder.readString());
+            heartbeat.stats = stats;
+            break;
+          case 9:
+            if (stats == null) {
+              stats = new ContainerStats(null);
+              heartbeat.stats = stats;
+            }
+            stats.addNodeStats(decodeOperatorHeartbeat(decoder.readNested()));
+            break;
+          case 10:
+            heartbeat.sentTms = decoder.readSignedVarLong();
+            break;
+          case 11:
+            heartbeat.stackTrace = decoder.readString();
+            break;
+          default:
+            decoder.skip(tag);
+        }
+      }
+    } catch (Exception e) {
+      throw decoder.failed(heartbeat, e);
+    }
+  }
+
+  public static void write(ContainerHeartbeatResponse response, DataOutput out) throws IOException
+  {
+    Encoder encoder = new Encoder();
+    encoder.writeByte(VERSION);
+    if (response.shutdown != null) {
+      encoder.writeField(1, response.shutdown.ordinal());
+    }
+    if (response.nodeRequests != null) {
+      encoder.writeValue(2, response.nodeRequests);
+    }
+    encoder.writeField(3, response.hasPendingRequests ? 1 : 0);
+    if (response.undeployRequest != null) {
+      Encoder undeploy = new Encoder();
+      undeploy.writeVarLong(response.undeployRequest.size());
+      for (Integer operatorId : response.undeployRequest) {
+        undeploy.writeSignedVarLong(operatorId);
+      }
+      encoder.writeField(4, undeploy);
+    }
+    if (response.deployRequest != null) {
+      encoder.writeValue(5, response.deployRequest);
+    }
+    encoder.writeField(6, response.committedWindowId);
+    encoder.writeField(7, response.stackTraceRequired ? 1 : 0);
+    encoder.writeVarLong(0);
+    encoder.writeTo(out);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static void read(ContainerHeartbeatResponse response, DataInput in) throws IOException
+  {
+    Decoder decoder = Decoder.readFrom(in);
+    try {
+      decoder.readVersion();
+      int tag;
+      while ((tag = decoder.readTag()) != 0) {
+        switch (tag >>> 3) {
+          case 1:
+            response.shutdown = ShutdownType.values()[(int)decoder.readSignedVarLong()];
+            break;
+          case 2:
+            response.nodeRequests = (List<StreamingContainerUmbilicalProtocol.StramToNodeRequest>)decoder.readNested()
+                .readValue();
+            break;
+          case 3:
+            response.hasPendingRequests = decoder.readVarLong() != 0;
+            break;
+          case 4:
+            Decoder undeploy = decoder.readNested();
+            int count = (int)undeploy.readVarLong();
+            response.undeployRequest = new ArrayList<>(count);
+            while (count-- > 0) {
+              response.undeployRequest.add((int)undeploy.readSignedVarLong());
+            }
+            break;
+          case 5:
+            response.deployRequest = (List<OperatorDeployInfo>)decoder.readNested().readValue();
+            break;
+          case 6:
+            response.committedWindowId = decoder.readSignedVarLong();
+            break;
+          case 7:
+            response.stackTraceRequired = decoder.readVarLong() != 0;
+            break;
+          default:
+            decoder.skip(tag);
+        }
+      }
+    } catch (Exception e) {
+      throw decoder.failed(response, e);
+    }
+  }
+
+  private static Encoder encode(OperatorHeartbeat operator) throws IOException
+  {
+    Encoder encoder = new Encoder();
+    encoder.writeField(1, operator.nodeId);
+    encoder.writeField(2, operator.generatedTms);
+    encoder.writeField(3, operator.intervalMs);
+    if (operator.state != null) {
+      encoder.writeField(4, operator.state.ordinal());
+    }
+    if (operator.windowStats != null) {
+      encoder.writeField(5, encode(operator.windowStats));
+    }
+    if (operator.requestResponse != null) {
+      encoder.writeValue(6, operator.requestResponse);
+    }
+    if (operator.recoveryStats != null) {
+      encoder.writeField(7, encode(operator.recoveryStats));
+    }
+    encoder.writeVarLong(0);
+    return encoder;
+  }
+
+  private static Encoder encode(RecoveryStats recoveryStats)
+  {
+    Encoder encoder = new Encoder();
+    encoder.writeField(1, recoveryStats.checkpointWindowId);
+    encoder.writeField(2, recoveryStats.fetchMillis);
+    encoder.writeField(3, recoveryStats.deserializeMillis);
+    encoder.writeField(4, recoveryStats.replayMillis);
+    encoder.writeVarLong(0);
+    return encoder;
+  }
+
+  private static RecoveryStats decodeRecoveryStats(Decoder decoder) throws IOException
+  {
+    RecoveryStats recoveryStats = new RecoveryStats();
+    int tag;
+    while ((tag = decoder.readTag()) != 0) {
+      switch (tag >>> 3) {
+        case 1:
+          recoveryStats.checkpointWindowId = decoder.readSignedVarLong();
+          break;
+        case 2:
+          recoveryStats.fetchMillis = decoder.readSignedVarLong();
+          break;
+        case 3:
+          recoveryStats.deserializeMillis = decoder.readSignedVarLong();
+          break;
+        case 4:
+          recoveryStats.replayMillis = decoder.readSignedVarLong();
+          break;
+        default:
+          decoder.skip(tag);
+      }
+    }
+    return recoveryStats;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static OperatorHeartbeat decodeOperatorHeartbeat(Decoder decoder) throws IOException
+  {
+    OperatorHeartbeat operator = new OperatorHeartbeat();
+    int tag;
+    while ((tag = decoder.readTag()) != 0) {
+      switch (tag >>> 3) {
+        case 1:
+          operator.nodeId = (int)decoder.readSignedVarLong();
+          break;
+        case 2:
+          operator.generatedTms = decoder.readSignedVarLong();
+          break;
+        case 3:
+          operator.intervalMs = decoder.readSignedVarLong();
+          break;
+        case 4:
+          operator.state = OperatorHeartbeat.DeployState.values()[(int)decoder.readSignedVarLong()];
+          break;
+        case 5:
+          operator.windowStats = decodeWindowStats(decoder.readNested());
+          break;
+        case 6:
+          operator.requestResponse = (ArrayList<StatsListener.OperatorResponse>)decoder.readNested().readValue();
+          break;
+        case 7:
+          operator.recoveryStats = decodeRecoveryStats(decoder.readNested());
+          break;
+        default:
+          decoder.skip(tag);
+      }
+    }
+    return operator;
+  }
+
+  /**
+   * Writes the stats of consecutive windows with the window ids and the end window timestamps of the ports encoded as
+   * deltas from the previous window.
+   */
+  private static Encoder encode(List<OperatorStats> windowStats) throws IOException
+  {
+    Encoder encoder = new Encoder();
+    encoder.writeVarLong(windowStats.size());
+    OperatorStats previous = null;
+    for (OperatorStats stats : windowStats) {
+      int flags = 0;
+      if (stats.checkpoint != null) {
+        flags |= CHECKPOINT;
+      }
+      if (stats.checkpointStats != null) {
+        flags |= CHECKPOINT_STATS;
+      }
+      if (stats.inputPorts != null) {
+        flags |= INPUT_PORTS;
+      }
+      if (stats.outputPorts != null) {
+        flags |= OUTPUT_PORTS;
+      }
+      if (stats.counters != null) {
+        flags |= COUNTERS;
+      }
+      if (stats.metrics != null) {
+        flags |= METRICS;
+      }
+      encoder.writeVarLong(flags);
+      encoder.writeSignedVarLong(stats.windowId - (previous == null ? 0 : previous.windowId));
+      encoder.writeSignedVarLong(stats.cpuTimeUsed);
+      encoder.writeStringRef(stats.recordingId);
+      if (stats.checkpoint != null) {
+        if (stats.checkpoint instanceof Checkpoint) {
+          Checkpoint checkpoint = (Checkpoint)stats.checkpoint;
+          encoder.writeVarLong(VALUE_CHECKPOINT);
+          encoder.writeSignedVarLong(checkpoint.windowId - stats.windowId);
+          encoder.writeSignedVarLong(checkpoint.applicationWindowCount);
+          encoder.writeSignedVarLong(checkpoint.checkpointWindowCount);
+        } else {
+          encoder.writeValue(stats.checkpoint);
+        }
+      }
+      if (stats.checkpointStats != null) {
+        encoder.writeSignedVarLong(stats.checkpointStats.checkpointStartTime);
+        encoder.writeSignedVarLong(stats.checkpointStats.checkpointTime);
+        encoder.writeSignedVarLong(stats.checkpointStats.checkpointSize);
+        encoder.writeSignedVarLong(stats.checkpointStats.uploadedBytes);
+        encoder.writeSignedVarLong(stats.checkpointStats.serializationTime);
+        encoder.writeSignedVarLong(stats.checkpointStats.uploadTime);
+      }
+      if (stats.inputPorts != null) {
+        encode(encoder, stats.inputPorts, previous == null ? null : previous.inputPorts);
+      }
+      if (stats.outputPorts != null) {
+        encode(encoder, stats.outputPorts, previous == null ? null : previous.outputPorts);
+      }
+      if (stats.counters != null) {
+        encoder.writeValue(stats.counters);
+      }
+      if (stats.metrics != null) {
+        encoder.writeVarLong(stats.metrics.size());
+        for (Map.Entry<String, Object> entry : stats.metrics.entrySet()) {
+          encoder.writeStringRef(entry.getKey());
+          encoder.writeValue(entry.getValue());
+        }
+      }
+      previous = stats;
+    }
+    return encoder;
+  }
+
+  private static void encode(Encoder encoder, List<PortStats> ports, List<PortStats> previous) throws IOException
+  {
+    encoder.writeVarLong(ports.size());
+    for (int i = 0; i < ports.size(); i++) {
+      PortStats port = ports.get(i);
+      encoder.writeStringRef(port.id);
+      encoder.writeSignedVarLong(port.tupleCount);
+      encoder.writeSignedVarLong(port.endWindowTimestamp - endWindowTimestamp(previous, i));
+      encoder.writeSignedVarLong(port.bufferServerBytes);
+      encoder.writeSignedVarLong(port.bufferServerLagBytes);
+      encoder.writeSignedVarLong(port.decodeTime);
+      encoder.writeSignedVarLong(port.queueSize);
+      encoder.writeStringRef(port.recordingId);
+    }
+  }
+
+  private static ArrayList<OperatorStats> decodeWindowStats(Decoder decoder) throws IOException
+  {
+    int count = (int)decoder.readVarLong();
+    ArrayList<OperatorStats> windowStats = new ArrayList<>(count);
+    OperatorStats previous = null;
+    while (count-- > 0) {
+      OperatorStats stats = new OperatorStats();
+      int flags = (int)decoder.readVarLong();
+      stats.windowId = decoder.readSignedVarLong() + (previous == null ? 0 : previous.windowId);
+      stats.cpuTimeUsed = decoder.readSignedVarLong();
+      stats.recordingId = decoder.readStringRef();
+      if ((flags & CHECKPOINT) != 0) {
+        int type = (int)decoder.readVarLong();
+        if (type == VALUE_CHECKPOINT) {
+          stats.checkpoint = new Checkpoint(decoder.readSignedVarLong() + stats.windowId,
+              (int)decoder.readSignedVarLong(), (int)decoder.readSignedVarLong());
+        } else {
+          stats.checkpoint = (com.datatorrent.api.Stats.Checkpoint)decoder.readValue(type);
+        }
+      }
+      if ((flags & CHECKPOINT_STATS) != 0) {
+        stats.checkpointStats = new CheckpointStats();
+        stats.checkpointStats.checkpointStartTime = decoder.readSignedVarLong();
+        stats.checkpointStats.checkpointTime = decoder.readSignedVarLong();
+        stats.checkpointStats.checkpointSize = decoder.readSignedVarLong();
+        stats.checkpointStats.uploadedBytes = decoder.readSignedVarLong();
+        stats.checkpointStats.serializationTime = decoder.readSignedVarLong();
+        stats.checkpointStats.uploadTime = decoder.readSignedVarLong();
+      }
+      if ((flags & INPUT_PORTS) != 0) {
+        stats.inputPorts = decodePorts(decoder, previous == null ? null : previous.inputPorts);
+      }
+      if ((flags & OUTPUT_PORTS) != 0) {
+        stats.outputPorts = decodePorts(decoder, previous == null ? null : previous.outputPorts);
+      }
+      if ((flags & COUNTERS) != 0) {
+        stats.counters = decoder.readValue();
+      }
+      if ((flags & METRICS) != 0) {
+        int size = (int)decoder.readVarLong();
+        stats.metrics = new HashMap<>(size << 1);
+        while (size-- > 0) {
+          stats.metrics.put(decoder.readStringRef(), decoder.readValue());
+        }
+      }
+      windowStats.add(stats);
+      previous = stats;
+    }
+    return windowStats;
+  }
+
+  private static ArrayList<PortStats> decodePorts(Decoder decoder, List<PortStats> previous) throws IOException
+  {
+    int count = (int)decoder.readVarLong();
+    ArrayList<PortStats> ports = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      PortStats port = new PortStats(decoder.readStringRef());
+      port.tupleCount = (int)decoder.readSignedVarLong();
+      port.endWindowTimestamp = decoder.readSignedVarLong() + endWindowTimestamp(previous, i);
+      port.bufferServerBytes = decoder.readSignedVarLong();
+      port.bufferServerLagBytes = decoder.readSignedVarLong();
+      port.decodeTime = decoder.readSignedVarLong();
+      port.queueSize = (int)decoder.readSignedVarLong();
+      port.recordingId = decoder.readStringRef();
+      ports.add(port);
+    }
+    return ports;
+  }
+
+  private static long endWindowTimestamp(List<PortStats> ports, int index)
+  {
+    return ports != null && index < ports.size() ? ports.get(index).endWindowTimestamp : 0;
+  }
+
+  private static class Encoder
+  {
+    private byte[] buffer = new byte[256];
+    private int position;
+    private Map<String, Integer> strings;
+
+    void writeByte(int value)
+    {
+      ensureCapacity(1);
+      buffer[position++] = (byte)value;
+    }
+
+    void writeVarLong(long value)
+    {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte)((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte)value;
+    }
+
+    void writeSignedVarLong(long value)
+    {
+      writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length)
+    {
+      writeVarLong(length);
+      ensureCapacity(length);
+      System.arraycopy(bytes, offset, buffer, position, length);
+      position += length;
+    }
+
+    void writeField(int id, long value)
+    {
+      writeVarLong(id << 3 | WIRE_VARINT);
+      writeSignedVarLong(value);
+    }
+
+    void writeField(int id, Encoder nested)
+    {
+      writeVarLong(id << 3 | WIRE_BYTES);
+      writeBytes(nested.buffer, 0, nested.position);
+    }
+
+    void writeString(int id, String value)
+    {
+      if (value != null) {
+        writeVarLong(id << 3 | WIRE_BYTES);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeBytes(bytes, 0, bytes.length);
+      }
+    }
+
+    void writeValue(int id, Object value) throws IOException
+    {
+      Encoder nested = new Encoder();
+      nested.writeValue(value);
+      writeField(id, nested);
+    }
+
+    /**
+     * Writes a string which is likely to repeat as a reference to its first occurrence in the encoder.
+     */
+    void writeStringRef(String value)
+    {
+      if (value == null) {
+        writeVarLong(0);
+        return;
+      }
+      if (strings == null) {
+        strings = new HashMap<>();
+      }
+      Integer ref = strings.get(value);
+      if (ref == null) {
+        ref = strings.size() + 1;
+        strings.put(value, ref);
+        writeVarLong(ref);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeBytes(bytes, 0, bytes.length);
+      } else {
+        writeVarLong(ref);
+      }
+    }
+
+    void writeValue(Object value) throws IOException
+    {
+      if (value == null) {
+        writeVarLong(VALUE_NULL);
+      } else if (value instanceof Integer) {
+        writeVarLong(VALUE_INTEGER);
+        writeSignedVarLong((Integer)value);
+      } else if (value instanceof Long) {
+        writeVarLong(VALUE_LONG);
+        writeSignedVarLong((Long)value);
+      } else if (value instanceof Double) {
+        writeVarLong(VALUE_DOUBLE);
+        writeVarLong(Long.reverseBytes(Double.doubleToRawLongBits((Double)value)));
+      } else if (value instanceof Float) {
+        writeVarLong(VALUE_FLOAT);
+        writeVarLong(Integer.reverseBytes(Float.floatToRawIntBits((Float)value)) & 0xFFFFFFFFL);
+      } else if (value instanceof String) {
+        writeVarLong(VALUE_STRING);
+        writeStringRef((String)value);
+      } else if (value instanceof Boolean) {
+        writeVarLong((Boolean)value ? VALUE_TRUE : VALUE_FALSE);
+      } else {
+        writeVarLong(VALUE_SERIALIZED);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+          oos.writeObject(value);
+        }
+        writeBytes(bos.toByteArray(), 0, bos.size());
+      }
+    }
+
+    void writeTo(DataOutput out) throws IOException
+    {
+      out.writeInt(position);
+      out.write(buffer, 0, position);
+    }
+
+    private void ensureCapacity(int length)
+    {
+      if (position + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + length));
+      }
+    }
+  }
+
+  private static class Decoder
+  {
+    private final byte[] buffer;
+    private int position;
+    private final int limit;
+    private List<String> strings;
+
+    Decoder(byte[] buffer, int position, int limit)
+    {
+      this.buffer = buffer;
+      this.position = position;
+      this.limit = limit;
+    }
+
+    static Decoder readFrom(DataInput in) throws IOException
+    {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return new Decoder(bytes, 0, bytes.length);
+    }
+
+    void readVersion() throws IOException
+    {
+      final int version = readByte();
+      if (version < 1 || version > VERSION) {
+        throw new IOException("Unsupported heartbeat encoding version " + version);
+      }
+    }
+
+    int readByte() throws IOException
+    {
+      if (position >= limit) {
+        throw new IOException("Unexpected end of heartbeat at " + position);
+      }
+      return buffer[position++] & 0xFF;
+    }
+
+    long readVarLong() throws IOException
+    {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        final int b = readByte();
+        value |= (long)(b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed variable length number at " + position);
+    }
+
+    long readSignedVarLong() throws IOException
+    {
+      final long value = readVarLong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readTag() throws IOException
+    {
+      return (int)readVarLong();
+    }
+
+    private int readLength() throws IOException
+    {
+      final int length = (int)readVarLong();
+      if (length < 0 || length > limit - position) {
+        throw new IOException("Invalid length " + length + " at " + position);
+      }
+      return length;
+    }
+
+    String readString() throws IOException
+    {
+      final int length = readLength();
+      String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+
+    String readStringRef() throws IOException
+    {
+      final int ref = (int)readVarLong();
+      if (ref == 0) {
+        return null;
+      }
+      if (strings == null) {
+        strings = new ArrayList<>();
+      }
+      if (ref == strings.size() + 1) {
+        strings.add(readString());
+      }
+      return strings.get(ref - 1);
+    }
+
+    Decoder readNested() throws IOException
+    {
+      final int length = readLength();
+      Decoder nested = new Decoder(buffer, position, position + length);
+      position += length;
+      return nested;
+    }
+
+    Object readValue() throws IOException
+    {
+      return readValue((int)readVarLong());
+    }
+
+    Object readValue(int type) throws IOException
+    {
+      switch (type) {
+        case VALUE_NULL:
+          return null;
+        case VALUE_INTEGER:
+          return (int)readSignedVarLong();
+        case VALUE_LONG:
+          return readSignedVarLong();
+        case VALUE_DOUBLE:
+          return Double.longBitsToDouble(Long.reverseBytes(readVarLong()));
+        case VALUE_FLOAT:
+          return Float.intBitsToFloat(Integer.reverseBytes((int)readVarLong()));
+        case VALUE_STRING:
+          return readStringRef();
+        case VALUE_TRUE:
+          return Boolean.TRUE;
+        case VALUE_FALSE:
+          return Boolean.FALSE;
+        case VALUE_SERIALIZED:
+          return readSerialized();
+        default:
+          throw new IOException("Unknown value type " + type + " at " + position);
+      }
+    }
+
+    Object readSerialized() throws IOException
+    {
+      final int length = readLength();
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(buffer, position, length))) {
+        position += length;
+        return ois.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException(e);
+      }
+    }
+
+    void skip(int tag) throws IOException
+    {
+      switch (tag & 0x7) {
+        case WIRE_VARINT:
+          readVarLong();
+          break;
+        case WIRE_BYTES:
+          position += readLength();
+          break;
+        default:
+          throw new IOException("Unknown wire type in tag " + tag + " at " + position);
+      }
+    }
+
+    IOException failed(Object message, Exception e) throws IOException
+    {
+      final Path path = Files.createTempFile("apex-rpc-raw-dump-", ".ser");
+      logger.error("Failed to de-serialize {}. Writing raw data to {}.", message.getClass().getName(), path, e);
+      Files.write(path, buffer);
+      return e instanceof IOException ? (IOException)e : new IOException(e);
+    }
+  }
+}
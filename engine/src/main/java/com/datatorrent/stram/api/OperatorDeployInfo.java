@@ -234,6 +234,10 @@ public class OperatorDeployInfo implements Serializable, OperatorContext
     public int bufferServerPort;
     public byte[] bufferServerToken;
     public Map<Integer, StreamCodec<?>> streamCodecs = new HashMap<>();
+    /**
+     * Node local subscribers which read from shared memory, sink identifier mapped to stream codec identifier.
+     */
+    public Map<String, Integer> sharedMemorySinks = new HashMap<>();
     /**
      * Context attributes for output port
      */
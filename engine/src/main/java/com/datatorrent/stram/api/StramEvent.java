@@ -377,6 +377,83 @@ public abstract class StramEvent
 
   }
 
+  public static class OperatorRecoveryEvent extends PhysicalOperatorEvent
+  {
+    private String containerId;
+    private long checkpointWindowId;
+    private long fetchMillis;
+    private long deserializeMillis;
+    private long replayMillis;
+
+    public OperatorRecoveryEvent(String operatorName, int operatorId, String containerId, long checkpointWindowId,
+        long fetchMillis, long deserializeMillis, long replayMillis)
+    {
+      super(operatorName, operatorId, LogLevel.INFO);
+      this.containerId = containerId;
+      this.checkpointWindowId = checkpointWindowId;
+      this.fetchMillis = fetchMillis;
+      this.deserializeMillis = deserializeMillis;
+      this.replayMillis = replayMillis;
+    }
+
+    @Override
+    public String getType()
+    {
+      return "OperatorRecovery";
+    }
+
+    public String getContainerId()
+    {
+      return containerId;
+    }
+
+    public void setContainerId(String containerId)
+    {
+      this.containerId = containerId;
+    }
+
+    public long getCheckpointWindowId()
+    {
+      return checkpointWindowId;
+    }
+
+    public void setCheckpointWindowId(long checkpointWindowId)
+    {
+      this.checkpointWindowId = checkpointWindowId;
+    }
+
+    public long getFetchMillis()
+    {
+      return fetchMillis;
+    }
+
+    public void setFetchMillis(long fetchMillis)
+    {
+      this.fetchMillis = fetchMillis;
+    }
+
+    public long getDeserializeMillis()
+    {
+      return deserializeMillis;
+    }
+
+    public void setDeserializeMillis(long deserializeMillis)
+    {
+      this.deserializeMillis = deserializeMillis;
+    }
+
+    public long getReplayMillis()
+    {
+      return replayMillis;
+    }
+
+    public void setReplayMillis(long replayMillis)
+    {
+      this.replayMillis = replayMillis;
+    }
+
+  }
+
   public static class SetPhysicalOperatorPropertyEvent extends PhysicalOperatorEvent
   {
     private String propertyName;
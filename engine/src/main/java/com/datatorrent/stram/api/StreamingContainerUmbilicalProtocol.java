@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.api;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -54,7 +56,7 @@ import com.datatorrent.stram.util.AbstractWritableAdapter;
 @InterfaceStability.Stable
 public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
 {
-  long versionID = 201208081755L;
+  long versionID = 201710171200L;
 
   /**
    * Initialization parameters for StramChild container. Container
@@ -186,6 +188,44 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
      * Return the response of the request
      */
     public ArrayList<StatsListener.OperatorResponse> requestResponse;
+
+    /**
+     * Time it took to restore the operator from its checkpoint, sent once after the operator was recovered.
+     */
+    public RecoveryStats recoveryStats;
+  }
+
+  /**
+   * Breakdown of the time it took to restore an operator from its checkpoint when the container was deployed.
+   *
+   * @since 3.7.0
+   */
+  class RecoveryStats implements Serializable
+  {
+    private static final long serialVersionUID = 201610170001L;
+    /**
+     * Window id of the checkpoint the operator was restored to.
+     */
+    public long checkpointWindowId;
+    /**
+     * Milliseconds spent reading the checkpoint from the storage agent.
+     */
+    public long fetchMillis;
+    /**
+     * Milliseconds spent deserializing the operator from the checkpoint.
+     */
+    public long deserializeMillis;
+    /**
+     * Milliseconds from the activation of the operator until it completed its first window.
+     */
+    public long replayMillis;
+
+    @Override
+    public String toString()
+    {
+      return "RecoveryStats{" + "checkpointWindowId=" + checkpointWindowId + ", fetchMillis=" + fetchMillis
+          + ", deserializeMillis=" + deserializeMillis + ", replayMillis=" + replayMillis + '}';
+    }
   }
 
   class ContainerStats implements Stats
@@ -256,6 +296,18 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
     }
 
     public String stackTrace;
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+      HeartbeatCodec.write(this, out);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+      HeartbeatCodec.read(this, in);
+    }
   }
 
   /**
@@ -403,6 +455,18 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
     public long committedWindowId = -1;
 
     public boolean stackTraceRequired = false;
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+      HeartbeatCodec.write(this, out);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+      HeartbeatCodec.read(this, in);
+    }
   }
 
   /**
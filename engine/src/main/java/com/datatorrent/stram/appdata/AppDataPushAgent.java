@@ -18,14 +18,7 @@
  */
 package com.datatorrent.stram.appdata;
 
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -51,6 +44,7 @@ import com.datatorrent.stram.StramAppContext;
 import com.datatorrent.stram.StreamingContainerManager;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.logical.MetricAggregatorMeta;
+import com.datatorrent.stram.util.AutoMetricAccessors;
 import com.datatorrent.stram.webapp.LogicalOperatorInfo;
 
 /**
@@ -68,8 +62,6 @@ public class AppDataPushAgent extends AbstractService
   private final StramAppContext appContext;
   private final AppDataPushThread appDataPushThread = new AppDataPushThread();
   private AutoMetric.Transport metricsTransport;
-  private final Map<Class<?>, List<Field>> cacheFields = new HashMap<>();
-  private final Map<Class<?>, Map<String, Method>> cacheGetMethods = new HashMap<>();
 
   private final Map<String, Long> operatorsSchemaLastSentTime = new HashMap<>();
   private final Map<String, JSONObject> operatorSchemas = new HashMap<>();
@@ -179,62 +171,11 @@ public class AppDataPushAgent extends AbstractService
 
   private JSONObject extractFields(Object o)
   {
-    List<Field> fields;
-    Map<String, Method> methods;
-
-    if (cacheFields.containsKey(o.getClass())) {
-      fields = cacheFields.get(o.getClass());
-    } else {
-      fields = new ArrayList<>();
-
-      for (Class<?> c = o.getClass(); c != Object.class; c = c.getSuperclass()) {
-        Field[] declaredFields = c.getDeclaredFields();
-        for (Field field : declaredFields) {
-          field.setAccessible(true);
-          AutoMetric rfa = field.getAnnotation(AutoMetric.class);
-          if (rfa != null) {
-            field.setAccessible(true);
-            try {
-              fields.add(field);
-            } catch (Exception ex) {
-              LOG.debug("Error extracting fields for app data: {}. Ignoring.", ex.getMessage());
-            }
-          }
-        }
-      }
-      cacheFields.put(o.getClass(), fields);
-    }
+    AutoMetricAccessors accessors = AutoMetricAccessors.get(o.getClass());
     JSONObject result = new JSONObject();
-    for (Field field : fields) {
-      try {
-        result.put(field.getName(), field.get(o));
-      } catch (Exception ex) {
-        // ignore
-      }
-    }
-    if (cacheGetMethods.containsKey(o.getClass())) {
-      methods = cacheGetMethods.get(o.getClass());
-    } else {
-      methods = new HashMap<>();
-      try {
-        BeanInfo info = Introspector.getBeanInfo(o.getClass());
-        for (PropertyDescriptor pd : info.getPropertyDescriptors()) {
-          Method method = pd.getReadMethod();
-          if (pd.getReadMethod() != null) {
-            AutoMetric rfa = method.getAnnotation(AutoMetric.class);
-            if (rfa != null) {
-              methods.put(pd.getName(), method);
-            }
-          }
-        }
-      } catch (IntrospectionException ex) {
-        // ignore
-      }
-      cacheGetMethods.put(o.getClass(), methods);
-    }
-    for (Map.Entry<String, Method> entry : methods.entrySet()) {
+    for (int i = 0; i < accessors.size(); i++) {
       try {
-        result.put(entry.getKey(), entry.getValue().invoke(o));
+        result.put(accessors.getName(i), accessors.getValue(i, o));
       } catch (Exception ex) {
         // ignore
       }
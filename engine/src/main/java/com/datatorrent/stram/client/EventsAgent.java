@@ -34,10 +34,10 @@ import org.codehaus.jettison.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.fs.Path;
 
 import com.datatorrent.common.util.Pair;
+import com.datatorrent.stram.util.ColumnarPartFileReader;
 import com.datatorrent.stram.util.FSPartFileCollection;
 
 /**
@@ -95,14 +95,10 @@ public final class EventsAgent extends FSPartFileAgent
     int cursor = 2;
     int cursor2 = line.indexOf(':', cursor);
     info.partFile = line.substring(cursor, cursor2);
-    cursor = cursor2 + 1;
-    cursor2 = line.indexOf(':', cursor);
-    String timeRange = line.substring(cursor, cursor2);
-    String[] tmp = timeRange.split("-");
-    info.startTime = Long.valueOf(tmp[0]);
-    info.endTime = Long.valueOf(tmp[1]);
-    cursor = cursor2 + 1;
-    info.numEvents = Long.valueOf(line.substring(cursor));
+    long[] timeRangeAndCount = parseTimeRangeAndCount(line, cursor2 + 1);
+    info.startTime = timeRangeAndCount[0];
+    info.endTime = timeRangeAndCount[1];
+    info.numEvents = timeRangeAndCount[2];
     return info;
   }
 
@@ -115,7 +111,9 @@ public final class EventsAgent extends FSPartFileAgent
     }
     long totalNumEvents = 0;
     LinkedList<Pair<String, Long>> partFiles = new LinkedList<>();
+    boolean columnar;
     try (IndexFileBufferedReader ifbr = new IndexFileBufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.INDEX_FILE))), dir)) {
+      columnar = isColumnar(getVersion(dir));
       EventsIndexLine indexLine;
       while ((indexLine = (EventsIndexLine)ifbr.readIndexLine()) != null) {
         if (indexLine.isEndLine) {
@@ -140,8 +138,8 @@ public final class EventsAgent extends FSPartFileAgent
     }
     String lastProcessPartFile = null;
     for (Pair<String, Long> partFile : partFiles) {
-      try (BufferedReader partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, partFile.first))))) {
-        processPartFile(partBr, null, null, offset, limit, result);
+      try {
+        processPartFile(dir, partFile.first, columnar, null, null, offset, limit, result);
         offset = 0;
         lastProcessPartFile = partFile.first;
       } catch (Exception ex) {
@@ -150,17 +148,13 @@ public final class EventsAgent extends FSPartFileAgent
 
     }
 
-    BufferedReader partBr = null;
     try {
       String extraPartFile = getNextPartFile(lastProcessPartFile);
       if (extraPartFile != null && limit > 0) {
-        partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, extraPartFile))));
-        processPartFile(partBr, null, null, 0, Integer.MAX_VALUE, result);
+        processPartFile(dir, extraPartFile, columnar, null, null, 0, Integer.MAX_VALUE, result);
       }
     } catch (Exception ex) {
       // ignore
-    } finally {
-      IOUtils.closeQuietly(partBr);
     }
     while (result.size() > limit) {
       result.removeFirst();
@@ -176,6 +170,7 @@ public final class EventsAgent extends FSPartFileAgent
       return null;
     }
     try (IndexFileBufferedReader ifbr = new IndexFileBufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.INDEX_FILE))), dir)) {
+      boolean columnar = isColumnar(getVersion(dir));
       EventsIndexLine indexLine;
       String lastProcessPartFile = null;
       while ((indexLine = (EventsIndexLine)ifbr.readIndexLine()) != null) {
@@ -195,23 +190,16 @@ public final class EventsAgent extends FSPartFileAgent
           }
         }
 
-        try (BufferedReader partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, indexLine.partFile))))) {
-          offset = processPartFile(partBr, fromTime, toTime, offset, limit, result);
-          limit -= result.size();
-        }
+        offset = processPartFile(dir, indexLine.partFile, columnar, fromTime, toTime, offset, limit, result);
+        limit -= result.size();
       }
-      BufferedReader partBr = null;
       try {
         String extraPartFile = getNextPartFile(lastProcessPartFile);
         if (extraPartFile != null && limit > 0) {
-          partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem()
-              .open(new Path(dir, extraPartFile))));
-          processPartFile(partBr, fromTime, toTime, offset, limit, result);
+          processPartFile(dir, extraPartFile, columnar, fromTime, toTime, offset, limit, result);
         }
       } catch (Exception ex) {
         // ignore
-      } finally {
-        IOUtils.closeQuietly(partBr);
       }
     } catch (Exception ex) {
       LOG.warn("Cannot read events for {}: {}", appId, ex);
@@ -220,6 +208,48 @@ public final class EventsAgent extends FSPartFileAgent
     return result;
   }
 
+  private long processPartFile(String dir, String partFile, boolean columnar, Long fromTime, Long toTime, long offset, int limit, List<EventInfo> result) throws IOException
+  {
+    if (!columnar) {
+      try (BufferedReader partBr = openPartFile(dir, partFile)) {
+        return processPartFile(partBr, fromTime, toTime, offset, limit, result);
+      }
+    }
+    try (ColumnarPartFileReader reader = openColumnarPartFile(dir, partFile)) {
+      ColumnarPartFileReader.Block block;
+      while (limit > 0 && (block = reader.nextBlock(fromTime, toTime)) != null) {
+        // the columns are only inflated once the offset is used up
+        Map<String, String[]> columns = null;
+        for (int i = 0; i < block.rowCount && limit > 0; i++) {
+          long timestamp = block.timestamps[i];
+          if ((fromTime == null || timestamp >= fromTime) && (toTime == null || timestamp <= toTime)) {
+            if (offset > 0) {
+              offset--;
+              continue;
+            }
+            if (columns == null) {
+              columns = block.readColumns(null);
+            }
+            EventInfo ev = new EventInfo();
+            ev.timestamp = timestamp;
+            ev.type = block.keys[i];
+            ev.data = new HashMap<>();
+            for (Map.Entry<String, String[]> entry : columns.entrySet()) {
+              String value = entry.getValue()[i];
+              if (value != null) {
+                ev.data.put(entry.getKey(), value);
+              }
+            }
+            ev.id = Long.valueOf(ev.data.remove("id"));
+            result.add(ev);
+            limit--;
+          }
+        }
+      }
+    }
+    return offset;
+  }
+
   @SuppressWarnings("unchecked")
   private long processPartFile(BufferedReader partBr, Long fromTime, Long toTime, long offset, int limit, List<EventInfo> result) throws IOException
   {
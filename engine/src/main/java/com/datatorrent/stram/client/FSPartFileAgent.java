@@ -26,6 +26,12 @@ import java.util.Map;
 
 import org.codehaus.jettison.json.JSONException;
 
+import org.apache.hadoop.fs.Path;
+
+import com.datatorrent.stram.util.ColumnarPartFileCollection;
+import com.datatorrent.stram.util.ColumnarPartFileReader;
+import com.datatorrent.stram.util.FSPartFileCollection;
+
 /**
  * <p>Abstract FSPartFileAgent class.</p>
  *
@@ -48,12 +54,69 @@ public abstract class FSPartFileAgent
     lastIndexLines.put(basePath, line);
   }
 
+  /**
+   * Returns the format version stored in the first line of the meta file of the given part file collection.
+   */
+  protected String getVersion(String dir) throws IOException
+  {
+    try (BufferedReader br = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.META_FILE))))) {
+      return br.readLine();
+    }
+  }
+
+  protected static boolean isSupportedVersion(String version)
+  {
+    return ColumnarPartFileCollection.VERSION.equals(version) || ColumnarPartFileCollection.JSON_LINES_VERSION.equals(version);
+  }
+
+  protected static boolean isColumnar(String version)
+  {
+    return ColumnarPartFileCollection.VERSION.equals(version);
+  }
+
+  protected BufferedReader openPartFile(String dir, String partFile) throws IOException
+  {
+    return new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, partFile))));
+  }
+
+  protected ColumnarPartFileReader openColumnarPartFile(String dir, String partFile) throws IOException
+  {
+    return new ColumnarPartFileReader(stramAgent.getFileSystem().open(new Path(dir, partFile)));
+  }
+
   protected static class IndexLine
   {
     public boolean isEndLine = false;
     public String partFile;
   }
 
+  /**
+   * Parses the time range and the item count of an index line of the form
+   * {@code F:<part file>:<start>-<end>:<count>[:T:<first record>-<last record>]}. When the line carries the time
+   * range of the records in the part file, that range is returned instead of the time the part file was open.
+   *
+   * @return the start time, end time and item count
+   */
+  protected static long[] parseTimeRangeAndCount(String line, int cursor)
+  {
+    int cursor2 = line.indexOf(':', cursor);
+    String[] tmp = line.substring(cursor, cursor2).split("-");
+    long[] result = new long[] {Long.valueOf(tmp[0]), Long.valueOf(tmp[1]), 0};
+    cursor = cursor2 + 1;
+    cursor2 = line.indexOf(':', cursor);
+    if (cursor2 < 0) {
+      result[2] = Long.valueOf(line.substring(cursor));
+    } else {
+      result[2] = Long.valueOf(line.substring(cursor, cursor2));
+      if (line.startsWith("T:", cursor2 + 1)) {
+        tmp = line.substring(cursor2 + 3).split("-");
+        result[0] = Long.valueOf(tmp[0]);
+        result[1] = Long.valueOf(tmp[1]);
+      }
+    }
+    return result;
+  }
+
   protected class IndexFileBufferedReader extends BufferedReader
   {
     private final String basePath;
@@ -19,7 +19,9 @@
 package com.datatorrent.stram.client;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -357,7 +359,7 @@ public final class RecordingsAgent extends FSPartFileAgent
       br = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.META_FILE))));
       String line;
       line = br.readLine();
-      if (!line.equals("1.2")) {
+      if (!line.equals(TupleRecorder.VERSION) && !line.equals(TupleRecorder.BINARY_VERSION)) {
         throw new Exception("Unexpected line: " + line);
       }
       line = br.readLine();
@@ -470,6 +472,7 @@ public final class RecordingsAgent extends FSPartFileAgent
       return null;
     }
     try (IndexFileBufferedReader ifbr = new IndexFileBufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.INDEX_FILE))), dir)) {
+      boolean binary = isBinaryRecording(dir);
       long currentOffset = 0;
       boolean readPartFile = false;
       MutableLong numRemainingTuples = new MutableLong(limit);
@@ -520,8 +523,8 @@ public final class RecordingsAgent extends FSPartFileAgent
 
         if (readPartFile) {
           lastProcessPartFile = indexLine.partFile;
-          try (BufferedReader partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, indexLine.partFile))))) {
-            processPartFile(partBr, queryType, low, high, limit, ports, numRemainingTuples, currentTimestamp, currentWindowLow, currentOffset, info);
+          try (InputStream partIs = stramAgent.getFileSystem().open(new Path(dir, indexLine.partFile))) {
+            processPartFile(partIs, binary, queryType, low, high, limit, ports, numRemainingTuples, currentTimestamp, currentWindowLow, currentOffset, info);
             currentOffset += numTuples;
           }
         }
@@ -530,17 +533,17 @@ public final class RecordingsAgent extends FSPartFileAgent
           return info;
         }
       }
-      BufferedReader partBr = null;
+      InputStream partIs = null;
       try {
         String extraPartFile = getNextPartFile(lastProcessPartFile);
         if (extraPartFile != null) {
-          partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, extraPartFile))));
-          processPartFile(partBr, queryType, low, high, limit, ports, numRemainingTuples, currentTimestamp, new MutableLong(), currentOffset, info);
+          partIs = stramAgent.getFileSystem().open(new Path(dir, extraPartFile));
+          processPartFile(partIs, binary, queryType, low, high, limit, ports, numRemainingTuples, currentTimestamp, new MutableLong(), currentOffset, info);
         }
       } catch (Exception ex) {
         // ignore
       } finally {
-        IOUtils.closeQuietly(partBr);
+        IOUtils.closeQuietly(partIs);
       }
 
     } catch (Exception ex) {
@@ -551,68 +554,109 @@ public final class RecordingsAgent extends FSPartFileAgent
     return info;
   }
 
-  private void processPartFile(BufferedReader partBr, QueryType queryType, long low, long high, long limit, String[] ports, MutableLong numRemainingTuples, MutableLong currentTimestamp, MutableLong currentWindowLow, long currentOffset, TuplesInfo info) throws IOException
+  private boolean isBinaryRecording(String dir) throws IOException
   {
+    try (BufferedReader br = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.META_FILE))))) {
+      return TupleRecorder.BINARY_VERSION.equals(br.readLine());
+    }
+  }
+
+  private void processPartFile(InputStream partIs, boolean binary, QueryType queryType, long low, long high, long limit, String[] ports, MutableLong numRemainingTuples, MutableLong currentTimestamp, MutableLong currentWindowLow, long currentOffset, TuplesInfo info) throws IOException
+  {
+    MutableLong tmpOffset = new MutableLong(currentOffset);
+    if (binary) {
+      TupleRecorder.RecordReader reader = new TupleRecorder.RecordReader(partIs);
+      try {
+        while (reader.next()) {
+          if (reader.type == TupleRecorder.RECORD_BEGIN_WINDOW) {
+            processBeginWindow(reader.timestamp, reader.windowId, limit, numRemainingTuples, currentTimestamp, currentWindowLow, info);
+          } else if (reader.type == TupleRecorder.RECORD_TUPLE) {
+            if (!processTuple(reader.timestamp, String.valueOf(reader.portId), new String(reader.data), queryType, low, ports, numRemainingTuples, currentTimestamp, currentWindowLow, tmpOffset, info)) {
+              break;
+            }
+          }
+        }
+      } catch (EOFException ex) {
+        // the last record of a part file which is still being written
+      }
+      return;
+    }
+    BufferedReader partBr = new BufferedReader(new InputStreamReader(partIs));
     String partLine;
-    long tmpOffset = currentOffset;
     // advance until offset is reached
     while ((partLine = partBr.readLine()) != null) {
       int partCursor = 2;
       if (partLine.startsWith("B:")) {
         int partCursor2 = partLine.indexOf(':', partCursor);
-        currentTimestamp.setValue(Long.valueOf(partLine.substring(partCursor, partCursor2)));
+        long timestamp = Long.valueOf(partLine.substring(partCursor, partCursor2));
         partCursor = partCursor2 + 1;
-        currentWindowLow.setValue(Long.valueOf(partLine.substring(partCursor)));
-        if (limit != numRemainingTuples.longValue()) {
-          WindowTuplesInfo wtinfo;
-          wtinfo = new WindowTuplesInfo();
-          wtinfo.windowId = currentWindowLow.longValue();
-          info.tuples.add(wtinfo);
-        }
+        processBeginWindow(timestamp, Long.valueOf(partLine.substring(partCursor)), limit, numRemainingTuples, currentTimestamp, currentWindowLow, info);
       } else if (partLine.startsWith("T:")) {
         int partCursor2 = partLine.indexOf(':', partCursor);
-        currentTimestamp.setValue(Long.valueOf(partLine.substring(partCursor, partCursor2)));
+        long timestamp = Long.valueOf(partLine.substring(partCursor, partCursor2));
         partCursor = partCursor2 + 1;
         partCursor2 = partLine.indexOf(':', partCursor);
         String port = partLine.substring(partCursor, partCursor2);
-        boolean portMatch = (ports == null) || (ports.length == 0) || Arrays.asList(ports).contains(port);
         partCursor = partCursor2 + 1;
+        partCursor2 = partLine.indexOf(':', partCursor);
+        //int size = Integer.valueOf(partLine.substring(partCursor, partCursor2));
+        partCursor = partCursor2 + 1;
+        String tupleValue = partLine.substring(partCursor);
+        if (!processTuple(timestamp, port, tupleValue, queryType, low, ports, numRemainingTuples, currentTimestamp, currentWindowLow, tmpOffset, info)) {
+          break;
+        }
+      }
+    }
+  }
 
-        if (portMatch
-            && ((queryType == QueryType.WINDOW && currentWindowLow.longValue() >= low)
-            || (queryType == QueryType.OFFSET && tmpOffset >= low)
-            || (queryType == QueryType.TIME && currentTimestamp.longValue() >= low))) {
+  private static void processBeginWindow(long timestamp, long windowId, long limit, MutableLong numRemainingTuples, MutableLong currentTimestamp, MutableLong currentWindowLow, TuplesInfo info)
+  {
+    currentTimestamp.setValue(timestamp);
+    currentWindowLow.setValue(windowId);
+    if (limit != numRemainingTuples.longValue()) {
+      WindowTuplesInfo wtinfo;
+      wtinfo = new WindowTuplesInfo();
+      wtinfo.windowId = currentWindowLow.longValue();
+      info.tuples.add(wtinfo);
+    }
+  }
 
-          if (numRemainingTuples.longValue() > 0) {
-            if (info.startOffset == -1) {
-              info.startOffset = tmpOffset;
-            }
-            WindowTuplesInfo wtinfo;
-            if (info.tuples.isEmpty() || info.tuples.get(info.tuples.size() - 1).windowId != currentWindowLow
-                .longValue()) {
-              wtinfo = new WindowTuplesInfo();
-              wtinfo.windowId = currentWindowLow.longValue();
-              info.tuples.add(wtinfo);
-            } else {
-              wtinfo = info.tuples.get(info.tuples.size() - 1);
-            }
+  /**
+   * @return false when the limit of tuples is reached
+   */
+  private static boolean processTuple(long timestamp, String port, String tupleValue, QueryType queryType, long low, String[] ports, MutableLong numRemainingTuples, MutableLong currentTimestamp, MutableLong currentWindowLow, MutableLong tmpOffset, TuplesInfo info)
+  {
+    currentTimestamp.setValue(timestamp);
+    boolean portMatch = (ports == null) || (ports.length == 0) || Arrays.asList(ports).contains(port);
 
-            partCursor2 = partLine.indexOf(':', partCursor);
-            int size = Integer.valueOf(partLine.substring(partCursor, partCursor2));
-            partCursor = partCursor2 + 1;
-            //partCursor2 = partCursor + size;
-            String tupleValue = partLine.substring(partCursor);
-            wtinfo.tuples.add(new TupleInfo(port, tupleValue));
-            numRemainingTuples.decrement();
-          } else {
-            break;
-          }
+    if (portMatch
+        && ((queryType == QueryType.WINDOW && currentWindowLow.longValue() >= low)
+        || (queryType == QueryType.OFFSET && tmpOffset.longValue() >= low)
+        || (queryType == QueryType.TIME && currentTimestamp.longValue() >= low))) {
+
+      if (numRemainingTuples.longValue() > 0) {
+        if (info.startOffset == -1) {
+          info.startOffset = tmpOffset.longValue();
         }
-        if (portMatch) {
-          tmpOffset++;
+        WindowTuplesInfo wtinfo;
+        if (info.tuples.isEmpty() || info.tuples.get(info.tuples.size() - 1).windowId != currentWindowLow
+            .longValue()) {
+          wtinfo = new WindowTuplesInfo();
+          wtinfo.windowId = currentWindowLow.longValue();
+          info.tuples.add(wtinfo);
+        } else {
+          wtinfo = info.tuples.get(info.tuples.size() - 1);
         }
+        wtinfo.tuples.add(new TupleInfo(port, tupleValue));
+        numRemainingTuples.decrement();
+      } else {
+        return false;
       }
     }
+    if (portMatch) {
+      tmpOffset.increment();
+    }
+    return true;
   }
 
   public JSONObject startRecording(String appId, String opId, String portName, long numWindows) throws IncompatibleVersionException
@@ -22,6 +22,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +39,7 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 
 import com.datatorrent.common.util.ObjectMapperString;
+import com.datatorrent.stram.util.ColumnarPartFileReader;
 import com.datatorrent.stram.util.FSPartFileCollection;
 
 /**
@@ -148,14 +150,10 @@ public final class StatsAgent extends FSPartFileAgent
     int cursor = 2;
     int cursor2 = line.indexOf(':', cursor);
     info.partFile = line.substring(cursor, cursor2);
-    cursor = cursor2 + 1;
-    cursor2 = line.indexOf(':', cursor);
-    String timeRange = line.substring(cursor, cursor2);
-    String[] tmp = timeRange.split("-");
-    info.startTime = Long.valueOf(tmp[0]);
-    info.endTime = Long.valueOf(tmp[1]);
-    cursor = cursor2 + 1;
-    info.count = Long.valueOf(line.substring(cursor));
+    long[] timeRangeAndCount = parseTimeRangeAndCount(line, cursor2 + 1);
+    info.startTime = timeRangeAndCount[0];
+    info.endTime = timeRangeAndCount[1];
+    info.count = timeRangeAndCount[2];
     return info;
   }
 
@@ -182,7 +180,7 @@ public final class StatsAgent extends FSPartFileAgent
       br = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.META_FILE))));
       String line;
       line = br.readLine();
-      if (!line.equals("1.0")) {
+      if (!isSupportedVersion(line)) {
         return null;
       }
       while ((line = br.readLine()) != null) {
@@ -251,7 +249,7 @@ public final class StatsAgent extends FSPartFileAgent
       br = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.META_FILE))));
       String line;
       line = br.readLine();
-      if (!line.equals("1.0")) {
+      if (!isSupportedVersion(line)) {
         return null;
       }
       while ((line = br.readLine()) != null) {
@@ -288,6 +286,16 @@ public final class StatsAgent extends FSPartFileAgent
   }
 
   public List<OperatorStatsInfo> getOperatorsStats(String appId, String opName, Long startTime, Long endTime)
+  {
+    return getOperatorsStats(appId, opName, startTime, endTime, null);
+  }
+
+  /**
+   * Returns the recorded stats of the operators with the given logical name in the given time range.
+   *
+   * @param fields the stats fields to return, or null for all fields
+   */
+  public List<OperatorStatsInfo> getOperatorsStats(String appId, String opName, Long startTime, Long endTime, Collection<String> fields)
   {
     List<OperatorStatsInfo> result = new ArrayList<>();
     String dir = getOperatorStatsDirectory(appId, opName);
@@ -298,6 +306,7 @@ public final class StatsAgent extends FSPartFileAgent
     IndexFileBufferedReader ifbr = null;
 
     try {
+      boolean columnar = isColumnar(getVersion(dir));
       ifbr = new IndexFileBufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.INDEX_FILE))), dir);
       StatsIndexLine indexLine;
       String lastProcessPartFile = null;
@@ -316,24 +325,17 @@ public final class StatsAgent extends FSPartFileAgent
             }
           }
 
-          try (BufferedReader partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, indexLine.partFile))))) {
-            processOperatorPartFile(partBr, startTime, endTime, result);
-          }
+          processOperatorPartFile(dir, indexLine.partFile, columnar, startTime, endTime, fields, result);
         }
       }
 
-      BufferedReader partBr = null;
       try {
         String extraPartFile = getNextPartFile(lastProcessPartFile);
         if (extraPartFile != null) {
-          partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem()
-              .open(new Path(dir, extraPartFile))));
-          processOperatorPartFile(partBr, startTime, endTime, result);
+          processOperatorPartFile(dir, extraPartFile, columnar, startTime, endTime, fields, result);
         }
       } catch (Exception ex) {
         // ignore
-      } finally {
-        IOUtils.closeQuietly(partBr);
       }
     } catch (Exception ex) {
       LOG.warn("Got exception when reading operators stats", ex);
@@ -343,7 +345,33 @@ public final class StatsAgent extends FSPartFileAgent
     return result;
   }
 
-  private void processOperatorPartFile(BufferedReader partBr, Long startTime, Long endTime, List<OperatorStatsInfo> result) throws IOException
+  private void processOperatorPartFile(String dir, String partFile, boolean columnar, Long startTime, Long endTime, Collection<String> fields, List<OperatorStatsInfo> result) throws IOException
+  {
+    if (!columnar) {
+      try (BufferedReader partBr = openPartFile(dir, partFile)) {
+        processOperatorPartFile(partBr, startTime, endTime, fields, result);
+      }
+      return;
+    }
+    try (ColumnarPartFileReader reader = openColumnarPartFile(dir, partFile)) {
+      ColumnarPartFileReader.Block block;
+      while ((block = reader.nextBlock(startTime, endTime)) != null) {
+        Map<String, String[]> columns = block.readColumns(fields);
+        for (int i = 0; i < block.rowCount; i++) {
+          long timestamp = block.timestamps[i];
+          if ((startTime == null || timestamp >= startTime) && (endTime == null || timestamp <= endTime)) {
+            OperatorStatsInfo os = new OperatorStatsInfo();
+            os.operatorId = Integer.valueOf(block.keys[i]);
+            os.timestamp = timestamp;
+            os.stats = toStats(columns, i);
+            result.add(os);
+          }
+        }
+      }
+    }
+  }
+
+  private void processOperatorPartFile(BufferedReader partBr, Long startTime, Long endTime, Collection<String> fields, List<OperatorStatsInfo> result) throws IOException
   {
     String partLine;
     // advance until offset is reached
@@ -357,14 +385,24 @@ public final class StatsAgent extends FSPartFileAgent
       cursor2 = partLine.indexOf(':', cursor);
       os.timestamp = Long.valueOf(partLine.substring(cursor, cursor2));
       cursor = cursor2 + 1;
-      os.stats = new ObjectMapperString(partLine.substring(cursor));
       if ((startTime == null || os.timestamp >= startTime) && (endTime == null || os.timestamp <= endTime)) {
+        os.stats = toStats(partLine.substring(cursor), fields);
         result.add(os);
       }
     }
   }
 
   public List<ContainerStatsInfo> getContainersStats(String appId, Long startTime, Long endTime)
+  {
+    return getContainersStats(appId, startTime, endTime, null);
+  }
+
+  /**
+   * Returns the recorded stats of the containers in the given time range.
+   *
+   * @param fields the stats fields to return, or null for all fields
+   */
+  public List<ContainerStatsInfo> getContainersStats(String appId, Long startTime, Long endTime, Collection<String> fields)
   {
     List<ContainerStatsInfo> result = new ArrayList<>();
     String dir = getContainerStatsDirectory(appId);
@@ -374,6 +412,7 @@ public final class StatsAgent extends FSPartFileAgent
     BufferedReader br = null;
     String lastProcessPartFile = null;
     try {
+      boolean columnar = isColumnar(getVersion(dir));
       br = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new Path(dir, FSPartFileCollection.INDEX_FILE))));
       String line;
 
@@ -395,23 +434,15 @@ public final class StatsAgent extends FSPartFileAgent
           }
         }
 
-        try (BufferedReader partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem().open(new
-            Path(dir, indexLine.partFile))))) {
-          processContainerPartFile(partBr, startTime, endTime, result);
-        }
+        processContainerPartFile(dir, indexLine.partFile, columnar, startTime, endTime, fields, result);
       }
-      BufferedReader partBr = null;
       try {
         String extraPartFile = getNextPartFile(lastProcessPartFile);
         if (extraPartFile != null) {
-          partBr = new BufferedReader(new InputStreamReader(stramAgent.getFileSystem()
-              .open(new Path(dir, extraPartFile))));
-          processContainerPartFile(partBr, startTime, endTime, result);
+          processContainerPartFile(dir, extraPartFile, columnar, startTime, endTime, fields, result);
         }
       } catch (Exception ex) {
         // ignore
-      } finally {
-        IOUtils.closeQuietly(partBr);
       }
     } catch (Exception ex) {
       LOG.warn("Got exception when reading containers stats", ex);
@@ -421,7 +452,33 @@ public final class StatsAgent extends FSPartFileAgent
     return result;
   }
 
-  private void processContainerPartFile(BufferedReader partBr, Long startTime, Long endTime, List<ContainerStatsInfo> result) throws IOException
+  private void processContainerPartFile(String dir, String partFile, boolean columnar, Long startTime, Long endTime, Collection<String> fields, List<ContainerStatsInfo> result) throws IOException
+  {
+    if (!columnar) {
+      try (BufferedReader partBr = openPartFile(dir, partFile)) {
+        processContainerPartFile(partBr, startTime, endTime, fields, result);
+      }
+      return;
+    }
+    try (ColumnarPartFileReader reader = openColumnarPartFile(dir, partFile)) {
+      ColumnarPartFileReader.Block block;
+      while ((block = reader.nextBlock(startTime, endTime)) != null) {
+        Map<String, String[]> columns = block.readColumns(fields);
+        for (int i = 0; i < block.rowCount; i++) {
+          long timestamp = block.timestamps[i];
+          if ((startTime == null || timestamp >= startTime) && (endTime == null || timestamp <= endTime)) {
+            ContainerStatsInfo cs = new ContainerStatsInfo();
+            cs.containerId = Integer.valueOf(block.keys[i]);
+            cs.timestamp = timestamp;
+            cs.stats = toStats(columns, i);
+            result.add(cs);
+          }
+        }
+      }
+    }
+  }
+
+  private void processContainerPartFile(BufferedReader partBr, Long startTime, Long endTime, Collection<String> fields, List<ContainerStatsInfo> result) throws IOException
   {
     String partLine;
     while ((partLine = partBr.readLine()) != null) {
@@ -434,11 +491,51 @@ public final class StatsAgent extends FSPartFileAgent
       cursor2 = partLine.indexOf(':', cursor);
       cs.timestamp = Long.valueOf(partLine.substring(cursor, cursor2));
       cursor = cursor2 + 1;
-      cs.stats = new ObjectMapperString(partLine.substring(cursor));
       if ((startTime == null || cs.timestamp >= startTime) && (endTime == null || cs.timestamp <= endTime)) {
+        cs.stats = toStats(partLine.substring(cursor), fields);
         result.add(cs);
       }
     }
   }
 
+  /**
+   * Selects the given fields from the JSON object of one line of a JSON lines part file.
+   */
+  private static ObjectMapperString toStats(String json, Collection<String> fields) throws IOException
+  {
+    if (fields == null) {
+      return new ObjectMapperString(json);
+    }
+    try {
+      JSONObject stats = new JSONObject(json);
+      JSONObject selected = new JSONObject();
+      for (String field : fields) {
+        if (stats.has(field)) {
+          selected.put(field, stats.get(field));
+        }
+      }
+      return new ObjectMapperString(selected.toString());
+    } catch (JSONException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  /**
+   * Assembles the JSON object of one row of a columnar block. The cells already hold the JSON value of the field.
+   */
+  private static ObjectMapperString toStats(Map<String, String[]> columns, int row)
+  {
+    StringBuilder sb = new StringBuilder("{");
+    for (Map.Entry<String, String[]> entry : columns.entrySet()) {
+      String value = entry.getValue()[row];
+      if (value != null) {
+        if (sb.length() > 1) {
+          sb.append(',');
+        }
+        sb.append(JSONObject.quote(entry.getKey())).append(':').append(value);
+      }
+    }
+    return new ObjectMapperString(sb.append('}').toString());
+  }
+
 }
@@ -44,7 +44,7 @@ import com.datatorrent.netlet.util.Slice;
  * @param <T>
  * @since 0.3.2
  */
-public class DefaultStatefulStreamCodec<T> extends Kryo implements StatefulStreamCodec<T>
+public class DefaultStatefulStreamCodec<T> extends Kryo implements StatefulStreamCodec<T>, DirectStreamCodec<T>
 {
   private final Output data;
   private final Output state;
@@ -114,21 +114,31 @@ public class DefaultStatefulStreamCodec<T> extends Kryo implements StatefulStrea
   {
     data.setPosition(0);
     writeClassAndObject(data, o);
+    dataStatePair.state = getState();
+    dataStatePair.data = new Slice(data.getBuffer(), 0, data.position());
+    return dataStatePair;
+  }
 
-    if (!pairs.isEmpty()) {
-      state.setPosition(0);
-      for (ClassIdPair cip : pairs) {
-        writeClassAndObject(state, cip);
-      }
-      pairs.clear();
+  @Override
+  public Slice serialize(T o, Output output)
+  {
+    writeClassAndObject(output, o);
+    return getState();
+  }
 
-      dataStatePair.state = new Slice(state.getBuffer(), 0, state.position());
-    } else {
-      dataStatePair.state = null;
+  private Slice getState()
+  {
+    if (pairs.isEmpty()) {
+      return null;
     }
 
-    dataStatePair.data = new Slice(data.getBuffer(), 0, data.position());
-    return dataStatePair;
+    state.setPosition(0);
+    for (ClassIdPair cip : pairs) {
+      writeClassAndObject(state, cip);
+    }
+    pairs.clear();
+
+    return new Slice(state.getBuffer(), 0, state.position());
   }
 
   @Override
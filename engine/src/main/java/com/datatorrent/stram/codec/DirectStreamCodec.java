@@ -0,0 +1,48 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.codec;
+
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * <p>A StreamCodec which can serialize tuples straight into a buffer owned by the caller.</p>
+ *
+ * The buffer server publisher uses it to serialize the tuple right behind the header of the buffer server packet it
+ * already wrote, which saves allocating and copying intermediate byte arrays for every tuple.
+ *
+ * @param <T>
+ * @since 3.7.0
+ */
+public interface DirectStreamCodec<T> extends StreamCodec<T>
+{
+  /**
+   * Serialize the POJO into the output starting at the current position of the output. The output is free to replace
+   * its buffer with a larger one if the serialized form does not fit in the remaining capacity.
+   *
+   * @param object plain old java object
+   * @param output output to serialize the object into
+   * @return serialized form of the incremental state the codec built while serializing the object, see
+   * {@link StatefulStreamCodec.DataStatePair#state}, or null if the state did not change. The slice is valid only until
+   * the next invocation.
+   */
+  Slice serialize(T object, Output output);
+}
@@ -0,0 +1,654 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.codec;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.xbean.asm5.ClassWriter;
+import org.apache.xbean.asm5.MethodVisitor;
+import org.apache.xbean.asm5.Opcodes;
+import org.apache.xbean.asm5.Type;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
+
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * <p>A StreamCodec specialized for the tuple class of the port, as declared with the TUPLE_CLASS port attribute.</p>
+ *
+ * When the tuple class is a plain POJO, that is a public class with a public no-arg constructor whose fields are
+ * primitives, their wrappers or strings and are either public or exposed through public getters and setters, a
+ * Kryo serializer is generated for it when the codec is instantiated for a stream. The serializer writes the fields
+ * positionally without class names or reference tracking. Tuples of any other class, including subclasses of the
+ * tuple class, and tuple classes which are not plain POJOs are serialized the way {@link DefaultStatefulStreamCodec}
+ * does.
+ *
+ * @param <T>
+ * @since 3.7.0
+ */
+public class PojoStreamCodec<T> implements StatefulStreamCodec<T>, DirectStreamCodec<T>, Serializable
+{
+  private final Class<?> tupleClass;
+  private transient DefaultStatefulStreamCodec<Object> codec;
+
+  public PojoStreamCodec(Class<?> tupleClass)
+  {
+    this.tupleClass = tupleClass;
+  }
+
+  public Class<?> getTupleClass()
+  {
+    return tupleClass;
+  }
+
+  private DefaultStatefulStreamCodec<Object> codec()
+  {
+    if (codec == null) {
+      codec = new Codec(tupleClass, getSerializer(tupleClass));
+    }
+    return codec;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T fromDataStatePair(DataStatePair dspair)
+  {
+    return (T)codec().fromDataStatePair(dspair);
+  }
+
+  @Override
+  public DataStatePair toDataStatePair(T object)
+  {
+    return codec().toDataStatePair(object);
+  }
+
+  @Override
+  public Slice serialize(T object, Output output)
+  {
+    return codec().serialize(object, output);
+  }
+
+  @Override
+  public void resetState()
+  {
+    codec().resetState();
+  }
+
+  @Override
+  public PojoStreamCodec<T> newInstance()
+  {
+    PojoStreamCodec<T> instance = new PojoStreamCodec<>(tupleClass);
+    instance.codec();
+    return instance;
+  }
+
+  @Override
+  public int getPartition(T o)
+  {
+    return o.hashCode();
+  }
+
+  @Override
+  public Object fromByteArray(Slice fragment)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Slice toByteArray(T o)
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean equals(Object o)
+  {
+    return o instanceof PojoStreamCodec && tupleClass == ((PojoStreamCodec<?>)o).tupleClass;
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return tupleClass.hashCode();
+  }
+
+  @Override
+  public String toString()
+  {
+    return "PojoStreamCodec{" + tupleClass.getName() + '}';
+  }
+
+  /**
+   * Kryo which serializes the tuple class with the generated serializer and without tracking the references to it.
+   */
+  private static class Codec extends DefaultStatefulStreamCodec<Object>
+  {
+    private final Class<?> tupleClass;
+    private final Serializer<?> serializer;
+
+    Codec(final Class<?> tupleClass, Serializer<?> serializer)
+    {
+      this.tupleClass = tupleClass;
+      this.serializer = serializer;
+      if (serializer != null) {
+        setReferenceResolver(new MapReferenceResolver()
+        {
+          @Override
+          @SuppressWarnings("rawtypes")
+          public boolean useReferences(Class type)
+          {
+            return type != tupleClass && super.useReferences(type);
+          }
+        });
+      }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Serializer getDefaultSerializer(Class type)
+    {
+      if (serializer != null && type == tupleClass) {
+        return serializer;
+      }
+      return super.getDefaultSerializer(type);
+    }
+  }
+
+  /**
+   * Serializer classes generated for the tuple classes, null for a class which is not a plain POJO. The generated class
+   * is loaded next to the tuple class, so keeping it in a {@link ClassValue} lets both be unloaded together.
+   */
+  private static final ClassValue<Class<?>> serializers = new ClassValue<Class<?>>()
+  {
+    @Override
+    protected Class<?> computeValue(Class<?> type)
+    {
+      List<Property> properties = getProperties(type);
+      if (properties != null) {
+        try {
+          return generate(type, properties);
+        } catch (Throwable th) {
+          logger.warn("Falling back to kryo for {} since generating its serializer failed", type.getName(), th);
+        }
+      }
+      return null;
+    }
+  };
+
+  /**
+   * Returns a new instance of the serializer generated for the class, generating it the first time.
+   *
+   * @param type tuple class
+   * @return the serializer or null if the class is not a plain POJO
+   */
+  static Serializer<?> getSerializer(Class<?> type)
+  {
+    final Class<?> serializerClass = serializers.get(type);
+    try {
+      return serializerClass == null ? null : (Serializer<?>)serializerClass.newInstance();
+    } catch (InstantiationException | IllegalAccessException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Field of the tuple class along with the way it is read and written.
+   */
+  private static class Property
+  {
+    final Field field;
+    final Method getter;
+    final Method setter;
+
+    Property(Field field, Method getter, Method setter)
+    {
+      this.field = field;
+      this.getter = getter;
+      this.setter = setter;
+    }
+  }
+
+  /**
+   * Lists the fields of the class in the order they are serialized, the fields of the superclasses first and the fields
+   * of each class sorted by name so that both ends of the stream agree on the order.
+   *
+   * @param type tuple class
+   * @return the properties or null if the class is not a plain POJO
+   */
+  private static List<Property> getProperties(Class<?> type)
+  {
+    if (!Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers()) || type.isArray()
+        || type.isEnum() || type.isPrimitive() || type.getClassLoader() == null) {
+      logger.info("Falling back to kryo for {} since it is not a public concrete class", type.getName());
+      return null;
+    }
+    try {
+      if (!Modifier.isPublic(type.getConstructor().getModifiers())) {
+        throw new NoSuchMethodException();
+      }
+    } catch (NoSuchMethodException ex) {
+      logger.info("Falling back to kryo for {} since it does not have a public no-arg constructor", type.getName());
+      return null;
+    }
+
+    List<Class<?>> hierarchy = new ArrayList<>();
+    for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+      hierarchy.add(0, c);
+    }
+
+    List<Property> properties = new ArrayList<>();
+    for (Class<?> c : hierarchy) {
+      Field[] fields = c.getDeclaredFields();
+      Arrays.sort(fields, new Comparator<Field>()
+      {
+        @Override
+        public int compare(Field f1, Field f2)
+        {
+          return f1.getName().compareTo(f2.getName());
+        }
+      });
+      for (Field field : fields) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+          continue;
+        }
+        if (!WRITE_NAMES.containsKey(field.getType())) {
+          logger.info("Falling back to kryo for {} since field {} is of type {}", type.getName(), field.getName(),
+              field.getType().getName());
+          return null;
+        }
+        if (Modifier.isPublic(modifiers) && Modifier.isPublic(c.getModifiers()) && !Modifier.isFinal(modifiers)) {
+          properties.add(new Property(field, null, null));
+          continue;
+        }
+        Method getter = getAccessor(type, field, field.getType() == boolean.class ? "is" : "get");
+        if (getter == null && field.getType() == boolean.class) {
+          getter = getAccessor(type, field, "get");
+        }
+        Method setter = getAccessor(type, field, "set");
+        if (getter == null || setter == null) {
+          logger.info("Falling back to kryo for {} since field {} is not accessible", type.getName(), field.getName());
+          return null;
+        }
+        properties.add(new Property(field, getter, setter));
+      }
+    }
+    return properties;
+  }
+
+  private static Method getAccessor(Class<?> type, Field field, String prefix)
+  {
+    String name = prefix + Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+    try {
+      Method method = prefix.equals("set") ? type.getMethod(name, field.getType()) : type.getMethod(name);
+      if (Modifier.isStatic(method.getModifiers()) || !Modifier.isPublic(method.getDeclaringClass().getModifiers())
+          || !prefix.equals("set") && method.getReturnType() != field.getType()) {
+        return null;
+      }
+      return method;
+    } catch (NoSuchMethodException ex) {
+      return null;
+    }
+  }
+
+  private static final String SERIALIZER = Type.getInternalName(Serializer.class);
+  private static final String FIELDS = Type.getInternalName(Fields.class);
+  private static final String OUTPUT = Type.getDescriptor(Output.class);
+  private static final String INPUT = Type.getDescriptor(Input.class);
+
+  /**
+   * Generates the serializer which writes and reads the properties of the class in the given order.
+   */
+  private static Class<?> generate(Class<?> type, List<Property> properties)
+  {
+    String tuple = Type.getInternalName(type);
+    String name = PojoStreamCodec.class.getName() + "$Serializer$" + type.getName().replace('.', '$');
+
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, name.replace('.', '/'), null,
+        SERIALIZER, null);
+
+    MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(Opcodes.ALOAD, 0);
+    mv.visitMethodInsn(Opcodes.INVOKESPECIAL, SERIALIZER, "<init>", "()V", false);
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    /* void write(Kryo kryo, Output output, Object object) */
+    mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "write", "(" + Type.getDescriptor(Kryo.class) + OUTPUT + "Ljava/lang/Object;)V",
+        null, null);
+    mv.visitCode();
+    mv.visitVarInsn(Opcodes.ALOAD, 3);
+    mv.visitTypeInsn(Opcodes.CHECKCAST, tuple);
+    mv.visitVarInsn(Opcodes.ASTORE, 4);
+    for (Property property : properties) {
+      String descriptor = Type.getDescriptor(property.field.getType());
+      mv.visitVarInsn(Opcodes.ALOAD, 2);
+      mv.visitVarInsn(Opcodes.ALOAD, 4);
+      if (property.getter == null) {
+        mv.visitFieldInsn(Opcodes.GETFIELD, tuple, property.field.getName(), descriptor);
+      } else {
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, tuple, property.getter.getName(), "()" + descriptor, false);
+      }
+      mv.visitMethodInsn(Opcodes.INVOKESTATIC, FIELDS, WRITE_NAMES.get(property.field.getType()),
+          "(" + OUTPUT + descriptor + ")V", false);
+    }
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    /* Object read(Kryo kryo, Input input, Class type) */
+    mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "read", "(" + Type.getDescriptor(Kryo.class) + INPUT
+        + "Ljava/lang/Class;)Ljava/lang/Object;", null, null);
+    mv.visitCode();
+    mv.visitTypeInsn(Opcodes.NEW, tuple);
+    mv.visitInsn(Opcodes.DUP);
+    mv.visitMethodInsn(Opcodes.INVOKESPECIAL, tuple, "<init>", "()V", false);
+    mv.visitVarInsn(Opcodes.ASTORE, 4);
+    for (Property property : properties) {
+      String descriptor = Type.getDescriptor(property.field.getType());
+      mv.visitVarInsn(Opcodes.ALOAD, 4);
+      mv.visitVarInsn(Opcodes.ALOAD, 2);
+      mv.visitMethodInsn(Opcodes.INVOKESTATIC, FIELDS, READ_NAMES.get(property.field.getType()),
+          "(" + INPUT + ")" + descriptor, false);
+      if (property.setter == null) {
+        mv.visitFieldInsn(Opcodes.PUTFIELD, tuple, property.field.getName(), descriptor);
+      } else {
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, tuple, property.setter.getName(),
+            Type.getMethodDescriptor(property.setter), false);
+        /* fluent setters return a value */
+        Class<?> returnType = property.setter.getReturnType();
+        if (returnType == long.class || returnType == double.class) {
+          mv.visitInsn(Opcodes.POP2);
+        } else if (returnType != void.class) {
+          mv.visitInsn(Opcodes.POP);
+        }
+      }
+    }
+    mv.visitVarInsn(Opcodes.ALOAD, 4);
+    mv.visitInsn(Opcodes.ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+    logger.debug("Generated serializer {} for {} fields", name, properties.size());
+    return new GeneratedClassLoader(type.getClassLoader()).define(name, cw.toByteArray());
+  }
+
+  /**
+   * Defines the generated serializer next to the tuple class, resolving the classes the tuple class loader does not
+   * know through the loader of the codec.
+   */
+  private static class GeneratedClassLoader extends ClassLoader
+  {
+    GeneratedClassLoader(ClassLoader parent)
+    {
+      super(parent);
+    }
+
+    Class<?> define(String name, byte[] bytes)
+    {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException
+    {
+      return PojoStreamCodec.class.getClassLoader().loadClass(name);
+    }
+  }
+
+  private static final Map<Class<?>, String> WRITE_NAMES = new HashMap<>();
+  private static final Map<Class<?>, String> READ_NAMES = new HashMap<>();
+
+  static {
+    Class<?>[] types = {boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class,
+        double.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class,
+        Double.class, String.class};
+    for (Class<?> type : types) {
+      WRITE_NAMES.put(type, "write");
+      String name = type.isPrimitive() ? Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1)
+          : type.getSimpleName();
+      READ_NAMES.put(type, (type.isPrimitive() || type == String.class ? "read" : "readNullable") + name);
+    }
+  }
+
+  /**
+   * Writes and reads the values of the fields, called by the generated serializers.
+   */
+  public static final class Fields
+  {
+    private Fields()
+    {
+    }
+
+    public static void write(Output output, boolean value)
+    {
+      output.writeBoolean(value);
+    }
+
+    public static void write(Output output, byte value)
+    {
+      output.writeByte(value);
+    }
+
+    public static void write(Output output, char value)
+    {
+      output.writeChar(value);
+    }
+
+    public static void write(Output output, short value)
+    {
+      output.writeShort(value);
+    }
+
+    public static void write(Output output, int value)
+    {
+      output.writeVarInt(value, false);
+    }
+
+    public static void write(Output output, long value)
+    {
+      output.writeVarLong(value, false);
+    }
+
+    public static void write(Output output, float value)
+    {
+      output.writeFloat(value);
+    }
+
+    public static void write(Output output, double value)
+    {
+      output.writeDouble(value);
+    }
+
+    public static void write(Output output, String value)
+    {
+      output.writeString(value);
+    }
+
+    public static void write(Output output, Boolean value)
+    {
+      /* 0 for null, 1 for false and 2 for true */
+      output.writeByte(value == null ? 0 : value ? 2 : 1);
+    }
+
+    public static void write(Output output, Byte value)
+    {
+      if (writeNotNull(output, value)) {
+        output.writeByte(value);
+      }
+    }
+
+    public static void write(Output output, Character value)
+    {
+      if (writeNotNull(output, value)) {
+        output.writeChar(value);
+      }
+    }
+
+    public static void write(Output output, Short value)
+    {
+      if (writeNotNull(output, value)) {
+        output.writeShort(value);
+      }
+    }
+
+    public static void write(Output output, Integer value)
+    {
+      if (writeNotNull(output, value)) {
+        output.writeVarInt(value, false);
+      }
+    }
+
+    public static void write(Output output, Long value)
+    {
+      if (writeNotNull(output, value)) {
+        output.writeVarLong(value, false);
+      }
+    }
+
+    public static void write(Output output, Float value)
+    {
+      if (writeNotNull(output, value)) {
+        output.writeFloat(value);
+      }
+    }
+
+    public static void write(Output output, Double value)
+    {
+      if (writeNotNull(output, value)) {
+        output.writeDouble(value);
+      }
+    }
+
+    private static boolean writeNotNull(Output output, Object value)
+    {
+      output.writeBoolean(value != null);
+      return value != null;
+    }
+
+    public static boolean readBoolean(Input input)
+    {
+      return input.readBoolean();
+    }
+
+    public static byte readByte(Input input)
+    {
+      return input.readByte();
+    }
+
+    public static char readChar(Input input)
+    {
+      return input.readChar();
+    }
+
+    public static short readShort(Input input)
+    {
+      return input.readShort();
+    }
+
+    public static int readInt(Input input)
+    {
+      return input.readVarInt(false);
+    }
+
+    public static long readLong(Input input)
+    {
+      return input.readVarLong(false);
+    }
+
+    public static float readFloat(Input input)
+    {
+      return input.readFloat();
+    }
+
+    public static double readDouble(Input input)
+    {
+      return input.readDouble();
+    }
+
+    public static String readString(Input input)
+    {
+      return input.readString();
+    }
+
+    public static Boolean readNullableBoolean(Input input)
+    {
+      byte value = input.readByte();
+      return value == 0 ? null : value == 2;
+    }
+
+    public static Byte readNullableByte(Input input)
+    {
+      return input.readBoolean() ? input.readByte() : null;
+    }
+
+    public static Character readNullableCharacter(Input input)
+    {
+      return input.readBoolean() ? input.readChar() : null;
+    }
+
+    public static Short readNullableShort(Input input)
+    {
+      return input.readBoolean() ? input.readShort() : null;
+    }
+
+    public static Integer readNullableInteger(Input input)
+    {
+      return input.readBoolean() ? input.readVarInt(false) : null;
+    }
+
+    public static Long readNullableLong(Input input)
+    {
+      return input.readBoolean() ? input.readVarLong(false) : null;
+    }
+
+    public static Float readNullableFloat(Input input)
+    {
+      return input.readBoolean() ? input.readFloat() : null;
+    }
+
+    public static Double readNullableDouble(Input input)
+    {
+      return input.readBoolean() ? input.readDouble() : null;
+    }
+  }
+
+  private static final long serialVersionUID = 201710170000L;
+  private static final Logger logger = LoggerFactory.getLogger(PojoStreamCodec.class);
+}
@@ -19,7 +19,9 @@
 package com.datatorrent.stram.debug;
 
 import com.datatorrent.api.Sink;
+import com.datatorrent.stram.engine.SignalingReservoir;
 import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.engine.WakeupSignal;
 import com.datatorrent.stram.tuple.Tuple;
 
 /**
@@ -27,7 +29,7 @@ import com.datatorrent.stram.tuple.Tuple;
  *
  * @since 0.3.2
  */
-public class TappedReservoir extends MuxSink implements SweepableReservoir
+public class TappedReservoir extends MuxSink implements SignalingReservoir
 {
   public final SweepableReservoir reservoir;
   private Sink<Object> sink;
@@ -56,6 +58,14 @@ public class TappedReservoir extends MuxSink implements SweepableReservoir
     return reservoir.sweep();
   }
 
+  @Override
+  public void setWakeupSignal(WakeupSignal signal)
+  {
+    if (reservoir instanceof SignalingReservoir) {
+      ((SignalingReservoir)reservoir).setWakeupSignal(signal);
+    }
+  }
+
   @Override
   public int getCount(boolean reset)
   {
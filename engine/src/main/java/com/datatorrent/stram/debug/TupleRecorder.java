@@ -22,7 +22,9 @@ import java.beans.BeanInfo;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -31,8 +33,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
 
-import org.codehaus.jackson.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +48,7 @@ import com.datatorrent.api.StringCodec;
 import com.datatorrent.bufferserver.packet.MessageType;
 import com.datatorrent.common.codec.JsonStreamCodec;
 import com.datatorrent.common.util.ObjectMapperString;
+import com.datatorrent.netlet.util.CircularBuffer;
 import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.stram.engine.WindowGenerator;
 import com.datatorrent.stram.tuple.Tuple;
@@ -56,12 +59,25 @@ import com.datatorrent.stram.util.SharedPubSubWebSocketClient.Handler;
 /**
  * <p>
  * TupleRecorder class.</p>
+ * <p>
+ * The operator thread only serializes the recorded tuples and hands them to a writer thread through a ring buffer,
+ * the writer thread formats the records, writes the part files and publishes to the websocket subscribers. Tuples are
+ * dropped from the recording while the ring buffer is full, window and control records always make it into the
+ * recording.</p>
  *
  * @since 0.3.2
  */
 public class TupleRecorder
 {
   public static final String VERSION = "1.2";
+  /**
+   * Version of the recordings with binary part files, see {@link RecordReader} for the record layout.
+   */
+  public static final String BINARY_VERSION = "1.3";
+  public static final byte RECORD_BEGIN_WINDOW = 'B';
+  public static final byte RECORD_END_WINDOW = 'E';
+  public static final byte RECORD_TUPLE = 'T';
+  public static final byte RECORD_CONTROL = 'C';
   private long totalTupleCount = 0;
   private final HashMap<String, PortInfo> portMap = new HashMap<>(); // used for output portInfo <name, id> map
   private final HashMap<String, PortCount> portCountMap = new HashMap<>(); // used for tupleCount of each port <name, count> map
@@ -79,6 +95,22 @@ public class TupleRecorder
   private String recordingNameTopic;
   private long numWindows = Long.MAX_VALUE; // number of windows to record
   private Runnable stopProcedure; // stop procedure to execute
+  private boolean binaryFormat;
+  private int sampleInterval = 1;
+  private int maxTuplesPerWindow;
+  private int queueCapacity = 16 * 1024;
+  private CircularBuffer<Record> queue;
+  private Thread writerThread;
+  private volatile boolean writerRunning;
+  private volatile boolean writerParked;
+  private boolean windowStarted;
+  private long sampleCount;
+  private int windowTupleCount;
+  private long droppedTupleCount;
+  // state of the writer thread
+  private long recordedWindowId = WindowGenerator.MIN_WINDOW_ID - 1;
+  private long partFileBaseTimestamp;
+  private final RecordBuffer recordBuffer = new RecordBuffer();
 
   private static final Logger logger = LoggerFactory.getLogger(TupleRecorder.class);
 
@@ -97,7 +129,7 @@ public class TupleRecorder
         return null;
       }
       String str;
-      windowIdRanges.get(windowIdRanges.size() - 1).high = TupleRecorder.this.currentWindowId;
+      windowIdRanges.get(windowIdRanges.size() - 1).high = TupleRecorder.this.recordedWindowId;
       str = convertToString(windowIdRanges);
       int i = 0;
       str += ":";
@@ -161,6 +193,58 @@ public class TupleRecorder
     this.wsClient = wsClient;
   }
 
+  /**
+   * Writes the part files in the binary format, to be set before {@link #setup}.
+   *
+   * @param binaryFormat whether to use the binary format
+   */
+  public void setBinaryFormat(boolean binaryFormat)
+  {
+    this.binaryFormat = binaryFormat;
+  }
+
+  /**
+   * Records only every n-th tuple.
+   *
+   * @param sampleInterval number of tuples per recorded tuple, 1 records all tuples
+   */
+  public void setSampleInterval(int sampleInterval)
+  {
+    if (sampleInterval < 1) {
+      throw new IllegalArgumentException("Sample interval must be positive: " + sampleInterval);
+    }
+    this.sampleInterval = sampleInterval;
+  }
+
+  /**
+   * Limits the number of tuples recorded in each window.
+   *
+   * @param maxTuplesPerWindow maximum number of recorded tuples per window, 0 for no limit
+   */
+  public void setMaxTuplesPerWindow(int maxTuplesPerWindow)
+  {
+    this.maxTuplesPerWindow = maxTuplesPerWindow;
+  }
+
+  /**
+   * Sets the capacity of the ring buffer between the operator thread and the writer thread, to be set before
+   * {@link #setup}.
+   *
+   * @param queueCapacity number of records the ring buffer holds
+   */
+  public void setQueueCapacity(int queueCapacity)
+  {
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * @return number of tuples dropped from the recording because the writer did not keep up
+   */
+  public long getDroppedTupleCount()
+  {
+    return droppedTupleCount;
+  }
+
   public Map<String, PortInfo> getPortInfoMap()
   {
     return Collections.unmodifiableMap(portMap);
@@ -275,6 +359,20 @@ public class TupleRecorder
   public void teardown()
   {
     logger.info("Closing down tuple recorder.");
+    if (writerThread != null) {
+      writerRunning = false;
+      LockSupport.unpark(writerThread);
+      try {
+        writerThread.join();
+      } catch (InterruptedException ex) {
+        logger.warn("Interrupted while waiting for the recording writer to finish", ex);
+        Thread.currentThread().interrupt();
+      }
+      writerThread = null;
+    }
+    if (droppedTupleCount > 0) {
+      logger.info("Dropped {} tuples from recording {}", droppedTupleCount, id);
+    }
     this.storage.teardown();
   }
 
@@ -288,7 +386,7 @@ public class TupleRecorder
       }
 
       ByteArrayOutputStream bos = new ByteArrayOutputStream();
-      bos.write((VERSION + "\n").getBytes());
+      bos.write(((binaryFormat ? BINARY_VERSION : VERSION) + "\n").getBytes());
 
       RecordInfo recordInfo = new RecordInfo();
       recordInfo.startTime = startTime;
@@ -331,6 +429,12 @@ public class TupleRecorder
         recordingNameTopic = "applications." + appId + ".tupleRecorder." + getStartTime();
         setupWsClient();
       }
+
+      queue = new CircularBuffer<>(queueCapacity);
+      writerRunning = true;
+      writerThread = new Thread(new Writer(), "TupleRecorder-" + id);
+      writerThread.setDaemon(true);
+      writerThread.start();
     } catch (Exception ex) {
       logger.error("Trouble setting up tuple recorder", ex);
     }
@@ -361,41 +465,18 @@ public class TupleRecorder
   public void beginWindow(long windowId)
   {
     if (this.currentWindowId != windowId) {
-      if (windowId != this.currentWindowId + 1) {
-        if (!windowIdRanges.isEmpty()) {
-          windowIdRanges.get(windowIdRanges.size() - 1).high = this.currentWindowId;
-        }
-        Range range = new Range();
-        range.low = windowId;
-        windowIdRanges.add(range);
-      }
-      if (windowIdRanges.isEmpty()) {
-        Range range = new Range();
-        range.low = windowId;
-        windowIdRanges.add(range);
-      }
       this.currentWindowId = windowId;
       endWindowTuplesProcessed = 0;
-      try {
-        storage.writeDataItem(("B:" + System.currentTimeMillis() + ":" + windowId + "\n").getBytes(), false);
-      } catch (IOException ex) {
-        logger.error(ex.toString());
-      }
+      windowTupleCount = 0;
+      windowStarted = true;
+      enqueue(new Record(RECORD_BEGIN_WINDOW, System.currentTimeMillis(), windowId));
     }
   }
 
   public void endWindow()
   {
     if (++endWindowTuplesProcessed == portMap.size()) {
-      try {
-        storage.writeDataItem(("E:" + System.currentTimeMillis() + ":" + currentWindowId + "\n").getBytes(), false);
-        logger.debug("Got last end window tuple.  Flushing...");
-        if (!storage.flushData() && wsClient != null) {
-          wsClient.publish(SharedPubSubWebSocketClient.LAST_INDEX_TOPIC_PREFIX + ".tuple." + storage.getBasePath(), storage.getLatestIndexLine());
-        }
-      } catch (IOException ex) {
-        logger.error("Exception caught in endWindow", ex);
-      }
+      enqueue(new Record(RECORD_END_WINDOW, System.currentTimeMillis(), currentWindowId));
     }
     if (stopProcedure != null && --numWindows <= 0) {
       stopProcedure.run();
@@ -405,10 +486,12 @@ public class TupleRecorder
   public void writeTuple(Object obj, String port)
   {
     ++totalTupleCount;
-    if (windowIdRanges.isEmpty()) {
+    if (!windowStarted) {
       throw new RuntimeException("Data tuples received from tuple recorder before any BEGIN_WINDOW");
     }
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    if (sampleCount++ % sampleInterval != 0 || (maxTuplesPerWindow > 0 && windowTupleCount >= maxTuplesPerWindow)) {
+      return;
+    }
     Slice f = null;
     try {
       f = streamCodec.toByteArray(obj);
@@ -416,41 +499,128 @@ public class TupleRecorder
       checkLogTuple(ex, "save", obj);
       return;
     }
-    try {
-      PortInfo pi = portMap.get(port);
-      String str = "T:" + System.currentTimeMillis() + ":" + pi.id + ":" + f.length + ":";
-      bos.write(str.getBytes());
-      bos.write(f.buffer, f.offset, f.length);
-      bos.write("\n".getBytes());
-      PortCount pc = portCountMap.get(port);
-      pc.count++;
-      portCountMap.put(port, pc);
-
-      storage.writeDataItem(bos.toByteArray(), true);
-      //logger.debug("Writing tuple for port id {}", pi.id);
-      //fsOutput.hflush();
-      if (numSubscribers > 0) {
-        // this is not asynchronous.  we need to fix this
-        publishTupleData(pi.id, obj);
-      }
-    } catch (Exception ex) {
-      logger.warn("Error saving tuple", ex);
+    windowTupleCount++;
+    Record record = new Record(RECORD_TUPLE, System.currentTimeMillis(), portMap.get(port), portCountMap.get(port), f);
+    if (numSubscribers > 0) {
+      record.publish = true;
+      record.tupleCount = totalTupleCount;
+    }
+    if (writerThread == null) {
+      write(record);
+    } else if (queue.offer(record)) {
+      wakeUpWriter();
+    } else {
+      droppedTupleCount++;
     }
   }
 
   public void writeControlTuple(Tuple tuple, String port)
   {
+    Slice f = streamCodec.toByteArray(tuple);
+    enqueue(new Record(RECORD_CONTROL, System.currentTimeMillis(), portMap.get(port), null, f));
+  }
+
+  /**
+   * Hands a window or control record to the writer, waits for space in the ring buffer as these records
+   * cannot be dropped from the recording.
+   */
+  private void enqueue(Record record)
+  {
+    if (writerThread == null) {
+      write(record);
+      return;
+    }
     try {
-      ByteArrayOutputStream bos = new ByteArrayOutputStream();
-      PortInfo pi = portMap.get(port);
-      Slice f = streamCodec.toByteArray(tuple);
-      String str = "C:" + System.currentTimeMillis() + ":" + pi.id + ":" + f.length + ":";
-      bos.write(str.getBytes());
-      bos.write(f.buffer, f.offset, f.length);
-      bos.write("\n".getBytes());
-      storage.writeDataItem(bos.toByteArray(), false);
+      queue.put(record);
+      wakeUpWriter();
+    } catch (InterruptedException ex) {
+      logger.warn("Interrupted while recording {}", record.type, ex);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void wakeUpWriter()
+  {
+    if (writerParked) {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  /**
+   * Writes the record to the current part file, called by the writer thread.
+   */
+  private void write(Record record)
+  {
+    try {
+      recordBuffer.reset();
+      switch (record.type) {
+        case RECORD_BEGIN_WINDOW:
+          if (record.windowId != recordedWindowId + 1) {
+            if (!windowIdRanges.isEmpty()) {
+              windowIdRanges.get(windowIdRanges.size() - 1).high = recordedWindowId;
+            }
+            windowIdRanges.add(new Range(record.windowId, -1));
+          }
+          if (windowIdRanges.isEmpty()) {
+            windowIdRanges.add(new Range(record.windowId, -1));
+          }
+          recordedWindowId = record.windowId;
+          writeWindowRecord(record);
+          storage.writeDataItem(recordBuffer.getBuffer(), 0, recordBuffer.size(), false);
+          break;
+
+        case RECORD_END_WINDOW:
+          writeWindowRecord(record);
+          storage.writeDataItem(recordBuffer.getBuffer(), 0, recordBuffer.size(), false);
+          logger.debug("Got last end window tuple.  Flushing...");
+          if (storage.flushData()) {
+            partFileBaseTimestamp = 0;
+          } else if (wsClient != null) {
+            wsClient.publish(SharedPubSubWebSocketClient.LAST_INDEX_TOPIC_PREFIX + ".tuple." + storage.getBasePath(), storage.getLatestIndexLine());
+          }
+          break;
+
+        default:
+          writeDataRecord(record);
+          if (record.portCount != null) {
+            record.portCount.count++;
+          }
+          storage.writeDataItem(recordBuffer.getBuffer(), 0, recordBuffer.size(), record.type == RECORD_TUPLE);
+          if (record.publish) {
+            publishTupleData(record.portInfo.id, record.data, record.tupleCount);
+          }
+          break;
+      }
     } catch (IOException ex) {
-      logger.error(ex.toString());
+      logger.error("Exception caught writing {} record", (char)record.type, ex);
+    }
+  }
+
+  private void writeWindowRecord(Record record) throws IOException
+  {
+    if (binaryFormat) {
+      recordBuffer.write(record.type);
+      recordBuffer.writeLong(record.timestamp);
+      recordBuffer.writeLong(record.windowId);
+      partFileBaseTimestamp = record.timestamp;
+    } else {
+      recordBuffer.write(((char)record.type + ":" + record.timestamp + ":" + record.windowId + "\n").getBytes());
+    }
+  }
+
+  private void writeDataRecord(Record record) throws IOException
+  {
+    Slice f = record.data;
+    if (binaryFormat) {
+      recordBuffer.write(record.type);
+      recordBuffer.writeVarLong(RecordBuffer.zigzag(record.timestamp - partFileBaseTimestamp));
+      recordBuffer.writeVarLong(record.portInfo.id);
+      recordBuffer.writeVarLong(f.length);
+      recordBuffer.write(f.buffer, f.offset, f.length);
+    } else {
+      recordBuffer.write(((char)record.type + ":" + record.timestamp + ":" + record.portInfo.id + ":" + f.length + ":").getBytes());
+      recordBuffer.write(f.buffer, f.offset, f.length);
+      recordBuffer.write('\n');
     }
   }
 
@@ -469,23 +639,22 @@ public class TupleRecorder
     return result;
   }
 
-  private void publishTupleData(int portId, Object obj)
+  /**
+   * Publishes the serialized tuple, the tuple itself may have been changed by the operator since it was recorded.
+   */
+  private void publishTupleData(int portId, Slice data, long tupleCount)
   {
     try {
       if (wsClient != null && wsClient.isConnectionOpen()) {
         HashMap<String, Object> map = new HashMap<>();
         map.put("portId", String.valueOf(portId));
-        map.put("windowId", currentWindowId);
-        map.put("tupleCount", totalTupleCount);
-        map.put("data", obj);
+        map.put("windowId", recordedWindowId);
+        map.put("tupleCount", tupleCount);
+        map.put("data", new ObjectMapperString(data.stringValue()));
         wsClient.publish(recordingNameTopic, map);
       }
     } catch (Exception ex) {
-      if (ex instanceof JsonProcessingException) {
-        checkLogTuple(ex, "publish", obj);
-      } else {
-        logger.warn("Error publishing tuple", ex);
-      }
+      logger.warn("Error publishing tuple", ex);
     }
   }
 
@@ -503,6 +672,178 @@ public class TupleRecorder
     this.stopProcedure = stopProcedure;
   }
 
+  /**
+   * Tuple, window or control record handed from the operator thread to the writer thread.
+   */
+  private static class Record
+  {
+    final byte type;
+    final long timestamp;
+    final long windowId;
+    final PortInfo portInfo;
+    final PortCount portCount;
+    final Slice data;
+    // set only while there are websocket subscribers
+    boolean publish;
+    long tupleCount;
+
+    Record(byte type, long timestamp, long windowId)
+    {
+      this.type = type;
+      this.timestamp = timestamp;
+      this.windowId = windowId;
+      this.portInfo = null;
+      this.portCount = null;
+      this.data = null;
+    }
+
+    Record(byte type, long timestamp, PortInfo portInfo, PortCount portCount, Slice data)
+    {
+      this.type = type;
+      this.timestamp = timestamp;
+      this.windowId = 0;
+      this.portInfo = portInfo;
+      this.portCount = portCount;
+      this.data = data;
+    }
+  }
+
+  private class Writer implements Runnable
+  {
+    @Override
+    public void run()
+    {
+      while (true) {
+        Record record = queue.poll();
+        if (record != null) {
+          write(record);
+        } else if (writerRunning) {
+          /* the operator thread wakes the writer up only once it announced that it parks, so check the queue again */
+          writerParked = true;
+          if (queue.isEmpty() && writerRunning) {
+            LockSupport.park(this);
+          }
+          writerParked = false;
+        } else {
+          // drain the records enqueued before the recorder was torn down
+          while ((record = queue.poll()) != null) {
+            write(record);
+          }
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reusable buffer to format the records.
+   */
+  private static class RecordBuffer extends ByteArrayOutputStream
+  {
+    RecordBuffer()
+    {
+      super(1024);
+    }
+
+    byte[] getBuffer()
+    {
+      return buf;
+    }
+
+    void writeLong(long value)
+    {
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        write((int)(value >>> shift));
+      }
+    }
+
+    void writeVarLong(long value)
+    {
+      while ((value & ~0x7FL) != 0) {
+        write((int)((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      write((int)value);
+    }
+
+    static long zigzag(long value)
+    {
+      return (value << 1) ^ (value >> 63);
+    }
+  }
+
+  /**
+   * Reads the records of a binary part file. Every record starts with the record type byte. Window records continue
+   * with the timestamp and the window id as 8 byte values. Tuple and control records continue with varints for the
+   * zigzag encoded timestamp difference to the last window record of the part file, the port id and the length of
+   * the serialized tuple, followed by the serialized tuple.
+   */
+  public static class RecordReader
+  {
+    private final DataInputStream in;
+    private long baseTimestamp;
+    public byte type;
+    public long timestamp;
+    public long windowId;
+    public int portId;
+    public byte[] data;
+
+    public RecordReader(InputStream in)
+    {
+      this.in = new DataInputStream(in);
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false at the end of the part file
+     * @throws IOException when the part file cannot be read or ends within a record
+     */
+    public boolean next() throws IOException
+    {
+      int b = in.read();
+      if (b < 0) {
+        return false;
+      }
+      type = (byte)b;
+      switch (type) {
+        case RECORD_BEGIN_WINDOW:
+        case RECORD_END_WINDOW:
+          timestamp = in.readLong();
+          windowId = in.readLong();
+          baseTimestamp = timestamp;
+          data = null;
+          break;
+
+        case RECORD_TUPLE:
+        case RECORD_CONTROL:
+          long delta = readVarLong();
+          timestamp = baseTimestamp + ((delta >>> 1) ^ -(delta & 1));
+          portId = (int)readVarLong();
+          data = new byte[(int)readVarLong()];
+          in.readFully(data);
+          break;
+
+        default:
+          throw new IOException("Unknown record type " + b);
+      }
+      return true;
+    }
+
+    private long readVarLong() throws IOException
+    {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = in.readUnsignedByte();
+        value |= (long)(b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint");
+    }
+  }
+
   public class RecorderSink implements Sink<Object>
   {
     private final String portName;
@@ -68,6 +68,10 @@ public class TupleRecorderCollection extends HashMap<OperatorIdPortNamePair, Tup
 {
   private int tupleRecordingPartFileSize;
   private long tupleRecordingPartFileTimeMillis;
+  private boolean tupleRecordingBinaryFormat;
+  private int tupleRecordingSampleInterval;
+  private int tupleRecordingMaxTuplesPerWindow;
+  private int tupleRecordingQueueCapacity;
   private String appPath;
   private String appId;
   private SharedPubSubWebSocketClient wsClient;
@@ -85,6 +89,10 @@ public class TupleRecorderCollection extends HashMap<OperatorIdPortNamePair, Tup
   {
     tupleRecordingPartFileSize = ctx.getValue(LogicalPlan.TUPLE_RECORDING_PART_FILE_SIZE);
     tupleRecordingPartFileTimeMillis = ctx.getValue(LogicalPlan.TUPLE_RECORDING_PART_FILE_TIME_MILLIS);
+    tupleRecordingBinaryFormat = ctx.getValue(LogicalPlan.TUPLE_RECORDING_BINARY_FORMAT);
+    tupleRecordingSampleInterval = ctx.getValue(LogicalPlan.TUPLE_RECORDING_SAMPLE_INTERVAL);
+    tupleRecordingMaxTuplesPerWindow = ctx.getValue(LogicalPlan.TUPLE_RECORDING_MAX_TUPLES_PER_WINDOW);
+    tupleRecordingQueueCapacity = ctx.getValue(LogicalPlan.TUPLE_RECORDING_QUEUE_CAPACITY);
     appId = ctx.getValue(LogicalPlan.APPLICATION_ID);
     appPath = ctx.getValue(LogicalPlan.APPLICATION_PATH);
     codecs = ctx.getAttributes().get(Context.DAGContext.STRING_CODECS);
@@ -166,6 +174,10 @@ public class TupleRecorderCollection extends HashMap<OperatorIdPortNamePair, Tup
 
       TupleRecorder tupleRecorder = new TupleRecorder(id, appId);
       tupleRecorder.setWebSocketClient(wsClient);
+      tupleRecorder.setBinaryFormat(tupleRecordingBinaryFormat);
+      tupleRecorder.setSampleInterval(tupleRecordingSampleInterval);
+      tupleRecorder.setMaxTuplesPerWindow(tupleRecordingMaxTuplesPerWindow);
+      tupleRecorder.setQueueCapacity(tupleRecordingQueueCapacity);
 
       HashMap<String, Sink<Object>> sinkMap = new HashMap<>();
       for (Map.Entry<String, PortContextPair<InputPort<?>>> entry : descriptor.inputPorts.entrySet()) {
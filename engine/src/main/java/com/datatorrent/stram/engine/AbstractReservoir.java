@@ -47,7 +47,7 @@ import static java.lang.Thread.sleep;
  *
  * @since 3.4.0
  */
-public abstract class AbstractReservoir implements SweepableReservoir, BlockingQueue<Object>
+public abstract class AbstractReservoir implements SignalingReservoir, BlockingQueue<Object>
 {
   private static final Logger logger = LoggerFactory.getLogger(AbstractReservoir.class);
   static final String reservoirClassNameProperty = "com.datatorrent.stram.engine.Reservoir";
@@ -91,6 +91,7 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
   private Sink<Object> sink;
   private String id;
   protected int count;
+  private volatile WakeupSignal wakeupSignal;
 
   protected AbstractReservoir(final String id)
   {
@@ -125,6 +126,26 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setWakeupSignal(WakeupSignal signal)
+  {
+    wakeupSignal = signal;
+  }
+
+  /**
+   * Wake up the consumer, if it is parked, after tuples were added to the reservoir.
+   */
+  protected void signal()
+  {
+    final WakeupSignal signal = wakeupSignal;
+    if (signal != null) {
+      signal.signal();
+    }
+  }
+
   /**
    * @return allocated reservoir capacity
    */
@@ -193,7 +214,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean add(Object o)
     {
-      return queue.add(o);
+      final boolean added = queue.add(o);
+      signal();
+      return added;
     }
 
     @Override
@@ -236,7 +259,11 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean offer(Object o)
     {
-      return queue.offer(o);
+      if (queue.offer(o)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
@@ -248,6 +275,7 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
         sleep(spinMillis);
         spinMillis = Math.min(maxSpinMillis, spinMillis + 1);
       }
+      signal();
     }
 
     @Override
@@ -437,6 +465,7 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
           lock.unlock();
         }
       }
+      signal();
     }
 
     @Override
@@ -493,25 +522,36 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean add(Object o)
     {
-      return queue.add(o);
+      final boolean added = queue.add(o);
+      signal();
+      return added;
     }
 
     @Override
     public boolean offer(Object o)
     {
-      return queue.offer(o);
+      if (queue.offer(o)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
     public void put(Object o) throws InterruptedException
     {
       queue.put(o);
+      signal();
     }
 
     @Override
     public boolean offer(Object o, long timeout, TimeUnit unit) throws InterruptedException
     {
-      return queue.offer(o, timeout, unit);
+      if (queue.offer(o, timeout, unit)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
@@ -697,7 +737,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean add(Object o)
     {
-      return circularBuffer.add(o);
+      final boolean added = circularBuffer.add(o);
+      signal();
+      return added;
     }
 
     @Override
@@ -742,19 +784,28 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean offer(Object o)
     {
-      return circularBuffer.offer(o);
+      if (circularBuffer.offer(o)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
     public void put(Object o) throws InterruptedException
     {
       circularBuffer.put(o);
+      signal();
     }
 
     @Override
     public boolean offer(Object o, long timeout, TimeUnit unit) throws InterruptedException
     {
-      return circularBuffer.offer(o, timeout, unit);
+      if (circularBuffer.offer(o, timeout, unit)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
@@ -31,6 +31,7 @@ import com.datatorrent.stram.api.ContainerEvent.StreamActivationEvent;
 import com.datatorrent.stram.api.ContainerEvent.StreamDeactivationEvent;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.stream.BufferServerSubscriber;
 
 import net.engio.mbassy.listener.Handler;
 
@@ -98,6 +99,10 @@ public class BufferServerStatsSubscriber
             ByteCounterStream stream = inputStreams.get(ps.id);
             if (stream != null) {
               ps.bufferServerBytes = stream.getByteCount(true);
+              if (stream instanceof BufferServerSubscriber) {
+                ps.bufferServerLagBytes = ((BufferServerSubscriber)stream).getLagBytes();
+                ps.decodeTime = ((BufferServerSubscriber)stream).getDecodeTime(true);
+              }
             }
           }
         }
@@ -23,12 +23,9 @@ import java.util.ArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Throwables;
-
 import com.datatorrent.api.InputOperator;
 import com.datatorrent.api.Operator.IdleTimeHandler;
 import com.datatorrent.api.Operator.ProcessingMode;
-import com.datatorrent.api.Operator.ShutdownException;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
@@ -45,6 +42,15 @@ public class InputNode extends Node<InputOperator>
   private final ArrayList<SweepableReservoir> deferredInputConnections = new ArrayList<>();
   protected SweepableReservoir controlTuples;
   long lastCheckpointWindowId = Stateless.WINDOW_ID;
+  /*
+   * state of the processing loop kept between the steps
+   */
+  private long maxSpinMillis;
+  private long spinMillis;
+  private boolean handleIdleTime;
+  private boolean insideApplicationWindow;
+  private boolean doCheckpoint;
+  private boolean insideStreamingWindow;
 
   public InputNode(InputOperator operator, OperatorContext context)
   {
@@ -64,167 +70,169 @@ public class InputNode extends Node<InputOperator>
   }
 
   @Override
-  @SuppressWarnings(value = {"SleepWhileInLoop", "BroadCatchBlock", "TooBroadCatch"})
+  @SuppressWarnings(value = {"BroadCatchBlock", "TooBroadCatch"})
   public final void run()
   {
-    long maxSpinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
-    long spinMillis = 0;
-    final boolean handleIdleTime = operator instanceof IdleTimeHandler;
+    prepareRun();
+    try {
+      while (alive) {
+        stepAndWait();
+      }
+    } catch (Throwable cause) {
+      handleRunException(cause);
+    }
+    finishRun();
+  }
 
-    boolean insideApplicationWindow = applicationWindowCount != 0;
-    boolean doCheckpoint = false;
-    boolean insideStreamingWindow = false;
+  @Override
+  protected void prepareRun()
+  {
+    maxSpinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
+    spinMillis = 0;
+    handleIdleTime = operator instanceof IdleTimeHandler;
+
+    insideApplicationWindow = applicationWindowCount != 0;
+    doCheckpoint = false;
+    insideStreamingWindow = false;
 
     calculateNextCheckpointWindow();
+    setupWakeupSignal();
+    signalOnInput(controlTuples);
+  }
 
-    try {
-      while (alive) {
-        Tuple t = controlTuples.sweep();
-        if (t == null) {
-          if (insideStreamingWindow) {
-            int generatedTuples = 0;
+  @Override
+  protected long step()
+  {
+    Tuple t = controlTuples.sweep();
+    if (t == null) {
+      if (insideStreamingWindow) {
+        int generatedTuples = 0;
 
-            for (Sink<Object> cs : sinks) {
-              generatedTuples -= cs.getCount(false);
-            }
+        for (Sink<Object> cs : sinks) {
+          generatedTuples -= cs.getCount(false);
+        }
 
-            operator.emitTuples();
+        operator.emitTuples();
 
-            for (Sink<Object> cs : sinks) {
-              generatedTuples += cs.getCount(false);
-            }
+        for (Sink<Object> cs : sinks) {
+          generatedTuples += cs.getCount(false);
+        }
 
-            if (generatedTuples == 0) {
-              if (handleIdleTime) {
-                ((IdleTimeHandler)operator).handleIdleTime();
-              } else {
-                Thread.sleep(spinMillis);
-                spinMillis = Math.min(spinMillis + 1, maxSpinMillis);
-              }
-            } else {
-              spinMillis = 0;
-            }
+        if (generatedTuples == 0) {
+          if (handleIdleTime) {
+            ((IdleTimeHandler)operator).handleIdleTime();
           } else {
-            Thread.sleep(0);
+            /* the operator is not signaled when its source has data, it is woken up only by control tuples */
+            final long sleepMillis = spinMillis;
+            spinMillis = Math.min(spinMillis + 1, maxSpinMillis);
+            return sleepMillis;
           }
         } else {
-          controlTuples.remove();
-          switch (t.getType()) {
-            case BEGIN_WINDOW:
-              for (int i = sinks.length; i-- > 0; ) {
-                sinks[i].put(t);
-              }
-              controlTupleCount++;
-              currentWindowId = t.getWindowId();
-              insideStreamingWindow = true;
-              if (applicationWindowCount == 0) {
-                insideApplicationWindow = true;
-                operator.beginWindow(currentWindowId);
-              }
-              operator.emitTuples(); /* give at least one chance to emit the tuples */
-
-              break;
-
-            case END_WINDOW:
-              insideStreamingWindow = false;
-              if (++applicationWindowCount == APPLICATION_WINDOW_COUNT) {
-                insideApplicationWindow = false;
-                operator.endWindow();
-                applicationWindowCount = 0;
-              }
-              endWindowEmitTime = System.currentTimeMillis();
+          spinMillis = 0;
+        }
+      } else {
+        return wakeupSignal == null ? 0 : maxSpinMillis;
+      }
+    } else {
+      controlTuples.remove();
+      switch (t.getType()) {
+        case BEGIN_WINDOW:
+          for (int i = sinks.length; i-- > 0; ) {
+            sinks[i].put(t);
+          }
+          controlTupleCount++;
+          currentWindowId = t.getWindowId();
+          insideStreamingWindow = true;
+          if (applicationWindowCount == 0) {
+            insideApplicationWindow = true;
+            operator.beginWindow(currentWindowId);
+          }
+          operator.emitTuples(); /* give at least one chance to emit the tuples */
 
-              for (int i = sinks.length; i-- > 0;) {
-                sinks[i].put(t);
-              }
-              controlTupleCount++;
+          break;
 
-              if (doCheckpoint) {
-                dagCheckpointOffsetCount = (dagCheckpointOffsetCount + 1) % DAG_CHECKPOINT_WINDOW_COUNT;
-              }
+        case END_WINDOW:
+          insideStreamingWindow = false;
+          if (++applicationWindowCount == APPLICATION_WINDOW_COUNT) {
+            insideApplicationWindow = false;
+            operator.endWindow();
+            applicationWindowCount = 0;
+          }
+          endWindowEmitTime = System.currentTimeMillis();
 
-              if (++checkpointWindowCount == CHECKPOINT_WINDOW_COUNT) {
-                checkpointWindowCount = 0;
-                if (doCheckpoint) {
-                  checkpoint(currentWindowId);
-                  lastCheckpointWindowId = currentWindowId;
-                  doCheckpoint = false;
-                } else if (PROCESSING_MODE == ProcessingMode.EXACTLY_ONCE) {
-                  checkpoint(currentWindowId);
-                  lastCheckpointWindowId = currentWindowId;
-                }
-              }
+          for (int i = sinks.length; i-- > 0;) {
+            sinks[i].put(t);
+          }
+          controlTupleCount++;
 
-              ContainerStats.OperatorStats stats = new ContainerStats.OperatorStats();
-              reportStats(stats, currentWindowId);
-              if (!insideApplicationWindow) {
-                stats.metrics = collectMetrics();
-              }
-              handleRequests(currentWindowId);
-              break;
+          if (doCheckpoint) {
+            dagCheckpointOffsetCount = (dagCheckpointOffsetCount + 1) % DAG_CHECKPOINT_WINDOW_COUNT;
+          }
 
-            case CHECKPOINT:
-              dagCheckpointOffsetCount = 0;
-              if (lastCheckpointWindowId < currentWindowId) {
-                if (checkpointWindowCount == 0 && PROCESSING_MODE != ProcessingMode.EXACTLY_ONCE) {
-                  checkpoint(currentWindowId);
-                  lastCheckpointWindowId = currentWindowId;
-                } else {
-                  doCheckpoint = true;
-                }
-              }
-              for (int i = sinks.length; i-- > 0;) {
-                sinks[i].put(t);
-              }
-              controlTupleCount++;
-              break;
+          if (++checkpointWindowCount == CHECKPOINT_WINDOW_COUNT) {
+            checkpointWindowCount = 0;
+            if (doCheckpoint) {
+              checkpoint(currentWindowId);
+              lastCheckpointWindowId = currentWindowId;
+              doCheckpoint = false;
+            } else if (PROCESSING_MODE == ProcessingMode.EXACTLY_ONCE) {
+              checkpoint(currentWindowId);
+              lastCheckpointWindowId = currentWindowId;
+            }
+          }
 
-            case END_STREAM:
-              if (deferredInputConnections.isEmpty()) {
-                for (int i = sinks.length; i-- > 0;) {
-                  sinks[i].put(t);
-                }
-                controlTupleCount++;
-                alive = false;
-              } else {
-                controlTuples = deferredInputConnections.remove(0);
-              }
-              break;
+          ContainerStats.OperatorStats stats = new ContainerStats.OperatorStats();
+          reportStats(stats, currentWindowId);
+          if (!insideApplicationWindow) {
+            stats.metrics = collectMetrics();
+          }
+          handleRequests(currentWindowId);
+          break;
 
-            default:
-              for (int i = sinks.length; i-- > 0;) {
-                sinks[i].put(t);
-              }
-              controlTupleCount++;
-              break;
+        case CHECKPOINT:
+          dagCheckpointOffsetCount = 0;
+          if (lastCheckpointWindowId < currentWindowId) {
+            if (checkpointWindowCount == 0 && PROCESSING_MODE != ProcessingMode.EXACTLY_ONCE) {
+              checkpoint(currentWindowId);
+              lastCheckpointWindowId = currentWindowId;
+            } else {
+              doCheckpoint = true;
+            }
           }
-        }
-      }
-    } catch (ShutdownException se) {
-      logger.debug("Shutdown requested by the operator when alive = {}.", alive);
-      alive = false;
-    } catch (Throwable cause) {
-      synchronized (this) {
-        if (alive) {
-          throw Throwables.propagate(cause);
-        }
-      }
+          for (int i = sinks.length; i-- > 0;) {
+            sinks[i].put(t);
+          }
+          controlTupleCount++;
+          break;
 
-      Throwable rootCause = cause;
-      while (rootCause != null) {
-        if (rootCause instanceof InterruptedException) {
+        case END_STREAM:
+          if (deferredInputConnections.isEmpty()) {
+            for (int i = sinks.length; i-- > 0;) {
+              sinks[i].put(t);
+            }
+            controlTupleCount++;
+            alive = false;
+          } else {
+            controlTuples = deferredInputConnections.remove(0);
+            signalOnInput(controlTuples);
+          }
           break;
-        }
-        rootCause = rootCause.getCause();
-      }
 
-      if (rootCause == null) {
-        throw Throwables.propagate(cause);
-      } else {
-        logger.debug("Ignoring InterruptedException after shutdown", cause);
+        default:
+          for (int i = sinks.length; i-- > 0;) {
+            sinks[i].put(t);
+          }
+          controlTupleCount++;
+          break;
       }
     }
 
+    return -1;
+  }
+
+  @Override
+  protected void finishRun()
+  {
     if (insideApplicationWindow) {
       operator.endWindow();
       endWindowEmitTime = System.currentTimeMillis();
@@ -77,10 +77,24 @@ public abstract class MuxReservoir
 
   protected abstract Queue getQueue();
 
-  class SubReservoir extends CircularBuffer<Object> implements SweepableReservoir
+  /**
+   * Wake up the consumers of the reservoirs after tuples were added to the queue.
+   */
+  protected void signal()
+  {
+    for (SubReservoir r : reservoirs) {
+      final WakeupSignal signal = r.wakeupSignal;
+      if (signal != null) {
+        signal.signal();
+      }
+    }
+  }
+
+  class SubReservoir extends CircularBuffer<Object> implements SignalingReservoir
   {
     int count;
     private Sink<Object> sink;
+    private volatile WakeupSignal wakeupSignal;
 
     SubReservoir(int capacity)
     {
@@ -102,6 +116,12 @@ public abstract class MuxReservoir
       return size;
     }
 
+    @Override
+    public void setWakeupSignal(WakeupSignal signal)
+    {
+      wakeupSignal = signal;
+    }
+
     @Override
     public Sink<Object> setSink(Sink<Object> sink)
     {
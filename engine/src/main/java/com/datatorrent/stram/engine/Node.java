@@ -18,22 +18,15 @@
  */
 package com.datatorrent.stram.engine;
 
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
@@ -49,14 +42,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.apex.common.util.AsyncStorageAgent;
-import org.apache.hadoop.util.ReflectionUtils;
 
 import com.google.common.base.Throwables;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.math.IntMath;
 
-import com.datatorrent.api.AutoMetric;
 import com.datatorrent.api.Component;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.InputOperator;
@@ -64,6 +53,7 @@ import com.datatorrent.api.Operator;
 import com.datatorrent.api.Operator.InputPort;
 import com.datatorrent.api.Operator.OutputPort;
 import com.datatorrent.api.Operator.ProcessingMode;
+import com.datatorrent.api.Operator.ShutdownException;
 import com.datatorrent.api.Operator.Unifier;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.Stats;
@@ -71,16 +61,20 @@ import com.datatorrent.api.StatsListener;
 import com.datatorrent.api.StatsListener.OperatorRequest;
 import com.datatorrent.api.StorageAgent;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.Pair;
 import com.datatorrent.stram.api.Checkpoint;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.RecoveryStats;
 import com.datatorrent.stram.debug.MuxSink;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.logical.Operators;
 import com.datatorrent.stram.plan.logical.Operators.PortContextPair;
 import com.datatorrent.stram.plan.logical.Operators.PortMappingDescriptor;
 import com.datatorrent.stram.tuple.EndStreamTuple;
 import com.datatorrent.stram.tuple.EndWindowTuple;
+import com.datatorrent.stram.util.AutoMetricAccessors;
 
 /**
  * <p>
@@ -127,19 +121,33 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
   protected int controlTupleCount;
   public final OperatorContext context;
   public final BlockingQueue<StatsListener.OperatorResponse> commandResponse;
-  private final List<Field> metricFields;
-  private final Map<String, Method> metricMethods;
+  private final AutoMetricAccessors metricAccessors;
   private ExecutorService executorService;
+  private boolean sharedExecutorService;
   private Queue<Pair<FutureTask<Stats.CheckpointStats>, CheckpointWindowInfo>> taskQueue;
   protected Stats.CheckpointStats checkpointStats;
   public long firstWindowMillis;
   public long windowWidthMillis;
+  /**
+   * Signal the input reservoirs raise when tuples arrive, null unless the node is scheduled by events.
+   */
+  protected WakeupSignal wakeupSignal;
+  /**
+   * CPU time in nanoseconds the node used on the threads of a worker pool, negative when the node has its own thread.
+   */
+  long workerCpuTime = -1;
+  /**
+   * Time it took to restore the node from its checkpoint, completed with the replay time at the end of the first window
+   * and then handed over to the heartbeat.
+   */
+  private RecoveryStats recoveryStats;
+  private long activationMillis;
+  private volatile RecoveryStats recoveredStats;
 
   public Node(OPERATOR operator, OperatorContext context)
   {
     this.operator = operator;
     this.context = context;
-    executorService = Executors.newSingleThreadExecutor();
     taskQueue = new LinkedList<>();
 
     outputs = new HashMap<>();
@@ -151,28 +159,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     tmb = ManagementFactory.getThreadMXBean();
     commandResponse = new LinkedBlockingQueue<>();
 
-    metricFields = Lists.newArrayList();
-    for (Field field : ReflectionUtils.getDeclaredFieldsIncludingInherited(operator.getClass())) {
-      if (field.isAnnotationPresent(AutoMetric.class)) {
-        metricFields.add(field);
-        field.setAccessible(true);
-      }
-    }
-
-    metricMethods = Maps.newHashMap();
-    try {
-      for (PropertyDescriptor pd : Introspector.getBeanInfo(operator.getClass()).getPropertyDescriptors()) {
-        Method readMethod = pd.getReadMethod();
-        if (readMethod != null) {
-          AutoMetric rfa = readMethod.getAnnotation(AutoMetric.class);
-          if (rfa != null) {
-            metricMethods.put(pd.getName(), readMethod);
-          }
-        }
-      }
-    } catch (IntrospectionException e) {
-      throw new RuntimeException("introspecting {}", e);
-    }
+    metricAccessors = AutoMetricAccessors.get(operator.getClass());
   }
 
   public Operator getOperator()
@@ -209,7 +196,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
       pcpair.component.teardown();
     }
 
-    if (executorService != null) {
+    if (executorService != null && !sharedExecutorService) {
       executorService.shutdown();
       boolean terminated = false;
       try {
@@ -225,6 +212,42 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     operator.teardown();
   }
 
+  /**
+   * Sets the executor the asynchronous checkpoints of the node are uploaded on, instead of a thread of its own.
+   *
+   * @param executorService executor shared by the nodes of the container
+   */
+  public void setCheckpointExecutor(ExecutorService executorService)
+  {
+    this.executorService = executorService;
+    sharedExecutorService = true;
+  }
+
+  /**
+   * Sets the time it took to fetch and deserialize the checkpoint of the node, reported along with the time until the
+   * node completes its first window.
+   *
+   * @param recoveryStats stats of the recovery of the node
+   */
+  public void setRecoveryStats(RecoveryStats recoveryStats)
+  {
+    this.recoveryStats = recoveryStats;
+  }
+
+  /**
+   * Returns the stats of the recovery of the node once it completed its first window, only once.
+   *
+   * @return stats of the recovery, null when the node is not recovered or still replaying
+   */
+  public RecoveryStats pollRecoveryStats()
+  {
+    RecoveryStats stats = recoveredStats;
+    if (stats != null) {
+      recoveredStats = null;
+    }
+    return stats;
+  }
+
   public PortMappingDescriptor getPortMappingDescriptor()
   {
     return descriptor;
@@ -246,6 +269,117 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
 
   public abstract void connectInputPort(String port, final SweepableReservoir reservoir);
 
+  /**
+   * Initialize the state of the processing loop. Invoked on the thread which runs the node before the first
+   * {@link #step()}.
+   */
+  protected void prepareRun()
+  {
+  }
+
+  /**
+   * Process the tuples available to the node once. The processing loop of the node invokes this method as long as the
+   * node is alive, either on the thread of the node or on a thread of the worker pool shared by several nodes.
+   *
+   * @return negative if the node should be stepped again right away, otherwise the time in milliseconds to wait for
+   * the input reservoirs of the node before it is stepped again.
+   */
+  protected abstract long step();
+
+  /**
+   * @param reservoir a reservoir
+   * @return whether the node reads from the reservoir
+   */
+  protected boolean consumes(Object reservoir)
+  {
+    return false;
+  }
+
+  /**
+   * Wrap up the processing loop after the node stopped being alive, e.g. close the window the node is inside of.
+   */
+  protected void finishRun()
+  {
+  }
+
+  /**
+   * Step the node once on its own thread and wait as long as the step asks for.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  protected final void stepAndWait() throws InterruptedException
+  {
+    if (wakeupSignal != null) {
+      wakeupSignal.clear();
+    }
+    final long waitMillis = step();
+    if (waitMillis >= 0) {
+      if (wakeupSignal == null) {
+        Thread.sleep(waitMillis);
+      } else {
+        wakeupSignal.await(waitMillis);
+      }
+    }
+  }
+
+  /**
+   * Handle the exception which terminated the processing loop of the node. Exceptions caused by the shutdown of the
+   * node are ignored, the rest are propagated.
+   *
+   * @param cause exception thrown by the processing loop
+   */
+  protected void handleRunException(Throwable cause)
+  {
+    if (cause instanceof ShutdownException) {
+      logger.debug("Shutdown requested by the operator when alive = {}.", alive);
+      alive = false;
+      return;
+    }
+
+    synchronized (this) {
+      if (alive) {
+        throw Throwables.propagate(cause);
+      }
+    }
+
+    Throwable rootCause = cause;
+    while (rootCause != null) {
+      if (rootCause instanceof InterruptedException) {
+        break;
+      }
+      rootCause = rootCause.getCause();
+    }
+
+    if (rootCause == null) {
+      throw Throwables.propagate(cause);
+    } else {
+      logger.debug("Ignoring InterruptedException after shutdown", cause);
+    }
+  }
+
+  /**
+   * Create the wakeup signal if the node is scheduled by events, see {@link LogicalPlan#EVENT_DRIVEN_SCHEDULING}. Nodes
+   * stepped by a worker pool share the signal of the worker.
+   */
+  protected void setupWakeupSignal()
+  {
+    if (wakeupSignal == null && context.getValue(LogicalPlan.EVENT_DRIVEN_SCHEDULING)) {
+      wakeupSignal = new WakeupSignal();
+    }
+  }
+
+  /**
+   * Have the reservoir wake up the node when tuples are added to it if the node is scheduled by events.
+   *
+   * @param reservoir input reservoir of the node
+   */
+  protected void signalOnInput(SweepableReservoir reservoir)
+  {
+    if (wakeupSignal != null && reservoir instanceof SignalingReservoir) {
+      ((SignalingReservoir)reservoir).setWakeupSignal(wakeupSignal);
+    }
+  }
+
   @SuppressWarnings({"unchecked"})
   public void addSinks(Map<String, Sink<Object>> sinks)
   {
@@ -334,6 +468,11 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
       alive = false;
     }
 
+    final WakeupSignal signal = wakeupSignal;
+    if (signal != null) {
+      signal.signal();
+    }
+
     if (context == null) {
       logger.warn("Shutdown requested when context is not available!");
     } else {
@@ -421,31 +560,18 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     if (context.areMetricsListed() && (context.metricsToSend == null || context.metricsToSend.isEmpty())) {
       return null;
     }
-    Map<String, Object> metricValues = Maps.newHashMap();
-    try {
-      for (Field field : metricFields) {
-        if (context.metricsToSend != null && !context.metricsToSend.contains(field.getName())) {
-          continue;
-        }
-        metricValues.put(field.getName(), field.get(operator));
-      }
-
-      for (Map.Entry<String, Method> methodEntry : metricMethods.entrySet()) {
-        if (context.metricsToSend != null && !context.metricsToSend.contains(methodEntry.getKey())) {
-          continue;
-        }
-        metricValues.put(methodEntry.getKey(), methodEntry.getValue().invoke(operator));
-      }
-
-      context.clearMetrics();
-      return metricValues;
-    } catch (IllegalAccessException | InvocationTargetException iae) {
-      throw new RuntimeException(iae);
-    }
+    Map<String, Object> metricValues = metricAccessors.getValues(operator, context.metricsToSend);
+    context.clearMetrics();
+    return metricValues;
   }
 
   protected void reportStats(ContainerStats.OperatorStats stats, long windowId)
   {
+    if (recoveryStats != null) {
+      recoveryStats.replayMillis = System.currentTimeMillis() - activationMillis;
+      recoveredStats = recoveryStats;
+      recoveryStats = null;
+    }
     stats.outputPorts = new ArrayList<>();
     for (Entry<String, Sink<Object>> e : outputs.entrySet()) {
       ContainerStats.OperatorStats.PortStats portStats = new ContainerStats.OperatorStats.PortStats(e.getKey());
@@ -455,7 +581,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     }
     controlTupleCount = 0;
 
-    long currentCpuTime = tmb.getCurrentThreadCpuTime();
+    long currentCpuTime = workerCpuTime < 0 ? tmb.getCurrentThreadCpuTime() : workerCpuTime;
     stats.cpuTimeUsed = currentCpuTime - lastSampleCpuTime;
     lastSampleCpuTime = currentCpuTime;
 
@@ -534,6 +660,11 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
                 checkpointHandler.stats = checkpointStats;
                 FutureTask<Stats.CheckpointStats> futureTask = new FutureTask<>(checkpointHandler);
                 taskQueue.add(new Pair<>(futureTask, checkpointWindowInfo));
+                if (executorService == null) {
+                  executorService = Executors.newSingleThreadExecutor();
+                } else if (sharedExecutorService && ba instanceof AsyncFSStorageAgent) {
+                  ((AsyncFSStorageAgent)ba).setUploadExecutor(executorService);
+                }
                 executorService.submit(futureTask);
                 checkpoint = null;
                 checkpointStats = null;
@@ -617,6 +748,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
   public void activate()
   {
     alive = true;
+    activationMillis = System.currentTimeMillis();
     APPLICATION_WINDOW_COUNT = context.getValue(OperatorContext.APPLICATION_WINDOW_COUNT);
     if (context.getValue(OperatorContext.SLIDE_BY_WINDOW_COUNT) != null) {
       int slidingWindowCount = context.getValue(OperatorContext.SLIDE_BY_WINDOW_COUNT);
@@ -688,7 +820,11 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     @Override
     public Stats.CheckpointStats call() throws Exception
     {
-      agent.flush(id, windowId);
+      if (agent instanceof AsyncFSStorageAgent) {
+        ((AsyncFSStorageAgent)agent).flush(id, windowId, stats);
+      } else {
+        agent.flush(id, windowId);
+      }
       stats.checkpointTime = System.currentTimeMillis() - stats.checkpointStartTime;
       return stats;
     }
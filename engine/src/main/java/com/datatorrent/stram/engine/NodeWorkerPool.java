@@ -0,0 +1,397 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Steps the nodes deployed in a container on a bounded number of worker threads instead of a thread per node.</p>
+ *
+ * Each node, together with the nodes connected to it thread local, is pinned to one worker so that the operators see
+ * a single thread during their entire lifecycle. A worker steps its nodes round robin and parks when none of them has
+ * work; the input reservoirs of the nodes raise the wakeup signal of the worker when tuples arrive. The time a worker
+ * stays parked is bounded by the time its idle nodes asked to wait, see {@link Node#step()}.
+ *
+ * A node which emits to a full container local stream cannot give up its worker until the consumer drains the stream,
+ * while the consumer may be pinned to the same worker. The worker therefore keeps stepping its other nodes until there
+ * is room in the stream, see {@link #offer(BlockingQueue, Object)}. When the consumer is itself further up the stack of
+ * the worker, as in a loop closed by a delay operator, it cannot drain the stream before the emitting node returns; the
+ * tuples are then deferred and handed to the stream by the worker once there is room. The tuples deferred for a stream
+ * are limited to the capacity of the stream, beyond which the emitting node waits as it would on its own thread.
+ *
+ * A node which waits for anything else, such as a buffer server publisher waiting for room in its send buffer, keeps
+ * the worker busy in the same way with {@link #await(Object, long)}. A waiting node gives up when the pool shuts down or
+ * the node is interrupted, see {@link Task#isInterrupted()}.
+ *
+ * @since 3.7.0
+ */
+public class NodeWorkerPool
+{
+  /**
+   * Returned by {@link Task#step()} when the task finished and should not be stepped anymore.
+   */
+  static final long FINISHED = Long.MIN_VALUE;
+  /**
+   * Time in milliseconds the worker waits for a new task when it does not have any.
+   */
+  private static final long IDLE_MILLIS = 1000;
+  /**
+   * Time in microseconds the worker waits for room in a stream when none of its other nodes has work.
+   */
+  private static final long OFFER_WAIT_MICROS = 100;
+
+  /**
+   * Unit of work stepped by a worker, usually a node with its thread local downstream nodes.
+   */
+  interface Task
+  {
+    /**
+     * Prepare the task on the worker which steps it.
+     *
+     * @param signal signal the input reservoirs of the task should raise to wake the worker up
+     * @return false if the task failed to start and should be dropped
+     */
+    boolean start(WakeupSignal signal);
+
+    /**
+     * Step the task once.
+     *
+     * @return negative if the task should be stepped again right away, {@link #FINISHED} if the task finished, otherwise
+     * the time in milliseconds the task can wait for its input reservoirs.
+     */
+    long step();
+
+    /**
+     * Account the CPU time the worker spent stepping the task.
+     *
+     * @param nanos CPU time in nanoseconds
+     */
+    void addCpuTime(long nanos);
+
+    /**
+     * @param queue input queue of a node
+     * @return whether the task steps the node which reads from the queue
+     */
+    boolean consumes(BlockingQueue<Object> queue);
+
+    /**
+     * @return whether the task was asked to give up waiting, as a thread is when it is interrupted
+     */
+    boolean isInterrupted();
+  }
+
+  private final Worker[] workers;
+  private int next;
+
+  NodeWorkerPool(String name, int size)
+  {
+    workers = new Worker[size];
+    for (int i = 0; i < size; i++) {
+      workers[i] = new Worker(name + '-' + i);
+    }
+  }
+
+  void start()
+  {
+    for (Worker worker : workers) {
+      worker.start();
+    }
+  }
+
+  /**
+   * Pin the task to the next worker in round robin order, which starts and steps it.
+   *
+   * @param task the task
+   */
+  synchronized void submit(Task task)
+  {
+    final Worker worker = workers[next];
+    next = (next + 1) % workers.length;
+    worker.incoming.add(task);
+    worker.signal.signal();
+  }
+
+  void shutdown()
+  {
+    for (Worker worker : workers) {
+      worker.running = false;
+      worker.signal.signal();
+    }
+  }
+
+  int size()
+  {
+    return workers.length;
+  }
+
+  /**
+   * Offer the object to the queue. If the queue is full and the caller is a worker, step the other tasks of the worker
+   * until the queue accepts the object. If the task which reads from the queue is being stepped further up the stack
+   * of the worker, the object is deferred and handed to the queue by the worker once the queue has room.
+   *
+   * @param queue the queue
+   * @param o the object
+   * @return false if the caller is not a worker and the queue is full, true once the queue accepted or the worker
+   * deferred the object
+   * @throws InterruptedException if the pool shuts down or the task is interrupted while waiting for room in the queue
+   */
+  public static boolean offer(BlockingQueue<Object> queue, Object o) throws InterruptedException
+  {
+    final Thread thread = Thread.currentThread();
+    if (!(thread instanceof Worker)) {
+      return queue.offer(o);
+    }
+
+    final Worker worker = (Worker)thread;
+    if (worker.defer(queue, o) || queue.offer(o)) {
+      return true;
+    }
+
+    final Slot consumer = worker.findConsumer(queue);
+    while (!queue.offer(o)) {
+      if (consumer != null && consumer.stepping) {
+        /* the consumer cannot drain the queue before this task returns */
+        worker.deferred.put(queue, new ArrayDeque<>(Collections.singleton(o)));
+        logger.debug("Deferring tuples for {} stepped further up the stack of {}", consumer.task, worker.getName());
+        return true;
+      }
+      worker.await(queue, TimeUnit.MICROSECONDS.toNanos(OFFER_WAIT_MICROS));
+    }
+    return true;
+  }
+
+  /**
+   * Wait a while before the caller checks its condition again. A worker steps its other tasks in the meantime and
+   * waits only if none of them has work, any other thread sleeps.
+   *
+   * @param blocker the object the caller waits for
+   * @param millis time to wait in milliseconds
+   * @throws InterruptedException if interrupted, or if the pool shuts down or the task is interrupted
+   */
+  public static void await(Object blocker, long millis) throws InterruptedException
+  {
+    final Thread thread = Thread.currentThread();
+    if (thread instanceof Worker) {
+      ((Worker)thread).await(blocker, TimeUnit.MILLISECONDS.toNanos(millis));
+    } else {
+      Thread.sleep(millis);
+    }
+  }
+
+  private static class Slot
+  {
+    final Task task;
+    boolean stepping;
+
+    Slot(Task task)
+    {
+      this.task = task;
+    }
+  }
+
+  private static class Worker extends Thread
+  {
+    final WakeupSignal signal = new WakeupSignal();
+    final ConcurrentLinkedQueue<Task> incoming = new ConcurrentLinkedQueue<>();
+    final ArrayList<Slot> slots = new ArrayList<>();
+    /* objects for the queues whose consumer was stepped further up the stack while the queue was full */
+    final IdentityHashMap<BlockingQueue<Object>, ArrayDeque<Object>> deferred = new IdentityHashMap<>();
+    final ThreadMXBean tmb = ManagementFactory.getThreadMXBean();
+    volatile boolean running = true;
+    /* innermost task on the stack of the worker */
+    Slot current;
+    /* cpu time used by the tasks stepped while stepping another task */
+    long nestedCpuTime;
+
+    Worker(String name)
+    {
+      super(name);
+      setDaemon(true);
+    }
+
+    @Override
+    public void run()
+    {
+      while (running) {
+        signal.clear();
+
+        Task task;
+        while ((task = incoming.poll()) != null) {
+          if (task.start(signal)) {
+            slots.add(new Slot(task));
+          }
+        }
+
+        final long waitMillis = stepTasks();
+        if (waitMillis >= 0) {
+          signal.await(waitMillis == Long.MAX_VALUE ? IDLE_MILLIS : waitMillis);
+        }
+      }
+      logger.debug("{} exiting with {} tasks", getName(), slots.size());
+    }
+
+    /**
+     * Step each task which is not being stepped further up the stack once.
+     *
+     * @return negative if a task has more work, otherwise the minimum time the tasks can wait
+     */
+    long stepTasks()
+    {
+      long waitMillis = deferred.isEmpty() || flushDeferred() ? Long.MAX_VALUE : -1;
+      for (int i = 0; i < slots.size(); i++) {
+        final Slot slot = slots.get(i);
+        if (slot.stepping) {
+          continue;
+        }
+
+        final long stepWaitMillis = step(slot);
+        /* tasks stepped further down the stack may have removed finished slots */
+        i = slots.indexOf(slot);
+        if (stepWaitMillis == FINISHED) {
+          slots.remove(i--);
+          dropDeferred();
+        } else if (stepWaitMillis < 0) {
+          waitMillis = -1;
+        } else if (waitMillis >= 0) {
+          waitMillis = Math.min(waitMillis, stepWaitMillis);
+        }
+      }
+      return waitMillis;
+    }
+
+    /**
+     * Step the other tasks once and wait for the given time if none of them has work.
+     *
+     * @throws InterruptedException if the pool shuts down or the innermost task is interrupted
+     */
+    void await(Object blocker, long nanos) throws InterruptedException
+    {
+      if (!running || current != null && current.task.isInterrupted()) {
+        throw new InterruptedException(getName() + " stopped waiting for " + blocker);
+      }
+      if (stepTasks() >= 0) {
+        LockSupport.parkNanos(blocker, nanos);
+      }
+    }
+
+    /**
+     * Queue the object behind the objects deferred for the queue earlier, if any, so that the queue receives them in
+     * order. Once as many objects are deferred as the queue holds, wait until the worker hands some of them over.
+     *
+     * @return false if no object is deferred for the queue
+     * @throws InterruptedException if the pool shuts down or the task is interrupted while waiting
+     */
+    boolean defer(BlockingQueue<Object> queue, Object o) throws InterruptedException
+    {
+      if (deferred.isEmpty()) {
+        return false;
+      }
+      ArrayDeque<Object> objects;
+      while ((objects = deferred.get(queue)) != null && objects.size() >= queue.size() + queue.remainingCapacity()) {
+        await(queue, TimeUnit.MICROSECONDS.toNanos(OFFER_WAIT_MICROS));
+      }
+      if (objects == null) {
+        return false;
+      }
+      objects.add(o);
+      return true;
+    }
+
+    /**
+     * Hand the deferred objects to their queues as far as the queues have room.
+     *
+     * @return true if all the deferred objects were handed over
+     */
+    private boolean flushDeferred()
+    {
+      final Iterator<Map.Entry<BlockingQueue<Object>, ArrayDeque<Object>>> it = deferred.entrySet().iterator();
+      while (it.hasNext()) {
+        final Map.Entry<BlockingQueue<Object>, ArrayDeque<Object>> entry = it.next();
+        final ArrayDeque<Object> objects = entry.getValue();
+        while (!objects.isEmpty() && entry.getKey().offer(objects.peekFirst())) {
+          objects.pollFirst();
+        }
+        if (objects.isEmpty()) {
+          it.remove();
+        }
+      }
+      return deferred.isEmpty();
+    }
+
+    Slot findConsumer(BlockingQueue<Object> queue)
+    {
+      for (Slot slot : slots) {
+        if (slot.task.consumes(queue)) {
+          return slot;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Drop the objects deferred for the queues whose consumer finished.
+     */
+    private void dropDeferred()
+    {
+      final Iterator<Map.Entry<BlockingQueue<Object>, ArrayDeque<Object>>> it = deferred.entrySet().iterator();
+      while (it.hasNext()) {
+        final Map.Entry<BlockingQueue<Object>, ArrayDeque<Object>> entry = it.next();
+        if (findConsumer(entry.getKey()) == null) {
+          logger.warn("Dropping {} tuples deferred for a finished node", entry.getValue().size());
+          it.remove();
+        }
+      }
+    }
+
+    private long step(Slot slot)
+    {
+      final long outerNestedCpuTime = nestedCpuTime;
+      nestedCpuTime = 0;
+      final long start = tmb.getCurrentThreadCpuTime();
+      final Slot outer = current;
+      current = slot;
+      slot.stepping = true;
+      try {
+        return slot.task.step();
+      } finally {
+        slot.stepping = false;
+        current = outer;
+        final long elapsed = tmb.getCurrentThreadCpuTime() - start;
+        slot.task.addCpuTime(elapsed - nestedCpuTime);
+        nestedCpuTime = outerNestedCpuTime + elapsed;
+      }
+    }
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(NodeWorkerPool.class);
+}
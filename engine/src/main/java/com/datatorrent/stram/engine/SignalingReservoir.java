@@ -0,0 +1,38 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+/**
+ * <p>A {@link SweepableReservoir} which signals the consuming node when tuples are added to it.</p>
+ *
+ * Nodes scheduled by events park while their reservoirs are empty instead of sleeping and rely on the reservoirs to
+ * wake them up, see {@link com.datatorrent.stram.plan.logical.LogicalPlan#EVENT_DRIVEN_SCHEDULING}.
+ *
+ * @since 3.7.0
+ */
+public interface SignalingReservoir extends SweepableReservoir
+{
+  /**
+   * Set the signal to raise when tuples are added to this reservoir.
+   *
+   * @param signal the signal of the consuming node or null to stop signaling
+   */
+  void setWakeupSignal(WakeupSignal signal);
+
+}
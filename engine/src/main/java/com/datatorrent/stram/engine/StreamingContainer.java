@@ -18,7 +18,10 @@
  */
 package com.datatorrent.stram.engine;
 
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.Thread.State;
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
@@ -37,7 +40,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +64,8 @@ import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.log4j.LogManager;
 
+import com.google.common.base.Throwables;
+
 import com.datatorrent.api.Attribute;
 import com.datatorrent.api.Component;
 import com.datatorrent.api.Context;
@@ -71,7 +83,10 @@ import com.datatorrent.api.StringCodec;
 import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.bufferserver.server.Server;
 import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.bufferserver.storage.MappedSegmentStorage;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.common.util.FSStorageAgent;
+import com.datatorrent.common.util.NameableThreadFactory;
 import com.datatorrent.common.util.ScheduledThreadPoolExecutor;
 import com.datatorrent.netlet.DefaultEventLoop;
 import com.datatorrent.netlet.util.Slice;
@@ -99,6 +114,7 @@ import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHe
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat.DeployState;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.RecoveryStats;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.StramToNodeRequest;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.StreamingContainerContext;
 import com.datatorrent.stram.debug.StdOutErrLog;
@@ -116,6 +132,9 @@ import com.datatorrent.stram.stream.MuxStream;
 import com.datatorrent.stram.stream.OiOStream;
 import com.datatorrent.stram.stream.PartitionAwareSink;
 import com.datatorrent.stram.stream.PartitionAwareSinkForPersistence;
+import com.datatorrent.stram.stream.SharedMemoryPublisher;
+import com.datatorrent.stram.stream.SharedMemoryRing;
+import com.datatorrent.stram.stream.SharedMemorySubscriber;
 import com.datatorrent.stram.util.LoggerUtil;
 
 import net.engio.mbassy.bus.MBassador;
@@ -158,6 +177,23 @@ public class StreamingContainer extends YarnContainerMain
   protected Server bufferServer;
   private int checkpointWindowCount;
   private boolean fastPublisherSubscriber;
+  private int workerThreads;
+  private int sharedMemoryRingBytes;
+  private int subscriberCreditWindow;
+  private int decodeThreads;
+  private int payloadBatchBytes;
+  private int payloadBatchLatencyMillis;
+  private ExecutorService decodeExecutor;
+  private String sharedMemoryDirectory;
+  private NodeWorkerPool workerPool;
+  private int checkpointUploadThreads;
+  private ExecutorService checkpointUploadExecutor;
+  private int checkpointLoadThreads;
+  /**
+   * key: operator id of the node run by the worker pool
+   * value: latch released once the node and the nodes thread local to it are torn down
+   */
+  private final Map<Integer, NodeRunner> pooledNodes = new ConcurrentHashMap<>();
   private StreamingContainerContext containerContext;
   private List<StramToNodeRequest> nodeRequests;
   private final HashMap<String, Object> singletons;
@@ -201,6 +237,20 @@ public class StreamingContainer extends YarnContainerMain
     checkpointWindowCount = ctx.getValue(Context.DAGContext.CHECKPOINT_WINDOW_COUNT);
 
     fastPublisherSubscriber = ctx.getValue(LogicalPlan.FAST_PUBLISHER_SUBSCRIBER);
+    workerThreads = ctx.getValue(LogicalPlan.WORKER_THREADS);
+    checkpointUploadThreads = ctx.getValue(LogicalPlan.CHECKPOINT_UPLOAD_THREADS);
+    checkpointLoadThreads = ctx.getValue(LogicalPlan.CHECKPOINT_LOAD_THREADS);
+    final long sharedMemoryBytes = ctx.getValue(LogicalPlan.NODE_LOCAL_SHARED_MEMORY_MB) * 1024L * 1024L;
+    if (sharedMemoryBytes > SharedMemoryRing.MAX_CAPACITY) {
+      logger.warn("Limiting the shared memory rings of {} bytes to {} bytes", sharedMemoryBytes,
+          SharedMemoryRing.MAX_CAPACITY);
+    }
+    sharedMemoryRingBytes = (int)Math.min(sharedMemoryBytes, SharedMemoryRing.MAX_CAPACITY);
+    subscriberCreditWindow = ctx.getValue(LogicalPlan.BUFFER_SERVER_CREDIT_WINDOW_KB) * 1024;
+    decodeThreads = ctx.getValue(LogicalPlan.BUFFER_SERVER_DECODE_THREADS);
+    payloadBatchBytes = ctx.getValue(LogicalPlan.BUFFER_SERVER_PAYLOAD_BATCH_BYTES);
+    payloadBatchLatencyMillis = ctx.getValue(LogicalPlan.BUFFER_SERVER_PAYLOAD_BATCH_LATENCY_MILLIS);
+    sharedMemoryDirectory = new File("/dev/shm").isDirectory() ? "/dev/shm" : System.getProperty("java.io.tmpdir");
 
     Map<Class<?>, Class<? extends StringCodec<?>>> codecs = ctx.getValue(Context.DAGContext.STRING_CODECS);
     StringCodecs.loadConverters(codecs);
@@ -226,8 +276,16 @@ public class StreamingContainer extends YarnContainerMain
         // start buffer server, if it was not set externally
         bufferServer = new Server(eventloop, 0, blocksize * 1024 * 1024, blockCount);
         bufferServer.setAuthToken(ctx.getValue(StreamingContainerContext.BUFFER_SERVER_TOKEN));
+        bufferServer.setPartitionIndexEnabled(ctx.getValue(LogicalPlan.BUFFER_SERVER_PARTITION_INDEX));
+        bufferServer.setMaxConsumerLag(ctx.getValue(LogicalPlan.BUFFER_SERVER_MAX_CONSUMER_LAG_MB) * 1024L * 1024L);
         if (ctx.getValue(Context.DAGContext.BUFFER_SPOOLING)) {
-          bufferServer.setSpoolStorage(new DiskStorage());
+          long segmentBytes = ctx.getValue(LogicalPlan.BUFFER_SPOOLING_SEGMENT_MB) * 1024L * 1024L;
+          if (segmentBytes > Integer.MAX_VALUE) {
+            logger.warn("Limiting the spool segments of {} bytes to {} bytes", segmentBytes, Integer.MAX_VALUE);
+            segmentBytes = Integer.MAX_VALUE;
+          }
+          bufferServer.setSpoolStorage(segmentBytes > 0 ? new MappedSegmentStorage((int)segmentBytes) :
+              new DiskStorage());
         }
         bufferServerAddress = NetUtils.getConnectAddress(bufferServer.run());
         logger.debug("Buffer server started: {}", bufferServerAddress);
@@ -340,28 +398,21 @@ public class StreamingContainer extends YarnContainerMain
 
   public synchronized void deactivate()
   {
-    ArrayList<Thread> activeThreads = new ArrayList<>();
-    ArrayList<Integer> activeOperators = new ArrayList<>();
+    ArrayList<Node<?>> activeNodes = new ArrayList<>();
 
     for (Map.Entry<Integer, Node<?>> e : nodes.entrySet()) {
-      Thread t = e.getValue().context.getThread();
-      if (t == null || !t.isAlive()) {
+      if (!isNodeAlive(e.getValue())) {
         disconnectNode(e.getKey());
       } else {
-        activeThreads.add(t);
-        activeOperators.add(e.getKey());
+        activeNodes.add(e.getValue());
         e.getValue().shutdown();
       }
     }
 
     try {
-      Iterator<Integer> iterator = activeOperators.iterator();
-      for (Thread t : activeThreads) {
-        t.join(1000);
-        if (!t.getState().equals(State.TERMINATED)) {
-          t.interrupt();
-        }
-        disconnectNode(iterator.next());
+      for (Node<?> node : activeNodes) {
+        joinNode(node, 1000);
+        disconnectNode(node.getId());
       }
     } catch (InterruptedException ex) {
       logger.warn("Aborting wait for operators to get deactivated!", ex);
@@ -537,27 +588,21 @@ public class StreamingContainer extends YarnContainerMain
       }
     }
 
-    ArrayList<Thread> joinList = new ArrayList<>();
-    ArrayList<Integer> discoList = new ArrayList<>();
+    ArrayList<Node<?>> joinList = new ArrayList<>();
     for (Integer operatorId : nodeList) {
-      Thread t = nodes.get(operatorId).context.getThread();
-      if (t == null || !t.isAlive()) {
+      Node<?> node = nodes.get(operatorId);
+      if (!isNodeAlive(node)) {
         disconnectNode(operatorId);
       } else {
-        joinList.add(t);
-        discoList.add(operatorId);
-        nodes.get(operatorId).shutdown();
+        joinList.add(node);
+        node.shutdown();
       }
     }
 
     try {
-      Iterator<Integer> iterator = discoList.iterator();
-      for (Thread t : joinList) {
-        t.join(1000);
-        if (!t.getState().equals(State.TERMINATED)) {
-          t.interrupt();
-        }
-        disconnectNode(iterator.next());
+      for (Node<?> node : joinList) {
+        joinNode(node, 1000);
+        disconnectNode(node.getId());
       }
       logger.info("Undeploy complete.");
     } catch (InterruptedException ex) {
@@ -566,6 +611,60 @@ public class StreamingContainer extends YarnContainerMain
 
     for (Integer operatorId : nodeList) {
       nodes.remove(operatorId);
+      pooledNodes.remove(operatorId);
+    }
+  }
+
+  /**
+   * Check whether the node is running, either on its own thread or on the worker pool.
+   *
+   * @param node the node
+   * @return true if the node was activated and did not terminate yet
+   */
+  private boolean isNodeAlive(Node<?> node)
+  {
+    final Thread thread = node.context.getThread();
+    if (thread != null) {
+      return thread.isAlive();
+    }
+
+    final NodeRunner runner = pooledNodes.get(node.getId());
+    return runner != null && runner.latch.getCount() > 0;
+  }
+
+  private boolean isNodeTerminated(Node<?> node)
+  {
+    final Thread thread = node.context.getThread();
+    if (thread != null) {
+      return thread.getState() == State.TERMINATED;
+    }
+
+    final NodeRunner runner = pooledNodes.get(node.getId());
+    return runner != null && runner.latch.getCount() == 0;
+  }
+
+  /**
+   * Wait for the node to terminate after it was asked to shutdown. A node which does not terminate in time is
+   * interrupted, which for a node on the worker pool makes it give up waiting for room in its output streams.
+   *
+   * @param node the node
+   * @param millis time to wait in milliseconds
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private void joinNode(Node<?> node, long millis) throws InterruptedException
+  {
+    final Thread thread = node.context.getThread();
+    if (thread != null) {
+      thread.join(millis);
+      if (!thread.getState().equals(State.TERMINATED)) {
+        thread.interrupt();
+      }
+    } else {
+      final NodeRunner runner = pooledNodes.get(node.getId());
+      if (runner != null && !runner.latch.await(millis, TimeUnit.MILLISECONDS)) {
+        logger.warn("Operator {} did not terminate within {} ms", node.getId(), millis);
+        runner.interrupted = true;
+      }
     }
   }
 
@@ -580,6 +679,22 @@ public class StreamingContainer extends YarnContainerMain
     eventBus.shutdown();
 
     nodes.clear();
+    pooledNodes.clear();
+
+    if (workerPool != null) {
+      workerPool.shutdown();
+      workerPool = null;
+    }
+
+    if (checkpointUploadExecutor != null) {
+      checkpointUploadExecutor.shutdown();
+      checkpointUploadExecutor = null;
+    }
+
+    if (decodeExecutor != null) {
+      decodeExecutor.shutdown();
+      decodeExecutor = null;
+    }
 
     HashSet<WindowGenerator> gens = new HashSet<>();
     gens.addAll(generators.values());
@@ -671,8 +786,9 @@ public class StreamingContainer extends YarnContainerMain
           }
           OperatorContext context = e.getValue().context;
           context.drainStats(hb.getOperatorStatsContainer());
+          hb.recoveryStats = e.getValue().pollRecoveryStats();
 
-          if (context.getThread() == null || context.getThread().getState() != Thread.State.TERMINATED) {
+          if (!isNodeTerminated(e.getValue())) {
             hb.setState(DeployState.ACTIVE);
           } else if (failedNodes.contains(hb.nodeId)) {
             hb.setState(DeployState.FAILED);
@@ -745,8 +861,7 @@ public class StreamingContainer extends YarnContainerMain
         continue;
       }
 
-      Thread thread = node.context.getThread();
-      if (thread == null || !thread.isAlive()) {
+      if (!isNodeAlive(node)) {
         if (flagInvalid) {
           logger.warn("Received request with invalid operator id {} ({})", req.getOperatorId(), req);
           req.setDeleted(true);
@@ -782,8 +897,7 @@ public class StreamingContainer extends YarnContainerMain
 
       OperatorRequest nr = null;
       for (Entry<Integer, Node<?>> e : nodes.entrySet()) {
-        final Thread thread = e.getValue().context.getThread();
-        if (thread == null || !thread.isAlive()) {
+        if (!isNodeAlive(e.getValue())) {
           continue;
         }
 
@@ -846,8 +960,7 @@ public class StreamingContainer extends YarnContainerMain
     for (Entry<Integer, Node<?>> e : nodes.entrySet()) {
       Node<?> node = e.getValue();
       if (node instanceof InputNode) {
-        final Thread thread = e.getValue().context.getThread();
-        if (thread == null || !thread.isAlive()) {
+        if (!isNodeAlive(e.getValue())) {
           continue;
         }
         node.shutdown(true);
@@ -916,38 +1029,187 @@ public class StreamingContainer extends YarnContainerMain
 
   private void deployNodes(List<OperatorDeployInfo> nodeList) throws IOException
   {
-    for (OperatorDeployInfo ndi : nodeList) {
-      StorageAgent backupAgent = getValue(OperatorContext.STORAGE_AGENT, ndi);
-      assert (backupAgent != null);
-
-      Context parentContext;
-      if (ndi instanceof UnifierDeployInfo) {
-        OperatorContext unifiedOperatorContext = new OperatorContext(0, ndi.name,
-            ((UnifierDeployInfo)ndi).operatorAttributes, containerContext);
-        parentContext = new PortContext(ndi.inputs.get(0).contextAttributes, unifiedOperatorContext);
-        massageUnifierDeployInfo(ndi);
-      } else {
-        parentContext = containerContext;
+    /* the checkpoints of all the operators are requested up front to be restored concurrently */
+    ExecutorService loadExecutor = null;
+    if (checkpointLoadThreads > 0 && nodeList.size() > 1) {
+      loadExecutor = Executors.newFixedThreadPool(Math.min(checkpointLoadThreads, nodeList.size()),
+          new NameableThreadFactory("CheckpointLoad"));
+    }
+    final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    List<OperatorContext> contexts = new ArrayList<>(nodeList.size());
+    List<FutureTask<Object>> states = new ArrayList<>(nodeList.size());
+    List<RecoveryStats> recoveryStats = new ArrayList<>(nodeList.size());
+    try {
+      for (OperatorDeployInfo ndi : nodeList) {
+        final StorageAgent backupAgent = getValue(OperatorContext.STORAGE_AGENT, ndi);
+        assert (backupAgent != null);
+
+        Context parentContext;
+        if (ndi instanceof UnifierDeployInfo) {
+          OperatorContext unifiedOperatorContext = new OperatorContext(0, ndi.name,
+              ((UnifierDeployInfo)ndi).operatorAttributes, containerContext);
+          parentContext = new PortContext(ndi.inputs.get(0).contextAttributes, unifiedOperatorContext);
+          massageUnifierDeployInfo(ndi);
+        } else {
+          parentContext = containerContext;
+        }
+
+        OperatorContext ctx = new OperatorContext(ndi.id, ndi.name, ndi.contextAttributes, parentContext);
+        ctx.attributes.put(OperatorContext.ACTIVATION_WINDOW_ID, ndi.checkpoint.windowId);
+        logger.debug("Restoring operator {} to checkpoint {} stateless={}.", ndi.id, Codec.getStringWindowId(ndi.checkpoint.windowId), ctx.stateless);
+        contexts.add(ctx);
+
+        final int operatorId = ndi.id;
+        final long windowId = ctx.stateless ? Stateless.WINDOW_ID : ndi.checkpoint.windowId;
+        final RecoveryStats stats = new RecoveryStats();
+        stats.checkpointWindowId = ndi.checkpoint.windowId;
+        recoveryStats.add(ndi.checkpoint.windowId == Stateless.WINDOW_ID ? null : stats);
+        FutureTask<Object> state = new FutureTask<>(new Callable<Object>()
+        {
+          @Override
+          public Object call() throws Exception
+          {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            return restore(backupAgent, operatorId, windowId, stats);
+          }
+        });
+        if (loadExecutor != null) {
+          loadExecutor.execute(state);
+        }
+        states.add(state);
       }
 
-      OperatorContext ctx = new OperatorContext(ndi.id, ndi.name, ndi.contextAttributes, parentContext);
-      ctx.attributes.put(OperatorContext.ACTIVATION_WINDOW_ID, ndi.checkpoint.windowId);
-      logger.debug("Restoring operator {} to checkpoint {} stateless={}.", ndi.id, Codec.getStringWindowId(ndi.checkpoint.windowId), ctx.stateless);
-      Node<?> node = Node.retrieveNode(backupAgent.load(ndi.id, ctx.stateless ? Stateless.WINDOW_ID : ndi.checkpoint.windowId), ctx, ndi.type);
-      node.currentWindowId = ndi.checkpoint.windowId;
-      node.applicationWindowCount = ndi.checkpoint.applicationWindowCount;
-      node.firstWindowMillis = firstWindowMillis;
-      node.windowWidthMillis = windowWidthMillis;
+      for (int i = 0; i < nodeList.size(); i++) {
+        OperatorDeployInfo ndi = nodeList.get(i);
+        FutureTask<Object> state = states.get(i);
+        /* the task is a no-op if it already ran on the executor */
+        state.run();
+        Node<?> node;
+        try {
+          node = Node.retrieveNode(state.get(), contexts.get(i), ndi.type);
+        } catch (InterruptedException ex) {
+          throw Throwables.propagate(ex);
+        } catch (ExecutionException ex) {
+          Throwables.propagateIfInstanceOf(ex.getCause(), IOException.class);
+          throw Throwables.propagate(ex.getCause());
+        }
+        node.currentWindowId = ndi.checkpoint.windowId;
+        node.applicationWindowCount = ndi.checkpoint.applicationWindowCount;
+        node.firstWindowMillis = firstWindowMillis;
+        node.windowWidthMillis = windowWidthMillis;
+
+        node.setId(ndi.id);
+        node.setRecoveryStats(recoveryStats.get(i));
+        if (checkpointUploadThreads > 0) {
+          if (checkpointUploadExecutor == null) {
+            checkpointUploadExecutor = Executors.newFixedThreadPool(checkpointUploadThreads,
+                new NameableThreadFactory("CheckpointUpload"));
+          }
+          node.setCheckpointExecutor(checkpointUploadExecutor);
+        }
+        nodes.put(ndi.id, node);
+        logger.debug("Marking operator {} as deployed.", node);
+      }
+    } finally {
+      if (loadExecutor != null) {
+        for (FutureTask<Object> state : states) {
+          state.cancel(false);
+        }
+        loadExecutor.shutdown();
+      }
+    }
+  }
 
-      node.setId(ndi.id);
-      nodes.put(ndi.id, node);
-      logger.debug("Marking operator {} as deployed.", node);
+  /**
+   * Loads the checkpoint of an operator and records the time it took. The checkpoints of the {@link FSStorageAgent} are
+   * streamed through a {@link TimedInputStream} so that the time spent in reading and in deserializing them is told
+   * apart, the time it took other storage agents to load the checkpoint is all counted as fetch time.
+   */
+  private static Object restore(StorageAgent agent, int operatorId, long windowId, RecoveryStats stats) throws IOException
+  {
+    long start = System.nanoTime();
+    if (isFetchable(agent)) {
+      TimedInputStream stream = new TimedInputStream(((FSStorageAgent)agent).open(operatorId, windowId));
+      try {
+        long opened = System.nanoTime();
+        Object state = FSStorageAgent.retrieve(stream);
+        long end = System.nanoTime();
+        long fetchNanos = opened - start + stream.readNanos;
+        stats.fetchMillis = TimeUnit.NANOSECONDS.toMillis(fetchNanos);
+        stats.deserializeMillis = TimeUnit.NANOSECONDS.toMillis(end - start - fetchNanos);
+        return state;
+      } finally {
+        stream.close();
+      }
     }
+
+    Object state = agent.load(operatorId, windowId);
+    stats.fetchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    return state;
+  }
+
+  /**
+   * Sums up the time spent in reading from the wrapped stream.
+   */
+  private static class TimedInputStream extends FilterInputStream
+  {
+    long readNanos;
+
+    TimedInputStream(InputStream in)
+    {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      long start = System.nanoTime();
+      try {
+        return super.read();
+      } finally {
+        readNanos += System.nanoTime() - start;
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      long start = System.nanoTime();
+      try {
+        return super.read(b, off, len);
+      } finally {
+        readNanos += System.nanoTime() - start;
+      }
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+      long start = System.nanoTime();
+      try {
+        return super.skip(n);
+      } finally {
+        readNanos += System.nanoTime() - start;
+      }
+    }
+  }
+
+  private static boolean isFetchable(StorageAgent agent)
+  {
+    if (agent instanceof FSStorageAgent) {
+      try {
+        /* subclasses which load differently may not store the checkpoints the way open reads them */
+        return agent.getClass().getMethod("load", int.class, long.class).getDeclaringClass() == FSStorageAgent.class;
+      } catch (NoSuchMethodException ex) {
+        throw Throwables.propagate(ex);
+      }
+    }
+    return false;
   }
 
   private HashMap.SimpleEntry<String, ComponentContextPair<Stream, StreamContext>> deployBufferServerPublisher(
-      String connIdentifier, StreamCodec<?> streamCodec, long finishedWindowId, int queueCapacity,
-      OperatorDeployInfo.OutputDeployInfo nodi)
+      String connIdentifier, Integer streamCodecIdentifier, StreamCodec<?> streamCodec, long finishedWindowId,
+      int queueCapacity, OperatorDeployInfo.OutputDeployInfo nodi)
       throws UnknownHostException
   {
     String sinkIdentifier = "tcp://".concat(nodi.bufferServerHost).concat(":").concat(String.valueOf(nodi.bufferServerPort)).concat("/").concat(connIdentifier);
@@ -966,10 +1228,34 @@ public class StreamingContainer extends YarnContainerMain
       bssc.setBufferServerAddress(new InetSocketAddress(InetAddress.getByName(null), nodi.bufferServerPort));
     }
 
-    Stream publisher = fastPublisherSubscriber ? new FastPublisher(connIdentifier, queueCapacity * 256) : new BufferServerPublisher(connIdentifier, queueCapacity);
+    ArrayList<File> rings = new ArrayList<>();
+    for (Map.Entry<String, Integer> e : nodi.sharedMemorySinks.entrySet()) {
+      if (e.getValue().equals(streamCodecIdentifier)) {
+        rings.add(getSharedMemoryRingFile(nodi.bufferServerPort, connIdentifier, e.getKey()));
+      }
+    }
+
+    Stream publisher;
+    if (fastPublisherSubscriber) {
+      publisher = new FastPublisher(connIdentifier, queueCapacity * 256);
+    } else {
+      BufferServerPublisher bsp;
+      if (rings.isEmpty() || sharedMemoryRingBytes <= 0) {
+        bsp = new BufferServerPublisher(connIdentifier, queueCapacity);
+      } else {
+        bsp = new SharedMemoryPublisher(connIdentifier, queueCapacity, rings, sharedMemoryRingBytes);
+      }
+      bsp.setPayloadBatch(payloadBatchBytes, payloadBatchLatencyMillis);
+      publisher = bsp;
+    }
     return new HashMap.SimpleEntry<>(sinkIdentifier, new ComponentContextPair<>(publisher, bssc));
   }
 
+  private File getSharedMemoryRingFile(int bufferServerPort, String sourceId, String sinkId)
+  {
+    return SharedMemoryRing.getFile(sharedMemoryDirectory, containerContext.getValue(Context.DAGContext.APPLICATION_ID), bufferServerPort, sourceId, sinkId);
+  }
+
   private HashMap<String, ComponentContextPair<Stream, StreamContext>> deployOutputStreams(
       List<OperatorDeployInfo> nodeList, HashMap<String, ArrayList<String>> groupedInputStreams)
       throws Exception
@@ -1006,7 +1292,7 @@ public class StreamingContainer extends YarnContainerMain
           String connIdentifier = sourceIdentifier + Component.CONCAT_SEPARATOR + streamCodecIdentifier;
 
           SimpleEntry<String, ComponentContextPair<Stream, StreamContext>> deployBufferServerPublisher =
-              deployBufferServerPublisher(connIdentifier, streamCodec, checkpointWindowId, queueCapacity, nodi);
+              deployBufferServerPublisher(connIdentifier, streamCodecIdentifier, streamCodec, checkpointWindowId, queueCapacity, nodi);
           newStreams.put(sourceIdentifier, deployBufferServerPublisher.getValue());
           node.connectOutputPort(nodi.portName, deployBufferServerPublisher.getValue().component);
         } else {
@@ -1045,7 +1331,7 @@ public class StreamingContainer extends YarnContainerMain
               String connIdentifier = sourceIdentifier + Component.CONCAT_SEPARATOR + streamCodecIdentifier;
 
               SimpleEntry<String, ComponentContextPair<Stream, StreamContext>> deployBufferServerPublisher =
-                  deployBufferServerPublisher(connIdentifier, streamCodec, checkpointWindowId, queueCapacity, nodi);
+                  deployBufferServerPublisher(connIdentifier, streamCodecIdentifier, streamCodec, checkpointWindowId, queueCapacity, nodi);
               newStreams.put(deployBufferServerPublisher.getKey(), deployBufferServerPublisher.getValue());
 
               String sinkIdentifier = pair.context.getSinkId();
@@ -1165,9 +1451,22 @@ public class StreamingContainer extends YarnContainerMain
             context.setSinkId(sinkIdentifier);
             context.setFinishedWindowId(checkpoint.windowId);
 
-            BufferServerSubscriber subscriber = fastPublisherSubscriber
-                ? new FastSubscriber("tcp://".concat(nidi.bufferServerHost).concat(":").concat(String.valueOf(nidi.bufferServerPort)).concat("/").concat(connIdentifier), queueCapacity)
-                : new BufferServerSubscriber("tcp://".concat(nidi.bufferServerHost).concat(":").concat(String.valueOf(nidi.bufferServerPort)).concat("/").concat(connIdentifier), queueCapacity);
+            String subscriberId = "tcp://".concat(nidi.bufferServerHost).concat(":").concat(String.valueOf(nidi.bufferServerPort)).concat("/").concat(connIdentifier);
+            BufferServerSubscriber subscriber;
+            if (fastPublisherSubscriber) {
+              subscriber = new FastSubscriber(subscriberId, queueCapacity);
+            } else if (nidi.locality == Locality.NODE_LOCAL && sharedMemoryRingBytes > 0) {
+              subscriber = new SharedMemorySubscriber(subscriberId, queueCapacity, getSharedMemoryRingFile(nidi.bufferServerPort, connIdentifier, sinkIdentifier));
+            } else {
+              subscriber = new BufferServerSubscriber(subscriberId, queueCapacity);
+            }
+            subscriber.setCreditWindow(subscriberCreditWindow);
+            if (decodeThreads > 0) {
+              if (decodeExecutor == null) {
+                decodeExecutor = Executors.newFixedThreadPool(decodeThreads, new NameableThreadFactory("SubscriberDecode"));
+              }
+              subscriber.setDecodeExecutor(decodeExecutor);
+            }
             if (streamCodec instanceof StreamCodecWrapperForPersistance) {
               subscriber.acquireReservoirForPersistStream(sinkIdentifier, queueCapacity, streamCodec);
             }
@@ -1402,102 +1701,26 @@ public class StreamingContainer extends YarnContainerMain
           .append(':')
           .append(node.getOperator().getClass().getSimpleName())
           .toString();
-      final Thread thread = new Thread(name)
-      {
-        @Override
-        public void run()
-        {
-          HashSet<OperatorDeployInfo> setOperators = new HashSet<>();
-          OperatorDeployInfo currentdi = ndi;
-          try {
-            /* primary operator initialization */
-            setupNode(currentdi);
-            setOperators.add(currentdi);
-
-            /* lets go for OiO operator initialization */
-            List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
-            if (oioNodeIdList != null) {
-              for (Integer oioNodeId : oioNodeIdList) {
-                currentdi = nodeMap.get(oioNodeId);
-                setupNode(currentdi);
-                setOperators.add(currentdi);
-              }
-            }
-
-            currentdi = null;
-
-            node.run(); /* this is a blocking call */
-          } catch (Error error) {
-            int[] operators;
-            //fetch logFileInfo before logging exception, to get offset before exception
-            LogFileInformation logFileInfo = LoggerUtil.getLogFileInformation();
-            if (currentdi == null) {
-              logger.error("Voluntary container termination due to an error in operator set {}.", setOperators, error);
-              operators = new int[setOperators.size()];
-              int i = 0;
-              for (Iterator<OperatorDeployInfo> it = setOperators.iterator(); it.hasNext(); i++) {
-                operators[i] = it.next().id;
-              }
-            } else {
-              logger.error("Voluntary container termination due to an error in operator {}.", currentdi, error);
-              operators = new int[]{currentdi.id};
-            }
-            try {
-              umbilical.reportError(containerId, operators, "Voluntary container termination due to an error. " + ExceptionUtils.getStackTrace(error), logFileInfo);
-            } catch (Exception e) {
-              logger.debug("Fail to log", e);
-            } finally {
-              System.exit(1);
-            }
-          } catch (Exception ex) {
-            //fetch logFileInfo before logging exception, to get offset before exception
-            LogFileInformation logFileInfo = LoggerUtil.getLogFileInformation();
-            if (currentdi == null) {
-              failedNodes.add(ndi.id);
-              logger.error("Operator set {} stopped running due to an exception.", setOperators, ex);
-              int[] operators = new int[]{ndi.id};
-              try {
-                umbilical.reportError(containerId, operators, "Stopped running due to an exception. " + ExceptionUtils.getStackTrace(ex), logFileInfo);
-              } catch (Exception e) {
-                logger.debug("Fail to log", e);
-              }
-            } else {
-              failedNodes.add(currentdi.id);
-              logger.error("Abandoning deployment of operator {} due to setup failure.", currentdi, ex);
-              int[] operators = new int[]{currentdi.id};
-              try {
-                umbilical.reportError(containerId, operators, "Abandoning deployment due to setup failure. " + ExceptionUtils.getStackTrace(ex), logFileInfo);
-              } catch (Exception e) {
-                logger.debug("Fail to log", e);
-              }
-            }
-          } finally {
-            if (setOperators.contains(ndi)) {
-              try {
-                teardownNode(ndi);
-              } catch (Exception ex) {
-                failedNodes.add(ndi.id);
-                logger.error("Shutdown of operator {} failed due to an exception.", ndi, ex);
-              }
-            }
-
-            List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
-            if (oioNodeIdList != null) {
-              for (Integer oioNodeId : oioNodeIdList) {
-                OperatorDeployInfo oiodi = nodeMap.get(oioNodeId);
-                if (setOperators.contains(oiodi)) {
-                  try {
-                    teardownNode(oiodi);
-                  } catch (Exception ex) {
-                    failedNodes.add(oiodi.id);
-                    logger.error("Shutdown of operator {} failed due to an exception.", oiodi, ex);
-                  }
-                }
-              }
-            }
+      final NodeRunner runner = new NodeRunner(ndi, nodeMap);
+      if (workerThreads > 0) {
+        if (workerPool == null) {
+          workerPool = new NodeWorkerPool("worker", workerThreads);
+          workerPool.start();
+        }
+        runner.latch = new CountDownLatch(1);
+        pooledNodes.put(ndi.id, runner);
+        List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
+        if (oioNodeIdList != null) {
+          for (Integer oioNodeId : oioNodeIdList) {
+            pooledNodes.put(oioNodeId, runner);
           }
         }
-      };
+        logger.debug("Submitting {} to the worker pool", name);
+        workerPool.submit(runner);
+        continue;
+      }
+
+      final Thread thread = new Thread(runner, name);
       node.context.setThread(thread);
       List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
       if (oioNodeIdList != null) {
@@ -1517,6 +1740,220 @@ public class StreamingContainer extends YarnContainerMain
     }
   }
 
+  /**
+   * Sets up a node along with the nodes thread local to it, runs it and tears them down. The node runs either on its
+   * own thread or is stepped by a worker of the {@link NodeWorkerPool}, see {@link LogicalPlan#WORKER_THREADS}.
+   */
+  private class NodeRunner implements Runnable, NodeWorkerPool.Task
+  {
+    private final OperatorDeployInfo ndi;
+    private final Map<Integer, OperatorDeployInfo> nodeMap;
+    private final Node<?> node;
+    private final HashSet<OperatorDeployInfo> setOperators = new HashSet<>();
+    private OperatorDeployInfo currentdi;
+    /* released when the node stepped by the worker pool is torn down */
+    private CountDownLatch latch;
+    private volatile boolean interrupted;
+
+    NodeRunner(OperatorDeployInfo ndi, Map<Integer, OperatorDeployInfo> nodeMap)
+    {
+      this.ndi = ndi;
+      this.nodeMap = nodeMap;
+      this.node = nodes.get(ndi.id);
+    }
+
+    @Override
+    public void run()
+    {
+      try {
+        setup();
+        node.run(); /* this is a blocking call */
+      } catch (Error | Exception ex) {
+        failed(ex);
+      } finally {
+        teardown();
+      }
+    }
+
+    @Override
+    public boolean start(WakeupSignal signal)
+    {
+      node.wakeupSignal = signal;
+      node.workerCpuTime = 0;
+      List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
+      if (oioNodeIdList != null) {
+        for (Integer oioNodeId : oioNodeIdList) {
+          nodes.get(oioNodeId).workerCpuTime = 0;
+        }
+      }
+
+      try {
+        setup();
+        node.prepareRun();
+        return true;
+      } catch (Error | Exception ex) {
+        failed(ex);
+      }
+      finish();
+      return false;
+    }
+
+    @Override
+    public long step()
+    {
+      try {
+        try {
+          final long waitMillis = node.step();
+          if (node.alive) {
+            return waitMillis;
+          }
+        } catch (Throwable cause) {
+          node.handleRunException(cause);
+        }
+        node.finishRun();
+      } catch (Error | Exception ex) {
+        failed(ex);
+      }
+      finish();
+      return NodeWorkerPool.FINISHED;
+    }
+
+    @Override
+    public void addCpuTime(long nanos)
+    {
+      /* the thread local nodes are processed within the steps of the node */
+      node.workerCpuTime += nanos;
+    }
+
+    @Override
+    public boolean consumes(BlockingQueue<Object> queue)
+    {
+      if (node.consumes(queue)) {
+        return true;
+      }
+      List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
+      if (oioNodeIdList != null) {
+        for (Integer oioNodeId : oioNodeIdList) {
+          if (nodes.get(oioNodeId).consumes(queue)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isInterrupted()
+    {
+      return interrupted;
+    }
+
+    private void finish()
+    {
+      try {
+        teardown();
+      } finally {
+        latch.countDown();
+      }
+    }
+
+    private void setup()
+    {
+      /* primary operator initialization */
+      currentdi = ndi;
+      setupNode(currentdi);
+      setOperators.add(currentdi);
+
+      /* lets go for OiO operator initialization */
+      List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
+      if (oioNodeIdList != null) {
+        for (Integer oioNodeId : oioNodeIdList) {
+          currentdi = nodeMap.get(oioNodeId);
+          setupNode(currentdi);
+          setOperators.add(currentdi);
+        }
+      }
+
+      currentdi = null;
+    }
+
+    private void failed(Throwable cause)
+    {
+      if (cause instanceof Error) {
+        int[] operators;
+        //fetch logFileInfo before logging exception, to get offset before exception
+        LogFileInformation logFileInfo = LoggerUtil.getLogFileInformation();
+        if (currentdi == null) {
+          logger.error("Voluntary container termination due to an error in operator set {}.", setOperators, cause);
+          operators = new int[setOperators.size()];
+          int i = 0;
+          for (Iterator<OperatorDeployInfo> it = setOperators.iterator(); it.hasNext(); i++) {
+            operators[i] = it.next().id;
+          }
+        } else {
+          logger.error("Voluntary container termination due to an error in operator {}.", currentdi, cause);
+          operators = new int[]{currentdi.id};
+        }
+        try {
+          umbilical.reportError(containerId, operators, "Voluntary container termination due to an error. " + ExceptionUtils.getStackTrace(cause), logFileInfo);
+        } catch (Exception e) {
+          logger.debug("Fail to log", e);
+        } finally {
+          System.exit(1);
+        }
+      } else {
+        //fetch logFileInfo before logging exception, to get offset before exception
+        LogFileInformation logFileInfo = LoggerUtil.getLogFileInformation();
+        if (currentdi == null) {
+          failedNodes.add(ndi.id);
+          logger.error("Operator set {} stopped running due to an exception.", setOperators, cause);
+          int[] operators = new int[]{ndi.id};
+          try {
+            umbilical.reportError(containerId, operators, "Stopped running due to an exception. " + ExceptionUtils.getStackTrace(cause), logFileInfo);
+          } catch (Exception e) {
+            logger.debug("Fail to log", e);
+          }
+        } else {
+          failedNodes.add(currentdi.id);
+          logger.error("Abandoning deployment of operator {} due to setup failure.", currentdi, cause);
+          int[] operators = new int[]{currentdi.id};
+          try {
+            umbilical.reportError(containerId, operators, "Abandoning deployment due to setup failure. " + ExceptionUtils.getStackTrace(cause), logFileInfo);
+          } catch (Exception e) {
+            logger.debug("Fail to log", e);
+          }
+        }
+      }
+    }
+
+    private void teardown()
+    {
+      if (setOperators.contains(ndi)) {
+        try {
+          teardownNode(ndi);
+        } catch (Exception ex) {
+          failedNodes.add(ndi.id);
+          logger.error("Shutdown of operator {} failed due to an exception.", ndi, ex);
+        }
+      }
+
+      List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
+      if (oioNodeIdList != null) {
+        for (Integer oioNodeId : oioNodeIdList) {
+          OperatorDeployInfo oiodi = nodeMap.get(oioNodeId);
+          if (setOperators.contains(oiodi)) {
+            try {
+              teardownNode(oiodi);
+            } catch (Exception ex) {
+              failedNodes.add(oiodi.id);
+              logger.error("Shutdown of operator {} failed due to an exception.", oiodi, ex);
+            }
+          }
+        }
+      }
+    }
+  }
+
   private void groupInputStreams(HashMap<String, ArrayList<String>> groupedInputStreams, OperatorDeployInfo ndi)
   {
     for (OperatorDeployInfo.InputDeployInfo nidi : ndi.inputs) {
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>WakeupSignal lets the thread of a node park while all its input reservoirs are empty and unparks it as soon as
+ * a reservoir receives a tuple.</p>
+ *
+ * The node clears the signal before it sweeps its reservoirs and parks only if no producer raised the signal since.
+ * Producers raise the signal after they add tuples to a reservoir; raising a raised signal costs a volatile read.
+ * Since producers do not fence between adding the tuple and raising the signal, a wakeup may occasionally be missed;
+ * the node bounds the time it stays parked to recover from such misses and from reservoirs which do not signal.
+ *
+ * @since 3.7.0
+ */
+public class WakeupSignal
+{
+  private volatile boolean raised;
+  private volatile Thread waiter;
+
+  /**
+   * Clear the signal before consuming the tuples available in the reservoirs.
+   */
+  public void clear()
+  {
+    if (raised) {
+      raised = false;
+    }
+  }
+
+  /**
+   * Park the current thread until the signal is raised or the timeout elapses. Returns immediately if the signal was
+   * raised since it was last cleared.
+   *
+   * @param timeoutMillis maximum time to stay parked in milliseconds
+   */
+  public void await(long timeoutMillis)
+  {
+    waiter = Thread.currentThread();
+    if (!raised) {
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+    waiter = null;
+  }
+
+  /**
+   * Raise the signal and unpark the thread waiting for it, if any.
+   */
+  public void signal()
+  {
+    if (!raised) {
+      raised = true;
+      final Thread thread = waiter;
+      if (thread != null) {
+        LockSupport.unpark(thread);
+      }
+    }
+  }
+
+}
@@ -32,7 +32,7 @@ import com.datatorrent.stram.tuple.Tuple;
  *
  * @since 0.3.2
  */
-public class WindowIdActivatedReservoir implements SweepableReservoir
+public class WindowIdActivatedReservoir implements SignalingReservoir
 {
   private Sink<Object> sink;
   private final String identifier;
@@ -75,6 +75,14 @@ public class WindowIdActivatedReservoir implements SweepableReservoir
     }
   }
 
+  @Override
+  public void setWakeupSignal(WakeupSignal signal)
+  {
+    if (reservoir instanceof SignalingReservoir) {
+      ((SignalingReservoir)reservoir).setWakeupSignal(signal);
+    }
+  }
+
   @Override
   public Sink<Object> setSink(Sink<Object> sink)
   {
@@ -101,6 +101,7 @@ import com.datatorrent.common.metric.sum.DoubleSumAggregator;
 import com.datatorrent.common.metric.sum.LongSumAggregator;
 import com.datatorrent.common.util.FSStorageAgent;
 import com.datatorrent.common.util.Pair;
+import com.datatorrent.stram.codec.PojoStreamCodec;
 import com.datatorrent.stram.engine.DefaultUnifier;
 import com.datatorrent.stram.engine.Slider;
 
@@ -161,6 +162,114 @@ public class LogicalPlan implements Serializable, DAG
    * Then it can be moved back to DAGContext.
    */
   public static Attribute<Boolean> FAST_PUBLISHER_SUBSCRIBER = new Attribute<>(false);
+  /**
+   * Size in megabytes of the memory mapped segment files the buffer server spools blocks into, at most 2047. When zero,
+   * each spooled block is written to its own file.
+   */
+  public static Attribute<Integer> BUFFER_SPOOLING_SEGMENT_MB = new Attribute<>(0);
+  /**
+   * Whether the operator parks while its input reservoirs are empty and is woken up as soon as tuples arrive instead
+   * of sleeping up to {@link com.datatorrent.api.Context.OperatorContext#SPIN_MILLIS} between polls. Can be set for
+   * individual operators or for the entire DAG. SPIN_MILLIS still bounds the time the operator stays parked.
+   */
+  public static Attribute<Boolean> EVENT_DRIVEN_SCHEDULING = new Attribute<>(false);
+  /**
+   * Number of worker threads shared by the operators deployed in a container. Each operator and the operators connected
+   * to it thread local are pinned to one worker, which steps them in turn instead of dedicating a thread to each of them.
+   * The default of 0 runs every operator on its own thread.
+   */
+  public static Attribute<Integer> WORKER_THREADS = new Attribute<>(0);
+  /**
+   * Number of threads shared by the operators deployed in a container to upload their asynchronous checkpoints. The
+   * threads also upload the parts of large checkpoints concurrently with
+   * {@link com.datatorrent.common.util.AsyncFSStorageAgent}. The default of
+   * 0 gives every operator a thread of its own which uploads its checkpoints one at a time.
+   */
+  public static Attribute<Integer> CHECKPOINT_UPLOAD_THREADS = new Attribute<>(0);
+  /**
+   * Number of threads a container restores the checkpoints of the operators deployed to it on. The checkpoints of all
+   * the operators of a deploy request are then fetched and deserialized concurrently instead of one after the other,
+   * which shortens the recovery of containers with many operators. The default of 0 restores them one at a time.
+   */
+  public static Attribute<Integer> CHECKPOINT_LOAD_THREADS = new Attribute<>(0);
+  /**
+   * Size in megabytes of the shared memory ring which carries the tuples of a node local stream from the publishing
+   * container to a subscribing container on the same host. The rings are files in /dev/shm, or in the temporary
+   * directory where it does not exist. The buffer server still receives all the tuples and serves the subscribers which
+   * need to replay windows. A ring is limited to just under 2 gigabytes. The default of 0 sends node local streams
+   * through the buffer server.
+   */
+  public static Attribute<Integer> NODE_LOCAL_SHARED_MEMORY_MB = new Attribute<>(0);
+  /**
+   * Whether the buffer server indexes the partitions of the tuples it receives from a publisher which has partitioned
+   * subscribers, so that the subscriber of each partition iterates only over the tuples of its own partitions instead
+   * of reading and discarding those of all the other partitions.
+   */
+  public static Attribute<Boolean> BUFFER_SERVER_PARTITION_INDEX = new Attribute<>(false);
+  /**
+   * Size in kilobytes of the credit window the subscribers advertise to the buffer server. The buffer server stops
+   * sending data to a subscriber once that many bytes are queued on its connection and resumes as the subscriber reads
+   * them, instead of filling the connection buffers of slow subscribers. The data held back stays in the buffer server
+   * and counts towards the lag of the subscriber, see {@link #BUFFER_SERVER_MAX_CONSUMER_LAG_MB}. The default of 0 does
+   * not limit the data in flight.
+   */
+  public static Attribute<Integer> BUFFER_SERVER_CREDIT_WINDOW_KB = new Attribute<>(0);
+  /**
+   * Number of threads shared by the buffer server subscribers of a container to deserialize the tuples ahead of the
+   * operators, which then only process them. The tuples of a subscriber are decoded in order and the window and
+   * control tuples keep their place among the data tuples. The default of 0 deserializes the tuples on the thread of
+   * the operator.
+   */
+  public static Attribute<Integer> BUFFER_SERVER_DECODE_THREADS = new Attribute<>(0);
+  /**
+   * Size in bytes up to which the payload tuples of the same partition published to the buffer server are packed into
+   * one message, which the buffer server routes as a whole and the subscriber unpacks in one go. This cuts the framing
+   * and per message work for small tuples. A batch is also sent at the end of the window and before any other control
+   * tuple. The default of 0 sends each tuple in a message of its own.
+   */
+  public static Attribute<Integer> BUFFER_SERVER_PAYLOAD_BATCH_BYTES = new Attribute<>(0);
+  /**
+   * Milliseconds a batch of payload tuples may wait for more tuples before it is sent along with the next tuple, when
+   * {@link #BUFFER_SERVER_PAYLOAD_BATCH_BYTES} is set. 0 sends a batch only once it is full or the window ends.
+   */
+  public static Attribute<Integer> BUFFER_SERVER_PAYLOAD_BATCH_LATENCY_MILLIS = new Attribute<>(20);
+  /**
+   * Whether the streams which do not specify a codec but whose tuple class is known from the TUPLE_CLASS attribute of
+   * the input port, or else of the output port, use a {@link PojoStreamCodec} specialized for that class. When the
+   * class is a plain POJO its tuples are serialized positionally by a serializer generated when the stream is deployed,
+   * otherwise they are serialized the same way as by the default codec. Persisted streams keep the default codec.
+   */
+  public static Attribute<Boolean> POJO_STREAM_CODEC = new Attribute<>(false);
+  /**
+   * Number of megabytes the slowest subscriber of a stream may lag behind its publisher before the buffer server stops
+   * reading from the publisher. Reading resumes once the lag drops below 7/8 of the limit, so the publisher is slowed
+   * down to the rate of the slowest subscriber well before the buffer server runs out of memory blocks. The default of
+   * 0 does not throttle the publishers on the subscriber lag.
+   * <p>
+   * The limit has to be larger than the data a stream carries in one streaming window whenever an operator waits for
+   * the window on another stream before it reads on, as an operator which merges streams coming from the same upstream
+   * operator does. Otherwise the publisher of one stream is stopped before it completes the window, which starves the
+   * upstream operator and with it the other stream, and the operators deadlock.
+   */
+  public static Attribute<Integer> BUFFER_SERVER_MAX_CONSUMER_LAG_MB = new Attribute<>(0);
+  /**
+   * Whether tuple recordings are written in the binary part file format instead of the line oriented text format.
+   */
+  public static Attribute<Boolean> TUPLE_RECORDING_BINARY_FORMAT = new Attribute<>(false);
+  /**
+   * Records only every n-th tuple of a recording. The default of 1 records all tuples.
+   */
+  public static Attribute<Integer> TUPLE_RECORDING_SAMPLE_INTERVAL = new Attribute<>(1);
+  /**
+   * Maximum number of tuples recorded per window, the remaining tuples of the window are skipped. The default of 0 does
+   * not limit the number of tuples.
+   */
+  public static Attribute<Integer> TUPLE_RECORDING_MAX_TUPLES_PER_WINDOW = new Attribute<>(0);
+  /**
+   * Capacity of the queue which hands recorded tuples from the operator thread to the recording writer. Tuples are
+   * dropped from the recording while the queue is full.
+   */
+  public static Attribute<Integer> TUPLE_RECORDING_QUEUE_CAPACITY = new Attribute<>(16 * 1024);
   public static Attribute<Long> HDFS_TOKEN_LIFE_TIME = new Attribute<>(604800000L);
   public static Attribute<Long> RM_TOKEN_LIFE_TIME = new Attribute<>(YarnConfiguration.DELEGATION_TOKEN_MAX_LIFETIME_DEFAULT);
   public static Attribute<String> PRINCIPAL = new Attribute<>(null, StringCodec.String2String.getInstance());
@@ -1860,6 +1969,34 @@ public class LogicalPlan implements Serializable, DAG
     }
 
     validateAffinityRules();
+    setPojoStreamCodecs();
+  }
+
+  /**
+   * Sets a {@link PojoStreamCodec} on the sinks which do not specify a codec when {@link #POJO_STREAM_CODEC} is
+   * enabled and the tuple class of the sink is known.
+   */
+  private void setPojoStreamCodecs()
+  {
+    if (!getValue(POJO_STREAM_CODEC)) {
+      return;
+    }
+    for (StreamMeta sm : streams.values()) {
+      if (sm.getSource() == null || sm.getPersistOperator() != null || !sm.sinkSpecificPersistOperatorMap.isEmpty()) {
+        continue;
+      }
+      for (InputPortMeta sink : sm.getSinks()) {
+        if (sink.getStreamCodec() == null) {
+          Class<?> tupleClass = sink.getValue(PortContext.TUPLE_CLASS);
+          if (tupleClass == null) {
+            tupleClass = sm.getSource().getValue(PortContext.TUPLE_CLASS);
+          }
+          if (tupleClass != null) {
+            sink.setStreamCodec(new PojoStreamCodec<>(tupleClass));
+          }
+        }
+      }
+    }
   }
 
   /**
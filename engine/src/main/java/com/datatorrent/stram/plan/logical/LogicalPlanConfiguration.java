@@ -27,8 +27,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -38,6 +38,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.regex.Pattern;
 
 import javax.validation.ValidationException;
 
@@ -131,7 +132,6 @@ public class LogicalPlanConfiguration
   private static final String CLASS_SUFFIX = "." + CLASS;
 
   private static final String WILDCARD = "*";
-  private static final String WILDCARD_PATTERN = ".*";
 
   /**
    * This is done to initialize the serial id of these interfaces.
@@ -965,6 +965,7 @@ public class LogicalPlanConfiguration
     protected final PropertiesWithModifiableDefaults properties = new PropertiesWithModifiableDefaults();
 
     protected Map<StramElement, Map<String, ? extends Conf>> children = Maps.newHashMap();
+    private final Map<StramElement, ChildConfMatcher<? extends Conf>> matchers = Maps.newHashMap();
 
     protected String id;
 
@@ -1062,42 +1063,14 @@ public class LogicalPlanConfiguration
      */
     public <T extends Conf> List<T> getMatchingChildConf(String name, StramElement childType)
     {
-      List<T> childConfs = new ArrayList<>();
       Map<String, T> elChildren = getChildren(childType);
-      for (Map.Entry<String, T> entry : elChildren.entrySet()) {
-        String key = entry.getKey();
-        boolean match = false;
-        boolean exact = false;
-        // Match WILDCARD to null
-        if (name == null) {
-          if (key == null) {
-            match = true;
-            exact = true;
-          } else if (key.equals(WILDCARD)) {
-            match = true;
-          }
-        } else {
-          // Also treat WILDCARD as match any character string when running regular express match
-          if (key.equals(WILDCARD)) {
-            key = WILDCARD_PATTERN;
-          }
-          if (name.matches(key)) {
-            match = true;
-          }
-          if (name.equals(key)) {
-            exact = true;
-          }
-        }
-        // There will be a better match preference order
-        if (match) {
-          if (!exact) {
-            childConfs.add(entry.getValue());
-          } else {
-            childConfs.add(0, entry.getValue());
-          }
-        }
+      @SuppressWarnings("unchecked")
+      ChildConfMatcher<T> matcher = (ChildConfMatcher<T>)matchers.get(childType);
+      if (matcher == null || !matcher.isCurrent(elChildren)) {
+        matcher = new ChildConfMatcher<>(elChildren);
+        matchers.put(childType, matcher);
       }
-      return childConfs;
+      return matcher.getMatchingConfs(name);
     }
 
     /**
@@ -1189,6 +1162,107 @@ public class LogicalPlanConfiguration
     public abstract ConfElement getConfElement();
   }
 
+  /**
+   * Index of the child {@link Conf}s of one {@link StramElement} type. The keys are split once into names which can
+   * only match themselves and regular expressions which are compiled and ordered by specificity, and the matching
+   * {@link Conf}s are memoized per name.
+   *
+   * @param <T> The type of the child {@link Conf}s.
+   */
+  private static class ChildConfMatcher<T extends Conf>
+  {
+    private static final String REGEX_META_CHARACTERS = "\\.[]{}()*+?^$|";
+    private final int numChildren;
+    private final Map<String, T> exactConfs = Maps.newHashMap();
+    private final List<Pattern> patterns = Lists.newArrayList();
+    private final List<T> patternConfs = Lists.newArrayList();
+    private final T wildcardConf;
+    private final Map<String, List<T>> resolved = Maps.newHashMap();
+
+    ChildConfMatcher(Map<String, T> children)
+    {
+      numChildren = children.size();
+      TreeMap<String, T> patternKeys = new TreeMap<>(new Comparator<String>()
+      {
+        @Override
+        public int compare(String key1, String key2)
+        {
+          // more literal characters first, the key itself breaks ties to keep the order stable
+          int result = Integer.compare(literalCharacters(key2), literalCharacters(key1));
+          return result == 0 ? key1.compareTo(key2) : result;
+        }
+      });
+      for (Map.Entry<String, T> entry : children.entrySet()) {
+        String key = entry.getKey();
+        if (key == null || StringUtils.containsNone(key, REGEX_META_CHARACTERS)) {
+          exactConfs.put(key, entry.getValue());
+        } else if (!key.equals(WILDCARD)) {
+          patternKeys.put(key, entry.getValue());
+        }
+      }
+      for (Map.Entry<String, T> entry : patternKeys.entrySet()) {
+        patterns.add(Pattern.compile(entry.getKey()));
+        patternConfs.add(entry.getValue());
+      }
+      wildcardConf = children.get(WILDCARD);
+    }
+
+    private static int literalCharacters(String key)
+    {
+      int count = 0;
+      for (int i = 0; i < key.length(); i++) {
+        if (REGEX_META_CHARACTERS.indexOf(key.charAt(i)) < 0) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    /**
+     * @return whether the index reflects the given children, children are only ever added
+     */
+    boolean isCurrent(Map<String, T> children)
+    {
+      return children.size() == numChildren;
+    }
+
+    /**
+     * Returns the {@link Conf}s matching the name, the exact match first and the wildcard last.
+     */
+    List<T> getMatchingConfs(String name)
+    {
+      List<T> confs = resolved.get(name);
+      if (confs == null) {
+        confs = Lists.newArrayList();
+        if (name == null) {
+          // Match WILDCARD to null
+          if (exactConfs.containsKey(null)) {
+            confs.add(exactConfs.get(null));
+          }
+        } else {
+          T exact = exactConfs.get(name);
+          if (exact != null) {
+            confs.add(exact);
+          }
+          for (int i = 0; i < patterns.size(); i++) {
+            Pattern pattern = patterns.get(i);
+            if (pattern.pattern().equals(name)) {
+              confs.add(0, patternConfs.get(i));
+            } else if (pattern.matcher(name).matches()) {
+              confs.add(patternConfs.get(i));
+            }
+          }
+        }
+        if (wildcardConf != null) {
+          confs.add(wildcardConf);
+        }
+        resolved.put(name, confs);
+      }
+      // callers modify the returned list
+      return Lists.newArrayList(confs);
+    }
+  }
+
   private static class StramConf extends Conf
   {
 
@@ -1312,19 +1386,19 @@ public class LogicalPlanConfiguration
     public void setProperty(String name, String value)
     {
       if (name.equals(TEMPLATE_appNameRegExp)) {
-        appNameRegExp = value;
+        appNameRegExp = Pattern.compile(value);
       } else if (name.equals(TEMPLATE_idRegExp)) {
-        idRegExp = value;
+        idRegExp = Pattern.compile(value);
       } else if (name.equals(TEMPLATE_classNameRegExp)) {
-        classNameRegExp = value;
+        classNameRegExp = Pattern.compile(value);
       } else {
         super.setProperty(name, value);
       }
     }
 
-    private String idRegExp;
-    private String appNameRegExp;
-    private String classNameRegExp;
+    private Pattern idRegExp;
+    private Pattern appNameRegExp;
+    private Pattern classNameRegExp;
 
   }
 
@@ -2416,13 +2490,13 @@ public class LogicalPlanConfiguration
   {
     TreeMap<Integer, TemplateConf> tm = Maps.newTreeMap();
     for (TemplateConf t : templates.values()) {
-      if ((t.idRegExp != null && pa.name.matches(t.idRegExp))) {
+      if ((t.idRegExp != null && t.idRegExp.matcher(pa.name).matches())) {
         tm.put(1, t);
       } else if (appName != null && t.appNameRegExp != null
-          && appName.matches(t.appNameRegExp)) {
+          && t.appNameRegExp.matcher(appName).matches()) {
         tm.put(2, t);
       } else if (t.classNameRegExp != null
-          && pa.className.matches(t.classNameRegExp)) {
+          && t.classNameRegExp.matcher(pa.className).matches()) {
         tm.put(3, t);
       }
     }
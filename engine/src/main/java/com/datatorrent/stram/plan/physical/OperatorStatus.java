@@ -54,6 +54,10 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
     public final TimedMovingAverageLong tuplesPMSMA;
     public final TimedMovingAverageLong bufferServerBytesPMSMA;
     public final MovingAverageLong queueSizeMA;
+    /**
+     * End window timestamp last reported for the port, -1 before the first report.
+     */
+    public long lastEndWindowTimestamp = -1;
 
     public PortStatus()
     {
@@ -81,6 +85,11 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
   public List<OperatorStats> lastWindowedStats = Collections.emptyList();
   public final ConcurrentLinkedQueue<List<OperatorStats>> listenerStats = new ConcurrentLinkedQueue<>();
   public volatile long lastWindowIdChangeTms = 0;
+  /**
+   * Latest end window timestamp of the ports in the last heartbeat with stats, -1 before the first one. Like the port
+   * status, it is only updated by the heartbeats of the container the operator is deployed in.
+   */
+  public long lastMaxEndWindowTimestamp = -1;
   public final int windowProcessingTimeoutMillis;
   public final ConcurrentLinkedQueue<StatsListener.OperatorResponse> responses = new ConcurrentLinkedQueue<>();
   public List<StatsListener.OperatorResponse> operatorResponses;
@@ -26,27 +26,27 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.apex.api.operator.ControlTuple;
 
+import com.esotericsoftware.kryo.io.Output;
+
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.bufferserver.client.Publisher;
 import com.datatorrent.bufferserver.packet.BeginWindowTuple;
 import com.datatorrent.bufferserver.packet.DataTuple;
-import com.datatorrent.bufferserver.packet.EndStreamTuple;
 import com.datatorrent.bufferserver.packet.EndWindowTuple;
 import com.datatorrent.bufferserver.packet.MessageType;
-import com.datatorrent.bufferserver.packet.PayloadTuple;
-import com.datatorrent.bufferserver.packet.ResetWindowTuple;
-import com.datatorrent.bufferserver.packet.WindowIdTuple;
 import com.datatorrent.bufferserver.util.Codec;
 import com.datatorrent.netlet.EventLoop;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
+import com.datatorrent.stram.codec.DirectStreamCodec;
 import com.datatorrent.stram.codec.StatefulStreamCodec;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
 import com.datatorrent.stram.engine.ByteCounterStream;
+import com.datatorrent.stram.engine.NodeWorkerPool;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.tuple.CustomControlTuple;
 import com.datatorrent.stram.tuple.Tuple;
 
-import static java.lang.Thread.sleep;
-
 /**
  * Implements tuple flow of node to then buffer server in a logical stream<p>
  * <br>
@@ -59,11 +59,33 @@ import static java.lang.Thread.sleep;
  */
 public class BufferServerPublisher extends Publisher implements ByteCounterStream
 {
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int MAX_LENGTH_PREFIX = 5;
+  private static final int PAYLOAD_HEADER_SIZE = MAX_LENGTH_PREFIX + 1 /* for type */ + 4 /* for partition */;
+  private static final int MIN_PAYLOAD_SIZE = 256;
   private StreamCodec<Object> serde;
   private final AtomicLong publishedByteCount;
   private EventLoop eventloop;
   private int count;
   private StatefulStreamCodec<Object> statefulSerde;
+  private DirectStreamCodec<Object> directSerde;
+  private final Output output = new Output();
+  /**
+   * Chunk the tuples are serialized into with their length prefix and buffer server header written in place, so that
+   * they are handed over to netlet as slices of the chunk instead of as newly allocated arrays. A chunk is not reused
+   * once it is full; it is left to the garbage collector after netlet sent all the slices that refer to it.
+   */
+  private byte[] chunk = new byte[CHUNK_SIZE];
+  private int chunkOffset;
+  /**
+   * Payload tuples of the same partition are packed into a batch at the end of the chunk, which is handed over once it
+   * holds this many bytes, once it is older than the latency bound or before any other tuple. 0 disables batching.
+   */
+  private int batchBytes;
+  private int batchLatencyMillis;
+  private int batchHeaderOffset = -1;
+  private int batchPartition;
+  private long batchStartMillis;
 
   public BufferServerPublisher(String sourceId, int queueCapacity)
   {
@@ -71,17 +93,32 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
     this.publishedByteCount = new AtomicLong(0);
   }
 
+  /**
+   * Packs the payload tuples of the same partition into {@link MessageType#PAYLOAD_BATCH} messages instead of sending
+   * each of them in a message of its own. A batch is sent once it holds the given number of bytes, once it is older
+   * than the latency bound when the next tuple is added and always before a control tuple, such as the end of the
+   * window, so that the tuples stay in order.
+   *
+   * @param bytes size of the payloads a batch is sent at, 0 to not batch the payload tuples
+   * @param latencyMillis milliseconds a batch may wait for more tuples, 0 to wait until the batch is full or the
+   * window ends
+   */
+  public void setPayloadBatch(int bytes, int latencyMillis)
+  {
+    batchBytes = bytes;
+    batchLatencyMillis = latencyMillis;
+  }
+
   /**
    *
    * @param payload
    */
   @Override
-  @SuppressWarnings("SleepWhileInLoop")
   public void put(Object payload)
   {
     count++;
-    byte[] array;
     if (payload instanceof Tuple) {
+      flushBatch();
       final Tuple t = (Tuple)payload;
 
       switch (t.getType()) {
@@ -89,87 +126,291 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
           if (statefulSerde != null) {
             statefulSerde.resetState();
           }
-          array = WindowIdTuple.getSerializedTuple((int)t.getWindowId());
-          array[0] = MessageType.CHECKPOINT_VALUE;
+          putWindowIdTuple(MessageType.CHECKPOINT_VALUE, (int)t.getWindowId());
           break;
 
         case BEGIN_WINDOW:
-          array = BeginWindowTuple.getSerializedTuple((int)t.getWindowId());
+          putTuple(BeginWindowTuple.getSerializedTuple((int)t.getWindowId()));
           break;
 
         case END_WINDOW:
-          array = EndWindowTuple.getSerializedTuple((int)t.getWindowId());
+          putTuple(EndWindowTuple.getSerializedTuple((int)t.getWindowId()));
           break;
 
         case CUSTOM_CONTROL:
           if (statefulSerde == null) {
-            array = com.datatorrent.bufferserver.packet.CustomControlTuple
-                .getSerializedTuple(MessageType.CUSTOM_CONTROL_VALUE, serde.toByteArray(payload));
+            putDataTuple(MessageType.CUSTOM_CONTROL_VALUE, serde.toByteArray(payload));
           } else {
             DataStatePair dsp = statefulSerde.toDataStatePair(payload);
             if (dsp.state != null) {
-              array = com.datatorrent.bufferserver.packet.CustomControlTuple
-                  .getSerializedTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
-              try {
-                while (!write(array)) {
-                  sleep(5);
-                }
-              } catch (InterruptedException ie) {
-                throw new RuntimeException(ie);
-              }
+              putDataTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
             }
-            array = com.datatorrent.bufferserver.packet.CustomControlTuple
-                .getSerializedTuple(MessageType.CUSTOM_CONTROL_VALUE, dsp.data);
+            putDataTuple(MessageType.CUSTOM_CONTROL_VALUE, dsp.data);
           }
           break;
 
         case END_STREAM:
-          array = EndStreamTuple.getSerializedTuple((int)t.getWindowId());
+          putWindowIdTuple(MessageType.END_STREAM_VALUE, (int)t.getWindowId());
           break;
 
         case RESET_WINDOW:
           com.datatorrent.stram.tuple.ResetWindowTuple rwt = (com.datatorrent.stram.tuple.ResetWindowTuple)t;
-          array = ResetWindowTuple.getSerializedTuple(rwt.getBaseSeconds(), rwt.getIntervalMillis());
+          putResetWindowTuple(rwt.getBaseSeconds(), rwt.getIntervalMillis());
           break;
 
         default:
           throw new UnsupportedOperationException("this data type is not handled in the stream");
       }
-    } else {
-      if (statefulSerde == null) {
-        array = PayloadTuple.getSerializedTuple(serde.getPartition(payload), serde.toByteArray(payload));
+    } else if (directSerde != null) {
+      if (batchBytes > 0) {
+        putBatchedPayload(payload);
       } else {
-        DataStatePair dsp = statefulSerde.toDataStatePair(payload);
-        /*
-         * if there is any state write that for the subscriber before we write the data.
-         */
-        if (dsp.state != null) {
-          array = DataTuple.getSerializedTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
-          try {
-            while (!write(array)) {
-              sleep(5);
-            }
-          } catch (InterruptedException ie) {
-            throw new RuntimeException(ie);
-          }
-        }
-        /*
-         * Now that the state if any has been sent, we can proceed with the actual data we want to send.
-         */
-        array = PayloadTuple.getSerializedTuple(statefulSerde.getPartition(payload), dsp.data);
+        putPayloadTuple(payload);
+      }
+    } else if (statefulSerde == null) {
+      putPayload(serde.getPartition(payload), serde.toByteArray(payload));
+    } else {
+      DataStatePair dsp = statefulSerde.toDataStatePair(payload);
+      /*
+       * if there is any state write that for the subscriber before we write the data.
+       */
+      if (dsp.state != null) {
+        flushBatch();
+        putDataTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
       }
+      /*
+       * Now that the state if any has been sent, we can proceed with the actual data we want to send.
+       */
+      putPayload(statefulSerde.getPartition(payload), dsp.data);
+    }
+  }
+
+  private void putPayload(int partition, Slice data)
+  {
+    if (batchBytes > 0) {
+      putBatchedPayload(partition, data);
+    } else {
+      putPayloadTuple(partition, data);
+    }
+  }
+
+  /**
+   * Makes sure that the current chunk has at least the given number of bytes left after the chunkOffset.
+   */
+  private void reserve(int size)
+  {
+    if (chunk.length - chunkOffset < size) {
+      chunk = new byte[Math.max(CHUNK_SIZE, size)];
+      chunkOffset = 0;
+    }
+  }
+
+  /**
+   * Writes the length prefix of the tuple ending at the chunkOffset and hands the tuple over to netlet.
+   *
+   * @param headerOffset offset in the chunk reserved for the length prefix, {@link #MAX_LENGTH_PREFIX} bytes long
+   */
+  private void offer(int headerOffset, boolean accounted)
+  {
+    final int size = chunkOffset - headerOffset - MAX_LENGTH_PREFIX;
+    final int offset = headerOffset + MAX_LENGTH_PREFIX - VarInt.getSize(size);
+    VarInt.write(size, chunk, offset);
+    onPublish(chunk, headerOffset + MAX_LENGTH_PREFIX, size);
+    try {
+      while (!send(chunk, offset, chunkOffset - offset)) {
+        NodeWorkerPool.await(this, 5);
+      }
+    } catch (InterruptedException ie) {
+      throw new RuntimeException(ie);
+    }
+    if (accounted) {
+      publishedByteCount.addAndGet(size);
+    }
+  }
+
+  private void putTuple(byte[] array)
+  {
+    reserve(MAX_LENGTH_PREFIX + array.length);
+    final int headerOffset = chunkOffset;
+    System.arraycopy(array, 0, chunk, headerOffset + MAX_LENGTH_PREFIX, array.length);
+    chunkOffset += MAX_LENGTH_PREFIX + array.length;
+    offer(headerOffset, true);
+  }
+
+  private void putWindowIdTuple(byte type, int windowId)
+  {
+    reserve(MAX_LENGTH_PREFIX + 1 + MAX_LENGTH_PREFIX);
+    final int headerOffset = chunkOffset;
+    chunk[headerOffset + MAX_LENGTH_PREFIX] = type;
+    chunkOffset = VarInt.write(windowId, chunk, headerOffset + MAX_LENGTH_PREFIX + 1);
+    offer(headerOffset, true);
+  }
+
+  private void putResetWindowTuple(int baseSeconds, int windowWidth)
+  {
+    reserve(MAX_LENGTH_PREFIX + 1 + MAX_LENGTH_PREFIX + MAX_LENGTH_PREFIX);
+    final int headerOffset = chunkOffset;
+    chunk[headerOffset + MAX_LENGTH_PREFIX] = MessageType.RESET_WINDOW_VALUE;
+    chunkOffset = VarInt.write(baseSeconds, chunk, headerOffset + MAX_LENGTH_PREFIX + 1);
+    chunkOffset = VarInt.write(windowWidth, chunk, chunkOffset);
+    offer(headerOffset, true);
+  }
+
+  private void putDataTuple(byte type, Slice data)
+  {
+    reserve(MAX_LENGTH_PREFIX + 1 + data.length);
+    final int headerOffset = chunkOffset;
+    chunk[headerOffset + MAX_LENGTH_PREFIX] = type;
+    System.arraycopy(data.buffer, data.offset, chunk, headerOffset + MAX_LENGTH_PREFIX + 1, data.length);
+    chunkOffset += MAX_LENGTH_PREFIX + 1 + data.length;
+    /* codec state tuples were never accounted for in the published bytes */
+    offer(headerOffset, type != MessageType.CODEC_STATE_VALUE);
+  }
+
+  private int putPayloadHeader(byte type, int partition)
+  {
+    final int headerOffset = chunkOffset;
+    int offset = headerOffset + MAX_LENGTH_PREFIX;
+    chunk[offset++] = type;
+    chunk[offset++] = (byte)(partition >> 24);
+    chunk[offset++] = (byte)(partition >> 16);
+    chunk[offset++] = (byte)(partition >> 8);
+    chunk[offset++] = (byte)partition;
+    chunkOffset = offset;
+    return headerOffset;
+  }
+
+  private void putPayloadTuple(int partition, Slice data)
+  {
+    reserve(PAYLOAD_HEADER_SIZE + data.length);
+    final int headerOffset = putPayloadHeader(MessageType.PAYLOAD_VALUE, partition);
+    System.arraycopy(data.buffer, data.offset, chunk, chunkOffset, data.length);
+    chunkOffset += data.length;
+    offer(headerOffset, true);
+  }
+
+  /**
+   * Serializes the payload with the {@link DirectStreamCodec} right behind its header in the chunk.
+   */
+  private void putPayloadTuple(Object payload)
+  {
+    reserve(PAYLOAD_HEADER_SIZE + MIN_PAYLOAD_SIZE);
+    final int headerOffset = putPayloadHeader(MessageType.PAYLOAD_VALUE, directSerde.getPartition(payload));
+    output.setBuffer(chunk, Integer.MAX_VALUE);
+    output.setPosition(chunkOffset);
+    final Slice state = directSerde.serialize(payload, output);
+    /* the output copies the chunk over to a larger array when the tuple did not fit in it */
+    chunk = output.getBuffer();
+    chunkOffset = output.position();
+
+    if (state != null) {
+      putCodecState(state);
     }
+    offer(headerOffset, true);
+  }
 
+  /**
+   * Sends the state the subscriber needs to deserialize the payload which was just serialized, ahead of the payload.
+   * It changes only when the codec comes across a new class, so it is not worth placing it in the chunk.
+   */
+  private void putCodecState(Slice state)
+  {
+    final byte[] array = DataTuple.getSerializedTuple(MessageType.CODEC_STATE_VALUE, state);
+    onPublish(array, 0, array.length);
     try {
       while (!write(array)) {
-        sleep(5);
+        NodeWorkerPool.await(this, 5);
       }
-      publishedByteCount.addAndGet(array.length);
     } catch (InterruptedException ie) {
       throw new RuntimeException(ie);
     }
   }
 
+  /**
+   * Makes sure that there is an open batch for the partition with at least the given number of bytes left in the
+   * chunk after it, sending the open batch first if it is for another partition or it would not fit.
+   */
+  private void openBatch(int partition, int size)
+  {
+    if (batchHeaderOffset >= 0 && (partition != batchPartition || chunk.length - chunkOffset < size)) {
+      flushBatch();
+    }
+    if (batchHeaderOffset < 0) {
+      reserve(PAYLOAD_HEADER_SIZE + size);
+      batchHeaderOffset = putPayloadHeader(MessageType.PAYLOAD_BATCH_VALUE, partition);
+      batchPartition = partition;
+      if (batchLatencyMillis > 0) {
+        batchStartMillis = System.currentTimeMillis();
+      }
+    }
+  }
+
+  /**
+   * Sends the open batch if it is full or too old.
+   */
+  private void closeBatchIfDue()
+  {
+    if (chunkOffset - batchHeaderOffset - PAYLOAD_HEADER_SIZE >= batchBytes
+        || batchLatencyMillis > 0 && System.currentTimeMillis() - batchStartMillis >= batchLatencyMillis) {
+      flushBatch();
+    }
+  }
+
+  private void flushBatch()
+  {
+    if (batchHeaderOffset >= 0) {
+      final int headerOffset = batchHeaderOffset;
+      batchHeaderOffset = -1;
+      offer(headerOffset, true);
+    }
+  }
+
+  private void putBatchedPayload(int partition, Slice data)
+  {
+    openBatch(partition, MAX_LENGTH_PREFIX + data.length);
+    chunkOffset = VarInt.write(data.length, chunk, chunkOffset);
+    System.arraycopy(data.buffer, data.offset, chunk, chunkOffset, data.length);
+    chunkOffset += data.length;
+    closeBatchIfDue();
+  }
+
+  /**
+   * Serializes the payload with the {@link DirectStreamCodec} into the open batch, moving it over the unused part of
+   * the space reserved for its length prefix.
+   */
+  private void putBatchedPayload(Object payload)
+  {
+    openBatch(directSerde.getPartition(payload), MAX_LENGTH_PREFIX + MIN_PAYLOAD_SIZE);
+    final int lengthOffset = chunkOffset;
+    output.setBuffer(chunk, Integer.MAX_VALUE);
+    output.setPosition(lengthOffset + MAX_LENGTH_PREFIX);
+    final Slice state = directSerde.serialize(payload, output);
+    chunk = output.getBuffer();
+    final int length = output.position() - lengthOffset - MAX_LENGTH_PREFIX;
+    chunkOffset = VarInt.write(length, chunk, lengthOffset);
+    if (chunkOffset < lengthOffset + MAX_LENGTH_PREFIX) {
+      System.arraycopy(chunk, lengthOffset + MAX_LENGTH_PREFIX, chunk, chunkOffset, length);
+    }
+    chunkOffset += length;
+
+    if (state != null) {
+      /* the earlier payloads of the batch do not refer to the classes the state registers, so it may precede them */
+      putCodecState(state);
+    }
+    closeBatchIfDue();
+  }
+
+  /**
+   * Invoked with every tuple in the serialized form handed over to the buffer server, in the same order.
+   *
+   * @param buffer array holding the tuple
+   * @param offset offset of the tuple in the array
+   * @param size size of the tuple without its length prefix
+   */
+  protected void onPublish(byte[] buffer, int offset, int size)
+  {
+  }
+
   @Override
   public boolean putControl(ControlTuple payload)
   {
@@ -219,6 +460,12 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
     } else {
       serde = (StreamCodec<Object>)codec;
     }
+
+    if (statefulSerde instanceof DirectStreamCodec) {
+      directSerde = (DirectStreamCodec<Object>)statefulSerde;
+    } else if (serde instanceof DirectStreamCodec) {
+      directSerde = (DirectStreamCodec<Object>)serde;
+    }
   }
 
   @Override
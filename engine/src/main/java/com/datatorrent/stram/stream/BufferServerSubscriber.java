@@ -22,6 +22,9 @@ import java.net.InetSocketAddress;
 import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
@@ -32,15 +35,20 @@ import org.apache.apex.api.operator.ControlTuple;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.bufferserver.client.Subscriber;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadBatchTuple;
 import com.datatorrent.bufferserver.util.Codec;
 import com.datatorrent.netlet.EventLoop;
 import com.datatorrent.netlet.util.CircularBuffer;
 import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
 import com.datatorrent.stram.codec.StatefulStreamCodec;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
 import com.datatorrent.stram.engine.ByteCounterStream;
+import com.datatorrent.stram.engine.SignalingReservoir;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.engine.WakeupSignal;
 import com.datatorrent.stram.engine.WindowGenerator;
 import com.datatorrent.stram.plan.logical.StreamCodecWrapperForPersistance;
 import com.datatorrent.stram.tuple.CheckpointTuple;
@@ -71,6 +79,40 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
   private final ArrayDeque<CircularBuffer<Slice>> backlog;
   private int lastWindowId = WindowGenerator.MAX_WINDOW_ID;
   private final AtomicLong readByteCount;
+  private int creditWindow;
+  private volatile long receivedBytes;
+  private volatile long consumedBytes;
+  /**
+   * Set when the subscriber stopped receiving tuples because of an error, thrown to the node sweeping the reservoirs.
+   */
+  protected volatile RuntimeException failure;
+  /**
+   * Executor the fragments are turned into tuples on ahead of the operator, null to do so on the thread of the operator
+   * as it sweeps the reservoirs.
+   */
+  private Executor decodeExecutor;
+  private boolean persistStream;
+  private CircularBuffer<Object> decodedTuples;
+  private CircularBuffer<Object>[] decodedTargets;
+  private final AtomicBoolean decoding = new AtomicBoolean();
+  private volatile boolean decoderStalled;
+  private final AtomicLong decodeTime = new AtomicLong();
+  private final Runnable decoder = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      decode();
+    }
+  };
+  private static final Object NO_TUPLE = new Object();
+  /**
+   * Fragment holding a batch of payload tuples which was not unpacked completely for lack of room in the reservoirs,
+   * and the offset of the next payload in it.
+   */
+  private Slice batch;
+  private int batchOffset;
+  private final VarInt.MutableInt nextOffset = new VarInt.MutableInt();
 
   public BufferServerSubscriber(String id, int queueCapacity)
   {
@@ -100,12 +142,64 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     eventloop.connect(address.isUnresolved() ? new InetSocketAddress(address.getHostName(), address.getPort()) : address, this);
 
     logger.debug("Registering subscriber: id={} upstreamId={} streamLogicalName={} windowId={} mask={} partitions={} server={}", new Object[] {context.getSinkId(), context.getSourceId(), context.getId(), Codec.getStringWindowId(context.getFinishedWindowId()), context.getPartitionMask(), context.getPartitions(), context.getBufferServerAddress()});
-    activate(null, context.getId() + '/' + context.getSinkId(), context.getSourceId(), context.getPartitionMask(), context.getPartitions(), context.getFinishedWindowId(), freeFragments.capacity());
+    activate(null, context.getId() + '/' + context.getSinkId(), context.getSourceId(), context.getPartitionMask(), context.getPartitions(), context.getFinishedWindowId(), freeFragments.capacity(), creditWindow);
+  }
+
+  /**
+   * @param creditWindow number of bytes the buffer server may send ahead of what the subscriber has read, 0 for no
+   * limit
+   */
+  public void setCreditWindow(int creditWindow)
+  {
+    this.creditWindow = creditWindow;
+  }
+
+  public int getCreditWindow()
+  {
+    return creditWindow;
+  }
+
+  /**
+   * Deserializes the tuples on the given executor ahead of the operator instead of on the thread of the operator. The
+   * fragments of a subscriber are decoded by one task at a time, in the order they were received, into a queue which
+   * the reservoirs are filled from, so the order of the data and control tuples is kept. Streams which are persisted
+   * are always decoded on the thread of the operator.
+   *
+   * @param executor executor shared by the subscribers of the container
+   */
+  @SuppressWarnings("unchecked")
+  public void setDecodeExecutor(Executor executor)
+  {
+    decodeExecutor = executor;
+    decodedTuples = new CircularBuffer<>(freeFragments.capacity());
+    decodedTargets = new CircularBuffer[] {decodedTuples};
+  }
+
+  /**
+   * @param reset whether to reset the time after it is read
+   * @return nanoseconds spent deserializing the tuples
+   */
+  public long getDecodeTime(boolean reset)
+  {
+    if (reset) {
+      return decodeTime.getAndSet(0);
+    }
+
+    return decodeTime.get();
+  }
+
+  /**
+   * @return number of bytes received from the buffer server which were not yet turned into tuples for the reservoirs
+   */
+  public long getLagBytes()
+  {
+    return Math.max(0, receivedBytes - consumedBytes);
   }
 
   @Override
   public void onMessage(byte[] buffer, int offset, int length)
   {
+    receivedBytes += length + VarInt.getSize(length);
     Slice f;
     if (freeFragments.isEmpty()) {
       f = new Slice(buffer, offset, length);
@@ -127,6 +221,247 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
         offeredFragments.add(f);
       }
     }
+
+    if (isDecodedAhead()) {
+      scheduleDecode();
+    } else {
+      signalReservoirs();
+    }
+  }
+
+  private void signalReservoirs()
+  {
+    final BufferReservoir[] reservoirs = this.reservoirs;
+    for (int i = reservoirs.length; i-- > 0;) {
+      final WakeupSignal signal = reservoirs[i].wakeupSignal;
+      if (signal != null) {
+        signal.signal();
+      }
+    }
+  }
+
+  private boolean isDecodedAhead()
+  {
+    return decodeExecutor != null && !persistStream;
+  }
+
+  private void scheduleDecode()
+  {
+    if (decoding.compareAndSet(false, true)) {
+      try {
+        decodeExecutor.execute(decoder);
+      } catch (RejectedExecutionException ex) {
+        /* the container is shutting down */
+        decoding.set(false);
+      }
+    }
+  }
+
+  /**
+   * Decodes the fragments received so far into the queue of decoded tuples until either is exhausted. It stops at a
+   * full queue and is scheduled again by the reservoir which makes room in it.
+   */
+  private void decode()
+  {
+    try {
+      do {
+        int count;
+        do {
+          synchronized (backlog) {
+            count = decode(null, decodedTargets);
+          }
+          if (count > 0) {
+            signalReservoirs();
+          }
+        } while (count > 0);
+
+        if (decodedTuples.remainingCapacity() == 0) {
+          decoderStalled = true;
+        }
+        decoding.set(false);
+        /* recheck for the fragments which arrived or the room which was made after the last attempt */
+      } while (decodedTuples.remainingCapacity() > 0 && hasFragments() && decoding.compareAndSet(false, true));
+    } catch (RuntimeException ex) {
+      logger.error("Failed to decode the tuples of {}", this, ex);
+      failure = ex;
+      signalReservoirs();
+    }
+  }
+
+  private boolean hasFragments()
+  {
+    synchronized (backlog) {
+      return batch != null || !polledFragments.isEmpty() || offeredFragments != polledFragments;
+    }
+  }
+
+  /**
+   * Turns the fragments received from the buffer server into tuples and adds them to the targets, as many as there is
+   * room for in all of them. Called holding the backlog lock.
+   *
+   * @param payloadReservoir reservoir which deserializes the payload, null for the codec of the subscriber
+   * @param targets buffers the tuples are added to
+   * @return number of fragments and batched payloads consumed
+   */
+  private int decode(BufferReservoir payloadReservoir, CircularBuffer<Object>[] targets)
+  {
+    /* find out the minimum remaining capacity in all the other buffers and consume those many tuples from bufferserver */
+    int room = Integer.MAX_VALUE;
+    for (int i = targets.length; i-- > 0;) {
+      if (targets[i].remainingCapacity() < room) {
+        room = targets[i].remainingCapacity();
+      }
+    }
+
+    final long start = System.nanoTime();
+    int count = 0;
+    if (batch != null) {
+      count = unpack(payloadReservoir, targets, room);
+      room -= count;
+    }
+
+    int min = polledFragments.size();
+    if (min == 0) {
+      if (offeredFragments == polledFragments) {
+        if (suspended) {
+          resumeRead();
+          suspended = false;
+        }
+        decodeTime.addAndGet(System.nanoTime() - start);
+        return count;
+      }
+      polledFragments = backlog.remove();
+      min = polledFragments.size();
+    }
+    if (room < min) {
+      min = room;
+    }
+
+    long consumed = 0;
+    while (min-- > 0) {
+      Slice fm = polledFragments.pollUnsafe();
+      if (fm.buffer[fm.offset] == MessageType.PAYLOAD_BATCH_VALUE) {
+        batch = fm;
+        batchOffset = fm.offset + PayloadBatchTuple.HEADER_SIZE;
+        int unpacked = unpack(payloadReservoir, targets, room);
+        count += unpacked;
+        room -= unpacked;
+        if (room < min) {
+          min = room;
+        }
+        continue;
+      }
+      count++;
+      room--;
+      consumed += fm.length + VarInt.getSize(fm.length);
+      Object o = decode(payloadReservoir, fm);
+      freeFragments.offer(fm);
+      if (o == NO_TUPLE) {
+        continue;
+      }
+      if (payloadReservoir != null && payloadReservoir.skipObject) {
+        payloadReservoir.skipObject = false;
+      } else {
+        for (int i = targets.length; i-- > 0;) {
+          targets[i].add(o);
+        }
+      }
+    }
+    consumedBytes += consumed;
+    decodeTime.addAndGet(System.nanoTime() - start);
+    return count;
+  }
+
+  /**
+   * Deserializes the payloads of the batch in a row, as many as there is room for.
+   *
+   * @return number of payloads consumed
+   */
+  private int unpack(BufferReservoir payloadReservoir, CircularBuffer<Object>[] targets, int room)
+  {
+    final Slice fm = batch;
+    final byte[] buffer = fm.buffer;
+    final int limit = fm.offset + fm.length;
+    int offset = batchOffset;
+    int count = 0;
+    while (count < room && offset < limit) {
+      final int length = VarInt.read(buffer, offset, limit, nextOffset);
+      if (nextOffset.integer < 0) {
+        throw new IllegalStateException("Malformed payload batch " + new PayloadBatchTuple(buffer, fm.offset, fm.length));
+      }
+      offset = nextOffset.integer + length;
+      count++;
+      Slice data = new Slice(buffer, nextOffset.integer, length);
+      Object o = payloadReservoir == null ? processPayload(data) : payloadReservoir.processPayload(data);
+      if (payloadReservoir != null && payloadReservoir.skipObject) {
+        payloadReservoir.skipObject = false;
+      } else {
+        for (int i = targets.length; i-- > 0;) {
+          targets[i].add(o);
+        }
+      }
+    }
+
+    if (offset < limit) {
+      batchOffset = offset;
+    } else {
+      consumedBytes += fm.length + VarInt.getSize(fm.length);
+      freeFragments.offer(fm);
+      batch = null;
+    }
+    return count;
+  }
+
+  private Object decode(BufferReservoir payloadReservoir, Slice fm)
+  {
+    com.datatorrent.bufferserver.packet.Tuple data = com.datatorrent.bufferserver.packet.Tuple.getTuple(fm.buffer, fm.offset, fm.length);
+    switch (data.getType()) {
+      case NO_MESSAGE:
+        return NO_TUPLE;
+
+      case CODEC_STATE:
+        dsp.state = data.getData();
+        return NO_TUPLE;
+
+      case RESET_WINDOW:
+        baseSeconds = (long)data.getBaseSeconds() << 32;
+        if (lastWindowId < WindowGenerator.MAX_WINDOW_ID) {
+          return NO_TUPLE;
+        }
+        return new ResetWindowTuple(baseSeconds | data.getWindowWidth());
+
+      case PAYLOAD:
+      case CUSTOM_CONTROL:
+        return payloadReservoir == null ? processPayload(data.getData()) : payloadReservoir.processPayload(data.getData());
+
+      case CHECKPOINT:
+        if (statefulSerde != null) {
+          statefulSerde.resetState();
+        }
+        return new CheckpointTuple(baseSeconds | data.getWindowId());
+
+      case END_WINDOW:
+        //logger.debug("received {}", data);
+        return new EndWindowTuple(baseSeconds | (lastWindowId = data.getWindowId()));
+
+      case END_STREAM:
+        return new EndStreamTuple(baseSeconds | data.getWindowId());
+
+      case BEGIN_WINDOW:
+        return new Tuple(data.getType(), baseSeconds | data.getWindowId());
+
+      default:
+        throw new IllegalArgumentException("Unhandled Message Type " + data.getType());
+    }
+  }
+
+  private Object processPayload(Slice data)
+  {
+    if (statefulSerde == null) {
+      return serde.fromByteArray(data);
+    }
+    dsp.data = data;
+    return statefulSerde.fromDataStatePair(dsp);
   }
 
   @Override
@@ -181,6 +516,7 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     BufferReservoir r = reservoirMap.get(id);
     if (r == null) {
       reservoirMap.put(id, r = new BufferReservoirForPersistStream(capacity, (StreamCodecWrapperForPersistance<Object>)streamCodec));
+      persistStream = true;
       BufferReservoir[] newReservoirs = new BufferReservoir[reservoirs.length + 1];
       newReservoirs[reservoirs.length] = r;
       for (int i = reservoirs.length; i-- > 0;) {
@@ -239,10 +575,11 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     return readByteCount.get();
   }
 
-  class BufferReservoir extends CircularBuffer<Object> implements SweepableReservoir
+  class BufferReservoir extends CircularBuffer<Object> implements SignalingReservoir
   {
     protected boolean skipObject = false;
     private Sink<Object> sink;
+    private volatile WakeupSignal wakeupSignal;
     int count;
 
     BufferReservoir(int capacity)
@@ -265,6 +602,12 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
       return size;
     }
 
+    @Override
+    public void setWakeupSignal(WakeupSignal signal)
+    {
+      wakeupSignal = signal;
+    }
+
     @Override
     public Sink<Object> setSink(Sink<Object> sink)
     {
@@ -278,6 +621,10 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     @Override
     public Tuple sweep()
     {
+      if (failure != null) {
+        throw failure;
+      }
+
       final int size = size();
       if (size > 0) {
         for (int i = 0; i < size; i++) {
@@ -291,21 +638,25 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
         count += size;
       }
 
-      synchronized (backlog) {
-        /* find out the minimum remaining capacity in all the other buffers and consume those many tuples from bufferserver */
-        int min = polledFragments.size();
-        if (min == 0) {
-          if (offeredFragments == polledFragments) {
-            if (suspended) {
-              resumeRead();
-              suspended = false;
-            }
-            return null;
-          }
-          polledFragments = backlog.remove();
-          min = polledFragments.size();
+      if (isDecodedAhead()) {
+        sweepDecoded();
+      } else {
+        synchronized (backlog) {
+          decode(this, reservoirs);
         }
+      }
 
+      return null;
+    }
+
+    /**
+     * Moves the tuples decoded ahead to the reservoirs and lets the decoder continue if it waits for room.
+     */
+    private void sweepDecoded()
+    {
+      final BufferReservoir[] reservoirs = BufferServerSubscriber.this.reservoirs;
+      synchronized (decodedTuples) {
+        int min = decodedTuples.size();
         for (int i = reservoirs.length; i-- > 0;) {
           if (reservoirs[i].remainingCapacity() < min) {
             min = reservoirs[i].remainingCapacity();
@@ -313,84 +664,22 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
         }
 
         while (min-- > 0) {
-          Slice fm = polledFragments.pollUnsafe();
-          com.datatorrent.bufferserver.packet.Tuple data = com.datatorrent.bufferserver.packet.Tuple.getTuple(fm.buffer, fm.offset, fm.length);
-          Object o;
-          switch (data.getType()) {
-            case NO_MESSAGE:
-              freeFragments.offer(fm);
-              continue;
-
-            case CODEC_STATE:
-              dsp.state = data.getData();
-              freeFragments.offer(fm);
-              continue;
-
-            case RESET_WINDOW:
-              baseSeconds = (long)data.getBaseSeconds() << 32;
-              if (lastWindowId < WindowGenerator.MAX_WINDOW_ID) {
-                freeFragments.offer(fm);
-                continue;
-              }
-              o = new ResetWindowTuple(baseSeconds | data.getWindowWidth());
-              break;
-
-            case PAYLOAD:
-              o = processPayload(data);
-              break;
-
-            case CHECKPOINT:
-              if (statefulSerde != null) {
-                statefulSerde.resetState();
-              }
-              o = new CheckpointTuple(baseSeconds | data.getWindowId());
-              break;
-
-            case END_WINDOW:
-              //logger.debug("received {}", data);
-              o = new EndWindowTuple(baseSeconds | (lastWindowId = data.getWindowId()));
-              break;
-
-            case CUSTOM_CONTROL:
-              o = processPayload(data);
-              break;
-
-            case END_STREAM:
-              o = new EndStreamTuple(baseSeconds | data.getWindowId());
-              break;
-
-            case BEGIN_WINDOW:
-              o = new Tuple(data.getType(), baseSeconds | data.getWindowId());
-              break;
-
-            default:
-              throw new IllegalArgumentException("Unhandled Message Type " + data.getType());
-          }
-
-          freeFragments.offer(fm);
-          if (skipObject) {
-            skipObject = false;
-          } else {
-            for (int i = reservoirs.length; i-- > 0;) {
-              reservoirs[i].add(o);
-            }
+          Object o = decodedTuples.pollUnsafe();
+          for (int i = reservoirs.length; i-- > 0;) {
+            reservoirs[i].add(o);
           }
         }
       }
 
-      return null;
+      if (decoderStalled && decodedTuples.remainingCapacity() > 0) {
+        decoderStalled = false;
+        scheduleDecode();
+      }
     }
 
-    protected Object processPayload(com.datatorrent.bufferserver.packet.Tuple data)
+    protected Object processPayload(Slice data)
     {
-      Object o;
-      if (statefulSerde == null) {
-        o = serde.fromByteArray(data.getData());
-      } else {
-        dsp.data = data.getData();
-        o = statefulSerde.fromDataStatePair(dsp);
-      }
-      return o;
+      return BufferServerSubscriber.this.processPayload(data);
     }
 
     @Override
@@ -418,9 +707,9 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     }
 
     @Override
-    protected Object processPayload(com.datatorrent.bufferserver.packet.Tuple data)
+    protected Object processPayload(Slice data)
     {
-      Object o = wrapperStreamCodec.fromByteArray(data.getData());
+      Object o = wrapperStreamCodec.fromByteArray(data);
       if (!wrapperStreamCodec.shouldCaptureEvent(o)) {
         skipObject = true;
       }
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.apex.api.operator.ControlTuple;
 
 import com.datatorrent.stram.engine.AbstractReservoir;
+import com.datatorrent.stram.engine.NodeWorkerPool;
 import com.datatorrent.stram.engine.Stream;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.engine.SweepableReservoir;
@@ -91,7 +92,9 @@ public class InlineStream implements Stream
   public void put(Object tuple)
   {
     try {
-      reservoir.put(tuple);
+      if (!NodeWorkerPool.offer(reservoir, tuple)) {
+        reservoir.put(tuple);
+      }
       if (!(tuple instanceof Tuple)) {
         count++;
       }
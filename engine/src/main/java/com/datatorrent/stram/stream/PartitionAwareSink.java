@@ -22,6 +22,7 @@ import java.util.Set;
 
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
+import com.datatorrent.bufferserver.util.PartitionBitmap;
 import com.datatorrent.stram.tuple.Tuple;
 
 /**
@@ -33,8 +34,7 @@ import com.datatorrent.stram.tuple.Tuple;
 public class PartitionAwareSink<T> implements Sink<T>
 {
   private final StreamCodec<T> serde;
-  private final Set<Integer> partitions;
-  private final int mask;
+  private final PartitionBitmap partitions;
   private volatile Sink<T> output;
   private int count;
 
@@ -48,9 +48,8 @@ public class PartitionAwareSink<T> implements Sink<T>
   public PartitionAwareSink(StreamCodec<T> serde, Set<Integer> partitions, int mask, Sink<T> output)
   {
     this.serde = serde;
-    this.partitions = partitions;
+    this.partitions = new PartitionBitmap(partitions, mask);
     this.output = output;
-    this.mask = mask;
   }
 
   /**
@@ -71,7 +70,7 @@ public class PartitionAwareSink<T> implements Sink<T>
 
   protected boolean canSendToOutput(T payload)
   {
-    return partitions.contains(serde.getPartition(payload) & mask);
+    return partitions.matches(serde.getPartition(payload));
   }
 
   @Override
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.stram.engine.StreamContext;
+
+/**
+ * Publisher of a stream with node local subscribers which, in addition to publishing to the buffer server, writes the
+ * tuples to a shared memory ring for each of the node local subscribers.<p>
+ * <br>
+ * The buffer server retains the tuples for the other subscribers and for the replay after a failure, while the node
+ * local subscribers read them from the rings instead of from the buffer server.<br>
+ *
+ * @see SharedMemorySubscriber
+ * @since 3.7.0
+ */
+public class SharedMemoryPublisher extends BufferServerPublisher
+{
+  private final List<File> files;
+  private final int ringCapacity;
+  private final ArrayList<SharedMemoryRing> rings = new ArrayList<>();
+
+  /**
+   * @param sourceId identifier of the publisher
+   * @param queueCapacity capacity of the queue to the buffer server
+   * @param files ring files of the node local subscribers
+   * @param ringCapacity size of each ring in bytes
+   */
+  public SharedMemoryPublisher(String sourceId, int queueCapacity, List<File> files, int ringCapacity)
+  {
+    super(sourceId, queueCapacity);
+    this.files = files;
+    this.ringCapacity = ringCapacity;
+  }
+
+  @Override
+  public void activate(StreamContext context)
+  {
+    for (File file : files) {
+      try {
+        rings.add(SharedMemoryRing.create(file, ringCapacity, context.getFinishedWindowId()));
+      } catch (IOException ex) {
+        logger.warn("Subscriber of {} falls back to the buffer server, cannot create {}", context.getSourceId(), file, ex);
+      }
+    }
+    logger.debug("Publishing {} to rings {}", context.getSourceId(), rings);
+    super.activate(context);
+  }
+
+  @Override
+  protected void onPublish(byte[] buffer, int offset, int size)
+  {
+    for (int i = rings.size(); i-- > 0;) {
+      final SharedMemoryRing ring = rings.get(i);
+      if (!ring.write(buffer, offset, size)) {
+        logger.warn("Detached {}, the subscriber reads from the buffer server", ring);
+        rings.remove(i);
+      }
+    }
+  }
+
+  @Override
+  public void deactivate()
+  {
+    for (SharedMemoryRing ring : rings) {
+      ring.close();
+    }
+    rings.clear();
+    super.deactivate();
+  }
+
+  @Override
+  public void teardown()
+  {
+    for (File file : files) {
+      if (file.exists() && !file.delete()) {
+        logger.warn("Cannot delete {}", file);
+      }
+      /* the directory of the application is left in place while other rings are in it */
+      file.getParentFile().delete();
+    }
+    super.teardown();
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(SharedMemoryPublisher.class);
+}
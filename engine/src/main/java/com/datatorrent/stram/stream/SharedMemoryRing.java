@@ -0,0 +1,371 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jctools.util.UnsafeAccess;
+
+/**
+ * <p>Single producer single consumer ring of length prefixed records in a memory mapped file.</p>
+ *
+ * The publishing and the subscribing containers of a node local stream map the same file so that the serialized tuples
+ * cross the process boundary without going through a socket. The file starts with a header holding the state of the
+ * ring followed by the data region. The positions in the header only grow; the writer publishes a record by moving the
+ * write position past it and the reader releases it by moving the read position past it.
+ *
+ * The writer waits for the reader while the ring is full as long as the reader keeps its heartbeat in the header
+ * fresh. A ring without a live reader is detached; nothing is written to it anymore and the subscriber falls back to
+ * the buffer server.
+ *
+ * @since 3.7.0
+ */
+public class SharedMemoryRing
+{
+  static final int MAGIC = 0x41505852;
+  public static final int OPEN = 0;
+  public static final int CLOSED = 1;
+  public static final int DETACHED = 2;
+  /**
+   * Time in milliseconds after which the writer considers a reader which did not update its heartbeat dead.
+   */
+  static final long READER_TIMEOUT_MILLIS = 10000;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int CAPACITY_OFFSET = 4;
+  private static final int WINDOW_ID_OFFSET = 8;
+  private static final int STATE_OFFSET = 16;
+  private static final int ATTACHED_OFFSET = 20;
+  /* the positions are kept on separate cache lines */
+  private static final int WRITE_POSITION_OFFSET = 64;
+  private static final int READ_POSITION_OFFSET = 128;
+  private static final int HEARTBEAT_OFFSET = 136;
+  private static final int HEADER_SIZE = 192;
+  /**
+   * Largest data region of a ring, which is mapped along with its header in a single buffer.
+   */
+  public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) & ~3;
+  private static final int WRAP = -1;
+  private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  private static final long ADDRESS_OFFSET;
+
+  static {
+    try {
+      Field field = Buffer.class.getDeclaredField("address");
+      ADDRESS_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(field);
+    } catch (NoSuchFieldException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private final File file;
+  private final MappedByteBuffer buffer;
+  private final long address;
+  private final int capacity;
+  private final ByteBuffer data;
+  /* cached positions of this side of the ring and the last seen position of the other side */
+  private long writePosition;
+  private long readPosition;
+  private long lastHeartbeatMillis;
+
+  private SharedMemoryRing(File file, MappedByteBuffer buffer)
+  {
+    this.file = file;
+    this.buffer = buffer;
+    this.address = UnsafeAccess.UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+    this.capacity = buffer.getInt(CAPACITY_OFFSET);
+    buffer.position(HEADER_SIZE);
+    this.data = buffer.slice();
+    writePosition = getLongVolatile(WRITE_POSITION_OFFSET);
+    readPosition = getLongVolatile(READ_POSITION_OFFSET);
+  }
+
+  /**
+   * Create the ring file for the writer. The file is prepared under a temporary name and renamed once its header is
+   * complete so that a reader never maps a partially initialized ring.
+   *
+   * @param file the ring file
+   * @param capacity size of the data region in bytes, rounded up to a multiple of 4
+   * @param windowId the window the writer starts after
+   * @return the ring
+   * @throws IOException if the file cannot be created
+   */
+  public static SharedMemoryRing create(File file, int capacity, long windowId) throws IOException
+  {
+    capacity = align(capacity);
+    File parent = file.getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Cannot create directory " + parent);
+    }
+    File tmp = new File(file.getPath() + ".tmp");
+    MappedByteBuffer buffer;
+    try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+      raf.setLength(HEADER_SIZE + capacity);
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+    }
+    buffer.putInt(CAPACITY_OFFSET, capacity);
+    buffer.putLong(WINDOW_ID_OFFSET, windowId);
+    buffer.putInt(STATE_OFFSET, OPEN);
+    buffer.putInt(MAGIC_OFFSET, MAGIC);
+    buffer.force();
+    if (!tmp.renameTo(file)) {
+      throw new IOException("Cannot rename " + tmp + " to " + file);
+    }
+    return new SharedMemoryRing(file, buffer);
+  }
+
+  /**
+   * Map an existing ring file for the reader.
+   *
+   * @param file the ring file
+   * @return the ring or null if the file does not exist or is not a ring
+   * @throws IOException if the file cannot be mapped
+   */
+  public static SharedMemoryRing open(File file) throws IOException
+  {
+    if (!file.isFile()) {
+      return null;
+    }
+
+    MappedByteBuffer buffer;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      if (raf.length() < HEADER_SIZE) {
+        return null;
+      }
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+    }
+    if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(CAPACITY_OFFSET) + HEADER_SIZE != buffer.capacity()) {
+      return null;
+    }
+    return new SharedMemoryRing(file, buffer);
+  }
+
+  private static int align(int size)
+  {
+    return (size + 3) & ~3;
+  }
+
+  private long getLongVolatile(int offset)
+  {
+    return UnsafeAccess.UNSAFE.getLongVolatile(null, address + offset);
+  }
+
+  private void putLongOrdered(int offset, long value)
+  {
+    UnsafeAccess.UNSAFE.putOrderedLong(null, address + offset, value);
+  }
+
+  private int getIntVolatile(int offset)
+  {
+    return UnsafeAccess.UNSAFE.getIntVolatile(null, address + offset);
+  }
+
+  private void putIntVolatile(int offset, int value)
+  {
+    UnsafeAccess.UNSAFE.putIntVolatile(null, address + offset, value);
+  }
+
+  public File getFile()
+  {
+    return file;
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * @return the window the writer started after
+   */
+  public long getWindowId()
+  {
+    return buffer.getLong(WINDOW_ID_OFFSET);
+  }
+
+  public int getState()
+  {
+    return getIntVolatile(STATE_OFFSET);
+  }
+
+  public boolean isAttached()
+  {
+    return getIntVolatile(ATTACHED_OFFSET) != 0;
+  }
+
+  /**
+   * Called by the writer when it stops writing to the ring.
+   */
+  public void close()
+  {
+    if (getState() == OPEN) {
+      putIntVolatile(STATE_OFFSET, CLOSED);
+    }
+  }
+
+  /**
+   * Append a record to the ring. Waits for the reader to release space while the ring is full and the reader is
+   * alive, otherwise detaches the ring.
+   *
+   * @param array array holding the record
+   * @param offset offset of the record in the array
+   * @param length length of the record
+   * @return false if the ring is detached and the record was not written
+   */
+  public boolean write(byte[] array, int offset, int length)
+  {
+    if (getState() != OPEN) {
+      return false;
+    }
+
+    final int size = align(4 + length);
+    int index = (int)(writePosition % capacity);
+    int padding = capacity - index < size ? capacity - index : 0;
+    while (writePosition + padding + size - readPosition > capacity) {
+      readPosition = getLongVolatile(READ_POSITION_OFFSET);
+      if (writePosition + padding + size - readPosition <= capacity) {
+        break;
+      }
+      if (size > capacity || !isReaderAlive()) {
+        putIntVolatile(STATE_OFFSET, DETACHED);
+        return false;
+      }
+      LockSupport.parkNanos(this, WAIT_NANOS);
+    }
+
+    if (padding > 0) {
+      data.putInt(index, WRAP);
+      writePosition += padding;
+      index = 0;
+    }
+    data.putInt(index, length);
+    data.position(index + 4);
+    data.put(array, offset, length);
+    writePosition += size;
+    putLongOrdered(WRITE_POSITION_OFFSET, writePosition);
+    return true;
+  }
+
+  private boolean isReaderAlive()
+  {
+    if (!isAttached()) {
+      return false;
+    }
+    final long now = System.currentTimeMillis();
+    final long heartbeat = getLongVolatile(HEARTBEAT_OFFSET);
+    return now - heartbeat < READER_TIMEOUT_MILLIS;
+  }
+
+  /**
+   * Called by the reader before it starts reading the ring. A ring can be attached only once, a reader which replaces
+   * a failed one has to replay its data from the buffer server.
+   *
+   * @return false if the ring is not open or a reader already attached to it
+   */
+  public boolean attach()
+  {
+    if (getState() != OPEN || isAttached()) {
+      return false;
+    }
+    /* the heartbeat is fresh before the writer can see the ring attached, a reader which loses the race leaves it */
+    heartbeat();
+    return UnsafeAccess.UNSAFE.compareAndSwapInt(null, address + ATTACHED_OFFSET, 0, 1);
+  }
+
+  /**
+   * Tell the writer that the reader is alive. Called by the reader at least once every few seconds, also while it is
+   * not reading.
+   */
+  public void heartbeat()
+  {
+    final long now = System.currentTimeMillis();
+    if (now != lastHeartbeatMillis) {
+      lastHeartbeatMillis = now;
+      putLongOrdered(HEARTBEAT_OFFSET, now);
+    }
+  }
+
+  /**
+   * @return length of the next record, 0 if the writer did not write it yet
+   */
+  public int available()
+  {
+    if (readPosition == writePosition) {
+      writePosition = getLongVolatile(WRITE_POSITION_OFFSET);
+      if (readPosition == writePosition) {
+        return 0;
+      }
+    }
+
+    final int index = (int)(readPosition % capacity);
+    final int length = data.getInt(index);
+    if (length == WRAP) {
+      readPosition += capacity - index;
+      putLongOrdered(READ_POSITION_OFFSET, readPosition);
+      return available();
+    }
+    return length;
+  }
+
+  /**
+   * Copy the next record to the array and release it to the writer. Must follow {@link #available()} which returned
+   * the length of the record.
+   *
+   * @param array destination array
+   * @param offset offset in the destination array
+   * @param length length of the record as returned by {@link #available()}
+   */
+  public void read(byte[] array, int offset, int length)
+  {
+    final int index = (int)(readPosition % capacity);
+    data.position(index + 4);
+    data.get(array, offset, length);
+    readPosition += align(4 + length);
+    putLongOrdered(READ_POSITION_OFFSET, readPosition);
+  }
+
+  /**
+   * Location of the ring carrying the tuples of a publisher to a node local subscriber.
+   *
+   * @param directory directory shared by the containers on the host
+   * @param appId id of the application
+   * @param bufferServerPort port of the buffer server the publisher is connected to
+   * @param sourceId identifier of the publisher
+   * @param sinkId identifier of the subscriber
+   * @return the ring file
+   */
+  public static File getFile(String directory, String appId, int bufferServerPort, String sourceId, String sinkId)
+  {
+    return new File(new File(directory, "apex-" + appId), bufferServerPort + "-" + sourceId + "-" + sinkId + ".ring");
+  }
+
+  @Override
+  public String toString()
+  {
+    return "SharedMemoryRing{file=" + file + ", capacity=" + capacity + ", state=" + getState() + '}';
+  }
+}
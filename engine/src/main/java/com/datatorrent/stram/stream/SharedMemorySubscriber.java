@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.bufferserver.util.PartitionBitmap;
+import com.datatorrent.stram.engine.StreamContext;
+
+/**
+ * Node local subscriber which reads the tuples from the shared memory ring written by the {@link SharedMemoryPublisher}
+ * instead of from the buffer server.<p>
+ * <br>
+ * The ring holds the tuples the publisher emitted after its checkpoint. The subscriber reads the ring only when it
+ * starts from the same checkpoint and falls back to the buffer server otherwise: when the ring does not show up in
+ * time, when the publisher started after the checkpoint of the subscriber, when the ring would replay windows the
+ * subscriber already finished or when another subscriber read the ring before, i.e. the subscriber is recovering.
+ * <br>
+ *
+ * @since 3.7.0
+ */
+public class SharedMemorySubscriber extends BufferServerSubscriber
+{
+  /**
+   * Time in milliseconds the subscriber waits for the publisher to create the ring.
+   */
+  static final long OPEN_TIMEOUT_MILLIS = 30000;
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private final File file;
+  private final AtomicLong ringByteCount = new AtomicLong();
+  private volatile boolean active;
+  private volatile boolean readSuspended;
+  private volatile SharedMemoryRing ring;
+  private Thread reader;
+  private StreamContext context;
+  private PartitionBitmap partitions;
+  private byte[] chunk = new byte[CHUNK_SIZE];
+  private int chunkOffset;
+
+  public SharedMemorySubscriber(String id, int queueCapacity, File file)
+  {
+    super(id, queueCapacity);
+    this.file = file;
+  }
+
+  @Override
+  public void activate(final StreamContext context)
+  {
+    this.context = context;
+    if (context.getPartitionMask() != 0 && context.getPartitions() != null) {
+      partitions = new PartitionBitmap(context.getPartitions(), context.getPartitionMask());
+    }
+
+    active = true;
+    reader = new Thread("shm:" + context.getSinkId())
+    {
+      @Override
+      public void run()
+      {
+        try {
+          if (attach()) {
+            readRing();
+          }
+        } catch (Exception ex) {
+          logger.error("Stopped reading {}", file, ex);
+          failure = new RuntimeException("Stopped reading " + file, ex);
+        }
+      }
+    };
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * Map and attach to the ring, otherwise connect to the buffer server.
+   *
+   * @return true if the tuples should be read from the ring
+   */
+  private boolean attach() throws IOException
+  {
+    final long finishedWindowId = context.getFinishedWindowId();
+    final long timeout = System.currentTimeMillis() + OPEN_TIMEOUT_MILLIS;
+    SharedMemoryRing ring = SharedMemoryRing.open(file);
+    while (ring == null && active && System.currentTimeMillis() < timeout) {
+      LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+      ring = SharedMemoryRing.open(file);
+    }
+
+    synchronized (this) {
+      if (!active) {
+        return false;
+      }
+      if (ring != null && ring.getWindowId() == finishedWindowId && ring.attach()) {
+        logger.debug("Reading {} from {} windowId={}", context.getSinkId(), ring, Codec.getStringWindowId(finishedWindowId));
+        this.ring = ring;
+        return true;
+      }
+      logger.info("Subscriber {} falls back to the buffer server, cannot read from {}", context.getSinkId(), ring == null ? file : ring);
+      super.activate(context);
+      return false;
+    }
+  }
+
+  private void readRing()
+  {
+    long idleNanos = 0;
+    while (active) {
+      ring.heartbeat();
+      final int length = readSuspended ? 0 : ring.available();
+      if (length == 0) {
+        if (!readSuspended && ring.getState() != SharedMemoryRing.OPEN && ring.available() == 0) {
+          if (ring.getState() == SharedMemoryRing.DETACHED) {
+            throw new IllegalStateException("Publisher detached " + ring);
+          }
+          logger.debug("Publisher closed {}", ring);
+          break;
+        }
+        /* the publisher cannot signal across processes, back off up to a millisecond */
+        idleNanos = Math.min(MAX_IDLE_NANOS, idleNanos == 0 ? 1000 : idleNanos << 1);
+        LockSupport.parkNanos(this, idleNanos);
+        continue;
+      }
+
+      idleNanos = 0;
+      if (CHUNK_SIZE - chunkOffset < length) {
+        /* the slices handed over to the reservoirs still refer to the full chunk */
+        chunk = new byte[Math.max(CHUNK_SIZE, length)];
+        chunkOffset = 0;
+      }
+      ring.read(chunk, chunkOffset, length);
+      ringByteCount.addAndGet(length);
+      if (accept(chunk, chunkOffset)) {
+        onMessage(chunk, chunkOffset, length);
+      }
+      chunkOffset += length;
+    }
+  }
+
+  /**
+   * Filter the payload tuples by the partitions of the subscriber, as the buffer server does for its subscribers.
+   */
+  private boolean accept(byte[] buffer, int offset)
+  {
+    return partitions == null
+        || buffer[offset] != MessageType.PAYLOAD_VALUE && buffer[offset] != MessageType.PAYLOAD_BATCH_VALUE
+        || partitions.matches(PayloadTuple.getPartition(buffer, offset));
+  }
+
+  @Override
+  public void suspendRead()
+  {
+    if (ring == null) {
+      super.suspendRead();
+    } else {
+      readSuspended = true;
+    }
+  }
+
+  @Override
+  public void resumeRead()
+  {
+    if (ring == null) {
+      super.resumeRead();
+    } else {
+      readSuspended = false;
+    }
+  }
+
+  @Override
+  public void deactivate()
+  {
+    final boolean connected;
+    synchronized (this) {
+      active = false;
+      /* the event loop is set once the subscriber fell back to the buffer server */
+      connected = ring == null && eventloop != null;
+    }
+
+    try {
+      reader.join(1000);
+    } catch (InterruptedException ex) {
+      logger.debug("Interrupted while waiting for {} to stop", reader, ex);
+    }
+
+    if (connected) {
+      super.deactivate();
+    }
+  }
+
+  @Override
+  public long getByteCount(boolean reset)
+  {
+    return super.getByteCount(reset) + (reset ? ringByteCount.getAndSet(0) : ringByteCount.get());
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(SharedMemorySubscriber.class);
+}
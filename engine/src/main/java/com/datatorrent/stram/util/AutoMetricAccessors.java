@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.util;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.google.common.base.Throwables;
+
+import com.datatorrent.api.AutoMetric;
+
+/**
+ * Accessors for the {@link AutoMetric} fields and getters of a class.
+ * <p>
+ * Members are resolved once per class into method handles adapted to {@code (Object)Object}, so reading the metrics
+ * of an operator every window does not repeat the reflective lookup and access checks of {@link Field#get} and
+ * {@link Method#invoke}. Fields come before getters; a getter with the same name as a field takes precedence when
+ * the values are collected into a map. The accessors are kept in a {@link ClassValue}, so they do not keep the
+ * classes of an application, and the class loader that loaded them, from being unloaded.
+ *
+ * @since 3.7.0
+ */
+public final class AutoMetricAccessors
+{
+  private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final ClassValue<AutoMetricAccessors> accessors = new ClassValue<AutoMetricAccessors>()
+  {
+    @Override
+    protected AutoMetricAccessors computeValue(Class<?> type)
+    {
+      return create(type);
+    }
+  };
+
+  private final String[] names;
+  private final MethodHandle[] handles;
+
+  private AutoMetricAccessors(List<String> names, List<MethodHandle> handles)
+  {
+    this.names = names.toArray(new String[names.size()]);
+    this.handles = handles.toArray(new MethodHandle[handles.size()]);
+  }
+
+  /**
+   * Returns the accessors for the given class, creating them on first use.
+   *
+   * @param clazz class with {@link AutoMetric} members
+   * @return accessors, empty when the class has no metrics
+   */
+  public static AutoMetricAccessors get(Class<?> clazz)
+  {
+    return accessors.get(clazz);
+  }
+
+  private static AutoMetricAccessors create(Class<?> clazz)
+  {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    List<String> names = new ArrayList<>();
+    List<MethodHandle> handles = new ArrayList<>();
+    try {
+      for (Field field : ReflectionUtils.getDeclaredFieldsIncludingInherited(clazz)) {
+        if (field.isAnnotationPresent(AutoMetric.class)) {
+          field.setAccessible(true);
+          names.add(field.getName());
+          handles.add(lookup.unreflectGetter(field).asType(ACCESSOR_TYPE));
+        }
+      }
+      for (PropertyDescriptor pd : Introspector.getBeanInfo(clazz).getPropertyDescriptors()) {
+        Method readMethod = pd.getReadMethod();
+        if (readMethod != null && readMethod.isAnnotationPresent(AutoMetric.class)) {
+          readMethod.setAccessible(true);
+          names.add(pd.getName());
+          handles.add(lookup.unreflect(readMethod).asType(ACCESSOR_TYPE));
+        }
+      }
+    } catch (IntrospectionException | IllegalAccessException e) {
+      throw new RuntimeException("introspecting " + clazz, e);
+    }
+    return new AutoMetricAccessors(names, handles);
+  }
+
+  /**
+   * @return number of metric members, including fields shadowed by getters
+   */
+  public int size()
+  {
+    return names.length;
+  }
+
+  public String getName(int index)
+  {
+    return names[index];
+  }
+
+  /**
+   * Reads a metric value.
+   *
+   * @param index index of the metric
+   * @param object instance of the class the accessors were created for
+   * @return metric value
+   */
+  public Object getValue(int index, Object object)
+  {
+    try {
+      return handles[index].invokeExact(object);
+    } catch (Throwable t) {
+      throw Throwables.propagate(t);
+    }
+  }
+
+  /**
+   * Reads the metric values into a new map.
+   *
+   * @param object instance of the class the accessors were created for
+   * @param filter names of the metrics to read, all metrics when null
+   * @return metric name to value
+   */
+  public Map<String, Object> getValues(Object object, Collection<String> filter)
+  {
+    Map<String, Object> values = new HashMap<>(names.length * 4 / 3 + 1);
+    for (int i = 0; i < names.length; i++) {
+      if (filter == null || filter.contains(names[i])) {
+        values.put(names[i], getValue(i, object));
+      }
+    }
+    return values;
+  }
+
+}
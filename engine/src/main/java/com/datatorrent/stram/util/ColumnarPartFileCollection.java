@@ -0,0 +1,253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>FSPartFileCollection that stores records in compressed columnar blocks.</p>
+ *
+ * Rows added with {@link #addRow(long, String, Map)} are buffered and written as one block when the data is flushed.
+ * Each block starts with a header holding its length, the smallest and largest row timestamp and the row count, so
+ * a reader can skip blocks outside of a time range without inflating them. The timestamps and keys of the rows
+ * follow in one deflated section and every column in a deflated section of its own, so a reader inflates only the
+ * columns it asks for. The time range of the rows in a part file is appended to its index line.
+ *
+ * @see ColumnarPartFileReader
+ * @since 3.7.0
+ */
+public class ColumnarPartFileCollection extends FSPartFileCollection
+{
+  /**
+   * Version written to the meta file of collections in this format.
+   */
+  public static final String VERSION = "2.0";
+  /**
+   * Version of the collections that store one JSON line per record.
+   */
+  public static final String JSON_LINES_VERSION = "1.0";
+  static final int BLOCK_MAGIC = 0x53424c4b;
+  private static final int MAX_ROWS_PER_BLOCK = 4096;
+  private final List<Row> rows = new ArrayList<>();
+  private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+  private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+  private long partFileMinTimestamp = Long.MAX_VALUE;
+  private long partFileMaxTimestamp = Long.MIN_VALUE;
+
+  private static class Row
+  {
+    final long timestamp;
+    final String key;
+    final Map<String, String> cells;
+
+    Row(long timestamp, String key, Map<String, String> cells)
+    {
+      this.timestamp = timestamp;
+      this.key = key;
+      this.cells = cells;
+    }
+
+  }
+
+  /**
+   * Buffers a row until the next flush. Rows do not need to have the same columns, a column missing from a row is
+   * read back as null.
+   *
+   * @param timestamp the time of the row
+   * @param key the key of the row, for example the id of the operator the row belongs to
+   * @param cells the values of the row by column name
+   * @throws IOException if the row completes a block and the block cannot be written
+   */
+  public void addRow(long timestamp, String key, Map<String, String> cells) throws IOException
+  {
+    rows.add(new Row(timestamp, key, new LinkedHashMap<>(cells)));
+    if (rows.size() >= MAX_ROWS_PER_BLOCK) {
+      writeBlock();
+    }
+  }
+
+  @Override
+  public boolean flushData() throws IOException
+  {
+    writeBlock();
+    return super.flushData();
+  }
+
+  @Override
+  public void teardown()
+  {
+    try {
+      writeBlock();
+    } catch (IOException ex) {
+      LOG.error("Cannot write the last block", ex);
+    }
+    super.teardown();
+    deflater.end();
+  }
+
+  private void writeBlock() throws IOException
+  {
+    if (rows.isEmpty()) {
+      return;
+    }
+    long minTimestamp = Long.MAX_VALUE;
+    long maxTimestamp = Long.MIN_VALUE;
+    Set<String> columnNames = new LinkedHashSet<>();
+    for (Row row : rows) {
+      minTimestamp = Math.min(minTimestamp, row.timestamp);
+      maxTimestamp = Math.max(maxTimestamp, row.timestamp);
+      columnNames.addAll(row.cells.keySet());
+    }
+
+    blockBytes.reset();
+    DataOutputStream block = new DataOutputStream(blockBytes);
+    block.writeInt(BLOCK_MAGIC);
+    block.writeInt(0); // length, filled in below
+    block.writeLong(minTimestamp);
+    block.writeLong(maxTimestamp);
+    block.writeInt(rows.size());
+
+    DataOutputStream section = startSection();
+    long previous = minTimestamp;
+    for (Row row : rows) {
+      writeVarLong(section, row.timestamp - previous);
+      previous = row.timestamp;
+    }
+    for (Row row : rows) {
+      writeString(section, row.key);
+    }
+    endSection(section, block);
+
+    block.writeInt(columnNames.size());
+    for (String name : columnNames) {
+      block.writeUTF(name);
+      section = startSection();
+      for (Row row : rows) {
+        writeString(section, row.cells.get(name));
+      }
+      endSection(section, block);
+    }
+    block.flush();
+
+    byte[] bytes = blockBytes.toByteArray();
+    int length = bytes.length - 8;
+    bytes[4] = (byte)(length >>> 24);
+    bytes[5] = (byte)(length >>> 16);
+    bytes[6] = (byte)(length >>> 8);
+    bytes[7] = (byte)length;
+    writeDataItems(bytes, 0, bytes.length, rows.size());
+    partFileMinTimestamp = Math.min(partFileMinTimestamp, minTimestamp);
+    partFileMaxTimestamp = Math.max(partFileMaxTimestamp, maxTimestamp);
+    rows.clear();
+  }
+
+  private DataOutputStream startSection()
+  {
+    sectionBytes.reset();
+    deflater.reset();
+    return new DataOutputStream(new DeflaterOutputStream(sectionBytes, deflater));
+  }
+
+  private void endSection(DataOutputStream section, DataOutputStream block) throws IOException
+  {
+    section.close();
+    block.writeInt(sectionBytes.size());
+    sectionBytes.writeTo(block);
+  }
+
+  @Override
+  protected String getIndexExtraInfo()
+  {
+    if (partFileMinTimestamp > partFileMaxTimestamp) {
+      return null;
+    }
+    return partFileMinTimestamp + "-" + partFileMaxTimestamp;
+  }
+
+  @Override
+  protected void resetIndexExtraInfo()
+  {
+    partFileMinTimestamp = Long.MAX_VALUE;
+    partFileMaxTimestamp = Long.MIN_VALUE;
+  }
+
+  static void writeVarLong(DataOutput out, long value) throws IOException
+  {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.writeByte((int)((zigzag & 0x7F) | 0x80));
+      zigzag >>>= 7;
+    }
+    out.writeByte((int)zigzag);
+  }
+
+  static long readVarLong(DataInput in) throws IOException
+  {
+    long zigzag = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.readByte();
+      zigzag |= (long)(b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  static void writeString(DataOutput out, String value) throws IOException
+  {
+    if (value == null) {
+      writeVarLong(out, 0);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeVarLong(out, bytes.length + 1);
+      out.write(bytes);
+    }
+  }
+
+  static String readString(DataInput in) throws IOException
+  {
+    int length = (int)readVarLong(in) - 1;
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(ColumnarPartFileCollection.class);
+}
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+/**
+ * <p>Reads the blocks of a part file written by {@link ColumnarPartFileCollection}.</p>
+ *
+ * Blocks outside of the requested time range are skipped by seeking over them, and only the requested columns of
+ * a block are inflated. A block that is cut short because the part file is still being written ends the file.
+ *
+ * @since 3.7.0
+ */
+public class ColumnarPartFileReader implements Closeable
+{
+  private final FSDataInputStream in;
+  private final Inflater inflater = new Inflater();
+  private long nextBlockPosition;
+
+  public ColumnarPartFileReader(FSDataInputStream in) throws IOException
+  {
+    this.in = in;
+    this.nextBlockPosition = in.getPos();
+  }
+
+  /**
+   * A block with its row timestamps and keys decoded.
+   */
+  public class Block
+  {
+    public final int rowCount;
+    public final long[] timestamps;
+    public final String[] keys;
+    private final long columnsPosition;
+
+    private Block(int rowCount, long[] timestamps, String[] keys, long columnsPosition)
+    {
+      this.rowCount = rowCount;
+      this.timestamps = timestamps;
+      this.keys = keys;
+      this.columnsPosition = columnsPosition;
+    }
+
+    /**
+     * Decodes columns of this block. Must be called before the next block is read.
+     *
+     * @param names the columns to decode, or null for all columns
+     * @return the values of the decoded columns by column name, with null for rows that do not have the column
+     * @throws IOException if the columns cannot be read
+     */
+    public Map<String, String[]> readColumns(Collection<String> names) throws IOException
+    {
+      Map<String, String[]> columns = new LinkedHashMap<>();
+      in.seek(columnsPosition);
+      int columnCount = in.readInt();
+      for (int i = 0; i < columnCount; i++) {
+        String name = in.readUTF();
+        int length = in.readInt();
+        if (names != null && !names.contains(name)) {
+          in.seek(in.getPos() + length);
+          continue;
+        }
+        DataInputStream section = inflate(length);
+        String[] values = new String[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+          values[row] = ColumnarPartFileCollection.readString(section);
+        }
+        columns.put(name, values);
+      }
+      return columns;
+    }
+
+  }
+
+  /**
+   * Returns the next block that has rows in the given time range.
+   *
+   * @param from the start of the time range, or null
+   * @param to the end of the time range, or null
+   * @return the block, or null when there are no more complete blocks
+   * @throws IOException if the file cannot be read or is not in the expected format
+   */
+  public Block nextBlock(Long from, Long to) throws IOException
+  {
+    try {
+      while (true) {
+        in.seek(nextBlockPosition);
+        int magic = in.readInt();
+        if (magic != ColumnarPartFileCollection.BLOCK_MAGIC) {
+          throw new IOException("Invalid block at position " + nextBlockPosition);
+        }
+        int length = in.readInt();
+        long blockStart = in.getPos();
+        nextBlockPosition = blockStart + length;
+        long minTimestamp = in.readLong();
+        long maxTimestamp = in.readLong();
+        int rowCount = in.readInt();
+        if ((from != null && maxTimestamp < from) || (to != null && minTimestamp > to)) {
+          continue;
+        }
+        if (!isComplete(nextBlockPosition)) {
+          return null;
+        }
+        DataInputStream section = inflate(in.readInt());
+        long[] timestamps = new long[rowCount];
+        long timestamp = minTimestamp;
+        for (int i = 0; i < rowCount; i++) {
+          timestamp += ColumnarPartFileCollection.readVarLong(section);
+          timestamps[i] = timestamp;
+        }
+        String[] keys = new String[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+          keys[i] = ColumnarPartFileCollection.readString(section);
+        }
+        return new Block(rowCount, timestamps, keys, in.getPos());
+      }
+    } catch (EOFException ex) {
+      return null;
+    }
+  }
+
+  private boolean isComplete(long blockEnd) throws IOException
+  {
+    long position = in.getPos();
+    try {
+      in.seek(blockEnd - 1);
+      return in.read() >= 0;
+    } catch (EOFException ex) {
+      return false;
+    } finally {
+      in.seek(position);
+    }
+  }
+
+  private DataInputStream inflate(int length) throws IOException
+  {
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    inflater.reset();
+    return new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes), inflater));
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    inflater.end();
+    in.close();
+  }
+
+}
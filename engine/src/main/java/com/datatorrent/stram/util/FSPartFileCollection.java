@@ -151,15 +151,23 @@ public class FSPartFileCollection
   }
 
   public void writeDataItem(byte[] bytes, boolean incrementItemCount) throws IOException
+  {
+    writeDataItem(bytes, 0, bytes.length, incrementItemCount);
+  }
+
+  public void writeDataItem(byte[] bytes, int offset, int length, boolean incrementItemCount) throws IOException
+  {
+    writeDataItems(bytes, offset, length, incrementItemCount ? 1 : 0);
+  }
+
+  public void writeDataItems(byte[] bytes, int offset, int length, int itemCount) throws IOException
   {
     if (partOutStr == null) {
       openNewPartFile();
     }
-    partOutStr.write(bytes);
-    partFileBytes += bytes.length;
-    if (incrementItemCount) {
-      partFileItemCount++;
-    }
+    partOutStr.write(bytes, offset, length);
+    partFileBytes += length;
+    partFileItemCount += itemCount;
   }
 
   public void requestSync()
@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+
+import com.datatorrent.stram.api.StramEvent;
+import com.datatorrent.stram.client.EventsAgent;
+import com.datatorrent.stram.client.StatsAgent;
+import com.datatorrent.stram.client.StramAgent;
+import com.datatorrent.stram.support.StramTestSupport;
+import com.datatorrent.stram.util.ColumnarPartFileCollection;
+import com.datatorrent.stram.webapp.ContainerInfo;
+import com.datatorrent.stram.webapp.OperatorInfo;
+
+/**
+ * Records stats and events with {@link FSStatsRecorder} and {@link FSEventRecorder} and reads them back with
+ * {@link StatsAgent} and {@link EventsAgent}, in both the columnar and the JSON lines format.
+ */
+public class FSRecorderTest
+{
+  private static final String APP_ID = "application_1_0001";
+  private static final int NUM_STATS = 10;
+  private static final int NUM_EVENTS = 1000;
+
+  @Rule
+  public StramTestSupport.TestMeta testMeta = new StramTestSupport.TestMeta();
+
+  private static class TestStramAgent extends StramAgent
+  {
+    private final String appsRoot;
+
+    TestStramAgent(String appsRoot) throws Exception
+    {
+      super(FileSystem.getLocal(new Configuration()), new Configuration());
+      this.appsRoot = appsRoot;
+    }
+
+    @Override
+    public String getAppPath(String appId)
+    {
+      return appsRoot + "/" + appId;
+    }
+  }
+
+  @Test
+  public void testStatsColumnar() throws Exception
+  {
+    testStats(ColumnarPartFileCollection.VERSION);
+  }
+
+  @Test
+  public void testStatsJsonLines() throws Exception
+  {
+    testStats(ColumnarPartFileCollection.JSON_LINES_VERSION);
+  }
+
+  @Test
+  public void testEventsColumnar() throws Exception
+  {
+    testEvents(ColumnarPartFileCollection.VERSION);
+  }
+
+  @Test
+  public void testEventsJsonLines() throws Exception
+  {
+    testEvents(ColumnarPartFileCollection.JSON_LINES_VERSION);
+  }
+
+  /**
+   * The JSON lines format indexes a part file by the time it was written, the recorded timestamps have to fall in
+   * between the first write and the teardown of the recorder to be found by time.
+   */
+  private static long futureTime()
+  {
+    return System.currentTimeMillis() + 1000;
+  }
+
+  private static void awaitTime(long time) throws InterruptedException
+  {
+    Thread.sleep(Math.max(0, time - System.currentTimeMillis() + 1));
+  }
+
+  private void testStats(String version) throws Exception
+  {
+    final long baseTime = futureTime();
+    FSStatsRecorder recorder = new FSStatsRecorder();
+    recorder.setBasePath("file:" + testMeta.getAbsolutePath() + "/" + APP_ID + "/stats");
+    recorder.setVersion(version);
+    recorder.setup();
+
+    ContainerInfo containerInfo = new ContainerInfo();
+    containerInfo.id = "container_1";
+    containerInfo.host = "host1";
+    containerInfo.jvmName = "jvm1";
+    containerInfo.state = "ACTIVE";
+    containerInfo.memoryMBAllocated = 1024;
+    StreamingContainerAgent sca = Mockito.mock(StreamingContainerAgent.class);
+    Mockito.when(sca.getContainerInfo()).thenReturn(containerInfo);
+
+    for (int i = 0; i < NUM_STATS; i++) {
+      List<OperatorInfo> operators = new ArrayList<>();
+      for (int id = 1; id <= 2; id++) {
+        OperatorInfo operatorInfo = new OperatorInfo();
+        operatorInfo.id = String.valueOf(id);
+        operatorInfo.name = "o1";
+        operatorInfo.host = "host1";
+        operatorInfo.totalTuplesProcessed = i * 10 + id;
+        operators.add(operatorInfo);
+      }
+      recorder.recordOperators(operators, baseTime + i * 100);
+      containerInfo.memoryMBFree = i;
+      recorder.recordContainers(Collections.singletonMap(containerInfo.id, sca), baseTime + i * 100);
+    }
+    awaitTime(baseTime + (NUM_STATS - 1) * 100);
+    recorder.teardown();
+
+    StatsAgent agent = new StatsAgent(new TestStramAgent(testMeta.getAbsolutePath()));
+    StatsAgent.OperatorsInfo operatorsInfo = agent.getOperatorsInfo(APP_ID, "o1");
+    Assert.assertNotNull(operatorsInfo);
+    Assert.assertEquals(Arrays.asList(1, 2), operatorsInfo.operatorIds);
+    Assert.assertEquals(2 * NUM_STATS, operatorsInfo.count);
+    Assert.assertTrue(operatorsInfo.ended);
+
+    List<StatsAgent.OperatorStatsInfo> operatorStats = agent.getOperatorsStats(APP_ID, "o1", null, null,
+        Collections.singleton("totalTuplesProcessed"));
+    Assert.assertEquals(2 * NUM_STATS, operatorStats.size());
+    for (StatsAgent.OperatorStatsInfo os : operatorStats) {
+      JSONObject stats = new JSONObject(os.stats.toString());
+      Assert.assertEquals(os.stats.toString(), 1, stats.length());
+      long i = (os.timestamp - baseTime) / 100;
+      Assert.assertEquals(i * 10 + os.operatorId, stats.getLong("totalTuplesProcessed"));
+    }
+
+    operatorStats = agent.getOperatorsStats(APP_ID, "o1", baseTime + 300, baseTime + 500);
+    Assert.assertEquals(6, operatorStats.size());
+    for (StatsAgent.OperatorStatsInfo os : operatorStats) {
+      Assert.assertTrue(os.timestamp >= baseTime + 300 && os.timestamp <= baseTime + 500);
+      JSONObject stats = new JSONObject(os.stats.toString());
+      Assert.assertEquals("host1", stats.getString("host"));
+      Assert.assertTrue(stats.has("totalTuplesEmitted"));
+    }
+
+    StatsAgent.ContainersInfo containersInfo = agent.getContainersInfo(APP_ID);
+    Assert.assertNotNull(containersInfo);
+    Assert.assertEquals("container_1", containersInfo.containers.get(0).id);
+    Assert.assertEquals(NUM_STATS, containersInfo.count);
+
+    List<StatsAgent.ContainerStatsInfo> containerStats = agent.getContainersStats(APP_ID, baseTime + 200, null,
+        Arrays.asList("memoryMBFree", "numOperators"));
+    Assert.assertEquals(NUM_STATS - 2, containerStats.size());
+    for (StatsAgent.ContainerStatsInfo cs : containerStats) {
+      Assert.assertEquals(0, cs.containerId);
+      JSONObject stats = new JSONObject(cs.stats.toString());
+      Assert.assertEquals(cs.stats.toString(), 2, stats.length());
+      Assert.assertEquals((cs.timestamp - baseTime) / 100, stats.getLong("memoryMBFree"));
+      Assert.assertFalse(stats.has("gcCollectionCount"));
+    }
+  }
+
+  private void testEvents(String version) throws Exception
+  {
+    final long baseTime = futureTime();
+    FSEventRecorder recorder = new FSEventRecorder(APP_ID);
+    recorder.setBasePath("file:" + testMeta.getAbsolutePath() + "/" + APP_ID + "/events");
+    recorder.setVersion(version);
+    recorder.setup();
+
+    Map<Long, Long> eventIds = new HashMap<>();
+    for (int i = 0; i < NUM_EVENTS; i++) {
+      StramEvent event = new StramEvent.StartOperatorEvent("o1", i, "container_" + i, null);
+      event.setTimestamp(baseTime + i);
+      eventIds.put(event.getTimestamp(), event.getId());
+      recorder.recordEventAsync(event);
+    }
+    awaitTime(baseTime + NUM_EVENTS - 1);
+    recorder.teardown();
+
+    EventsAgent agent = new EventsAgent(new TestStramAgent(testMeta.getAbsolutePath()));
+    List<EventsAgent.EventInfo> events = agent.getLatestEvents(APP_ID, 10);
+    Assert.assertEquals(10, events.size());
+    for (int i = 0; i < 10; i++) {
+      assertEvent(NUM_EVENTS - 10 + i, baseTime, eventIds, events.get(i));
+    }
+
+    events = agent.getEvents(APP_ID, baseTime + 100, baseTime + 199, 0, 1000);
+    Assert.assertEquals(100, events.size());
+    for (int i = 0; i < 100; i++) {
+      assertEvent(100 + i, baseTime, eventIds, events.get(i));
+    }
+
+    events = agent.getEvents(APP_ID, baseTime + 900, null, 40, 10);
+    Assert.assertEquals(10, events.size());
+    for (int i = 0; i < 10; i++) {
+      assertEvent(940 + i, baseTime, eventIds, events.get(i));
+    }
+
+    events = agent.getEvents(APP_ID, baseTime + NUM_EVENTS, null, 0, 10);
+    Assert.assertTrue(events.isEmpty());
+  }
+
+  private static void assertEvent(int i, long baseTime, Map<Long, Long> eventIds, EventsAgent.EventInfo event)
+  {
+    Assert.assertEquals(baseTime + i, event.timestamp);
+    Assert.assertEquals("StartOperator", event.type);
+    Assert.assertEquals((long)eventIds.get(event.timestamp), event.id);
+    Assert.assertEquals(String.valueOf(i), event.data.get("operatorId"));
+    Assert.assertEquals("container_" + i, event.data.get("containerId"));
+    Assert.assertFalse(event.data.containsKey("id"));
+  }
+}
@@ -25,7 +25,9 @@ import java.io.LineNumberReader;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 
 import org.junit.After;
@@ -36,6 +38,9 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.apex.api.plugin.Event;
+import org.apache.apex.engine.api.plugin.DAGExecutionEvent;
+import org.apache.apex.engine.plugin.NoOpApexPluginDispatcher;
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
 
@@ -50,6 +55,7 @@ import com.datatorrent.common.util.BaseOperator;
 import com.datatorrent.stram.StramLocalCluster.LocalStreamingContainer;
 import com.datatorrent.stram.StramLocalCluster.MockComponentFactory;
 import com.datatorrent.stram.api.Checkpoint;
+import com.datatorrent.stram.api.StramEvent;
 import com.datatorrent.stram.engine.GenericTestOperator;
 import com.datatorrent.stram.engine.Node;
 import com.datatorrent.stram.engine.OperatorContext;
@@ -288,6 +294,143 @@ public class StramLocalClusterTest
     localCluster.shutdown();
   }
 
+  @Test
+  public void testParallelCheckpointLoad() throws Exception
+  {
+    AsyncFSStorageAgent agent = new AsyncFSStorageAgent(testMeta.getPath(), null);
+    agent.setSyncCheckpoint(true);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, agent);
+    dag.setAttribute(LogicalPlan.CHECKPOINT_LOAD_THREADS, 2);
+
+    TestGeneratorInputOperator node1 = dag.addOperator("o1", TestGeneratorInputOperator.class);
+    // data will be added externally from test
+    node1.setMaxTuples(0);
+
+    GenericTestOperator node2 = dag.addOperator("o2", GenericTestOperator.class);
+    GenericTestOperator node3 = dag.addOperator("o3", GenericTestOperator.class);
+    GenericTestOperator node4 = dag.addOperator("o4", GenericTestOperator.class);
+
+    dag.addStream("o1o2", node1.outport, node2.inport1);
+    // the stateful operators share a container and are restored together
+    dag.addStream("o2o3", node2.outport1, node3.inport1).setLocality(DAG.Locality.CONTAINER_LOCAL);
+    dag.addStream("o3o4", node3.outport1, node4.inport1).setLocality(DAG.Locality.CONTAINER_LOCAL);
+
+    dag.validate();
+
+    dag.getAttributes().put(LogicalPlan.CHECKPOINT_WINDOW_COUNT, 2);
+
+    final ManualScheduledExecutorService wclock = new ManualScheduledExecutorService(1);
+
+    MockComponentFactory mcf = new MockComponentFactory()
+    {
+      @Override
+      public WindowGenerator setupWindowGenerator()
+      {
+        WindowGenerator wingen = StramTestSupport.setupWindowGenerator(wclock);
+        wingen.setCheckpointCount(2, 0);
+        return wingen;
+      }
+
+    };
+
+    StramLocalCluster localCluster = new StramLocalCluster(dag, mcf);
+    localCluster.setPerContainerBufferServer(true);
+    localCluster.setHeartbeatMonitoringEnabled(false); // driven by test
+
+    final Map<Integer, StramEvent.OperatorRecoveryEvent> recoveryEvents = new ConcurrentHashMap<>();
+    localCluster.dnmgr.apexPluginDispatcher = new NoOpApexPluginDispatcher()
+    {
+      @Override
+      public void dispatch(Event event)
+      {
+        if (event instanceof DAGExecutionEvent.StramExecutionEvent) {
+          StramEvent stramEvent = ((DAGExecutionEvent.StramExecutionEvent)event).getStramEvent();
+          if (stramEvent instanceof StramEvent.OperatorRecoveryEvent) {
+            StramEvent.OperatorRecoveryEvent recoveryEvent = (StramEvent.OperatorRecoveryEvent)stramEvent;
+            recoveryEvents.put(recoveryEvent.getOperatorId(), recoveryEvent);
+          }
+        }
+      }
+    };
+    localCluster.runAsync();
+
+    PTOperator ptNode1 = localCluster.findByLogicalNode(dag.getMeta(node1));
+    List<PTOperator> ptNodes = Arrays.asList(localCluster.findByLogicalNode(dag.getMeta(node2)),
+        localCluster.findByLogicalNode(dag.getMeta(node3)), localCluster.findByLogicalNode(dag.getMeta(node4)));
+
+    LocalStreamingContainer c0 = StramTestSupport.waitForActivation(localCluster, ptNode1);
+    TestGeneratorInputOperator n1 = (TestGeneratorInputOperator)c0.getNodes().get(ptNode1.getId()).getOperator();
+
+    LocalStreamingContainer c2 = null;
+    for (PTOperator ptNode : ptNodes) {
+      c2 = StramTestSupport.waitForActivation(localCluster, ptNode);
+    }
+    Assert.assertEquals("number operators downstream", 3, c2.getNodes().size());
+
+    // input data
+    String tuple1 = "tuple1";
+    n1.addTuple(tuple1);
+
+    wclock.tick(1); // checkpoint window
+    wclock.tick(1);
+    wclock.tick(1);
+    Assert.assertEquals("current window", 3, wclock.getCurrentTimeMillis());
+    // checkpoint between window 1 and 2
+    for (PTOperator ptNode : ptNodes) {
+      StramTestSupport.waitForWindowComplete(c2.getNodeContext(ptNode.getId()), 2);
+    }
+
+    // propagate checkpoints to master
+    c0.triggerHeartbeat();
+    c0.waitForHeartbeat(5000);
+    c2.triggerHeartbeat();
+    c2.waitForHeartbeat(5000);
+    for (PTOperator ptNode : ptNodes) {
+      Assert.assertEquals("checkpoint " + ptNode, 1, ptNode.getRecentCheckpoint().windowId);
+    }
+    Assert.assertTrue("no recovery before failure " + recoveryEvents, recoveryEvents.isEmpty());
+
+    //
+    // simulate container failure (operators o2, o3 and o4)
+    //
+    localCluster.failContainer(c2);
+
+    LocalStreamingContainer c2Replaced = null;
+    for (PTOperator ptNode : ptNodes) {
+      c2Replaced = StramTestSupport.waitForActivation(localCluster, ptNode);
+    }
+    Assert.assertNotSame("old container", c2, c2Replaced);
+    Assert.assertEquals("number operators after recovery", 3, c2Replaced.getNodes().size());
+    for (PTOperator ptNode : ptNodes) {
+      GenericTestOperator recovered = (GenericTestOperator)c2Replaced.getNodes().get(ptNode.getId()).getOperator();
+      Assert.assertEquals("restored state " + ptNode, tuple1, recovered.inport1Tuple);
+    }
+
+    wclock.tick(1);
+    Assert.assertEquals("current window", 4, wclock.getCurrentTimeMillis());
+    for (PTOperator ptNode : ptNodes) {
+      StramTestSupport.waitForWindowComplete(c2Replaced.getNodeContext(ptNode.getId()), 3);
+    }
+
+    // report the recovery to master
+    c2Replaced.triggerHeartbeat();
+    c2Replaced.waitForHeartbeat(5000);
+
+    Assert.assertEquals("recovered operators " + recoveryEvents, 3, recoveryEvents.size());
+    for (PTOperator ptNode : ptNodes) {
+      StramEvent.OperatorRecoveryEvent event = recoveryEvents.get(ptNode.getId());
+      Assert.assertNotNull("recovery event " + ptNode, event);
+      Assert.assertEquals("operator name", ptNode.getName(), event.getOperatorName());
+      Assert.assertEquals("container", c2Replaced.getContainerId(), event.getContainerId());
+      Assert.assertEquals("checkpoint", 1, event.getCheckpointWindowId());
+      Assert.assertTrue("fetch time", event.getFetchMillis() >= 0);
+      Assert.assertTrue("deserialize time", event.getDeserializeMillis() >= 0);
+      Assert.assertTrue("replay time", event.getReplayMillis() >= 0);
+    }
+
+    localCluster.shutdown();
+  }
+
   @Test
   public void testDynamicLoading() throws Exception
   {
@@ -27,6 +27,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -883,6 +885,76 @@ public class StreamingContainerManagerTest
     Assert.assertEquals(0, physicalPlan.getContainers().size());
   }
 
+  @Test
+  public void testHeartbeatProcessingAtScale() throws Exception
+  {
+    final int numPartitions = 2500;
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    dag.setAttribute(LogicalPlan.CONTAINERS_MAX_COUNT, 100);
+
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    dag.addStream("stream1", o1.outport1, o2.inport1);
+    dag.setOperatorAttribute(o1, OperatorContext.PARTITIONER, new StatelessPartitioner<GenericTestOperator>(numPartitions));
+    dag.setInputPortAttribute(o2.inport1, PortContext.PARTITION_PARALLEL, true);
+
+    StreamingContainerManager scm = new StreamingContainerManager(dag);
+    PhysicalPlan physicalPlan = scm.getPhysicalPlan();
+    Assert.assertEquals("physical operators", 2 * numPartitions, physicalPlan.getAllOperators().size());
+
+    final List<MockContainer> mockContainers = new ArrayList<>();
+    for (PTContainer c : physicalPlan.getContainers()) {
+      mockContainers.add(new MockContainer(scm, c));
+    }
+    for (MockContainer mc : mockContainers) {
+      mc.deploy();
+      // skip buffer server purge in monitorHeartbeat
+      mc.container.bufferServerAddress = null;
+      for (PTOperator oper : mc.container.getOperators()) {
+        mc.stats(oper.getId()).deployState(DeployState.ACTIVE);
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (long windowId = 1; windowId <= 10; windowId++) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (final MockContainer mc : mockContainers) {
+          for (MockOperatorStats mos : mc.stats.values()) {
+            mos.currentWindowId(windowId).checkpointWindowId(windowId);
+          }
+          futures.add(executor.submit(new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              mc.sendHeartbeat();
+            }
+          }));
+        }
+        long startNanos = System.nanoTime();
+        for (Future<?> f : futures) {
+          f.get();
+        }
+        long heartbeatNanos = System.nanoTime() - startNanos;
+        startNanos = System.nanoTime();
+        scm.monitorHeartbeat(false);
+        LOG.debug("window {} heartbeats {}ms monitor {}ms", windowId, TimeUnit.NANOSECONDS.toMillis(heartbeatNanos),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // without new checkpoints the traversal is skipped and the committed window stays put
+    scm.monitorHeartbeat(false);
+    Assert.assertEquals("committedWindowId", 10, scm.getCommittedWindowId());
+    for (PTOperator oper : physicalPlan.getAllOperators().values()) {
+      Assert.assertEquals("state " + oper, PTOperator.State.ACTIVE, oper.getState());
+      Assert.assertEquals("recovery checkpoint " + oper, 10, oper.getRecoveryCheckpoint().windowId);
+    }
+  }
+
   private void testDownStreamPartition(Locality locality) throws Exception
   {
     TestGeneratorInputOperator o1 = dag.addOperator("o1", TestGeneratorInputOperator.class);
@@ -0,0 +1,309 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+
+import com.datatorrent.api.Stats.CheckpointStats;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+import com.datatorrent.api.StatsListener;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.RecoveryStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ShutdownType;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.StramToNodeRequest;
+import com.datatorrent.stram.util.AbstractWritableAdapter;
+
+public class HeartbeatCodecTest
+{
+  private static final Logger logger = LoggerFactory.getLogger(HeartbeatCodecTest.class);
+  private static final long BASE_WINDOW_ID = 0x59e5d1a000000000L;
+
+  /**
+   * Carries a heartbeat through the reflective Java serialization of {@link AbstractWritableAdapter}.
+   */
+  public static class JavaSerializedHeartbeat extends AbstractWritableAdapter
+  {
+    private static final long serialVersionUID = 201710171200L;
+    public ContainerHeartbeat heartbeat;
+  }
+
+  public static class TestResponse implements StatsListener.OperatorResponse, Serializable
+  {
+    private static final long serialVersionUID = 201710171200L;
+
+    @Override
+    public Object getResponseId()
+    {
+      return 1L;
+    }
+
+    @Override
+    public Object getResponse()
+    {
+      return "done";
+    }
+  }
+
+  private static ContainerHeartbeat createHeartbeat(int operators, int windows)
+  {
+    ContainerHeartbeat heartbeat = new ContainerHeartbeat();
+    heartbeat.bufferServerHost = "node17.example.com";
+    heartbeat.bufferServerPort = 41203;
+    heartbeat.jvmName = "12345@node17";
+    heartbeat.memoryMBFree = 512;
+    heartbeat.gcCollectionTime = 1234;
+    heartbeat.gcCollectionCount = 56;
+    heartbeat.stats = new ContainerStats("container_1508000000000_0001_01_000002");
+    for (int i = 0; i < operators; i++) {
+      OperatorHeartbeat operator = new OperatorHeartbeat();
+      operator.nodeId = i + 1;
+      operator.generatedTms = heartbeat.sentTms;
+      operator.intervalMs = 1000;
+      operator.state = OperatorHeartbeat.DeployState.ACTIVE;
+      for (int w = 0; w < windows; w++) {
+        OperatorStats stats = new OperatorStats();
+        stats.windowId = BASE_WINDOW_ID + w;
+        stats.cpuTimeUsed = 1000000 + w * 17;
+        stats.checkpoint = new Checkpoint(BASE_WINDOW_ID - 60 + w / 60 * 60, 1, 60);
+        stats.inputPorts = new ArrayList<>();
+        stats.outputPorts = new ArrayList<>();
+        for (String name : Arrays.asList("input", "data")) {
+          PortStats port = new PortStats(name);
+          port.tupleCount = 1000 + w;
+          port.endWindowTimestamp = heartbeat.sentTms - 1000 + w * 2;
+          port.bufferServerBytes = 64000 + w;
+          port.bufferServerLagBytes = 512 * w;
+          port.decodeTime = 150000 + w;
+          port.queueSize = w % 3;
+          stats.inputPorts.add(port);
+        }
+        PortStats port = new PortStats("output");
+        port.tupleCount = 1000 + w;
+        port.endWindowTimestamp = heartbeat.sentTms - 999 + w * 2;
+        stats.outputPorts.add(port);
+        stats.metrics = new HashMap<>();
+        stats.metrics.put("count", (long)w);
+        stats.metrics.put("average", w / 3.0);
+        stats.metrics.put("name", "metric");
+        operator.windowStats.add(stats);
+      }
+      heartbeat.stats.addNodeStats(operator);
+    }
+    return heartbeat;
+  }
+
+  private static <T extends Writable> T roundTrip(Writable message, T result) throws IOException
+  {
+    DataOutputBuffer out = new DataOutputBuffer();
+    message.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    result.readFields(in);
+    Assert.assertEquals("consumed", out.getLength(), in.getPosition());
+    return result;
+  }
+
+  private static int size(Writable message) throws IOException
+  {
+    DataOutputBuffer out = new DataOutputBuffer();
+    message.write(out);
+    return out.getLength();
+  }
+
+  @Test
+  public void testHeartbeatRoundTrip() throws Exception
+  {
+    ContainerHeartbeat heartbeat = createHeartbeat(3, 10);
+    heartbeat.restartRequested = true;
+    heartbeat.stackTrace = "stack trace";
+    OperatorHeartbeat first = heartbeat.stats.operators.get(0);
+    first.requestResponse = new ArrayList<>();
+    first.requestResponse.add(new TestResponse());
+    first.recoveryStats = new RecoveryStats();
+    first.recoveryStats.checkpointWindowId = BASE_WINDOW_ID + 60;
+    first.recoveryStats.fetchMillis = 120;
+    first.recoveryStats.deserializeMillis = 35;
+    first.recoveryStats.replayMillis = 2500;
+    OperatorStats stats = first.windowStats.get(1);
+    stats.checkpointStats = new CheckpointStats();
+    stats.checkpointStats.checkpointStartTime = 1508000000000L;
+    stats.checkpointStats.checkpointTime = 12;
+    stats.checkpointStats.checkpointSize = 1 << 20;
+    stats.checkpointStats.uploadedBytes = 1 << 18;
+    stats.checkpointStats.serializationTime = 3;
+    stats.checkpointStats.uploadTime = 9;
+    stats.recordingId = "recording";
+    stats.counters = Arrays.asList(1, 2);
+    stats.metrics.put("flag", true);
+    stats.metrics.put("ratio", 0.5f);
+    stats.metrics.put("missing", null);
+    stats.inputPorts.get(0).recordingId = "recording";
+
+    ContainerHeartbeat result = roundTrip(heartbeat, new ContainerHeartbeat());
+    Assert.assertEquals(heartbeat.bufferServerHost, result.bufferServerHost);
+    Assert.assertEquals(heartbeat.bufferServerPort, result.bufferServerPort);
+    Assert.assertEquals(heartbeat.jvmName, result.jvmName);
+    Assert.assertEquals(heartbeat.memoryMBFree, result.memoryMBFree);
+    Assert.assertTrue(result.restartRequested);
+    Assert.assertEquals(heartbeat.gcCollectionTime, result.gcCollectionTime);
+    Assert.assertEquals(heartbeat.gcCollectionCount, result.gcCollectionCount);
+    Assert.assertEquals(heartbeat.sentTms, result.sentTms);
+    Assert.assertEquals(heartbeat.stackTrace, result.stackTrace);
+    Assert.assertEquals(heartbeat.getContainerId(), result.getContainerId());
+    Assert.assertEquals(heartbeat.stats.operators.size(), result.stats.operators.size());
+
+    for (int i = 0; i < heartbeat.stats.operators.size(); i++) {
+      OperatorHeartbeat expected = heartbeat.stats.operators.get(i);
+      OperatorHeartbeat actual = result.stats.operators.get(i);
+      Assert.assertEquals(expected.nodeId, actual.nodeId);
+      Assert.assertEquals(expected.generatedTms, actual.generatedTms);
+      Assert.assertEquals(expected.intervalMs, actual.intervalMs);
+      Assert.assertEquals(expected.state, actual.state);
+      Assert.assertEquals(expected.windowStats.size(), actual.windowStats.size());
+      for (int w = 0; w < expected.windowStats.size(); w++) {
+        assertEquals(expected.windowStats.get(w), actual.windowStats.get(w));
+      }
+    }
+
+    OperatorHeartbeat actual = result.stats.operators.get(0);
+    Assert.assertEquals(1, actual.requestResponse.size());
+    Assert.assertEquals("done", actual.requestResponse.get(0).getResponse());
+    Assert.assertNull(result.stats.operators.get(1).requestResponse);
+    Assert.assertEquals(first.recoveryStats.checkpointWindowId, actual.recoveryStats.checkpointWindowId);
+    Assert.assertEquals(first.recoveryStats.fetchMillis, actual.recoveryStats.fetchMillis);
+    Assert.assertEquals(first.recoveryStats.deserializeMillis, actual.recoveryStats.deserializeMillis);
+    Assert.assertEquals(first.recoveryStats.replayMillis, actual.recoveryStats.replayMillis);
+    Assert.assertNull(result.stats.operators.get(1).recoveryStats);
+  }
+
+  private static void assertEquals(OperatorStats expected, OperatorStats actual)
+  {
+    Assert.assertEquals(expected.windowId, actual.windowId);
+    Assert.assertEquals(expected.cpuTimeUsed, actual.cpuTimeUsed);
+    Assert.assertEquals(expected.checkpoint, actual.checkpoint);
+    Assert.assertEquals(expected.recordingId, actual.recordingId);
+    Assert.assertEquals(expected.counters, actual.counters);
+    Assert.assertEquals(expected.metrics, actual.metrics);
+    if (expected.checkpointStats == null) {
+      Assert.assertNull(actual.checkpointStats);
+    } else {
+      Assert.assertEquals(expected.checkpointStats.checkpointStartTime, actual.checkpointStats.checkpointStartTime);
+      Assert.assertEquals(expected.checkpointStats.checkpointTime, actual.checkpointStats.checkpointTime);
+      Assert.assertEquals(String.valueOf(expected.checkpointStats), String.valueOf(actual.checkpointStats));
+    }
+    Assert.assertEquals(String.valueOf(expected.inputPorts), String.valueOf(actual.inputPorts));
+    Assert.assertEquals(String.valueOf(expected.outputPorts), String.valueOf(actual.outputPorts));
+    for (int i = 0; i < expected.inputPorts.size(); i++) {
+      Assert.assertEquals(expected.inputPorts.get(i).recordingId, actual.inputPorts.get(i).recordingId);
+    }
+  }
+
+  @Test
+  public void testResponseRoundTrip() throws Exception
+  {
+    ContainerHeartbeatResponse response = new ContainerHeartbeatResponse();
+    ContainerHeartbeatResponse result = roundTrip(response, new ContainerHeartbeatResponse());
+    Assert.assertNull(result.shutdown);
+    Assert.assertNull(result.nodeRequests);
+    Assert.assertNull(result.undeployRequest);
+    Assert.assertNull(result.deployRequest);
+    Assert.assertEquals(-1, result.committedWindowId);
+
+    response.shutdown = ShutdownType.WAIT_TERMINATE;
+    response.hasPendingRequests = true;
+    response.stackTraceRequired = true;
+    response.committedWindowId = BASE_WINDOW_ID + 5;
+    response.undeployRequest = Arrays.asList(3, 5, 8);
+    response.deployRequest = new ArrayList<>();
+    OperatorDeployInfo ndi = new OperatorDeployInfo();
+    ndi.id = 7;
+    ndi.name = "operator";
+    response.deployRequest.add(ndi);
+    StramToNodeRequest request = new StramToNodeRequest();
+    request.operatorId = 7;
+    request.requestType = StramToNodeRequest.RequestType.START_RECORDING;
+    response.nodeRequests = new ArrayList<>();
+    response.nodeRequests.add(request);
+
+    result = roundTrip(response, new ContainerHeartbeatResponse());
+    Assert.assertEquals(ShutdownType.WAIT_TERMINATE, result.shutdown);
+    Assert.assertTrue(result.hasPendingRequests);
+    Assert.assertTrue(result.stackTraceRequired);
+    Assert.assertEquals(response.committedWindowId, result.committedWindowId);
+    Assert.assertEquals(response.undeployRequest, result.undeployRequest);
+    Assert.assertEquals(1, result.deployRequest.size());
+    Assert.assertEquals(7, result.deployRequest.get(0).id);
+    Assert.assertEquals("operator", result.deployRequest.get(0).name);
+    Assert.assertEquals(1, result.nodeRequests.size());
+    Assert.assertEquals(7, result.nodeRequests.get(0).operatorId);
+    Assert.assertEquals(StramToNodeRequest.RequestType.START_RECORDING, result.nodeRequests.get(0).requestType);
+  }
+
+  /**
+   * Compares the size and the encoding and decoding rate of a heartbeat of a container with 10 operators which
+   * processed 10 windows each in the heartbeat interval with those of the Java serialization.
+   */
+  @Test
+  public void testThroughput() throws Exception
+  {
+    final int iterations = 2000;
+    ContainerHeartbeat heartbeat = createHeartbeat(10, 10);
+    JavaSerializedHeartbeat javaSerialized = new JavaSerializedHeartbeat();
+    javaSerialized.heartbeat = heartbeat;
+
+    final int binarySize = size(heartbeat);
+    final int javaSize = size(javaSerialized);
+    Assert.assertTrue("binary size " + binarySize + " java size " + javaSize, binarySize * 3 < javaSize);
+
+    long binaryNanos = Long.MAX_VALUE;
+    long javaNanos = Long.MAX_VALUE;
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        roundTrip(heartbeat, new ContainerHeartbeat());
+      }
+      binaryNanos = Math.min(binaryNanos, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        roundTrip(javaSerialized, new JavaSerializedHeartbeat());
+      }
+      javaNanos = Math.min(javaNanos, System.nanoTime() - start);
+    }
+    logger.info("heartbeat size binary {} bytes java {} bytes, round trips per second binary {} java {}",
+        binarySize, javaSize, iterations * 1000000000L / binaryNanos, iterations * 1000000000L / javaNanos);
+  }
+}
@@ -0,0 +1,258 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.api.Context.PortContext;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
+import com.datatorrent.stram.engine.GenericTestOperator;
+import com.datatorrent.stram.engine.TestGeneratorInputOperator;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+
+/**
+ *
+ */
+public class PojoStreamCodecTest
+{
+  public static class Pojo
+  {
+    public int count;
+    public String name;
+    private long id;
+    private double amount;
+    private boolean active;
+    private Integer rank;
+    private Character grade;
+
+    public long getId()
+    {
+      return id;
+    }
+
+    public void setId(long id)
+    {
+      this.id = id;
+    }
+
+    public double getAmount()
+    {
+      return amount;
+    }
+
+    public Pojo setAmount(double amount)
+    {
+      this.amount = amount;
+      return this;
+    }
+
+    public boolean isActive()
+    {
+      return active;
+    }
+
+    public void setActive(boolean active)
+    {
+      this.active = active;
+    }
+
+    public Integer getRank()
+    {
+      return rank;
+    }
+
+    public void setRank(Integer rank)
+    {
+      this.rank = rank;
+    }
+
+    public Character getGrade()
+    {
+      return grade;
+    }
+
+    public void setGrade(Character grade)
+    {
+      this.grade = grade;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (o == null || o.getClass() != getClass()) {
+        return false;
+      }
+      Pojo pojo = (Pojo)o;
+      return count == pojo.count && id == pojo.id && amount == pojo.amount && active == pojo.active
+          && (name == null ? pojo.name == null : name.equals(pojo.name))
+          && (rank == null ? pojo.rank == null : rank.equals(pojo.rank))
+          && (grade == null ? pojo.grade == null : grade.equals(pojo.grade));
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (int)id;
+    }
+  }
+
+  public static class ExtendedPojo extends Pojo
+  {
+    public short level;
+  }
+
+  public static class NestedPojo
+  {
+    public List<String> names;
+  }
+
+  static Pojo newPojo(int i)
+  {
+    Pojo pojo = new Pojo();
+    pojo.count = i;
+    pojo.name = i % 3 == 0 ? null : "pojo-" + i;
+    pojo.setId(Long.MAX_VALUE - i);
+    pojo.setAmount(i * 0.25);
+    pojo.setActive(i % 2 == 0);
+    pojo.setRank(i % 4 == 0 ? null : -i);
+    pojo.setGrade(i % 5 == 0 ? null : (char)('A' + i % 5));
+    return pojo;
+  }
+
+  @Test
+  public void testGeneratedSerializer()
+  {
+    Assert.assertNotNull(PojoStreamCodec.getSerializer(Pojo.class));
+    Assert.assertNotNull(PojoStreamCodec.getSerializer(ExtendedPojo.class));
+    Assert.assertNull(PojoStreamCodec.getSerializer(NestedPojo.class));
+    Assert.assertNull(PojoStreamCodec.getSerializer(String.class));
+
+    StatefulStreamCodec<Object> coder = new PojoStreamCodec<>(Pojo.class).newInstance();
+    StatefulStreamCodec<Object> decoder = coder.newInstance();
+    StatefulStreamCodec<Object> kryo = new DefaultStatefulStreamCodec<>();
+
+    for (int i = 0; i < 20; i++) {
+      Pojo pojo = newPojo(i);
+      DataStatePair dsp = coder.toDataStatePair(pojo);
+      Assert.assertEquals("state only with the first tuple", i == 0, dsp.state != null);
+      int length = dsp.data.length;
+      Assert.assertEquals("tuple " + i, pojo, decoder.fromDataStatePair(dsp));
+      Assert.assertTrue("smaller than kryo", length < kryo.toDataStatePair(pojo).data.length);
+    }
+  }
+
+  @Test
+  public void testFallback()
+  {
+    StatefulStreamCodec<Object> coder = new PojoStreamCodec<>(Pojo.class).newInstance();
+    StatefulStreamCodec<Object> decoder = coder.newInstance();
+
+    ExtendedPojo extended = new ExtendedPojo();
+    extended.count = 3;
+    extended.level = 7;
+    NestedPojo nested = new NestedPojo();
+    nested.names = new ArrayList<>(Arrays.asList("a", "b"));
+
+    for (Object tuple : new Object[]{newPojo(1), extended, "string", nested, newPojo(2)}) {
+      Object decoded = decoder.fromDataStatePair(coder.toDataStatePair(tuple));
+      Assert.assertEquals(tuple.getClass(), decoded.getClass());
+      if (tuple instanceof ExtendedPojo) {
+        Assert.assertEquals(7, ((ExtendedPojo)decoded).level);
+      } else if (tuple instanceof NestedPojo) {
+        Assert.assertEquals(nested.names, ((NestedPojo)decoded).names);
+      } else {
+        Assert.assertEquals(tuple, decoded);
+      }
+    }
+
+    coder = new PojoStreamCodec<>(NestedPojo.class).newInstance();
+    decoder = coder.newInstance();
+    Assert.assertEquals(nested.names, ((NestedPojo)decoder.fromDataStatePair(coder.toDataStatePair(nested))).names);
+  }
+
+  @Test
+  public void testDirectSerializationAndReset()
+  {
+    PojoStreamCodec<Object> coder = new PojoStreamCodec<>(Pojo.class).newInstance();
+    Output output = new Output(16, Integer.MAX_VALUE);
+
+    Slice state = coder.serialize(newPojo(1), output);
+    Assert.assertNotNull(state);
+    DataStatePair dsp = new DataStatePair();
+    dsp.state = new Slice(state.toByteArray());
+    dsp.data = new Slice(output.toBytes());
+    Assert.assertEquals(newPojo(1), coder.newInstance().fromDataStatePair(dsp));
+
+    output.setPosition(0);
+    Assert.assertNull(coder.serialize(newPojo(2), output));
+
+    coder.resetState();
+    output.setPosition(0);
+    state = coder.serialize(newPojo(3), output);
+    Assert.assertNotNull("state after reset", state);
+    dsp.state = new Slice(state.toByteArray());
+    dsp.data = new Slice(output.toBytes());
+    Assert.assertEquals(newPojo(3), coder.newInstance().fromDataStatePair(dsp));
+  }
+
+  @Test
+  public void testJavaSerializable() throws Exception
+  {
+    PojoStreamCodec<Object> codec = new PojoStreamCodec<>(Pojo.class);
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(codec);
+    }
+    Object copy = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject();
+    Assert.assertEquals(codec, copy);
+    Assert.assertEquals(codec.hashCode(), copy.hashCode());
+  }
+
+  @Test
+  public void testTupleClassAttribute()
+  {
+    LogicalPlan dag = new LogicalPlan();
+    TestGeneratorInputOperator o1 = dag.addOperator("o1", TestGeneratorInputOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    GenericTestOperator o3 = dag.addOperator("o3", GenericTestOperator.class);
+    dag.addStream("o1o2", o1.outport, o2.inport1);
+    dag.addStream("o2o3", o2.outport1, o3.inport1);
+    dag.setOutputPortAttribute(o1.outport, PortContext.TUPLE_CLASS, Pojo.class);
+
+    dag.validate();
+    Assert.assertNull("disabled", dag.getMeta(o2).getMeta(o2.inport1).getStreamCodec());
+
+    dag.setAttribute(LogicalPlan.POJO_STREAM_CODEC, true);
+    dag.validate();
+    Assert.assertEquals(new PojoStreamCodec<>(Pojo.class), dag.getMeta(o2).getMeta(o2.inport1).getStreamCodec());
+    Assert.assertNull("tuple class unknown", dag.getMeta(o3).getMeta(o3.inport1).getStreamCodec());
+  }
+}
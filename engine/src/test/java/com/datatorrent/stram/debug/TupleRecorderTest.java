@@ -20,10 +20,14 @@ package com.datatorrent.stram.debug;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jettison.json.JSONObject;
@@ -206,6 +210,64 @@ public class TupleRecorderTest
     }
   }
 
+  @Test
+  public void testBinaryRecorderWithSampling() throws IOException
+  {
+    TupleRecorder recorder = new TupleRecorder(null, "application_test_id_2");
+    recorder.getStorage().setLocalMode(true);
+    recorder.getStorage().setBasePath("file://" + testWorkDir.getAbsolutePath() + "/binaryRecordings");
+    recorder.setBinaryFormat(true);
+    recorder.setSampleInterval(2);
+    recorder.setMaxTuplesPerWindow(3);
+    recorder.addInputPortInfo("ip1", "str1");
+    recorder.setup(null, null);
+
+    for (long windowId = 1000; windowId < 1002; windowId++) {
+      recorder.beginWindow(windowId);
+      for (int i = 0; i < 10; i++) {
+        Tuple t = new Tuple();
+        t.key = "key" + windowId;
+        t.value = "value\n" + i;
+        recorder.writeTuple(t, "ip1");
+      }
+      recorder.endWindow();
+    }
+    recorder.teardown();
+    Assert.assertEquals("tuples", 20, recorder.getTotalTupleCount());
+    Assert.assertEquals("dropped tuples", 0, recorder.getDroppedTupleCount());
+
+    File dir = new File(testWorkDir, "binaryRecordings");
+    try (BufferedReader br = new BufferedReader(new FileReader(new File(dir, FSPartFileCollection.META_FILE)))) {
+      Assert.assertEquals("version", TupleRecorder.BINARY_VERSION, br.readLine());
+    }
+    try (BufferedReader br = new BufferedReader(new FileReader(new File(dir, FSPartFileCollection.INDEX_FILE)))) {
+      String line = br.readLine();
+      Assert.assertTrue("index " + line, line.matches("F:part0.txt:\\d+-\\d+:6:T:1000-1001:.*"));
+    }
+
+    List<String> tuples = new ArrayList<>();
+    long windowId = -1;
+    try (InputStream is = new FileInputStream(new File(dir, "part0.txt"))) {
+      TupleRecorder.RecordReader reader = new TupleRecorder.RecordReader(is);
+      while (reader.next()) {
+        if (reader.type == TupleRecorder.RECORD_BEGIN_WINDOW) {
+          windowId = reader.windowId;
+        } else if (reader.type == TupleRecorder.RECORD_TUPLE) {
+          Assert.assertEquals("port", 0, reader.portId);
+          Assert.assertTrue("timestamp", reader.timestamp >= recorder.getStartTime());
+          tuples.add(windowId + ":" + new String(reader.data));
+        }
+      }
+    }
+    Assert.assertEquals("recorded tuples", Arrays.asList(
+        "1000:{\"key\":\"key1000\",\"value\":\"value\\n0\"}",
+        "1000:{\"key\":\"key1000\",\"value\":\"value\\n2\"}",
+        "1000:{\"key\":\"key1000\",\"value\":\"value\\n4\"}",
+        "1001:{\"key\":\"key1001\",\"value\":\"value\\n0\"}",
+        "1001:{\"key\":\"key1001\",\"value\":\"value\\n2\"}",
+        "1001:{\"key\":\"key1001\",\"value\":\"value\\n4\"}"), tuples);
+  }
+
   private static final File testWorkDir = new File("target", TupleRecorderTest.class.getName());
   private static final long testTupleCount = 10;
 
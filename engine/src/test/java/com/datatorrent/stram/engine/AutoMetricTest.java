@@ -21,6 +21,7 @@ package com.datatorrent.stram.engine;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -55,6 +56,7 @@ import com.datatorrent.stram.engine.AutoMetricTest.TestOperator.TestStatsListene
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.logical.LogicalPlanConfiguration;
 import com.datatorrent.stram.support.StramTestSupport;
+import com.datatorrent.stram.util.AutoMetricAccessors;
 
 public class AutoMetricTest
 {
@@ -338,6 +340,51 @@ public class AutoMetricTest
     lc.shutdown();
   }
 
+  @Test
+  public void testMetricAccessorsAndDefaultAggregation() throws Exception
+  {
+    OperatorWithMetricMethod o1 = dag.addOperator("o1", OperatorWithMetricMethod.class);
+    o1.endWindow();
+
+    AutoMetricAccessors accessors = AutoMetricAccessors.get(OperatorWithMetricMethod.class);
+    Assert.assertEquals("metrics", 2, accessors.size());
+    Map<String, Object> metrics = accessors.getValues(o1, null);
+    Assert.assertEquals("progress", 1, metrics.get("progress"));
+    Assert.assertEquals("myMetric", 3, metrics.get("myMetric"));
+    Assert.assertEquals("filtered", Collections.<String, Object>singletonMap("myMetric", 3),
+        accessors.getValues(o1, Collections.singleton("myMetric")));
+
+    new LogicalPlanConfiguration(new Configuration()).prepareDAG(dag, null, "AutoMetricTest");
+    AutoMetric.Aggregator aggregator = dag.getOperatorMeta("o1").getMetricAggregatorMeta().getAggregator();
+
+    List<AutoMetric.PhysicalMetricsContext> physicalMetrics = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      final int operatorId = i;
+      final Map<String, Object> values = Maps.newHashMap();
+      values.put("progress", i);
+      if (i > 0) {
+        values.put("myMetric", 3);
+      }
+      physicalMetrics.add(new AutoMetric.PhysicalMetricsContext()
+      {
+        @Override
+        public Map<String, Object> getMetrics()
+        {
+          return values;
+        }
+
+        @Override
+        public int operatorId()
+        {
+          return operatorId;
+        }
+      });
+    }
+    Map<String, Object> aggregates = aggregator.aggregate(1, physicalMetrics);
+    Assert.assertEquals("progress", 3L, aggregates.get("progress"));
+    Assert.assertEquals("myMetric", 6L, aggregates.get("myMetric"));
+  }
+
   private static class MockAggregator implements AutoMetric.Aggregator, Serializable
   {
     long cachedSum = -1;
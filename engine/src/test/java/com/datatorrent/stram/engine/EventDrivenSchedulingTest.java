@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.stram.StramLocalCluster;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.support.StramTestSupport;
+import com.datatorrent.stram.support.StramTestSupport.WaitCondition;
+
+/**
+ * Tests that container local operators with event driven scheduling wait on the wakeup signal raised by their
+ * reservoirs instead of sleeping between polls. The latency compared with sleeping operators is measured by
+ * LocalClusterBenchmark in the benchmark module.
+ */
+public class EventDrivenSchedulingTest
+{
+  private static final Logger logger = LoggerFactory.getLogger(EventDrivenSchedulingTest.class);
+  private static final int HOPS = 5;
+  private static final int TUPLES = 100;
+  private static final long INTERVAL_MILLIS = 10;
+
+  static final AtomicInteger receivedCount = new AtomicInteger();
+  static final AtomicLong totalLatencyNanos = new AtomicLong();
+
+  @Rule
+  public StramTestSupport.TestMeta testMeta = new StramTestSupport.TestMeta();
+
+  public static class TimestampInputOperator extends BaseOperator implements InputOperator
+  {
+    public final transient DefaultOutputPort<Long> output = new DefaultOutputPort<>();
+    private transient int count;
+    private transient long nextEmitNanos;
+
+    @Override
+    public void emitTuples()
+    {
+      final long now = System.nanoTime();
+      if (count < TUPLES && now >= nextEmitNanos) {
+        count++;
+        nextEmitNanos = now + TimeUnit.MILLISECONDS.toNanos(INTERVAL_MILLIS);
+        output.emit(now);
+      }
+    }
+  }
+
+  public static class PassThroughOperator extends BaseOperator
+  {
+    public final transient DefaultOutputPort<Long> output = new DefaultOutputPort<>();
+    public final transient DefaultInputPort<Long> input = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        output.emit(tuple);
+      }
+    };
+  }
+
+  public static class LatencyOperator extends BaseOperator
+  {
+    public final transient DefaultInputPort<Long> input = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        totalLatencyNanos.addAndGet(System.nanoTime() - tuple);
+        receivedCount.incrementAndGet();
+      }
+    };
+  }
+
+  @Test
+  public void testEventDrivenNodes() throws Exception
+  {
+    LogicalPlan dag = StramTestSupport.createDAG(testMeta);
+    TimestampInputOperator input = dag.addOperator("input", TimestampInputOperator.class);
+    DefaultOutputPort<Long> output = input.output;
+    for (int i = 0; i < HOPS; i++) {
+      PassThroughOperator hop = dag.addOperator("hop" + i, PassThroughOperator.class);
+      dag.addStream("stream" + i, output, hop.input).setLocality(Locality.CONTAINER_LOCAL);
+      dag.setOperatorAttribute(hop, LogicalPlan.EVENT_DRIVEN_SCHEDULING, true);
+      output = hop.output;
+    }
+    LatencyOperator latency = dag.addOperator("latency", LatencyOperator.class);
+    dag.addStream("stream" + HOPS, output, latency.input).setLocality(Locality.CONTAINER_LOCAL);
+    dag.setOperatorAttribute(latency, LogicalPlan.EVENT_DRIVEN_SCHEDULING, true);
+
+    receivedCount.set(0);
+    totalLatencyNanos.set(0);
+    StramLocalCluster lc = new StramLocalCluster(dag);
+    lc.setHeartbeatMonitoringEnabled(false);
+    lc.runAsync();
+    try {
+      Assert.assertTrue("received tuples", StramTestSupport.awaitCompletion(new WaitCondition()
+      {
+        @Override
+        public boolean isComplete()
+        {
+          return receivedCount.get() == TUPLES;
+        }
+      }, 30000));
+      logger.info("average latency across {} hops: {}us", HOPS + 1,
+          TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.get() / TUPLES));
+
+      /* once the input stops emitting, every downstream node waits on its wakeup signal instead of sleeping */
+      final Set<String> waiting = new TreeSet<>();
+      Assert.assertTrue("nodes waiting on their wakeup signal " + waiting, StramTestSupport.awaitCompletion(
+          new WaitCondition()
+          {
+            @Override
+            public boolean isComplete()
+            {
+              for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                String name = thread.getName();
+                if ((name.endsWith(":" + PassThroughOperator.class.getSimpleName())
+                    || name.endsWith(":" + LatencyOperator.class.getSimpleName()))
+                    && LockSupport.getBlocker(thread) instanceof WakeupSignal) {
+                  waiting.add(name);
+                }
+              }
+              return waiting.size() == HOPS + 1;
+            }
+          }, 30000));
+    } finally {
+      lc.shutdown();
+    }
+  }
+
+  @Test
+  public void testReservoirWakeup() throws Exception
+  {
+    final AbstractReservoir reservoir = AbstractReservoir.newReservoir("reservoir", 1024);
+    final WakeupSignal signal = new WakeupSignal();
+    reservoir.setWakeupSignal(signal);
+
+    Thread producer = new Thread("producer")
+    {
+      @Override
+      public void run()
+      {
+        try {
+          Thread.sleep(100);
+          reservoir.put("tuple");
+        } catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+    };
+
+    signal.clear();
+    producer.start();
+    long start = System.currentTimeMillis();
+    while (reservoir.isEmpty()) {
+      signal.await(60000);
+    }
+    long elapsed = System.currentTimeMillis() - start;
+    producer.join();
+    Assert.assertTrue("woken up after " + elapsed + "ms", elapsed < 30000);
+
+    /* a signal raised before the wait is not lost */
+    reservoir.put("tuple");
+    start = System.currentTimeMillis();
+    signal.await(60000);
+    Assert.assertTrue("signal raised before the wait", System.currentTimeMillis() - start < 30000);
+  }
+}
@@ -222,6 +222,12 @@ public class NodeTest
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
       }
 
+      @Override
+      protected long step()
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
     };
 
     node.activate();
@@ -255,6 +261,12 @@ public class NodeTest
         throw new UnsupportedOperationException("Not supported yet.");
       }
 
+      @Override
+      protected long step()
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
     };
 
     node.activate();
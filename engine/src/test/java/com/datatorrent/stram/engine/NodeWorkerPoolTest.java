@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.Context.PortContext;
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.api.Operator.IdleTimeHandler;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.common.util.DefaultDelayOperator;
+import com.datatorrent.stram.StramLocalCluster;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.support.StramTestSupport;
+import com.datatorrent.stram.support.StramTestSupport.WaitCondition;
+
+/**
+ * Runs a wide DAG of container local operators with a thread per operator and on a shared pool of worker threads and
+ * compares the throughput and the number of threads.
+ */
+public class NodeWorkerPoolTest
+{
+  private static final Logger logger = LoggerFactory.getLogger(NodeWorkerPoolTest.class);
+  private static final int WIDTH = 16;
+  private static final int WORKER_THREADS = 4;
+  private static final long TUPLES = 200000;
+  private static final int BATCH_SIZE = 1000;
+  private static final long LOOP_TUPLES = 50000;
+  private static final int LOOP_QUEUE_CAPACITY = 1024;
+  private static final Pattern OPERATOR_THREAD_NAME = Pattern.compile("^(\\d+/.*|worker-\\d+)$");
+
+  static final AtomicLong receivedCount = new AtomicLong();
+  static final AtomicInteger outOfOrderCount = new AtomicInteger();
+  static final AtomicInteger idleCount = new AtomicInteger();
+
+  @Rule
+  public StramTestSupport.TestMeta testMeta = new StramTestSupport.TestMeta();
+
+  public static class SequenceInputOperator extends BaseOperator implements InputOperator
+  {
+    public final transient DefaultOutputPort<Long> output = new DefaultOutputPort<>();
+    private long sequence;
+    private long tuples = TUPLES;
+    private int tuplesPerWindow = Integer.MAX_VALUE;
+    private transient int windowCount;
+
+    @Override
+    public void beginWindow(long windowId)
+    {
+      windowCount = 0;
+    }
+
+    @Override
+    public void emitTuples()
+    {
+      for (int i = 0; i < BATCH_SIZE && sequence < tuples && windowCount < tuplesPerWindow; i++, windowCount++) {
+        output.emit(sequence++);
+      }
+    }
+  }
+
+  public static class PassThroughOperator extends BaseOperator
+  {
+    public final transient DefaultOutputPort<Long> output = new DefaultOutputPort<>();
+    public final transient DefaultInputPort<Long> input = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        output.emit(tuple);
+      }
+    };
+  }
+
+  public static class SequenceCheckOperator extends BaseOperator implements IdleTimeHandler
+  {
+    private long expected;
+    private boolean insideWindow;
+
+    public final transient DefaultInputPort<Long> input = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        if (tuple != expected++ || !insideWindow) {
+          outOfOrderCount.incrementAndGet();
+        }
+        receivedCount.incrementAndGet();
+      }
+    };
+
+    @Override
+    public void beginWindow(long windowId)
+    {
+      insideWindow = true;
+    }
+
+    @Override
+    public void endWindow()
+    {
+      insideWindow = false;
+    }
+
+    @Override
+    public void handleIdleTime()
+    {
+      idleCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Sends every input tuple around the loop closed by a delay operator once.
+   */
+  public static class LoopOperator extends BaseOperator
+  {
+    public final transient DefaultOutputPort<Long> loop = new DefaultOutputPort<>();
+    public final transient DefaultInputPort<Long> input = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        loop.emit(tuple);
+      }
+    };
+    public final transient DefaultInputPort<Long> feedback = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        receivedCount.incrementAndGet();
+      }
+    };
+  }
+
+  private static int countOperatorThreads()
+  {
+    int count = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (OPERATOR_THREAD_NAME.matcher(thread.getName()).matches()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Run the DAG until every branch received all the tuples.
+   *
+   * @return the number of tuples processed per second and the peak number of operator threads
+   */
+  private long[] run(int workerThreads) throws Exception
+  {
+    receivedCount.set(0);
+    outOfOrderCount.set(0);
+    idleCount.set(0);
+
+    LogicalPlan dag = StramTestSupport.createDAG(testMeta, "/workers" + workerThreads);
+    dag.setAttribute(LogicalPlan.WORKER_THREADS, workerThreads);
+    SequenceInputOperator input = dag.addOperator("input", SequenceInputOperator.class);
+    @SuppressWarnings("unchecked")
+    DefaultInputPort<Long>[] inputs = new DefaultInputPort[WIDTH];
+    for (int i = 0; i < WIDTH; i++) {
+      PassThroughOperator hop = dag.addOperator("hop" + i, PassThroughOperator.class);
+      SequenceCheckOperator check = dag.addOperator("check" + i, SequenceCheckOperator.class);
+      dag.addStream("branch" + i, hop.output, check.input).setLocality(Locality.CONTAINER_LOCAL);
+      inputs[i] = hop.input;
+    }
+    dag.addStream("input", input.output, inputs).setLocality(Locality.CONTAINER_LOCAL);
+
+    final int[] peakThreads = new int[1];
+    StramLocalCluster lc = new StramLocalCluster(dag);
+    lc.setHeartbeatMonitoringEnabled(false);
+    final long start = System.nanoTime();
+    lc.runAsync();
+    StramTestSupport.awaitCompletion(new WaitCondition()
+    {
+      @Override
+      public boolean isComplete()
+      {
+        peakThreads[0] = Math.max(peakThreads[0], countOperatorThreads());
+        return receivedCount.get() == TUPLES * WIDTH;
+      }
+    }, 60000);
+    final long elapsedNanos = System.nanoTime() - start;
+    StramTestSupport.awaitCompletion(new WaitCondition()
+    {
+      @Override
+      public boolean isComplete()
+      {
+        return idleCount.get() > 0;
+      }
+    }, 10000);
+    lc.shutdown();
+
+    Assert.assertEquals("received tuples", TUPLES * WIDTH, receivedCount.get());
+    Assert.assertEquals("tuples out of order or outside of a window", 0, outOfOrderCount.get());
+    Assert.assertTrue("idle time handled", idleCount.get() > 0);
+    return new long[]{TUPLES * WIDTH * TimeUnit.SECONDS.toNanos(1) / elapsedNanos, peakThreads[0]};
+  }
+
+  /**
+   * The loop operator fills the stream to the delay operator before it reads the tuples which came around the loop in
+   * the previous window. A window of the loop therefore has to fit in the streams around the loop, otherwise the
+   * operators deadlock with a thread per operator as well.
+   */
+  private long runLoop(int workerThreads) throws Exception
+  {
+    receivedCount.set(0);
+
+    LogicalPlan dag = StramTestSupport.createDAG(testMeta);
+    dag.setAttribute(LogicalPlan.WORKER_THREADS, workerThreads);
+    dag.setAttribute(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS, 10);
+    SequenceInputOperator input = dag.addOperator("input", SequenceInputOperator.class);
+    input.tuples = LOOP_TUPLES;
+    input.tuplesPerWindow = LOOP_QUEUE_CAPACITY / 4;
+    LoopOperator loop = dag.addOperator("loop", LoopOperator.class);
+    DefaultDelayOperator<Long> delay = dag.addOperator("delay", new DefaultDelayOperator<Long>());
+    dag.addStream("input", input.output, loop.input).setLocality(Locality.CONTAINER_LOCAL);
+    dag.addStream("loop", loop.loop, delay.input).setLocality(Locality.CONTAINER_LOCAL);
+    dag.addStream("feedback", delay.output, loop.feedback).setLocality(Locality.CONTAINER_LOCAL);
+    dag.setInputPortAttribute(loop.input, PortContext.QUEUE_CAPACITY, LOOP_QUEUE_CAPACITY);
+    dag.setInputPortAttribute(delay.input, PortContext.QUEUE_CAPACITY, LOOP_QUEUE_CAPACITY);
+    dag.setInputPortAttribute(loop.feedback, PortContext.QUEUE_CAPACITY, LOOP_QUEUE_CAPACITY);
+
+    StramLocalCluster lc = new StramLocalCluster(dag);
+    lc.setHeartbeatMonitoringEnabled(false);
+    lc.runAsync();
+    StramTestSupport.awaitCompletion(new WaitCondition()
+    {
+      @Override
+      public boolean isComplete()
+      {
+        return receivedCount.get() == LOOP_TUPLES;
+      }
+    }, 60000);
+    lc.shutdown();
+    return receivedCount.get();
+  }
+
+  @Test
+  public void testDelayLoop() throws Exception
+  {
+    Assert.assertEquals("tuples around the loop with a thread per operator", LOOP_TUPLES, runLoop(0));
+    Assert.assertEquals("tuples around the loop on a single worker", LOOP_TUPLES, runLoop(1));
+    StramTestSupport.awaitCompletion(new WaitCondition()
+    {
+      @Override
+      public boolean isComplete()
+      {
+        return countOperatorThreads() == 0;
+      }
+    }, 10000);
+    Assert.assertEquals("operator threads left", 0, countOperatorThreads());
+  }
+
+  @Test
+  public void testWideDag() throws Exception
+  {
+    long[] threadPerNode = run(0);
+    long[] pooled = run(WORKER_THREADS);
+    logger.info("thread per operator: {} tuples/s on {} threads, worker pool: {} tuples/s on {} threads",
+        threadPerNode[0], threadPerNode[1], pooled[0], pooled[1]);
+    Assert.assertEquals("operator threads", 1 + 2 * WIDTH, threadPerNode[1]);
+    Assert.assertEquals("worker threads", WORKER_THREADS, pooled[1]);
+  }
+}
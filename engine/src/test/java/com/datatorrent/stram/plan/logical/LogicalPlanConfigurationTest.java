@@ -573,6 +573,53 @@ public class LogicalPlanConfigurationTest
     Assert.assertEquals("Application name", "AnnotatedAlias", dag.getAttributes().get(com.datatorrent.api.Context.DAGContext.APPLICATION_NAME));
   }
 
+  @Test
+  public void testPrepareLargeDAG()
+  {
+    final int numOperators = 10000;
+    String appName = "largeApp";
+    StreamingApplication app = new StreamingApplication()
+    {
+      @Override
+      public void populateDAG(DAG dag, Configuration conf)
+      {
+        for (int i = 0; i < numOperators; i += 2) {
+          GenericTestOperator o1 = dag.addOperator("op" + i, GenericTestOperator.class);
+          GenericTestOperator o2 = dag.addOperator("op" + (i + 1), GenericTestOperator.class);
+          dag.addStream("s" + i, o1.outport1, o2.inport1);
+        }
+      }
+    };
+
+    Properties props = new Properties();
+    props.put(StreamingApplication.APEX_PREFIX + "application." + appName + ".class", app.getClass().getName());
+    // the pattern with the longest literal prefix is the most specific match
+    for (int i = 0; i < 200; i++) {
+      props.put(StreamingApplication.APEX_PREFIX + "application.*.operator.op" + i + "[0-9]*.prop.myStringProperty", "p" + i);
+      props.put(StreamingApplication.APEX_PREFIX + "application.*.operator.op" + i + "[0-9]*.port.*." + PortContext.QUEUE_CAPACITY.getName(), "" + (i + 1));
+    }
+    props.put(StreamingApplication.APEX_PREFIX + "application.*.operator.op1234.prop.myStringProperty", "exact");
+    props.put(StreamingApplication.APEX_PREFIX + "application.*.operator.*." + OperatorContext.APPLICATION_WINDOW_COUNT.getName(), "2");
+
+    LogicalPlanConfiguration dagBuilder = new LogicalPlanConfiguration(new Configuration(false));
+    dagBuilder.addFromProperties(props, null);
+
+    String appPath = app.getClass().getName().replace(".", "/") + ".class";
+    LogicalPlan dag = new LogicalPlan();
+    long startMillis = System.currentTimeMillis();
+    dagBuilder.prepareDAG(dag, app, appPath);
+    LOG.info("prepareDAG with {} operators and {} properties took {}ms", numOperators, props.size(), System.currentTimeMillis() - startMillis);
+
+    Assert.assertEquals("operators", numOperators, dag.getAllOperators().size());
+    Assert.assertEquals("exact match", "exact", ((GenericTestOperator)dag.getOperatorMeta("op1234").getOperator()).getMyStringProperty());
+    Assert.assertEquals("most specific", "p123", ((GenericTestOperator)dag.getOperatorMeta("op1235").getOperator()).getMyStringProperty());
+    Assert.assertEquals("most specific", "p199", ((GenericTestOperator)dag.getOperatorMeta("op1999").getOperator()).getMyStringProperty());
+    Assert.assertEquals("most specific", "p5", ((GenericTestOperator)dag.getOperatorMeta("op5").getOperator()).getMyStringProperty());
+    OperatorMeta op9877 = dag.getOperatorMeta("op9877");
+    Assert.assertEquals("port attribute", Integer.valueOf(99), op9877.getMeta(((GenericTestOperator)op9877.getOperator()).inport1).getValue(PortContext.QUEUE_CAPACITY));
+    Assert.assertEquals("wildcard", Integer.valueOf(2), op9877.getValue(OperatorContext.APPLICATION_WINDOW_COUNT));
+  }
+
   @Test
   @SuppressWarnings({"UnnecessaryBoxing", "AssertEqualsBetweenInconvertibleTypes"})
   public void testOperatorLevelAttributes()
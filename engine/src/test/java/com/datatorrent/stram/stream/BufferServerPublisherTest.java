@@ -0,0 +1,311 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadBatchTuple;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
+import com.datatorrent.stram.engine.StreamContext;
+import com.datatorrent.stram.plan.logical.DefaultKryoStreamCodec;
+import com.datatorrent.stram.support.StramTestSupport;
+import com.datatorrent.stram.tuple.CheckpointTuple;
+import com.datatorrent.stram.tuple.EndStreamTuple;
+import com.datatorrent.stram.tuple.ResetWindowTuple;
+
+/**
+ * Verifies the buffer server packets the publisher writes without connecting it to a buffer server.
+ */
+public class BufferServerPublisherTest
+{
+  private static final long WINDOW_ID = 0x7afebabe00000000L;
+
+  static class CapturingPublisher extends BufferServerPublisher
+  {
+    final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+    CapturingPublisher(StreamCodec<?> codec)
+    {
+      super("upstream", 1024);
+      StreamContext context = new StreamContext("stream");
+      context.put(StreamContext.CODEC, codec);
+      setup(context);
+    }
+
+    @Override
+    public boolean send(byte[] array, int offset, int len)
+    {
+      sent.write(array, offset, len);
+      return true;
+    }
+
+    List<Tuple> getTuples()
+    {
+      final byte[] bytes = sent.toByteArray();
+      final List<Tuple> tuples = new ArrayList<>();
+      final VarInt.MutableInt offset = new VarInt.MutableInt();
+      while (offset.integer < bytes.length) {
+        final int size = VarInt.read(bytes, offset.integer, bytes.length, offset);
+        tuples.add(Tuple.getTuple(Arrays.copyOfRange(bytes, offset.integer, offset.integer + size), 0, size));
+        offset.integer += size;
+      }
+      return tuples;
+    }
+  }
+
+  private static void publish(BufferServerPublisher publisher, Object... payloads)
+  {
+    publisher.put(new ResetWindowTuple(WINDOW_ID | 500));
+    publisher.put(StramTestSupport.generateBeginWindowTuple("upstream", 1));
+    for (Object payload : payloads) {
+      publisher.put(payload);
+    }
+    publisher.put(new CheckpointTuple(1));
+    publisher.put(StramTestSupport.generateEndWindowTuple("upstream", 1));
+    publisher.put(new EndStreamTuple(2));
+  }
+
+  private static void assertControlTuples(List<Tuple> tuples)
+  {
+    Tuple tuple = tuples.get(0);
+    Assert.assertEquals(MessageType.RESET_WINDOW, tuple.getType());
+    Assert.assertEquals(0x7afebabe, tuple.getBaseSeconds());
+    Assert.assertEquals(500, tuple.getWindowWidth());
+    tuple = tuples.get(1);
+    Assert.assertEquals(MessageType.BEGIN_WINDOW, tuple.getType());
+    Assert.assertEquals(1, tuple.getWindowId());
+
+    final int last = tuples.size() - 1;
+    tuple = tuples.get(last - 2);
+    Assert.assertEquals(MessageType.CHECKPOINT, tuple.getType());
+    Assert.assertEquals(1, tuple.getWindowId());
+    tuple = tuples.get(last - 1);
+    Assert.assertEquals(MessageType.END_WINDOW, tuple.getType());
+    Assert.assertEquals(1, tuple.getWindowId());
+    tuple = tuples.get(last);
+    Assert.assertEquals(MessageType.END_STREAM, tuple.getType());
+    Assert.assertEquals(2, tuple.getWindowId());
+  }
+
+  @Test
+  public void testDirectCodec()
+  {
+    char[] chars = new char[200 * 1024];
+    Arrays.fill(chars, 'x');
+    final String large = new String(chars);
+    final List<Object> payloads = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      payloads.add("tuple" + i);
+      if (i % 500 == 0) {
+        payloads.add(new Date(i));
+        payloads.add(large);
+      }
+    }
+
+    CapturingPublisher publisher = new CapturingPublisher(null);
+    publish(publisher, payloads.toArray());
+    List<Tuple> tuples = publisher.getTuples();
+    assertControlTuples(tuples);
+
+    DefaultStatefulStreamCodec<Object> codec = new DefaultStatefulStreamCodec<>();
+    DataStatePair dsp = new DataStatePair();
+    List<Object> received = new ArrayList<>();
+    int states = 0;
+    for (Tuple tuple : tuples.subList(2, tuples.size() - 3)) {
+      if (tuple.getType() == MessageType.CODEC_STATE) {
+        states++;
+        dsp.state = tuple.getData();
+      } else {
+        Assert.assertEquals(MessageType.PAYLOAD, tuple.getType());
+        dsp.data = tuple.getData();
+        Object payload = codec.fromDataStatePair(dsp);
+        Assert.assertEquals(payload.hashCode(), tuple.getPartition());
+        received.add(payload);
+      }
+    }
+    Assert.assertEquals(payloads, received);
+    Assert.assertEquals("codec state for Date", 1, states);
+  }
+
+  @Test
+  public void testCodec()
+  {
+    CapturingPublisher publisher = new CapturingPublisher(new DefaultKryoStreamCodec<>());
+    publish(publisher, "hello", "world");
+    List<Tuple> tuples = publisher.getTuples();
+    assertControlTuples(tuples);
+    Assert.assertEquals(7, tuples.size());
+
+    DefaultKryoStreamCodec<Object> codec = new DefaultKryoStreamCodec<>();
+    Tuple tuple = tuples.get(2);
+    Assert.assertEquals(MessageType.PAYLOAD, tuple.getType());
+    Assert.assertEquals("hello".hashCode(), tuple.getPartition());
+    Slice data = tuple.getData();
+    Assert.assertEquals("hello", codec.fromByteArray(data));
+    Assert.assertEquals("world", codec.fromByteArray(tuples.get(3).getData()));
+  }
+
+  /**
+   * Unpacks the payloads of the batches and leaves the other tuples as they are.
+   */
+  private static List<Object> unpack(List<Tuple> tuples)
+  {
+    List<Object> unpacked = new ArrayList<>();
+    VarInt.MutableInt next = new VarInt.MutableInt();
+    for (Tuple tuple : tuples) {
+      if (tuple.getType() == MessageType.PAYLOAD_BATCH) {
+        Slice data = tuple.getData();
+        int offset = data.offset;
+        while (offset < data.offset + data.length) {
+          int length = VarInt.read(data.buffer, offset, data.offset + data.length, next);
+          unpacked.add(new Slice(data.buffer, next.integer, length));
+          offset = next.integer + length;
+        }
+      } else {
+        unpacked.add(tuple);
+      }
+    }
+    return unpacked;
+  }
+
+  @Test
+  public void testPayloadBatch()
+  {
+    final List<Object> payloads = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      payloads.add(i);
+    }
+    DefaultKryoStreamCodec<Object> codec = new DefaultKryoStreamCodec<Object>()
+    {
+      @Override
+      public int getPartition(Object o)
+      {
+        return (Integer)o / 100;
+      }
+    };
+    CapturingPublisher publisher = new CapturingPublisher(codec);
+    publisher.setPayloadBatch(256, 0);
+    publish(publisher, payloads.toArray());
+    List<Tuple> tuples = publisher.getTuples();
+    assertControlTuples(tuples);
+    Assert.assertEquals("exact tuple count", payloads.size() + 5, publisher.getCount(false));
+
+    List<Tuple> batches = tuples.subList(2, tuples.size() - 3);
+    Assert.assertTrue("batched " + batches.size(), batches.size() < payloads.size() / 10);
+    List<Object> received = new ArrayList<>();
+    for (Tuple batch : batches) {
+      Assert.assertEquals(MessageType.PAYLOAD_BATCH, batch.getType());
+      Assert.assertTrue("batch size", batch.getData().length < 256 + 16);
+      int count = 0;
+      for (Object data : unpack(Arrays.asList(batch))) {
+        Object payload = codec.fromByteArray((Slice)data);
+        Assert.assertEquals(codec.getPartition(payload), batch.getPartition());
+        received.add(payload);
+        count++;
+      }
+      Assert.assertEquals(count, ((PayloadBatchTuple)batch).getCount());
+    }
+    Assert.assertEquals(payloads, received);
+  }
+
+  @Test
+  public void testPayloadBatchLatency() throws Exception
+  {
+    DefaultKryoStreamCodec<Object> codec = new DefaultKryoStreamCodec<Object>()
+    {
+      @Override
+      public int getPartition(Object o)
+      {
+        return 0;
+      }
+    };
+    CapturingPublisher publisher = new CapturingPublisher(codec);
+    publisher.setPayloadBatch(64 * 1024, 10);
+    publisher.put(new ResetWindowTuple(WINDOW_ID | 500));
+    publisher.put(StramTestSupport.generateBeginWindowTuple("upstream", 1));
+    publisher.put("hello");
+    publisher.put("world");
+    Assert.assertEquals("batch held back", 2, publisher.getTuples().size());
+
+    Thread.sleep(20);
+    publisher.put("again");
+    List<Tuple> tuples = publisher.getTuples();
+    Assert.assertEquals("batch sent after the latency bound", 3, tuples.size());
+    Tuple batch = tuples.get(2);
+    Assert.assertEquals(MessageType.PAYLOAD_BATCH, batch.getType());
+    Assert.assertEquals(3, ((PayloadBatchTuple)batch).getCount());
+    List<Object> received = new ArrayList<>();
+    for (Object data : unpack(tuples.subList(2, 3))) {
+      received.add(codec.fromByteArray((Slice)data));
+    }
+    Assert.assertEquals(Arrays.asList("hello", "world", "again"), received);
+  }
+
+  @Test
+  public void testDirectCodecPayloadBatch()
+  {
+    final List<Object> payloads = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      payloads.add("tuple");
+      if (i == 150) {
+        payloads.add(new Date(i));
+      }
+    }
+    char[] chars = new char[200 * 1024];
+    Arrays.fill(chars, 'x');
+    payloads.add(new String(chars));
+
+    CapturingPublisher publisher = new CapturingPublisher(null);
+    publisher.setPayloadBatch(1024, 0);
+    publish(publisher, payloads.toArray());
+    List<Tuple> tuples = publisher.getTuples();
+    assertControlTuples(tuples);
+
+    DefaultStatefulStreamCodec<Object> codec = new DefaultStatefulStreamCodec<>();
+    DataStatePair dsp = new DataStatePair();
+    List<Object> received = new ArrayList<>();
+    int states = 0;
+    for (Object o : unpack(tuples.subList(2, tuples.size() - 3))) {
+      if (o instanceof Tuple) {
+        Assert.assertEquals(MessageType.CODEC_STATE, ((Tuple)o).getType());
+        states++;
+        dsp.state = ((Tuple)o).getData();
+      } else {
+        dsp.data = (Slice)o;
+        received.add(codec.fromDataStatePair(dsp));
+      }
+    }
+    Assert.assertEquals(payloads, received);
+    Assert.assertEquals("codec state for Date", 1, states);
+    Assert.assertTrue("batched " + tuples.size(), tuples.size() < 20);
+  }
+}
@@ -21,6 +21,8 @@ package com.datatorrent.stram.stream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -29,9 +31,14 @@ import org.slf4j.LoggerFactory;
 
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadBatchTuple;
 import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.stram.engine.SweepableReservoir;
+import com.datatorrent.stram.tuple.Tuple;
 
 /**
  *
@@ -122,5 +129,204 @@ public class BufferServerSubscriberTest
     Assert.assertEquals("10  received", 10, list.size());
   }
 
+  @Test
+  public void testDecodeAhead() throws InterruptedException
+  {
+    final StreamCodec<Object> myserde = new StreamCodec<Object>()
+    {
+      @Override
+      public Object fromByteArray(Slice fragment)
+      {
+        return (int)fragment.buffer[fragment.offset];
+      }
+
+      @Override
+      public Slice toByteArray(Object o)
+      {
+        return new Slice(new byte[] {((Integer)o).byteValue()});
+      }
+
+      @Override
+      public int getPartition(Object o)
+      {
+        return 0;
+      }
+    };
+
+    final List<Object> list = new ArrayList<>();
+    Sink<Object> sink = new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        list.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    };
+
+    BufferServerSubscriber bss = new BufferServerSubscriber("subscriber", 5)
+    {
+      {
+        serde = myserde;
+      }
+
+      @Override
+      public void suspendRead()
+      {
+        logger.debug("read suspended");
+      }
+
+      @Override
+      public void resumeRead()
+      {
+        logger.debug("read resumed");
+      }
+    };
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    bss.setDecodeExecutor(executor);
+    SweepableReservoir reservoir = bss.acquireReservoir("sink", 3);
+    reservoir.setSink(sink);
+
+    List<byte[]> messages = new ArrayList<>();
+    for (int window = 0; window < 3; window++) {
+      messages.add(BeginWindowTuple.getSerializedTuple(window));
+      for (int i = 0; i < 10; i++) {
+        messages.add(PayloadTuple.getSerializedTuple(0, myserde.toByteArray(window * 10 + i)));
+      }
+      messages.add(EndWindowTuple.getSerializedTuple(window));
+    }
+    for (byte[] message : messages) {
+      bss.onMessage(message, 0, message.length);
+    }
+
+    try {
+      long deadline = System.currentTimeMillis() + 10000;
+      while (list.size() < 36 && System.currentTimeMillis() < deadline) {
+        Tuple t = reservoir.sweep();
+        if (t != null) {
+          reservoir.remove();
+          list.add(t.getType());
+        } else if (list.isEmpty()) {
+          Thread.sleep(1);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    List<Object> expected = new ArrayList<>();
+    for (int window = 0; window < 3; window++) {
+      expected.add(MessageType.BEGIN_WINDOW);
+      for (int i = 0; i < 10; i++) {
+        expected.add(window * 10 + i);
+      }
+      expected.add(MessageType.END_WINDOW);
+    }
+    Assert.assertEquals("tuples in order", expected, list);
+    Assert.assertEquals("lag", 0, bss.getLagBytes());
+    Assert.assertTrue("decode time", bss.getDecodeTime(true) > 0);
+  }
+
+  @Test
+  public void testPayloadBatch()
+  {
+    final List<Object> list = new ArrayList<>();
+    Sink<Object> sink = new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        list.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    };
+
+    BufferServerSubscriber bss = new BufferServerSubscriber("subscriber", 5)
+    {
+      {
+        serde = new StreamCodec<Object>()
+        {
+          @Override
+          public Object fromByteArray(Slice fragment)
+          {
+            return (int)fragment.buffer[fragment.offset];
+          }
+
+          @Override
+          public Slice toByteArray(Object o)
+          {
+            return new Slice(new byte[] {((Integer)o).byteValue()});
+          }
+
+          @Override
+          public int getPartition(Object o)
+          {
+            return 0;
+          }
+        };
+      }
+
+      @Override
+      public void suspendRead()
+      {
+        logger.debug("read suspended");
+      }
+
+      @Override
+      public void resumeRead()
+      {
+        logger.debug("read resumed");
+      }
+    };
+    SweepableReservoir reservoir = bss.acquireReservoir("sink", 3);
+    reservoir.setSink(sink);
+
+    List<byte[]> messages = new ArrayList<>();
+    messages.add(BeginWindowTuple.getSerializedTuple(0));
+    for (int batch = 0; batch < 3; batch++) {
+      Slice[] payloads = new Slice[7];
+      for (int i = 0; i < payloads.length; i++) {
+        payloads[i] = new Slice(new byte[] {(byte)(batch * 7 + i)});
+      }
+      messages.add(PayloadBatchTuple.getSerializedTuple(0, payloads));
+    }
+    messages.add(PayloadTuple.getSerializedTuple(0, new Slice(new byte[] {21})));
+    messages.add(EndWindowTuple.getSerializedTuple(0));
+    long bytes = 0;
+    for (byte[] message : messages) {
+      bss.onMessage(message, 0, message.length);
+      bytes += message.length;
+    }
+    Assert.assertTrue("lag", bss.getLagBytes() > bytes);
+
+    for (int i = 0; i < 100 && list.size() < 24; i++) {
+      Tuple t = reservoir.sweep();
+      if (t != null) {
+        reservoir.remove();
+        list.add(t.getType());
+      }
+    }
+
+    List<Object> expected = new ArrayList<>();
+    expected.add(MessageType.BEGIN_WINDOW);
+    for (int i = 0; i < 22; i++) {
+      expected.add(i);
+    }
+    expected.add(MessageType.END_WINDOW);
+    Assert.assertEquals("tuples in order", expected, list);
+    Assert.assertEquals("data tuple count", 22, reservoir.getCount(false));
+    Assert.assertEquals("lag", 0, bss.getLagBytes());
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(BufferServerSubscriberTest.class);
 }
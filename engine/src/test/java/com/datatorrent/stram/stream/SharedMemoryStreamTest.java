@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.bufferserver.server.Server;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.netlet.DefaultEventLoop;
+import com.datatorrent.netlet.EventLoop;
+import com.datatorrent.stram.StramLocalCluster;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.engine.StreamContext;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.support.StramTestSupport;
+import com.datatorrent.stram.support.StramTestSupport.WaitCondition;
+
+/**
+ * Tests the shared memory ring and compares the throughput of a node local stream read from shared memory with the
+ * throughput of the stream read from the buffer server.
+ */
+public class SharedMemoryStreamTest
+{
+  private static final Logger logger = LoggerFactory.getLogger(SharedMemoryStreamTest.class);
+  private static final long TUPLES = 1000000;
+  private static final int BATCH_SIZE = 1000;
+
+  static final AtomicLong receivedCount = new AtomicLong();
+  static final AtomicInteger outOfOrderCount = new AtomicInteger();
+
+  @Rule
+  public StramTestSupport.TestMeta testMeta = new StramTestSupport.TestMeta();
+
+  public static class SequenceInputOperator extends BaseOperator implements InputOperator
+  {
+    public final transient DefaultOutputPort<Long> output = new DefaultOutputPort<>();
+    private long sequence;
+
+    @Override
+    public void emitTuples()
+    {
+      for (int i = 0; i < BATCH_SIZE && sequence < TUPLES; i++) {
+        output.emit(sequence++);
+      }
+    }
+  }
+
+  public static class SequenceCheckOperator extends BaseOperator
+  {
+    private long expected;
+
+    public final transient DefaultInputPort<Long> input = new DefaultInputPort<Long>()
+    {
+      @Override
+      public void process(Long tuple)
+      {
+        if (tuple != expected++) {
+          outOfOrderCount.incrementAndGet();
+        }
+        receivedCount.incrementAndGet();
+      }
+    };
+  }
+
+  @Test
+  public void testRing() throws Exception
+  {
+    final File file = new File(testMeta.getPath(), "test.ring");
+    final SharedMemoryRing writer = SharedMemoryRing.create(file, 1000, 5);
+    final SharedMemoryRing reader = SharedMemoryRing.open(file);
+    Assert.assertNotNull("ring", reader);
+    Assert.assertEquals("capacity", 1000, reader.getCapacity());
+    Assert.assertEquals("window", 5, reader.getWindowId());
+    Assert.assertTrue("attached", reader.attach());
+    Assert.assertFalse("attached twice", SharedMemoryRing.open(file).attach());
+
+    final int records = 10000;
+    Thread thread = new Thread("writer")
+    {
+      @Override
+      public void run()
+      {
+        byte[] record = new byte[64];
+        for (int i = 0; i < records; i++) {
+          int length = 1 + i % record.length;
+          record[0] = (byte)i;
+          Assert.assertTrue("written", writer.write(record, 0, length));
+        }
+        writer.close();
+      }
+    };
+    thread.start();
+
+    byte[] record = new byte[64];
+    int count = 0;
+    while (count < records) {
+      reader.heartbeat();
+      int length = reader.available();
+      if (length > 0) {
+        reader.read(record, 0, length);
+        Assert.assertEquals("length", 1 + count % record.length, length);
+        Assert.assertEquals("record", (byte)count, record[0]);
+        count++;
+      }
+    }
+    thread.join();
+    Assert.assertEquals("available", 0, reader.available());
+    Assert.assertEquals("state", SharedMemoryRing.CLOSED, reader.getState());
+  }
+
+  @Test
+  public void testConcurrentAttach() throws Exception
+  {
+    final int readers = 8;
+    for (int round = 0; round < 50; round++) {
+      File file = new File(testMeta.getPath(), "attach" + round + ".ring");
+      SharedMemoryRing writer = SharedMemoryRing.create(file, 100, -1);
+      final CyclicBarrier barrier = new CyclicBarrier(readers);
+      final AtomicInteger attached = new AtomicInteger();
+      Thread[] threads = new Thread[readers];
+      for (int i = 0; i < readers; i++) {
+        /* every reader maps the file on its own like a subscriber in another container would */
+        final SharedMemoryRing reader = SharedMemoryRing.open(file);
+        threads[i] = new Thread("reader" + i)
+        {
+          @Override
+          public void run()
+          {
+            try {
+              barrier.await();
+            } catch (Exception ex) {
+              throw new RuntimeException(ex);
+            }
+            if (reader.attach()) {
+              attached.incrementAndGet();
+            }
+          }
+        };
+        threads[i].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      Assert.assertEquals("attached readers in round " + round, 1, attached.get());
+      Assert.assertTrue("attached", writer.isAttached());
+      writer.close();
+    }
+  }
+
+  @Test
+  public void testDetach() throws Exception
+  {
+    final SharedMemoryRing writer = SharedMemoryRing.create(new File(testMeta.getPath(), "detach.ring"), 100, -1);
+    byte[] record = new byte[40];
+    Assert.assertTrue("written", writer.write(record, 0, record.length));
+    Assert.assertTrue("written", writer.write(record, 0, record.length));
+    Assert.assertFalse("detached without reader", writer.write(record, 0, record.length));
+    Assert.assertEquals("state", SharedMemoryRing.DETACHED, writer.getState());
+  }
+
+  /**
+   * Activate a subscriber which finished the given window next to a ring which starts after the other given window.
+   *
+   * @return true if the subscriber reads the ring, false if it connected to the buffer server
+   */
+  private boolean attach(EventLoop eventloop, InetSocketAddress address, long ringWindowId, long finishedWindowId)
+      throws Exception
+  {
+    final File file = new File(testMeta.getPath(), "window" + ringWindowId + ".ring");
+    final SharedMemoryRing writer = SharedMemoryRing.create(file, 1000, ringWindowId);
+    final StreamContext context = new StreamContext("stream");
+    context.setSourceId("input.output");
+    context.setSinkId("check.input");
+    context.setFinishedWindowId(finishedWindowId);
+    context.setBufferServerAddress(address);
+    context.put(StreamContext.CODEC, new DefaultStatefulStreamCodec<>());
+    context.put(StreamContext.EVENT_LOOP, eventloop);
+
+    final SharedMemorySubscriber subscriber = new SharedMemorySubscriber("check.input", 1024, file);
+    subscriber.setup(context);
+    subscriber.activate(context);
+    StramTestSupport.awaitCompletion(new WaitCondition()
+    {
+      @Override
+      public boolean isComplete()
+      {
+        synchronized (subscriber) {
+          return writer.isAttached() || subscriber.eventloop != null;
+        }
+      }
+    }, 10000);
+    final boolean attached = writer.isAttached();
+    subscriber.deactivate();
+    writer.close();
+    return attached;
+  }
+
+  @Test
+  public void testAttachOlderRing() throws Exception
+  {
+    final DefaultEventLoop eventloop = DefaultEventLoop.createEventLoop("shm");
+    eventloop.start();
+    final Server server = new Server(eventloop, 0);
+    final InetSocketAddress address = server.run();
+    try {
+      Assert.assertTrue("ring starting at the checkpoint", attach(eventloop, address, 5, 5));
+      /* the ring of a publisher recovered from an older checkpoint holds windows the subscriber finished */
+      Assert.assertFalse("ring starting before the checkpoint", attach(eventloop, address, 4, 5));
+      Assert.assertFalse("ring starting after the checkpoint", attach(eventloop, address, 6, 5));
+    } finally {
+      server.stop();
+      eventloop.stop();
+    }
+  }
+
+  private long getThroughput(int sharedMemoryMB) throws Exception
+  {
+    receivedCount.set(0);
+    outOfOrderCount.set(0);
+
+    LogicalPlan dag = StramTestSupport.createDAG(testMeta, "/shm" + sharedMemoryMB);
+    dag.setAttribute(LogicalPlan.NODE_LOCAL_SHARED_MEMORY_MB, sharedMemoryMB);
+    SequenceInputOperator input = dag.addOperator("input", SequenceInputOperator.class);
+    SequenceCheckOperator check = dag.addOperator("check", SequenceCheckOperator.class);
+    dag.addStream("stream", input.output, check.input).setLocality(Locality.NODE_LOCAL);
+
+    StramLocalCluster lc = new StramLocalCluster(dag);
+    lc.setHeartbeatMonitoringEnabled(false);
+    final long start = System.nanoTime();
+    lc.runAsync();
+    StramTestSupport.awaitCompletion(new WaitCondition()
+    {
+      @Override
+      public boolean isComplete()
+      {
+        return receivedCount.get() == TUPLES;
+      }
+    }, 60000);
+    final long elapsedNanos = System.nanoTime() - start;
+    lc.shutdown();
+
+    Assert.assertEquals("received tuples", TUPLES, receivedCount.get());
+    Assert.assertEquals("tuples out of order", 0, outOfOrderCount.get());
+    return TUPLES * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  @Test
+  public void testNodeLocalStream() throws Exception
+  {
+    long loopback = getThroughput(0);
+    long sharedMemory = getThroughput(64);
+    logger.info("node local stream: buffer server {} tuples/s, shared memory {} tuples/s", loopback, sharedMemory);
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import com.datatorrent.stram.support.StramTestSupport;
+
+public class ColumnarPartFileCollectionTest
+{
+  @Rule
+  public StramTestSupport.TestMeta testMeta = new StramTestSupport.TestMeta();
+
+  @Test
+  public void testTimeRangeAndColumnSelection() throws Exception
+  {
+    ColumnarPartFileCollection storage = new ColumnarPartFileCollection();
+    storage.setBasePath("file:" + testMeta.getAbsolutePath());
+    storage.setup();
+    storage.writeMetaData((ColumnarPartFileCollection.VERSION + "\n").getBytes());
+    for (int i = 0; i < 10; i++) {
+      Map<String, String> cells = new HashMap<>();
+      cells.put("a", String.valueOf(i));
+      storage.addRow(1000 + i, "op" + (i % 2), cells);
+    }
+    storage.flushData();
+    for (int i = 0; i < 10; i++) {
+      Map<String, String> cells = new HashMap<>();
+      cells.put("a", String.valueOf(10 + i));
+      cells.put("b", "\"b" + i + "\"");
+      storage.addRow(2000 + i, "op" + (i % 2), cells);
+    }
+    storage.teardown();
+
+    List<String> index = FileUtils.readLines(new File(testMeta.getPath(), FSPartFileCollection.INDEX_FILE));
+    Assert.assertTrue(index.get(0), index.get(0).startsWith("F:part0.txt:"));
+    Assert.assertTrue(index.get(0), index.get(0).endsWith(":20:T:1000-2009"));
+    Assert.assertEquals("E", index.get(1));
+
+    FileSystem fs = FileSystem.newInstance(new Path(testMeta.getAbsolutePath()).toUri(), new Configuration());
+    try {
+      Path partFile = new Path(testMeta.getAbsolutePath(), "part0.txt");
+      try (ColumnarPartFileReader reader = new ColumnarPartFileReader(fs.open(partFile))) {
+        ColumnarPartFileReader.Block block = reader.nextBlock(1500L, null);
+        Assert.assertEquals(10, block.rowCount);
+        Assert.assertEquals(2000, block.timestamps[0]);
+        Assert.assertEquals(2009, block.timestamps[9]);
+        Assert.assertEquals("op1", block.keys[9]);
+        Map<String, String[]> columns = block.readColumns(Collections.singleton("b"));
+        Assert.assertEquals(Collections.singleton("b"), columns.keySet());
+        Assert.assertEquals("\"b3\"", columns.get("b")[3]);
+        Assert.assertNull(reader.nextBlock(1500L, null));
+      }
+
+      try (ColumnarPartFileReader reader = new ColumnarPartFileReader(fs.open(partFile))) {
+        ColumnarPartFileReader.Block block = reader.nextBlock(null, 1005L);
+        Assert.assertEquals(1000, block.timestamps[0]);
+        Map<String, String[]> columns = block.readColumns(null);
+        Assert.assertEquals("7", columns.get("a")[7]);
+        Assert.assertNull("missing column", columns.get("b"));
+        Assert.assertNull(reader.nextBlock(null, 1005L));
+      }
+
+      // a block that is still being written ends the file
+      byte[] bytes = FileUtils.readFileToByteArray(new File(testMeta.getPath(), "part0.txt"));
+      File truncated = new File(testMeta.getPath(), "part1.txt");
+      FileUtils.writeByteArrayToFile(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+      try (ColumnarPartFileReader reader = new ColumnarPartFileReader(fs.open(new Path(truncated.getAbsolutePath())))) {
+        ColumnarPartFileReader.Block block = reader.nextBlock(null, null);
+        Assert.assertEquals("a", block.readColumns(null).keySet().iterator().next());
+        Assert.assertNull(reader.nextBlock(null, null));
+      }
+    } finally {
+      fs.close();
+    }
+  }
+
+}